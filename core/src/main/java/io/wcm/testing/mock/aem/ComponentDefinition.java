@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+
+/**
+ * Resolved definition of a component including all data inherited from its super components.
+ * <p>
+ * Only paths and property values are kept, so the definition can be shared by all resource resolvers of the same
+ * context. Definitions are cached by the {@link ComponentRegistry}.
+ * </p>
+ * <p>
+ * The definition keeps a stamp of each resource it was built from along the super component chain (the components and
+ * their <code>cq:editConfig</code>, <code>cq:childEditConfig</code> and <code>cq:htmlTag</code> nodes, and the candidate
+ * paths of the super resource types in all search paths), so changes of these resources can be detected via {@link #isValid(ResourceResolver)}.
+ * </p>
+ */
+final class ComponentDefinition {
+
+  private static final List<String> SOURCE_CHILD_NAMES = List.of(
+      NameConstants.NN_EDIT_CONFIG,
+      NameConstants.NN_CHILD_EDIT_CONFIG,
+      NameConstants.NN_HTML_TAG);
+
+  private final List<String> superComponentPaths;
+  private final Map<String, Object> declaredEditConfig;
+  private final Map<String, Object> editConfig;
+  private final Map<String, Object> declaredChildEditConfig;
+  private final Map<String, Object> childEditConfig;
+  private final Map<String, String> htmlTagAttributes;
+  // stamp of each resource the definition was built from, per path
+  private final Map<String, Long> sourceStamps;
+
+  /**
+   * @param resource Component resource
+   * @param superComponentPath Path of the super component (optional)
+   * @param superDefinition Definition of the super component (optional)
+   * @param superTypeStamps Stamps of the candidate paths the super resource type was resolved from
+   */
+  ComponentDefinition(@NotNull Resource resource, @Nullable String superComponentPath,
+      @Nullable ComponentDefinition superDefinition, @NotNull Map<String, Long> superTypeStamps) {
+    List<String> superPaths = new ArrayList<>();
+    if (superComponentPath != null) {
+      superPaths.add(superComponentPath);
+      if (superDefinition != null) {
+        superPaths.addAll(superDefinition.superComponentPaths);
+      }
+    }
+    this.superComponentPaths = Collections.unmodifiableList(superPaths);
+
+    this.declaredEditConfig = readProperties(resource, NameConstants.NN_EDIT_CONFIG);
+    this.editConfig = merge(superDefinition != null ? superDefinition.editConfig : null, declaredEditConfig);
+    this.declaredChildEditConfig = readProperties(resource, NameConstants.NN_CHILD_EDIT_CONFIG);
+    this.childEditConfig = merge(superDefinition != null ? superDefinition.childEditConfig : null, declaredChildEditConfig);
+
+    // html tag attributes of the component override the inherited ones
+    Map<String, String> attrs = new HashMap<>();
+    if (superDefinition != null) {
+      attrs.putAll(superDefinition.htmlTagAttributes);
+    }
+    Resource htmlTagChild = resource.getChild(NameConstants.NN_HTML_TAG);
+    if (htmlTagChild != null) {
+      ValueMap htmlTagProps = htmlTagChild.getValueMap();
+      for (String key : htmlTagProps.keySet()) {
+        String value = htmlTagProps.get(key, String.class);
+        if (value != null) {
+          attrs.put(key, value);
+        }
+      }
+    }
+    this.htmlTagAttributes = Collections.unmodifiableMap(attrs);
+
+    Map<String, Long> stamps = new HashMap<>();
+    if (superDefinition != null) {
+      stamps.putAll(superDefinition.sourceStamps);
+    }
+    stamps.putAll(superTypeStamps);
+    stamps.put(resource.getPath(), ResourceStamps.getStamp(resource));
+    for (String childName : SOURCE_CHILD_NAMES) {
+      stamps.put(resource.getPath() + "/" + childName, ResourceStamps.getStamp(resource.getChild(childName)));
+    }
+    this.sourceStamps = Collections.unmodifiableMap(stamps);
+  }
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @return true if none of the resources the definition was built from was changed, added or removed
+   */
+  boolean isValid(@NotNull ResourceResolver resourceResolver) {
+    for (Map.Entry<String, Long> entry : sourceStamps.entrySet()) {
+      if (ResourceStamps.getStamp(resourceResolver.getResource(entry.getKey())) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static @Nullable Map<String, Object> readProperties(@NotNull Resource resource, @NotNull String childName) {
+    Resource child = resource.getChild(childName);
+    if (child == null) {
+      return null;
+    }
+    Map<String, Object> props = new LinkedHashMap<>(child.getValueMap());
+    props.remove(JcrConstants.JCR_PRIMARYTYPE);
+    return Collections.unmodifiableMap(props);
+  }
+
+  private static @Nullable Map<String, Object> merge(@Nullable Map<String, Object> inherited,
+      @Nullable Map<String, Object> declared) {
+    if (inherited == null) {
+      return declared;
+    }
+    if (declared == null) {
+      return inherited;
+    }
+    Map<String, Object> props = new LinkedHashMap<>(inherited);
+    props.putAll(declared);
+    return Collections.unmodifiableMap(props);
+  }
+
+  /**
+   * @return Paths of all super components, the direct super component first
+   */
+  @NotNull
+  List<String> getSuperComponentPaths() {
+    return this.superComponentPaths;
+  }
+
+  /**
+   * @return Properties of the <code>cq:editConfig</code> node of the component itself, or null
+   */
+  @Nullable
+  Map<String, Object> getDeclaredEditConfig() {
+    return this.declaredEditConfig;
+  }
+
+  /**
+   * @return Properties of the <code>cq:editConfig</code> nodes merged along the super component chain, or null
+   */
+  @Nullable
+  Map<String, Object> getEditConfig() {
+    return this.editConfig;
+  }
+
+  /**
+   * @return Properties of the <code>cq:childEditConfig</code> node of the component itself, or null
+   */
+  @Nullable
+  Map<String, Object> getDeclaredChildEditConfig() {
+    return this.declaredChildEditConfig;
+  }
+
+  /**
+   * @return Properties of the <code>cq:childEditConfig</code> nodes merged along the super component chain, or null
+   */
+  @Nullable
+  Map<String, Object> getChildEditConfig() {
+    return this.childEditConfig;
+  }
+
+  /**
+   * @return Attributes of the <code>cq:htmlTag</code> nodes merged along the super component chain
+   */
+  @NotNull
+  Map<String, String> getHtmlTagAttributes() {
+    return this.htmlTagAttributes;
+  }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+
+/**
+ * Registry of the components below the search paths of the resource resolver (e.g. <code>/apps</code>, <code>/libs</code>).
+ * <p>
+ * Resource types are resolved against the search paths of the resource resolver on each lookup, so components added,
+ * overlaid or removed in any way (content builder, content loader, resource resolver) are found immediately.
+ * </p>
+ * <p>
+ * The resolved {@link ComponentDefinition} of each component (super component chain, merged edit configs and
+ * HTML tag attributes) is cached. It is validated on each lookup against stamps of the resources it was built from,
+ * including the candidates for resolving the super resource types in all search paths.
+ * </p>
+ * <p>
+ * The index of all components (nodes of type <code>cq:Component</code>) and their component groups is built lazily.
+ * It keeps a stamp of the component trees below the search paths it was built from, and is rebuilt when a component
+ * was added, removed or changed.
+ * </p>
+ * One instance is shared by all component managers of the same context. Cached entries are kept separately for
+ * each list of search paths, as resource resolvers with different search paths resolve to different components.
+ */
+final class ComponentRegistry {
+
+  private final Map<List<String>, Scope> scopes = new ConcurrentHashMap<>();
+
+  /**
+   * Resolves the component resource for the given resource type or path.
+   * @param resourceType Resource type (relative or absolute path)
+   * @param resourceResolver Resource resolver
+   * @return Component resource or null
+   */
+  @Nullable
+  Resource getComponentResource(@NotNull String resourceType, @NotNull ResourceResolver resourceResolver) {
+    return resourceResolver.getResource(ResourceUtil.resourceTypeToPath(resourceType));
+  }
+
+  /**
+   * Gets the resolved definition of the given component.
+   * @param componentResource Component resource
+   * @return Component definition
+   */
+  @NotNull
+  ComponentDefinition getDefinition(@NotNull Resource componentResource) {
+    Scope scope = getScope(componentResource.getResourceResolver());
+    ComponentDefinition definition = scope.definitions.get(componentResource.getPath());
+    if (definition == null || !definition.isValid(componentResource.getResourceResolver())) {
+      definition = resolveDefinition(scope, componentResource, new HashSet<>());
+    }
+    return definition;
+  }
+
+  private @NotNull ComponentDefinition resolveDefinition(@NotNull Scope scope, @NotNull Resource componentResource,
+      @NotNull Set<String> visited) {
+    visited.add(componentResource.getPath());
+    ResourceResolver resourceResolver = componentResource.getResourceResolver();
+    String superComponentPath = null;
+    ComponentDefinition superDefinition = null;
+    Map<String, Long> superTypeStamps = new HashMap<>();
+    String resourceSuperType = componentResource.getResourceSuperType();
+    if (StringUtils.isNotEmpty(resourceSuperType)) {
+      // stamps of all candidates, so an overlay of the super component added later is detected
+      for (String candidatePath : getCandidatePaths(resourceSuperType, resourceResolver)) {
+        superTypeStamps.put(candidatePath, ResourceStamps.getStamp(resourceResolver.getResource(candidatePath)));
+      }
+      Resource superResource = getComponentResource(resourceSuperType, resourceResolver);
+      // ignore cyclic super type references
+      if (superResource != null && !visited.contains(superResource.getPath())) {
+        superComponentPath = superResource.getPath();
+        superDefinition = scope.definitions.get(superComponentPath);
+        if (superDefinition == null || !superDefinition.isValid(resourceResolver)) {
+          superDefinition = resolveDefinition(scope, superResource, visited);
+        }
+      }
+    }
+    ComponentDefinition definition = new ComponentDefinition(componentResource, superComponentPath, superDefinition,
+        superTypeStamps);
+    scope.definitions.put(componentResource.getPath(), definition);
+    return definition;
+  }
+
+  private static @NotNull List<String> getCandidatePaths(@NotNull String resourceType,
+      @NotNull ResourceResolver resourceResolver) {
+    String path = ResourceUtil.resourceTypeToPath(resourceType);
+    if (StringUtils.startsWith(path, "/")) {
+      return List.of(path);
+    }
+    List<String> candidates = new ArrayList<>();
+    for (String searchPath : resourceResolver.getSearchPath()) {
+      candidates.add(StringUtils.appendIfMissing(searchPath, "/") + path);
+    }
+    return candidates;
+  }
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @return Resources of all components, the component in the search path with the highest priority wins for each
+   *         resource type
+   */
+  @NotNull
+  List<Resource> getComponentResources(@NotNull ResourceResolver resourceResolver) {
+    List<Resource> result = new ArrayList<>();
+    for (String path : getIndex(resourceResolver).paths.values()) {
+      Resource resource = resourceResolver.getResource(path);
+      if (resource != null) {
+        result.add(resource);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @return Resource types of all components per component group, sorted by group name
+   */
+  @NotNull
+  Map<String, List<String>> getComponentGroups(@NotNull ResourceResolver resourceResolver) {
+    return getIndex(resourceResolver).groups;
+  }
+
+  /**
+   * Removes all cached definitions and component indexes.
+   */
+  void invalidate() {
+    scopes.clear();
+  }
+
+  private @NotNull Scope getScope(@NotNull ResourceResolver resourceResolver) {
+    return scopes.computeIfAbsent(List.of(resourceResolver.getSearchPath()), key -> new Scope());
+  }
+
+  private @NotNull Index getIndex(@NotNull ResourceResolver resourceResolver) {
+    Scope scope = getScope(resourceResolver);
+    Map<String, String> paths = new LinkedHashMap<>();
+    long stamp = collectComponents(resourceResolver, paths);
+    Index currentIndex = scope.index;
+    if (currentIndex == null || currentIndex.stamp != stamp) {
+      currentIndex = buildIndex(paths, stamp, resourceResolver);
+      scope.index = currentIndex;
+    }
+    return currentIndex;
+  }
+
+  private static long collectComponents(@NotNull ResourceResolver resourceResolver, @NotNull Map<String, String> paths) {
+    long stamp = 0L;
+    for (String searchPath : resourceResolver.getSearchPath()) {
+      Resource root = resourceResolver.getResource(StringUtils.removeEnd(searchPath, "/"));
+      if (root != null) {
+        stamp = stamp * 31 + collectComponents(root, searchPath, paths);
+      }
+    }
+    return stamp;
+  }
+
+  private static long collectComponents(@NotNull Resource parent, @NotNull String searchPath,
+      @NotNull Map<String, String> paths) {
+    long stamp = 0L;
+    for (Resource child : parent.getChildren()) {
+      stamp = stamp * 31 + child.getPath().hashCode();
+      if (isComponent(child)) {
+        // components in search paths with lower priority are overlaid
+        paths.putIfAbsent(StringUtils.removeStart(child.getPath(), searchPath), child.getPath());
+        stamp = stamp * 31 + ResourceStamps.getStamp(child);
+      }
+      stamp = stamp * 31 + collectComponents(child, searchPath, paths);
+    }
+    return stamp;
+  }
+
+  private static @NotNull Index buildIndex(@NotNull Map<String, String> paths, long stamp,
+      @NotNull ResourceResolver resourceResolver) {
+    Map<String, List<String>> groups = new TreeMap<>();
+    for (Map.Entry<String, String> entry : paths.entrySet()) {
+      Resource resource = resourceResolver.getResource(entry.getValue());
+      String group = resource != null ? resource.getValueMap().get(NameConstants.PN_COMPONENT_GROUP, String.class) : null;
+      if (StringUtils.isNotEmpty(group)) {
+        groups.computeIfAbsent(group, key -> new ArrayList<>()).add(entry.getKey());
+      }
+    }
+    groups.replaceAll((group, resourceTypes) -> Collections.unmodifiableList(resourceTypes));
+    return new Index(Collections.unmodifiableMap(paths), Collections.unmodifiableMap(groups), stamp);
+  }
+
+  private static boolean isComponent(@NotNull Resource resource) {
+    return StringUtils.equals(resource.getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class), NameConstants.NT_COMPONENT);
+  }
+
+
+  /**
+   * Cached entries for one list of search paths.
+   */
+  private static final class Scope {
+
+    // resolved component definition per component path
+    private final Map<String, ComponentDefinition> definitions = new ConcurrentHashMap<>();
+    private volatile Index index;
+
+  }
+
+
+  /**
+   * Index of all components.
+   */
+  private static final class Index {
+
+    // component path per resource type
+    private final Map<String, String> paths;
+    // resource types per component group
+    private final Map<String, List<String>> groups;
+    // stamp of the component trees below the search paths
+    private final long stamp;
+
+    Index(Map<String, String> paths, Map<String, List<String>> groups, long stamp) {
+      this.paths = paths;
+      this.groups = groups;
+      this.stamp = stamp;
+    }
+
+  }
+
+}
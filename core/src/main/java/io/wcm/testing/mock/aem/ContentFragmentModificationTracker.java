@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tracks the last modified dates of content fragments and the references between them, to provide the
+ * deep last modified date (including all referenced fragments) without scanning the fragment tree.
+ * <p>
+ * Each fragment is registered on first access with its own last modified date and the fragments it references.
+ * A modification propagates the new date to all fragments that reference the modified fragment directly or
+ * transitively, so reading the deep last modified date is a single lookup.
+ * </p>
+ * One instance is shared by all content fragments of the same context.
+ */
+final class ContentFragmentModificationTracker {
+
+  private final Map<String, Node> nodes = new HashMap<>();
+  private long lastTimestamp;
+
+  /**
+   * Last modified dates are strictly increasing, so a modification within the same millisecond is still
+   * detected by comparing the dates.
+   * @return Date for a new modification
+   */
+  synchronized @NotNull Calendar nextLastModified() {
+    lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(lastTimestamp);
+    return calendar;
+  }
+
+  /**
+   * @param path Content fragment path
+   * @return Own last modified date that is tracked for the fragment, or null if it is not registered
+   */
+  synchronized @Nullable Long getLastModified(@NotNull String path) {
+    Node node = nodes.get(path);
+    return node != null && node.registered ? node.lastModified : null;
+  }
+
+  /**
+   * Registers a fragment or updates its modification date and references.
+   * @param path Content fragment path
+   * @param lastModified Own last modified date of the fragment
+   * @param references Paths of referenced content fragments, or null if the references did not change
+   */
+  synchronized void modified(@NotNull String path, long lastModified, @Nullable Set<String> references) {
+    Node node = getNode(path);
+    node.registered = true;
+    node.lastModified = Math.max(node.lastModified, lastModified);
+    if (references != null) {
+      for (String reference : node.references) {
+        getNode(reference).referencedBy.remove(path);
+      }
+      node.references = Collections.unmodifiableSet(new HashSet<>(references));
+      for (String reference : node.references) {
+        getNode(reference).referencedBy.add(path);
+      }
+    }
+    long deep = node.lastModified;
+    for (String reference : node.references) {
+      deep = Math.max(deep, getNode(reference).lastModifiedDeep);
+    }
+    // the deep date never decreases: removing a reference keeps the date, which is safe for cache invalidation
+    node.lastModifiedDeep = Math.max(node.lastModifiedDeep, deep);
+    propagate(node);
+  }
+
+  /**
+   * @param path Content fragment path
+   * @return Paths of the content fragments referenced directly by the given fragment
+   */
+  synchronized @NotNull Set<String> getReferences(@NotNull String path) {
+    Node node = nodes.get(path);
+    if (node == null) {
+      return Collections.emptySet();
+    }
+    return node.references;
+  }
+
+  /**
+   * @param path Content fragment path
+   * @return Last modified date of the fragment and all fragments it references directly or transitively
+   */
+  synchronized long getLastModifiedDeep(@NotNull String path) {
+    Node node = nodes.get(path);
+    return node != null ? node.lastModifiedDeep : 0L;
+  }
+
+  private Node getNode(@NotNull String path) {
+    return nodes.computeIfAbsent(path, key -> new Node());
+  }
+
+  /**
+   * Updates the deep last modified date of all fragments referencing the given fragment.
+   */
+  private void propagate(@NotNull Node node) {
+    Deque<Node> queue = new ArrayDeque<>();
+    queue.add(node);
+    while (!queue.isEmpty()) {
+      Node current = queue.poll();
+      for (String referrerPath : current.referencedBy) {
+        Node referrer = getNode(referrerPath);
+        // dates only increase, so this terminates also for cyclic references
+        if (referrer.lastModifiedDeep < current.lastModifiedDeep) {
+          referrer.lastModifiedDeep = current.lastModifiedDeep;
+          queue.add(referrer);
+        }
+      }
+    }
+  }
+
+
+  private static final class Node {
+
+    private boolean registered;
+    private long lastModified;
+    private long lastModifiedDeep;
+    private Set<String> references = Collections.emptySet();
+    private final Set<String> referencedBy = new HashSet<>();
+
+  }
+
+}
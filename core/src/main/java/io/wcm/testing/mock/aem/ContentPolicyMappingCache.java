@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the resolved content policy mapping paths per editable template, relative resource path and resource type.
+ * <p>
+ * Each entry keeps a stamp of every resource that was consulted when resolving the mapping path (including the
+ * candidates that did not exist or contained no mapping), as returned by {@link ResourceStamps#getStamp}.
+ * An entry is resolved again when one of these stamps changed, so changes of templates without last modified
+ * date (e.g. loaded from JSON) are detected as well. All entries are dropped when the cache is invalidated explicitly.
+ * </p>
+ * One instance is shared by all content policy managers of the same context.
+ */
+final class ContentPolicyMappingCache {
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * @param templatePath Template path
+   * @param relativePath Path of the content resource relative to the page content
+   * @param resourceType Resource type of the content resource
+   * @param resourceResolver Resource resolver
+   * @param resolver Resolves the mapping path if it is not cached, and puts the stamp of each resource it consulted
+   *          into the given map
+   * @return Path of the content policy mapping, or null if the template has no mapping for the resource
+   */
+  @Nullable
+  String getMappingPath(@NotNull String templatePath, @NotNull String relativePath, @NotNull String resourceType,
+      @NotNull ResourceResolver resourceResolver, @NotNull Function<Map<String, Long>, String> resolver) {
+    String key = templatePath + "\n" + relativePath + "\n" + resourceType;
+    Entry entry = entries.get(key);
+    if (entry == null || !entry.isValid(resourceResolver)) {
+      Map<String, Long> stamps = new LinkedHashMap<>();
+      String mappingPath = resolver.apply(stamps);
+      entry = new Entry(mappingPath, stamps);
+      entries.put(key, entry);
+    }
+    return entry.mappingPath;
+  }
+
+  /**
+   * Removes all cached entries.
+   */
+  void invalidate() {
+    entries.clear();
+  }
+
+  /**
+   * @return Number of cached mapping paths
+   */
+  int size() {
+    return entries.size();
+  }
+
+
+  private static final class Entry {
+
+    private final String mappingPath;
+    // stamp of each resource consulted when resolving the mapping path, per path
+    private final Map<String, Long> stamps;
+
+    Entry(@Nullable String mappingPath, @NotNull Map<String, Long> stamps) {
+      this.mappingPath = mappingPath;
+      this.stamps = Collections.unmodifiableMap(stamps);
+    }
+
+    boolean isValid(@NotNull ResourceResolver resourceResolver) {
+      for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+        if (ResourceStamps.getStamp(resourceResolver.getResource(stamp.getKey())) != stamp.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
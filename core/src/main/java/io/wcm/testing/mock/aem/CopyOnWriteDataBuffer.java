@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Data buffer that reads from a shared source buffer until the first write, and copies the source data on the
+ * first write. Used by {@link MockImageDecoder} to hand out cached images without copying their pixels for each caller.
+ */
+final class CopyOnWriteDataBuffer extends DataBuffer {
+
+  private final DataBuffer source;
+  private volatile DataBuffer copy;
+
+  CopyOnWriteDataBuffer(@NotNull DataBuffer source) {
+    super(source.getDataType(), source.getSize(), source.getNumBanks(), source.getOffsets());
+    this.source = source;
+  }
+
+  /**
+   * @param buffer Data buffer
+   * @return true if the data of the buffer can be copied on write
+   */
+  static boolean isSupported(@NotNull DataBuffer buffer) {
+    return buffer instanceof DataBufferByte || buffer instanceof DataBufferInt || buffer instanceof DataBufferUShort
+        || buffer instanceof DataBufferShort || buffer instanceof DataBufferFloat || buffer instanceof DataBufferDouble;
+  }
+
+  @Override
+  public int getElem(int bank, int i) {
+    return current().getElem(bank, i);
+  }
+
+  @Override
+  public float getElemFloat(int bank, int i) {
+    return current().getElemFloat(bank, i);
+  }
+
+  @Override
+  public double getElemDouble(int bank, int i) {
+    return current().getElemDouble(bank, i);
+  }
+
+  @Override
+  public void setElem(int bank, int i, int val) {
+    writable().setElem(bank, i, val);
+  }
+
+  @Override
+  public void setElemFloat(int bank, int i, float val) {
+    writable().setElemFloat(bank, i, val);
+  }
+
+  @Override
+  public void setElemDouble(int bank, int i, double val) {
+    writable().setElemDouble(bank, i, val);
+  }
+
+  private @NotNull DataBuffer current() {
+    DataBuffer currentCopy = copy;
+    return currentCopy != null ? currentCopy : source;
+  }
+
+  private @NotNull DataBuffer writable() {
+    DataBuffer currentCopy = copy;
+    if (currentCopy == null) {
+      synchronized (this) {
+        currentCopy = copy;
+        if (currentCopy == null) {
+          currentCopy = copyOf(source);
+          copy = currentCopy;
+        }
+      }
+    }
+    return currentCopy;
+  }
+
+  private static @NotNull DataBuffer copyOf(@NotNull DataBuffer buffer) {
+    int size = buffer.getSize();
+    int[] offsets = buffer.getOffsets();
+    if (buffer instanceof DataBufferByte) {
+      byte[][] banks = ((DataBufferByte)buffer).getBankData();
+      byte[][] data = new byte[banks.length][];
+      for (int bank = 0; bank < banks.length; bank++) {
+        data[bank] = banks[bank].clone();
+      }
+      return new DataBufferByte(data, size, offsets);
+    }
+    if (buffer instanceof DataBufferInt) {
+      int[][] banks = ((DataBufferInt)buffer).getBankData();
+      int[][] data = new int[banks.length][];
+      for (int bank = 0; bank < banks.length; bank++) {
+        data[bank] = banks[bank].clone();
+      }
+      return new DataBufferInt(data, size, offsets);
+    }
+    if (buffer instanceof DataBufferUShort) {
+      short[][] banks = ((DataBufferUShort)buffer).getBankData();
+      short[][] data = new short[banks.length][];
+      for (int bank = 0; bank < banks.length; bank++) {
+        data[bank] = banks[bank].clone();
+      }
+      return new DataBufferUShort(data, size, offsets);
+    }
+    if (buffer instanceof DataBufferShort) {
+      short[][] banks = ((DataBufferShort)buffer).getBankData();
+      short[][] data = new short[banks.length][];
+      for (int bank = 0; bank < banks.length; bank++) {
+        data[bank] = banks[bank].clone();
+      }
+      return new DataBufferShort(data, size, offsets);
+    }
+    if (buffer instanceof DataBufferFloat) {
+      float[][] banks = ((DataBufferFloat)buffer).getBankData();
+      float[][] data = new float[banks.length][];
+      for (int bank = 0; bank < banks.length; bank++) {
+        data[bank] = banks[bank].clone();
+      }
+      return new DataBufferFloat(data, size, offsets);
+    }
+    if (buffer instanceof DataBufferDouble) {
+      double[][] banks = ((DataBufferDouble)buffer).getBankData();
+      double[][] data = new double[banks.length][];
+      for (int bank = 0; bank < banks.length; bank++) {
+        data[bank] = banks[bank].clone();
+      }
+      return new DataBufferDouble(data, size, offsets);
+    }
+    throw new IllegalArgumentException("Unsupported data buffer: " + buffer.getClass().getName());
+  }
+
+}
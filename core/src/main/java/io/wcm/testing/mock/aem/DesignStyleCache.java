@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the resolved style properties of classic designs per design path and cell path.
+ * <p>
+ * The style of a cell is resolved from the design content along the search paths of the cell, the most specific
+ * path first: For cell path <code>page/par/text</code> the properties are looked up in <code>page/par/text</code>,
+ * <code>par/text</code> and <code>text</code> below the design's <code>jcr:content</code> node.
+ * </p>
+ * <p>
+ * The entries of a design are dropped when the last modified date of the design content changes
+ * (<code>cq:lastModified</code> or <code>jcr:lastModified</code> of <code>jcr:content</code>),
+ * or when the cache is invalidated explicitly via {@link MockCaches#invalidateDesignStyles}.
+ * Each cached style is additionally validated against the resources it was resolved from: their last modified
+ * date, or a hash of their properties if they have no date. So changes of single style nodes and of designs
+ * without dates (e.g. loaded from JSON) are detected as well.
+ * </p>
+ * One instance is shared by all designers of the same context.
+ */
+final class DesignStyleCache {
+
+  private final Map<String, DesignEntry> designs = new ConcurrentHashMap<>();
+
+  /**
+   * @param designPath Design path
+   * @param designContent Design content resource (optional)
+   * @param cell Cell
+   * @return Resolved style properties
+   */
+  @NotNull
+  StyleData getStyleData(@NotNull String designPath, @Nullable Resource designContent, @NotNull MockCell cell) {
+    long lastModified = ResourceStamps.getLastModified(designContent);
+    DesignEntry entry = designs.compute(designPath, (path, existing) -> {
+      if (existing == null || existing.lastModified != lastModified) {
+        return new DesignEntry(lastModified);
+      }
+      return existing;
+    });
+    StyleData styleData = entry.styles.get(cell.getPath());
+    if (styleData == null || !styleData.isValid(designContent, cell)) {
+      styleData = resolve(designContent, cell);
+      entry.styles.put(cell.getPath(), styleData);
+    }
+    return styleData;
+  }
+
+  /**
+   * Removes all cached entries.
+   */
+  void invalidate() {
+    designs.clear();
+  }
+
+  private static StyleData resolve(@Nullable Resource designContent, @NotNull MockCell cell) {
+    Map<String, Object> props = new LinkedHashMap<>();
+    Map<String, String> definingPaths = new HashMap<>();
+    String[] searchPaths = cell.getSearchPaths();
+    long[] stamps = new long[searchPaths.length];
+    Arrays.fill(stamps, -1L);
+    if (designContent != null) {
+      for (int i = 0; i < stamps.length; i++) {
+        Resource styleResource = designContent.getChild(searchPaths[i]);
+        stamps[i] = ResourceStamps.getStamp(styleResource);
+        if (styleResource == null) {
+          continue;
+        }
+        // properties of more specific cells override the inherited ones
+        for (Map.Entry<String, Object> entry : styleResource.getValueMap().entrySet()) {
+          if (!props.containsKey(entry.getKey())) {
+            props.put(entry.getKey(), entry.getValue());
+            definingPaths.put(entry.getKey(), styleResource.getPath());
+          }
+        }
+      }
+    }
+    return new StyleData(new ValueMapDecorator(Collections.unmodifiableMap(props)),
+        Collections.unmodifiableMap(definingPaths), stamps);
+  }
+
+
+  /**
+   * Resolved style properties of a cell.
+   */
+  static final class StyleData {
+
+    private final ValueMap properties;
+    private final Map<String, String> definingPaths;
+    private final long[] stamps;
+
+    StyleData(@NotNull ValueMap properties, @NotNull Map<String, String> definingPaths, long @NotNull [] stamps) {
+      this.properties = properties;
+      this.definingPaths = definingPaths;
+      this.stamps = stamps;
+    }
+
+    /**
+     * @param designContent Design content resource (optional)
+     * @param cell Cell
+     * @return true if none of the style resources along the cell's search paths changed
+     */
+    boolean isValid(@Nullable Resource designContent, @NotNull MockCell cell) {
+      String[] searchPaths = cell.getSearchPaths();
+      if (searchPaths.length != stamps.length) {
+        return false;
+      }
+      for (int i = 0; i < stamps.length; i++) {
+        Resource styleResource = designContent != null ? designContent.getChild(searchPaths[i]) : null;
+        if (ResourceStamps.getStamp(styleResource) != stamps[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return Merged style properties (read-only)
+     */
+    @NotNull
+    ValueMap getProperties() {
+      return this.properties;
+    }
+
+    /**
+     * @return Path of the design resource defining each property
+     */
+    @NotNull
+    Map<String, String> getDefiningPaths() {
+      return this.definingPaths;
+    }
+
+  }
+
+  private static final class DesignEntry {
+
+    private final long lastModified;
+    private final Map<String, StyleData> styles = new ConcurrentHashMap<>();
+
+    DesignEntry(long lastModified) {
+      this.lastModified = lastModified;
+    }
+
+  }
+
+}
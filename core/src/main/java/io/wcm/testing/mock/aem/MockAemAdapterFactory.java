@@ -39,6 +39,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 
 import com.adobe.cq.dam.cfm.ContentFragment;
 import com.day.cq.commons.jcr.JcrConstants;
@@ -76,6 +77,22 @@ import com.day.cq.wcm.api.policies.ContentPolicyMapping;
 @ProviderType
 public final class MockAemAdapterFactory implements AdapterFactory {
 
+  // page revisions are shared by all page managers of this context
+  private final MockPageRevisionStore pageRevisionStore = new MockPageRevisionStore();
+  // modification dates and references are tracked for all content fragments of this context
+  private final ContentFragmentModificationTracker contentFragmentModificationTracker = new ContentFragmentModificationTracker();
+  // resolved content policy mappings are shared by all content policy managers of this context
+  private final ContentPolicyMappingCache contentPolicyMappingCache = new ContentPolicyMappingCache();
+  // resolved classic design styles are shared by all designers of this context
+  private final DesignStyleCache designStyleCache = new DesignStyleCache();
+  // resolved component paths and the component index are shared by all component managers of this context
+  private final ComponentRegistry componentRegistry = new ComponentRegistry();
+
+  @Deactivate
+  private void deactivate() {
+    pageRevisionStore.discard();
+  }
+
   @Override
   public @Nullable <AdapterType> AdapterType getAdapter(final @NotNull Object adaptable, final @NotNull Class<AdapterType> type) {
     if (adaptable instanceof Resource) {
@@ -99,7 +116,7 @@ public final class MockAemAdapterFactory implements AdapterFactory {
       return (AdapterType)new MockTag(resource);
     }
     if (type == ContentFragment.class && DamUtil.isAsset(resource)) {
-      return (AdapterType)new MockContentFragment(resource);
+      return (AdapterType)new MockContentFragment(resource, contentFragmentModificationTracker);
     }
     if (type == ContentPolicy.class && resource.isResourceType(RT_CONTENTPOLICY)) {
       return (AdapterType)new MockContentPolicy(resource);
@@ -115,19 +132,19 @@ public final class MockAemAdapterFactory implements AdapterFactory {
   @SuppressWarnings("unchecked")
   private @Nullable <AdapterType> AdapterType getAdapter(@NotNull final ResourceResolver resolver, @NotNull final Class<AdapterType> type) {
     if (type == PageManager.class) {
-      return (AdapterType)new MockPageManager(resolver);
+      return (AdapterType)new MockPageManager(resolver, pageRevisionStore);
     }
     if (type == ComponentManager.class) {
-      return (AdapterType)new MockComponentManager(resolver);
+      return (AdapterType)new MockComponentManager(resolver, componentRegistry);
     }
     if (type == TagManager.class) {
       return (AdapterType)new MockTagManager(resolver);
     }
     if (type == Designer.class) {
-      return (AdapterType)new MockDesigner(resolver);
+      return (AdapterType)new MockDesigner(resolver, designStyleCache);
     }
     if (type == ContentPolicyManager.class) {
-      return (AdapterType)new MockContentPolicyManager(resolver);
+      return (AdapterType)new MockContentPolicyManager(resolver, contentPolicyMappingCache);
     }
     return null;
   }
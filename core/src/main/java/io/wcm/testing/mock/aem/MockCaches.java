@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+
+import com.day.cq.wcm.api.components.ComponentManager;
+import com.day.cq.wcm.api.designer.Designer;
+
+/**
+ * Invalidates caches that AEM Mocks keeps per context for content resolved from the repository.
+ * <p>
+ * The caches detect changes of the content they were built from automatically. Call these methods if content
+ * is changed in a way that cannot be detected, or to make sure that subsequent calls read the current content.
+ * </p>
+ */
+public final class MockCaches {
+
+  private MockCaches() {
+    // static methods only
+  }
+
+  /**
+   * Invalidates the cached style properties of classic designs.
+   * @param resourceResolver Resource resolver
+   */
+  public static void invalidateDesignStyles(@NotNull ResourceResolver resourceResolver) {
+    Designer designer = resourceResolver.adaptTo(Designer.class);
+    if (designer instanceof MockDesigner) {
+      ((MockDesigner)designer).invalidateCache();
+    }
+  }
+
+  /**
+   * Invalidates the resolved component definitions and the component index.
+   * @param resourceResolver Resource resolver
+   */
+  public static void invalidateComponents(@NotNull ResourceResolver resourceResolver) {
+    ComponentManager componentManager = resourceResolver.adaptTo(ComponentManager.class);
+    if (componentManager instanceof MockComponentManager) {
+      ((MockComponentManager)componentManager).invalidateCache();
+    }
+  }
+
+}
@@ -19,72 +19,172 @@
  */
 package io.wcm.testing.mock.aem;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.wcm.api.components.ComponentContext;
 import com.day.cq.wcm.api.designer.Cell;
 
 /**
  * Mock implementation of {@link Cell}.
+ * <p>
+ * The cell path of a resource is derived from the content structure: The first name is the name of the page
+ * component, followed by the names of the resources between the page content and the resource, and the name
+ * of the resource's component.
+ * </p>
  */
 class MockCell implements Cell {
 
+  private static final String JCR_CONTENT_SEGMENT = "/" + JcrConstants.JCR_CONTENT;
+
   private final ComponentContext componentContext;
+  private String[] names;
 
   MockCell(ComponentContext componentContext) {
     this.componentContext = componentContext;
   }
 
+  /**
+   * @param names Cell names, starting with the root cell
+   */
+  MockCell(@NotNull String @NotNull... names) {
+    this.componentContext = null;
+    this.names = names;
+  }
+
+  /**
+   * @param resource Resource
+   * @return Cell for the given resource, or null if the resource is not part of a page content
+   */
+  static @Nullable MockCell forResource(@NotNull Resource resource) {
+    String pageContentPath = getPageContentPath(resource.getPath());
+    if (pageContentPath == null) {
+      return null;
+    }
+    Resource pageContent = resource.getResourceResolver().getResource(pageContentPath);
+    List<String> result = new ArrayList<>();
+    result.add(getComponentName(pageContent));
+    if (!StringUtils.equals(resource.getPath(), pageContentPath)) {
+      String[] segments = StringUtils.split(StringUtils.substringAfter(resource.getPath(), pageContentPath + "/"), '/');
+      result.addAll(Arrays.asList(segments).subList(0, segments.length - 1));
+      result.add(getComponentName(ResourceUtil.unwrap(resource)));
+    }
+    return new MockCell(result.toArray(new String[0]));
+  }
+
+  /**
+   * @param path Resource path
+   * @return Path of the page content containing the resource, or null
+   */
+  static @Nullable String getPageContentPath(@NotNull String path) {
+    int index = path.indexOf(JCR_CONTENT_SEGMENT + "/");
+    if (index >= 0) {
+      return path.substring(0, index + JCR_CONTENT_SEGMENT.length());
+    }
+    if (StringUtils.endsWith(path, JCR_CONTENT_SEGMENT)) {
+      return path;
+    }
+    return null;
+  }
+
+  private static String getComponentName(@Nullable Resource resource) {
+    if (resource == null) {
+      return "";
+    }
+    String resourceType = resource.getResourceType();
+    if (StringUtils.isBlank(resourceType) || StringUtils.equals(resourceType, JcrConstants.NT_UNSTRUCTURED)) {
+      return resource.getName();
+    }
+    return StringUtils.contains(resourceType, "/") ? StringUtils.substringAfterLast(resourceType, "/") : resourceType;
+  }
+
   public ComponentContext getComponentContext() {
     return this.componentContext;
   }
 
-
-  // --- unsupported operations ---
+  @NotNull
+  private String[] getCellNames() {
+    if (names == null) {
+      MockCell cell = null;
+      if (componentContext != null && componentContext.getResource() != null) {
+        cell = forResource(componentContext.getResource());
+      }
+      names = cell != null ? cell.getCellNames() : new String[0];
+    }
+    return names;
+  }
 
   @Override
   public String getName() {
-    throw new UnsupportedOperationException();
+    String[] cellNames = getCellNames();
+    return cellNames.length > 0 ? cellNames[cellNames.length - 1] : "";
   }
 
   @Override
   public String[] getNames() {
-    throw new UnsupportedOperationException();
+    return new String[] { getName() };
   }
 
   @Override
   public Cell getParent() {
-    throw new UnsupportedOperationException();
+    String[] cellNames = getCellNames();
+    if (cellNames.length <= 1) {
+      return null;
+    }
+    return new MockCell(Arrays.copyOf(cellNames, cellNames.length - 1));
   }
 
   @Override
   public String getPath() {
-    throw new UnsupportedOperationException();
+    return StringUtils.join(getCellNames(), "/");
   }
 
   @Override
   public String[] getPaths() {
-    throw new UnsupportedOperationException();
+    return new String[] { getPath() };
   }
 
   @Override
   public String getSearchPath() {
-    throw new UnsupportedOperationException();
+    return getPath();
   }
 
+  /**
+   * @return Search paths, the most specific path first. For cell path <code>a/b/c</code> the search paths are
+   *         <code>a/b/c</code>, <code>b/c</code> and <code>c</code>.
+   */
   @Override
   public String[] getSearchPaths() {
-    throw new UnsupportedOperationException();
+    String[] cellNames = getCellNames();
+    String[] result = new String[cellNames.length];
+    for (int i = 0; i < cellNames.length; i++) {
+      result[i] = StringUtils.join(cellNames, "/", i, cellNames.length);
+    }
+    return result;
   }
 
   @Override
   public Iterator<String> paths() {
-    throw new UnsupportedOperationException();
+    return Arrays.asList(getPaths()).iterator();
   }
 
   @Override
   public Iterator<String> searchPaths() {
-    throw new UnsupportedOperationException();
+    return Arrays.asList(getSearchPaths()).iterator();
+  }
+
+  @Override
+  public String toString() {
+    return getPath();
   }
 
 }
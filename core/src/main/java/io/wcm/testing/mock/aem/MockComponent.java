@@ -24,13 +24,11 @@ import static org.apache.sling.api.resource.ResourceResolver.PROPERTY_RESOURCE_T
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.adapter.SlingAdaptable;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceUtil;
@@ -52,13 +50,26 @@ class MockComponent extends SlingAdaptable implements Component {
 
   private final Resource resource;
   private final ValueMap props;
+  private final ComponentRegistry registry;
 
+  private ComponentDefinition definition;
   private Component superComponent;
   private boolean superComponentInitialized;
 
-  MockComponent(@NotNull Resource resource) {
+  MockComponent(@NotNull Resource resource, @NotNull ComponentRegistry registry) {
     this.resource = resource;
     this.props = new RemoveKeyPrefixMap(new HashMap<>(ResourceUtil.getValueMap(resource)));
+    this.registry = registry;
+  }
+
+  /**
+   * @return Resolved component definition including the inherited data, cached in the component registry
+   */
+  private @NotNull ComponentDefinition getDefinition() {
+    if (definition == null) {
+      definition = registry.getDefinition(resource);
+    }
+    return definition;
   }
 
   @Override
@@ -122,31 +133,22 @@ class MockComponent extends SlingAdaptable implements Component {
     return props.get(NameConstants.PN_NO_DECORATION, false);
   }
 
+  /**
+   * @return HTML tag attributes including the attributes inherited from the super components
+   */
   @Override
   public Map<String, String> getHtmlTagAttributes() {
-    Map<String,String> attrs = new HashMap<>();
-    Resource htmlTagChild = resource.getChild(NameConstants.NN_HTML_TAG);
-    if (htmlTagChild != null) {
-      ValueMap htmlTagProps = htmlTagChild.getValueMap();
-      Set<String> keySet = htmlTagProps.keySet();
-      for (String key : keySet) {
-        String value = htmlTagProps.get(key, String.class);
-        if (value != null) {
-          attrs.put(key, value);
-        }
-      }
-    }
-    return Collections.unmodifiableMap(attrs);
+    return getDefinition().getHtmlTagAttributes();
   }
 
   @Override
   public Component getSuperComponent() {
     if (!superComponentInitialized) {
-      String resourceSuperType = resource.getResourceSuperType();
-      if (StringUtils.isNotEmpty(resourceSuperType)) {
-        Resource superResource = resource.getResourceResolver().getResource(resourceSuperType);
+      List<String> superComponentPaths = getDefinition().getSuperComponentPaths();
+      if (!superComponentPaths.isEmpty()) {
+        Resource superResource = resource.getResourceResolver().getResource(superComponentPaths.get(0));
         if (superResource != null) {
-          superComponent = new MockComponent(superResource);
+          superComponent = new MockComponent(superResource, registry);
         }
       }
       superComponentInitialized = true;
@@ -164,66 +166,79 @@ class MockComponent extends SlingAdaptable implements Component {
     return this.props.get(PN_IS_CONTAINER, getSuperComponent() != null && getSuperComponent().isContainer());
   }
 
-  // --- unsupported operations ---
-
   @Override
-  public String getCellName() {
-    throw new UnsupportedOperationException();
+  public ComponentEditConfig getDeclaredEditConfig() {
+    return toEditConfig(getDefinition().getDeclaredEditConfig());
   }
 
   @Override
-  public boolean isEditable() {
-    throw new UnsupportedOperationException();
+  public ComponentEditConfig getDeclaredChildEditConfig() {
+    return toEditConfig(getDefinition().getDeclaredChildEditConfig());
   }
 
+  /**
+   * @return Edit config merged along the super component chain
+   */
   @Override
-  public boolean isDesignable() {
-    throw new UnsupportedOperationException();
+  public ComponentEditConfig getEditConfig() {
+    return new MockEditConfig(getDefinition().getEditConfig());
   }
 
-
+  /**
+   * @return Child edit config merged along the super component chain
+   */
   @Override
-  public boolean isAnalyzable() {
-    throw new UnsupportedOperationException();
+  public ComponentEditConfig getChildEditConfig() {
+    return new MockEditConfig(getDefinition().getChildEditConfig());
   }
 
+  private static ComponentEditConfig toEditConfig(Map<String, Object> editConfigProps) {
+    if (editConfigProps == null) {
+      return null;
+    }
+    return new MockEditConfig(editConfigProps);
+  }
+
+  // --- unsupported operations ---
+
   @Override
-  public String getDialogPath() {
+  public String getCellName() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public String getDesignDialogPath() {
+  public boolean isEditable() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public String getIconPath() {
+  public boolean isDesignable() {
     throw new UnsupportedOperationException();
   }
 
+
   @Override
-  public String getThumbnailPath() {
+  public boolean isAnalyzable() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public ComponentEditConfig getDeclaredEditConfig() {
+  public String getDialogPath() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public ComponentEditConfig getDeclaredChildEditConfig() {
+  public String getDesignDialogPath() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public ComponentEditConfig getEditConfig() {
+  public String getIconPath() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public ComponentEditConfig getChildEditConfig() {
+  public String getThumbnailPath() {
     throw new UnsupportedOperationException();
   }
 
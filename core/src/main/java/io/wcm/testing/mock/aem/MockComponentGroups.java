@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.wcm.api.components.Component;
+import com.day.cq.wcm.api.components.ComponentManager;
+
+/**
+ * Access to the component groups (<code>componentGroup</code> property) of all components of type
+ * <code>cq:Component</code> below the search paths of the resource resolver.
+ * Components overlaid in a search path with higher priority are only considered once.
+ */
+public final class MockComponentGroups {
+
+  private MockComponentGroups() {
+    // static methods only
+  }
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @return Names of all component groups, sorted by name
+   */
+  public static @NotNull Collection<String> getComponentGroups(@NotNull ResourceResolver resourceResolver) {
+    MockComponentManager componentManager = getComponentManager(resourceResolver);
+    if (componentManager == null) {
+      return Collections.emptyList();
+    }
+    return componentManager.getComponentGroups();
+  }
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @param group Component group
+   * @return All components of the given component group
+   */
+  public static @NotNull Collection<Component> getComponentsOfGroup(@NotNull ResourceResolver resourceResolver,
+      @NotNull String group) {
+    MockComponentManager componentManager = getComponentManager(resourceResolver);
+    if (componentManager == null) {
+      return Collections.emptyList();
+    }
+    return componentManager.getComponentsOfGroup(group);
+  }
+
+  private static @Nullable MockComponentManager getComponentManager(@NotNull ResourceResolver resourceResolver) {
+    ComponentManager componentManager = resourceResolver.adaptTo(ComponentManager.class);
+    if (componentManager instanceof MockComponentManager) {
+      return (MockComponentManager)componentManager;
+    }
+    return null;
+  }
+
+}
@@ -19,12 +19,15 @@
  */
 package io.wcm.testing.mock.aem;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
-import org.apache.sling.api.resource.ResourceUtil;
 import org.jetbrains.annotations.NotNull;
 
 import com.day.cq.wcm.api.components.Component;
@@ -32,20 +35,28 @@ import com.day.cq.wcm.api.components.ComponentManager;
 
 /**
  * Mock implementation of {@link ComponentManager}.
+ * <p>
+ * Components are resolved via the {@link ComponentRegistry} shared by all component managers of the same context.
+ * </p>
  */
 class MockComponentManager implements ComponentManager {
 
   private final ResourceResolver resourceResolver;
+  private final ComponentRegistry registry;
 
-  MockComponentManager(@NotNull ResourceResolver resourceResolver) {
+  MockComponentManager(@NotNull ResourceResolver resourceResolver, @NotNull ComponentRegistry registry) {
     this.resourceResolver = resourceResolver;
+    this.registry = registry;
   }
 
   @Override
   public Component getComponent(String path) {
-    Resource resource = resourceResolver.getResource(path);
+    if (StringUtils.isEmpty(path)) {
+      return null;
+    }
+    Resource resource = registry.getComponentResource(path, resourceResolver);
     if (resource != null) {
-      return new MockComponent(resource);
+      return new MockComponent(resource, registry);
     }
     return null;
   }
@@ -54,7 +65,6 @@ class MockComponentManager implements ComponentManager {
   public Component getComponentOfResource(Resource resource) {
     String resourceType = resource.getResourceType();
     if (StringUtils.isNotEmpty(resourceType)) {
-      resourceType = ResourceUtil.resourceTypeToPath(resource.getResourceType());
       return getComponent(resourceType);
     }
     else {
@@ -62,12 +72,50 @@ class MockComponentManager implements ComponentManager {
     }
   }
 
-
-  // --- unsupported operations ---
-
+  /**
+   * @return All components of type <code>cq:Component</code> below the search paths.
+   *         Components overlaid in a search path with higher priority are only returned once.
+   */
   @Override
   public Collection<Component> getComponents() {
-    throw new UnsupportedOperationException();
+    List<Component> result = new ArrayList<>();
+    for (Resource resource : registry.getComponentResources(resourceResolver)) {
+      result.add(new MockComponent(resource, registry));
+    }
+    return result;
+  }
+
+  /**
+   * @return Names of all component groups, sorted by name
+   */
+  @NotNull
+  Collection<String> getComponentGroups() {
+    return registry.getComponentGroups(resourceResolver).keySet();
+  }
+
+  /**
+   * @param group Component group
+   * @return All components of the given component group
+   */
+  @NotNull
+  Collection<Component> getComponentsOfGroup(@NotNull String group) {
+    Map<String, List<String>> groups = registry.getComponentGroups(resourceResolver);
+    List<String> resourceTypes = groups.getOrDefault(group, Collections.emptyList());
+    List<Component> result = new ArrayList<>();
+    for (String resourceType : resourceTypes) {
+      Component component = getComponent(resourceType);
+      if (component != null) {
+        result.add(component);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Removes all cached component paths, definitions and the component index.
+   */
+  void invalidateCache() {
+    registry.invalidate();
   }
 
 }
@@ -19,18 +19,29 @@
  */
 package io.wcm.testing.mock.aem;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.StreamSupport;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.testing.mock.sling.builder.ImmutableValueMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -46,42 +57,73 @@ import com.adobe.cq.dam.cfm.VersionDef;
 import com.adobe.cq.dam.cfm.VersionedContent;
 import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.AssetManager;
 import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Revision;
+import com.day.cq.dam.commons.util.DamUtil;
 import com.day.cq.tagging.Tag;
 
+import io.wcm.testing.mock.aem.impl.SnapshotRevision;
+
 /**
  * Mock implementation of {@link ContentFragment}.
+ * <p>
+ * The element and variation model is built lazily on first access and cached for the lifetime of this instance.
+ * Properties are read from the read-only value maps, the resources are only adapted to {@link ModifiableValueMap}
+ * on the first write access.
+ * </p>
+ * <p>
+ * Versions are stored as asset revisions. A version is accessed as read-only content fragment that is backed
+ * by the asset snapshot of the revision. Modifications update the last modified date of the fragment and are
+ * tracked by the {@link ContentFragmentModificationTracker} to provide the deep last modified date.
+ * </p>
  */
 final class MockContentFragment implements ContentFragment {
 
   private final Resource assetResource;
-  private final Asset asset;
   private final Resource contentResource;
-  private final ModifiableValueMap contentProps;
-  private final ModifiableValueMap metadataProps;
-  private final ModifiableValueMap structuredDataProps;
+  private final LazyValueMap contentProps;
+  private final LazyValueMap metadataProps;
+  private final LazyValueMap structuredDataProps;
   private final Resource modelElementsResource;
+  private final ContentFragmentModificationTracker modificationTracker;
+  private final boolean readOnly;
+  private final SnapshotRevision version;
+
+  private Asset asset;
+  private Map<String, ContentElement> elements;
+  private List<VariationDef> variationDefs;
+  private final Map<String, LazyValueMap> variationDataProps = new HashMap<>();
 
-  MockContentFragment(Resource assetResource) {
+  MockContentFragment(Resource assetResource, ContentFragmentModificationTracker modificationTracker) {
+    this(assetResource, modificationTracker, null);
+  }
+
+  /**
+   * @param version Revision if this is a read-only content fragment version
+   */
+  private MockContentFragment(Resource assetResource, ContentFragmentModificationTracker modificationTracker,
+      SnapshotRevision version) {
     this.assetResource = assetResource;
-    this.asset = assetResource.adaptTo(Asset.class);
+    this.modificationTracker = modificationTracker;
+    this.readOnly = version != null;
+    this.version = version;
 
     this.contentResource = assetResource.getChild(JcrConstants.JCR_CONTENT);
     if (this.contentResource == null) {
       throw new IllegalArgumentException("Missing jcr:content node.");
     }
-
-    this.contentProps = contentResource.adaptTo(ModifiableValueMap.class);
+    this.contentProps = new LazyValueMap(contentResource);
 
     Resource metadataResource = contentResource.getChild(DamConstants.METADATA_FOLDER);
     if (metadataResource == null) {
       throw new IllegalArgumentException("Missing jcr:content/metadata node.");
     }
-    this.metadataProps = metadataResource.adaptTo(ModifiableValueMap.class);
+    this.metadataProps = new LazyValueMap(metadataResource);
 
     Resource structuredDataResource = contentResource.getChild("data/master");
     if (structuredDataResource != null) {
-      this.structuredDataProps = structuredDataResource.adaptTo(ModifiableValueMap.class);
+      this.structuredDataProps = new LazyValueMap(structuredDataResource);
     }
     else {
       this.structuredDataProps = null;
@@ -97,32 +139,38 @@ final class MockContentFragment implements ContentFragment {
 
   @Override
   public String getTitle() {
-    return contentProps.get(JcrConstants.JCR_TITLE, assetResource.getName());
+    return contentProps.read().get(JcrConstants.JCR_TITLE, assetResource.getName());
   }
 
   @Override
   public String getDescription() {
-    return contentProps.get(JcrConstants.JCR_DESCRIPTION, "");
+    return contentProps.read().get(JcrConstants.JCR_DESCRIPTION, "");
   }
 
   @Override
   public Map<String, Object> getMetaData() {
-    return metadataProps;
+    return metadataProps.read();
   }
 
   @Override
   public void setTitle(String title) throws ContentFragmentException {
-    contentProps.put(JcrConstants.JCR_TITLE, title);
+    checkWritable();
+    contentProps.write().put(JcrConstants.JCR_TITLE, title);
+    modified(false);
   }
 
   @Override
   public void setDescription(String description) throws ContentFragmentException {
-    contentProps.put(JcrConstants.JCR_DESCRIPTION, description);
+    checkWritable();
+    contentProps.write().put(JcrConstants.JCR_DESCRIPTION, description);
+    modified(false);
   }
 
   @Override
   public void setMetaData(String name, Object value) throws ContentFragmentException {
-    metadataProps.put(name, value);
+    checkWritable();
+    metadataProps.write().put(name, value);
+    modified(false);
   }
 
   @Override
@@ -139,59 +187,53 @@ final class MockContentFragment implements ContentFragment {
 
   @Override
   public Iterator<ContentElement> getElements() {
-    if (structuredDataProps != null) {
-      return structuredDataProps.keySet().stream()
-          .map(key -> (ContentElement)new MockContentFragment_ContentElement_Structured(this, key, structuredDataProps))
-          .iterator();
-    }
-    else if (modelElementsResource != null) {
-      return StreamSupport.stream(modelElementsResource.getChildren().spliterator(), false)
-          .map(resource -> (ContentElement)new MockContentFragment_ContentElement_Text(this, resource))
-          .iterator();
-    }
-    else {
-      return Collections.emptyIterator();
-    }
+    return Collections.unmodifiableCollection(getElementMap().values()).iterator();
   }
 
   @Override
   public ContentElement getElement(String elementName) {
-    if (structuredDataProps != null) {
-      if (structuredDataProps.containsKey(elementName)) {
-        return new MockContentFragment_ContentElement_Structured(this, elementName, structuredDataProps);
+    Map<String, ContentElement> elementMap = getElementMap();
+    if (structuredDataProps == null && StringUtils.isEmpty(elementName)) {
+      // if parameter is null or empty lookup "main" and "master" following the contract from the javadocs
+      ContentElement element = elementMap.get("main");
+      if (element == null) {
+        element = elementMap.get("master");
       }
+      return element;
     }
-    else if (modelElementsResource != null) {
-      Resource resource = null;
-      if (StringUtils.isEmpty(elementName)) {
-        // if parameter is null or empty lookup "main" and "master" following the contract from the javadocs
-        resource = modelElementsResource.getChild("main");
-        if (resource == null) {
-          resource = modelElementsResource.getChild("master");
-        }
-      }
-      else {
-        resource = modelElementsResource.getChild(elementName);
-      }
-      if (resource != null) {
-        return new MockContentFragment_ContentElement_Text(this, resource);
-      }
-    }
-    return null;
+    return elementMap.get(elementName);
   }
 
   @Override
   public boolean hasElement(String elementName) {
-    if (structuredDataProps != null) {
-      return structuredDataProps.containsKey(elementName);
-    }
-    else if (modelElementsResource != null) {
-      return modelElementsResource.getChild(elementName) != null;
+    return getElementMap().containsKey(elementName);
+  }
+
+  private Map<String, ContentElement> getElementMap() {
+    if (elements == null) {
+      Map<String, ContentElement> map = new LinkedHashMap<>();
+      if (structuredDataProps != null) {
+        for (String key : structuredDataProps.read().keySet()) {
+          if (StringUtils.endsWith(key, MockContentFragment_FragmentData.CONTENT_TYPE_SUFFIX)) {
+            continue;
+          }
+          map.put(key, new MockContentFragment_ContentElement_Structured(this, key, structuredDataProps));
+        }
+      }
+      else if (modelElementsResource != null) {
+        for (Resource resource : modelElementsResource.getChildren()) {
+          map.put(resource.getName(), new MockContentFragment_ContentElement_Text(this, resource));
+        }
+      }
+      elements = map;
     }
-    return false;
+    return elements;
   }
 
   Asset getAsset() {
+    if (asset == null) {
+      asset = assetResource.adaptTo(Asset.class);
+    }
     return this.asset;
   }
 
@@ -199,8 +241,46 @@ final class MockContentFragment implements ContentFragment {
     return this.contentResource;
   }
 
+  /**
+   * @param variationName Variation name
+   * @return Structured data of the given variation. The data resource is created on first write access.
+   */
+  LazyValueMap getVariationStructuredDataProps(String variationName) {
+    return variationDataProps.computeIfAbsent(variationName, name -> {
+      String path = contentResource.getPath() + "/data/" + name;
+      Resource resource = contentResource.getChild("data/" + name);
+      return new LazyValueMap(resource, () -> {
+        try {
+          return ResourceUtil.getOrCreateResource(contentResource.getResourceResolver(), path,
+              JcrConstants.NT_UNSTRUCTURED, JcrConstants.NT_UNSTRUCTURED, false);
+        }
+        catch (PersistenceException ex) {
+          throw new RuntimeException("Unable to create variation data.", ex);
+        }
+      });
+    });
+  }
+
+  /**
+   * @return Variation definitions. The returned list instance is replaced when a variation is created.
+   */
+  List<VariationDef> getVariationDefs() {
+    if (variationDefs == null) {
+      List<VariationDef> list = new ArrayList<>();
+      Resource variations = contentResource.getChild("model/variations");
+      if (variations != null) {
+        for (Resource resource : variations.getChildren()) {
+          list.add(new MockContentFragment_VariationDef(resource));
+        }
+      }
+      variationDefs = Collections.unmodifiableList(list);
+    }
+    return variationDefs;
+  }
+
   @Override
   public VariationTemplate createVariation(String name, String title, String description) throws ContentFragmentException {
+    checkWritable();
     ResourceResolver resourceResolver = contentResource.getResourceResolver();
     try {
       Resource variations = ResourceUtil.getOrCreateResource(resourceResolver, contentResource.getPath() + "/model/variations",
@@ -212,6 +292,9 @@ final class MockContentFragment implements ContentFragment {
           "name", name,
           JcrConstants.JCR_TITLE, StringUtils.defaultString(title, name),
           JcrConstants.JCR_DESCRIPTION, StringUtils.defaultString(description)));
+      // invalidate cached variation model
+      variationDefs = null;
+      modified(false);
       return new MockContentFragment_VariationDef(child);
     }
     catch (PersistenceException ex) {
@@ -221,97 +304,320 @@ final class MockContentFragment implements ContentFragment {
 
   @Override
   public Iterator<VariationDef> listAllVariations() {
-    Resource variations = contentResource.getChild("model/variations");
-    if (variations == null) {
-      return Collections.emptyIterator();
+    return getVariationDefs().iterator();
+  }
+
+  /**
+   * @throws ContentFragmentException if this content fragment is a read-only version
+   */
+  void checkWritable() throws ContentFragmentException {
+    if (readOnly) {
+      throw new ContentFragmentException("Content fragment version is read-only: " + assetResource.getPath());
     }
-    return StreamSupport.stream(variations.getChildren().spliterator(), false)
-        .map(resource -> (VariationDef)new MockContentFragment_VariationDef(resource))
-        .iterator();
   }
 
+  /**
+   * Updates the last modified date after a modification of this content fragment.
+   * @param referencesChanged true if the structured data was modified, which may change the referenced fragments
+   */
+  void modified(boolean referencesChanged) {
+    Calendar lastModified = modificationTracker.nextLastModified();
+    ModifiableValueMap props = contentProps.write();
+    props.put(JcrConstants.JCR_LASTMODIFIED, lastModified);
+    props.put(JcrConstants.JCR_LAST_MODIFIED_BY, assetResource.getResourceResolver().getUserID());
+    if (modificationTracker.getLastModified(assetResource.getPath()) == null) {
+      track();
+    }
+    else {
+      modificationTracker.modified(assetResource.getPath(), lastModified.getTimeInMillis(),
+          referencesChanged ? getReferencedFragmentPaths() : null);
+    }
+  }
 
-  // --- unsupported operations ---
+  /**
+   * Registers this fragment in the modification tracker, or updates the tracked date if the fragment was modified
+   * without using this API. Referenced fragments that are not registered yet are registered as well.
+   */
+  private void track() {
+    Calendar lastModified = getLastModifiedDate();
+    long timestamp = lastModified != null ? lastModified.getTimeInMillis() : 0L;
+    Long trackedTimestamp = modificationTracker.getLastModified(assetResource.getPath());
+    if (trackedTimestamp == null || trackedTimestamp < timestamp) {
+      Set<String> references = getReferencedFragmentPaths();
+      modificationTracker.modified(assetResource.getPath(), timestamp, references);
+      for (String path : references) {
+        if (modificationTracker.getLastModified(path) == null) {
+          Resource resource = assetResource.getResourceResolver().getResource(path);
+          ContentFragment fragment = resource != null ? resource.adaptTo(ContentFragment.class) : null;
+          if (fragment instanceof MockContentFragment) {
+            ((MockContentFragment)fragment).track();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return Paths of content fragments referenced in the structured data of the master variation
+   */
+  private Set<String> getReferencedFragmentPaths() {
+    Set<String> paths = new HashSet<>();
+    if (structuredDataProps == null) {
+      return paths;
+    }
+    ResourceResolver resourceResolver = assetResource.getResourceResolver();
+    for (Object value : structuredDataProps.read().values()) {
+      Object[] values = value instanceof Object[] ? (Object[])value : new Object[] { value };
+      for (Object item : values) {
+        if (item instanceof String && StringUtils.startsWith((String)item, "/")
+            && !StringUtils.equals((String)item, assetResource.getPath())
+            && isContentFragment(resourceResolver.getResource((String)item))) {
+          paths.add((String)item);
+        }
+      }
+    }
+    return paths;
+  }
+
+  private static boolean isContentFragment(@Nullable Resource resource) {
+    return resource != null && DamUtil.isAsset(resource)
+        && (resource.getChild(JcrConstants.JCR_CONTENT + "/data/master") != null
+        || resource.getChild(JcrConstants.JCR_CONTENT + "/model/elements") != null);
+  }
 
   @Override
-  public FragmentTemplate getTemplate() {
-    throw new UnsupportedOperationException();
+  public @Nullable Calendar getLastModifiedDate() {
+    return contentProps.read().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
   }
 
   @Override
-  public ContentElement createElement(ElementTemplate template) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public @NotNull Calendar getLastModifiedDeep() throws ContentFragmentException {
+    Calendar result = Calendar.getInstance();
+    if (readOnly) {
+      Calendar lastModified = getLastModifiedDate();
+      result.setTimeInMillis(lastModified != null ? lastModified.getTimeInMillis() : 0L);
+      return result;
+    }
+    // only the own date is re-checked for modifications outside the content fragment API, modifications of
+    // referenced fragments are propagated by the tracker
+    track();
+    result.setTimeInMillis(modificationTracker.getLastModifiedDeep(assetResource.getPath()));
+    return result;
   }
 
   @Override
-  public Iterator<Resource> getAssociatedContent() {
-    throw new UnsupportedOperationException();
+  public VersionDef createVersion(String label, String comment) throws ContentFragmentException {
+    checkWritable();
+    try {
+      Revision revision = getAssetManager().createRevision(getAsset(), label, comment);
+      return new MockContentFragment_VersionDef(revision);
+    }
+    /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
+      throw new ContentFragmentException("Unable to create version of " + assetResource.getPath(), ex);
+    }
   }
 
   @Override
-  public void addAssociatedContent(Resource content) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public Iterator<VersionDef> listVersions() throws ContentFragmentException {
+    return getRevisions().stream()
+        .map(revision -> (VersionDef)new MockContentFragment_VersionDef(revision))
+        .iterator();
   }
 
   @Override
-  public void removeAssociatedContent(Resource content) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public VersionedContent getVersionedContent(VersionDef version) throws ContentFragmentException {
+    return new MockContentFragment_VersionedContent(getVersion(version).getElement(null));
+  }
+
+  // latest AEM Cloud API
+  /**
+   * @param versionDef Version
+   * @return Read-only content fragment with the content of the given version
+   * @throws ContentFragmentException if the version does not exist
+   */
+  public ContentFragment getVersion(VersionDef versionDef) throws ContentFragmentException {
+    Revision revision = null;
+    if (versionDef instanceof MockContentFragment_VersionDef) {
+      revision = ((MockContentFragment_VersionDef)versionDef).getRevision();
+    }
+    else {
+      for (Revision item : getRevisions()) {
+        if (StringUtils.equals(item.getId(), versionDef.getIdentifier())) {
+          revision = item;
+        }
+      }
+    }
+    if (!(revision instanceof SnapshotRevision)) {
+      throw new ContentFragmentException("Version not found: " + versionDef.getIdentifier());
+    }
+    SnapshotRevision snapshotRevision = (SnapshotRevision)revision;
+    Resource versionResource = new ResourceSnapshotResource(snapshotRevision.getSnapshot(),
+        assetResource.getPath(), assetResource.getResourceResolver());
+    return new MockContentFragment(versionResource, modificationTracker, snapshotRevision);
   }
 
+  private List<Revision> getRevisions() throws ContentFragmentException {
+    if (readOnly) {
+      return Collections.emptyList();
+    }
+    try {
+      return new ArrayList<>(getAssetManager().getRevisions(assetResource.getPath(), null));
+    }
+    /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
+      throw new ContentFragmentException("Unable to get versions of " + assetResource.getPath(), ex);
+    }
+  }
+
+  private AssetManager getAssetManager() throws ContentFragmentException {
+    AssetManager assetManager = assetResource.getResourceResolver().adaptTo(AssetManager.class);
+    if (assetManager == null) {
+      throw new ContentFragmentException("No asset manager.");
+    }
+    return assetManager;
+  }
+
+  /**
+   * @param renditionName Rendition name
+   * @return Text content stored in the given rendition or null
+   */
+  String getTextContent(String renditionName) {
+    if (readOnly) {
+      // versions are not backed by an asset, read the binary data of the rendition from the revision
+      InputStream data = version.getRenditionStream(renditionName);
+      if (data == null) {
+        return null;
+      }
+      try (InputStream is = data) {
+        return IOUtils.toString(is, StandardCharsets.UTF_8);
+      }
+      catch (IOException ex) {
+        throw new RuntimeException("Unable to read content of version rendition " + renditionName, ex);
+      }
+    }
+    return MockContentFragment_ContentElement_Text.getContent(getAsset(), renditionName);
+  }
+
+  /**
+   * @param renditionName Rendition name
+   * @return Mime type of the given rendition or null
+   */
+  String getTextContentType(String renditionName) {
+    if (readOnly) {
+      return getVersionRenditionProperties(renditionName).get(JcrConstants.JCR_MIMETYPE, String.class);
+    }
+    return MockContentFragment_ContentElement_Text.getContentType(getAsset(), renditionName);
+  }
+
+  private ValueMap getVersionRenditionProperties(String renditionName) {
+    Resource renditionContent = contentResource.getChild(DamConstants.RENDITIONS_FOLDER + "/" + renditionName
+        + "/" + JcrConstants.JCR_CONTENT);
+    return renditionContent != null ? renditionContent.getValueMap() : ValueMap.EMPTY;
+  }
+
+
+  // --- unsupported operations ---
+
   @Override
-  public void removeVariation(String variation) throws ContentFragmentException {
+  public FragmentTemplate getTemplate() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public @Nullable Calendar getLastModifiedDate() {
+  public ContentElement createElement(ElementTemplate template) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public @NotNull Calendar getLastModifiedDeep() throws ContentFragmentException {
+  public Iterator<Resource> getAssociatedContent() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public void setTags(@NotNull Tag[] tags) throws ContentFragmentException {
+  public void addAssociatedContent(Resource content) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public @NotNull Tag[] getTags() throws ContentFragmentException {
+  public void removeAssociatedContent(Resource content) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public void setVariationTags(@NotNull Tag[] tags, @NotNull String variationName) throws ContentFragmentException {
+  public void removeVariation(String variation) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public @NotNull Tag[] getVariationTags(@NotNull String variationName) throws ContentFragmentException {
+  public void setTags(@NotNull Tag[] tags) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public VersionDef createVersion(String label, String comment) throws ContentFragmentException {
+  public @NotNull Tag[] getTags() throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public VersionedContent getVersionedContent(VersionDef version) throws ContentFragmentException {
+  public void setVariationTags(@NotNull Tag[] tags, @NotNull String variationName) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public Iterator<VersionDef> listVersions() throws ContentFragmentException {
+  public @NotNull Tag[] getVariationTags(@NotNull String variationName) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
-  // latest AEM Cloud API
-  @SuppressWarnings("unused")
-  public ContentFragment getVersion(VersionDef versionDef) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+
+  /**
+   * Properties of a resource that are read from the read-only value map until the first write access.
+   */
+  static final class LazyValueMap {
+
+    private Resource resource;
+    private final Supplier<Resource> resourceCreator;
+    private ValueMap readProps;
+    private ModifiableValueMap writeProps;
+
+    LazyValueMap(@NotNull Resource resource) {
+      this(resource, null);
+    }
+
+    LazyValueMap(@Nullable Resource resource, @Nullable Supplier<Resource> resourceCreator) {
+      this.resource = resource;
+      this.resourceCreator = resourceCreator;
+    }
+
+    /**
+     * @return Properties for read access
+     */
+    @NotNull
+    ValueMap read() {
+      if (writeProps != null) {
+        return writeProps;
+      }
+      if (readProps == null) {
+        readProps = resource != null ? resource.getValueMap() : ValueMap.EMPTY;
+      }
+      return readProps;
+    }
+
+    /**
+     * @return Properties for write access
+     */
+    @NotNull
+    ModifiableValueMap write() {
+      if (writeProps == null) {
+        if (resource == null && resourceCreator != null) {
+          resource = resourceCreator.get();
+        }
+        writeProps = resource != null ? resource.adaptTo(ModifiableValueMap.class) : null;
+        if (writeProps == null) {
+          throw new RuntimeException("No ModifiableValueMap.");
+        }
+      }
+      return writeProps;
+    }
+
   }
 
 }
@@ -20,17 +20,15 @@
 package io.wcm.testing.mock.aem;
 
 import java.lang.reflect.Array;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Spliterator;
-import java.util.Spliterators;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.ModifiableValueMap;
-import org.apache.sling.api.resource.PersistenceException;
-import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -42,7 +40,6 @@ import com.adobe.cq.dam.cfm.VariationDef;
 import com.adobe.cq.dam.cfm.VariationTemplate;
 import com.adobe.cq.dam.cfm.VersionDef;
 import com.adobe.cq.dam.cfm.VersionedContent;
-import com.day.cq.commons.jcr.JcrConstants;
 
 /**
  * Mock implementation of {@link ContentElement} for structured content.
@@ -51,10 +48,13 @@ class MockContentFragment_ContentElement_Structured implements ContentElement {
 
   private final MockContentFragment contentFragment;
   private final String structuredDataKey;
-  private final ModifiableValueMap structuredDataProps;
+  private final MockContentFragment.LazyValueMap structuredDataProps;
+
+  private List<VariationDef> variationDefs;
+  private Map<String, ContentVariation> variations;
 
   MockContentFragment_ContentElement_Structured(MockContentFragment contentFragment, String structuredDataKey,
-      ModifiableValueMap structuredDataProps) {
+      MockContentFragment.LazyValueMap structuredDataProps) {
     this.contentFragment = contentFragment;
     this.structuredDataKey = structuredDataKey;
     this.structuredDataProps = structuredDataProps;
@@ -77,15 +77,18 @@ class MockContentFragment_ContentElement_Structured implements ContentElement {
 
   @Override
   public String getContent() {
-    return getContent(structuredDataKey, structuredDataProps);
+    return getContent(structuredDataKey, structuredDataProps.read());
   }
 
   @Override
   public void setContent(String content, String contentType) throws ContentFragmentException {
-    setContent(structuredDataKey, structuredDataProps, content);
+    contentFragment.checkWritable();
+    setContent(structuredDataKey, structuredDataProps.write(), content);
+    // structured data may contain references to other content fragments
+    contentFragment.modified(true);
   }
 
-  static String getContent(String structuredDataKey, ModifiableValueMap structuredDataProps) {
+  static String getContent(String structuredDataKey, ValueMap structuredDataProps) {
     StringBuilder result = new StringBuilder();
     Object value = structuredDataProps.get(structuredDataKey);
     if (value != null) {
@@ -115,90 +118,102 @@ class MockContentFragment_ContentElement_Structured implements ContentElement {
 
   @Override
   public String getContentType() {
-    return null;
+    return getValue().getContentType();
+  }
+
+  @Override
+  public FragmentData getValue() {
+    return new MockContentFragment_FragmentData(contentFragment, structuredDataKey, structuredDataProps, null);
+  }
+
+  @Override
+  public void setValue(FragmentData fragmentData) throws ContentFragmentException {
+    FragmentData value = getValue();
+    value.setValue(fragmentData != null ? fragmentData.getValue() : null);
+    value.setContentType(fragmentData != null ? fragmentData.getContentType() : null);
   }
 
   @Override
   public ContentVariation createVariation(VariationTemplate template) throws ContentFragmentException {
+    contentFragment.checkWritable();
     VariationDef variationDef = (VariationDef)template;
-    return new MockContentFragment_ContentVariation_Structured(variationDef, structuredDataKey,
-        getVariationStrucuturedDataProps(template.getName()));
+    MockContentFragment.LazyValueMap variationDataProps = contentFragment.getVariationStructuredDataProps(template.getName());
+    // make sure the variation data resource exists
+    variationDataProps.write();
+    return new MockContentFragment_ContentVariation_Structured(contentFragment, variationDef, structuredDataKey,
+        variationDataProps);
   }
 
   @Override
   public ContentVariation getVariation(String variationName) {
-    return getVariationsStream()
-        .filter(variation -> StringUtils.equals(variation.getName(), variationName))
-        .findFirst().orElse(null);
+    return getVariationMap().get(variationName);
   }
 
   @Override
   public Iterator<ContentVariation> getVariations() {
-    return getVariationsStream().iterator();
-  }
-
-  private Stream<ContentVariation> getVariationsStream() {
-    return StreamSupport.stream(
-        Spliterators.spliteratorUnknownSize(contentFragment.listAllVariations(), Spliterator.ORDERED), false)
-        .map(def -> (ContentVariation)new MockContentFragment_ContentVariation_Structured(def, structuredDataKey,
-            getVariationStrucuturedDataProps(def.getName())));
+    return Collections.unmodifiableCollection(getVariationMap().values()).iterator();
   }
 
-  private ModifiableValueMap getVariationStrucuturedDataProps(String variationName) {
-    Resource contentResource = contentFragment.getContentResource();
-    try {
-      return ResourceUtil.getOrCreateResource(contentResource.getResourceResolver(),
-          contentResource.getPath() + "/data/" + variationName, JcrConstants.NT_UNSTRUCTURED,
-          JcrConstants.NT_UNSTRUCTURED, false).adaptTo(ModifiableValueMap.class);
-    }
-    catch (PersistenceException ex) {
-      throw new RuntimeException("Unable to create variation data.", ex);
+  private Map<String, ContentVariation> getVariationMap() {
+    // rebuild variations only if the variation definitions of the content fragment have changed
+    List<VariationDef> currentVariationDefs = contentFragment.getVariationDefs();
+    if (variations == null || variationDefs != currentVariationDefs) {
+      Map<String, ContentVariation> map = new LinkedHashMap<>();
+      for (VariationDef def : currentVariationDefs) {
+        map.putIfAbsent(def.getName(), new MockContentFragment_ContentVariation_Structured(contentFragment, def,
+            structuredDataKey, contentFragment.getVariationStructuredDataProps(def.getName())));
+      }
+      variationDefs = currentVariationDefs;
+      variations = map;
     }
+    return variations;
   }
 
-  @Override
-  public void removeVariation(ContentVariation variation) throws ContentFragmentException {
-    ModifiableValueMap props = getVariationStrucuturedDataProps(variation.getName());
-    props.remove(structuredDataKey);
-  }
-
-
-  // --- unsupported operations ---
-
   @Override
   public ContentVariation getResolvedVariation(String variationName) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public FragmentData getValue() {
-    throw new UnsupportedOperationException();
+    // values not set in the variation are resolved from master
+    for (VariationDef def : contentFragment.getVariationDefs()) {
+      if (StringUtils.equals(def.getName(), variationName)) {
+        return new MockContentFragment_ContentVariation_Structured(contentFragment, def, structuredDataKey,
+            contentFragment.getVariationStructuredDataProps(def.getName()), structuredDataProps);
+      }
+    }
+    return null;
   }
 
   @Override
-  public void setValue(FragmentData fragmentData) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public void removeVariation(ContentVariation variation) throws ContentFragmentException {
+    contentFragment.checkWritable();
+    MockContentFragment.LazyValueMap props = contentFragment.getVariationStructuredDataProps(variation.getName());
+    if (props.read().containsKey(structuredDataKey)) {
+      props.write().remove(structuredDataKey);
+      contentFragment.modified(false);
+    }
   }
 
   @Override
   public VersionDef createVersion(String label, String comment) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+    return contentFragment.createVersion(label, comment);
   }
 
   @Override
-  public VersionedContent getVersionedContent(VersionDef version) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public Iterator<VersionDef> listVersions() throws ContentFragmentException {
+    return contentFragment.listVersions();
   }
 
   @Override
-  public Iterator<VersionDef> listVersions() throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public VersionedContent getVersionedContent(VersionDef version) throws ContentFragmentException {
+    return new MockContentFragment_VersionedContent(getVersion(version));
   }
 
   // latest AEM Cloud API
-  @SuppressWarnings("unused")
+  /**
+   * @param versionDef Version
+   * @return Element of the given content fragment version, or null if the element did not exist in this version
+   * @throws ContentFragmentException if the version does not exist
+   */
   public ContentElement getVersion(VersionDef versionDef) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+    return contentFragment.getVersion(versionDef).getElement(getName());
   }
 
 }
@@ -23,11 +23,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Spliterator;
-import java.util.Spliterators;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -55,12 +55,13 @@ class MockContentFragment_ContentElement_Text implements ContentElement {
 
   private final MockContentFragment contentFragment;
   private final Resource textElementResource;
-  private final Asset asset;
+
+  private List<VariationDef> variationDefs;
+  private Map<String, ContentVariation> variations;
 
   MockContentFragment_ContentElement_Text(MockContentFragment contentFragment, Resource textElementResource) {
     this.contentFragment = contentFragment;
     this.textElementResource = textElementResource;
-    this.asset = contentFragment.getAsset();
   }
 
   @Override
@@ -80,17 +81,19 @@ class MockContentFragment_ContentElement_Text implements ContentElement {
 
   @Override
   public String getContent() {
-    return getContent(asset, getRenditionName());
+    return contentFragment.getTextContent(getRenditionName());
   }
 
   @Override
   public void setContent(String content, String contentType) throws ContentFragmentException {
-    setContent(asset, getRenditionName(), content, contentType);
+    contentFragment.checkWritable();
+    setContent(contentFragment.getAsset(), getRenditionName(), content, contentType);
+    contentFragment.modified(false);
   }
 
   @Override
   public String getContentType() {
-    return getContentType(asset, getRenditionName());
+    return contentFragment.getTextContentType(getRenditionName());
   }
 
   static String getContent(Asset asset, String renditionName) {
@@ -138,72 +141,87 @@ class MockContentFragment_ContentElement_Text implements ContentElement {
 
   @Override
   public ContentVariation createVariation(VariationTemplate template) throws ContentFragmentException {
+    contentFragment.checkWritable();
     VariationDef variationDef = (VariationDef)template;
-    return new MockContentFragment_ContentVariation_Text(variationDef, asset);
+    return new MockContentFragment_ContentVariation_Text(contentFragment, variationDef);
   }
 
   @Override
   public ContentVariation getVariation(String variationName) {
-    return getVariationsStream()
-        .filter(variation -> StringUtils.equals(variation.getName(), variationName))
-        .findFirst().orElse(null);
+    return getVariationMap().get(variationName);
   }
 
   @Override
   public Iterator<ContentVariation> getVariations() {
-    return getVariationsStream().iterator();
+    return Collections.unmodifiableCollection(getVariationMap().values()).iterator();
   }
 
-  private Stream<ContentVariation> getVariationsStream() {
-    return StreamSupport.stream(
-        Spliterators.spliteratorUnknownSize(contentFragment.listAllVariations(), Spliterator.ORDERED), false)
-        .map(def -> (ContentVariation)new MockContentFragment_ContentVariation_Text(def, asset));
+  private Map<String, ContentVariation> getVariationMap() {
+    // rebuild variations only if the variation definitions of the content fragment have changed
+    List<VariationDef> currentVariationDefs = contentFragment.getVariationDefs();
+    if (variations == null || variationDefs != currentVariationDefs) {
+      Map<String, ContentVariation> map = new LinkedHashMap<>();
+      for (VariationDef def : currentVariationDefs) {
+        map.putIfAbsent(def.getName(), new MockContentFragment_ContentVariation_Text(contentFragment, def));
+      }
+      variationDefs = currentVariationDefs;
+      variations = map;
+    }
+    return variations;
   }
 
   @Override
   public void removeVariation(ContentVariation variation) throws ContentFragmentException {
+    contentFragment.checkWritable();
+    Asset asset = contentFragment.getAsset();
     Rendition rendition = asset.getRendition(variation.getName());
     if (rendition != null) {
       asset.removeRendition(rendition.getName());
+      contentFragment.modified(false);
     }
   }
 
-
-  // --- unsupported operations ---
-
   @Override
-  public ContentVariation getResolvedVariation(String variationName) {
-    throw new UnsupportedOperationException();
+  public VersionDef createVersion(String label, String comment) throws ContentFragmentException {
+    return contentFragment.createVersion(label, comment);
   }
 
   @Override
-  public FragmentData getValue() {
-    throw new UnsupportedOperationException();
+  public Iterator<VersionDef> listVersions() throws ContentFragmentException {
+    return contentFragment.listVersions();
   }
 
   @Override
-  public void setValue(FragmentData arg0) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  public VersionedContent getVersionedContent(VersionDef version) throws ContentFragmentException {
+    return new MockContentFragment_VersionedContent(getVersion(version));
   }
 
-  @Override
-  public VersionDef createVersion(String label, String comment) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
+  // latest AEM Cloud API
+  /**
+   * @param versionDef Version
+   * @return Element of the given content fragment version, or null if the element did not exist in this version
+   * @throws ContentFragmentException if the version does not exist
+   */
+  public ContentElement getVersion(VersionDef versionDef) throws ContentFragmentException {
+    return contentFragment.getVersion(versionDef).getElement(getName());
   }
 
+
+
+  // --- unsupported operations ---
+
   @Override
-  public VersionedContent getVersionedContent(VersionDef version) throws ContentFragmentException {
+  public ContentVariation getResolvedVariation(String variationName) {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public Iterator<VersionDef> listVersions() throws ContentFragmentException {
+  public FragmentData getValue() {
     throw new UnsupportedOperationException();
   }
 
-  // latest AEM Cloud API
-  @SuppressWarnings("unused")
-  public ContentElement getVersion(VersionDef versionDef) throws ContentFragmentException {
+  @Override
+  public void setValue(FragmentData arg0) throws ContentFragmentException {
     throw new UnsupportedOperationException();
   }
 
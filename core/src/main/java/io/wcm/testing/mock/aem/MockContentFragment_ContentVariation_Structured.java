@@ -22,7 +22,6 @@ package io.wcm.testing.mock.aem;
 import java.util.Calendar;
 import java.util.Iterator;
 
-import org.apache.sling.api.resource.ModifiableValueMap;
 import org.jetbrains.annotations.NotNull;
 
 import com.adobe.cq.dam.cfm.ContentFragmentException;
@@ -38,15 +37,28 @@ import com.adobe.cq.dam.cfm.VersionedContent;
  */
 class MockContentFragment_ContentVariation_Structured implements ContentVariation {
 
+  private final MockContentFragment contentFragment;
   private final VariationDef variationDef;
   private final String structuredDataKey;
-  private final ModifiableValueMap structuredDataProps;
+  private final MockContentFragment.LazyValueMap structuredDataProps;
+  private final MockContentFragment.LazyValueMap fallbackDataProps;
 
-  MockContentFragment_ContentVariation_Structured(VariationDef variationDef,
-      String structuredDataKey, ModifiableValueMap structuredDataProps) {
+  MockContentFragment_ContentVariation_Structured(MockContentFragment contentFragment, VariationDef variationDef,
+      String structuredDataKey, MockContentFragment.LazyValueMap structuredDataProps) {
+    this(contentFragment, variationDef, structuredDataKey, structuredDataProps, null);
+  }
+
+  /**
+   * @param fallbackDataProps Structured data properties to read from if the variation has no value (optional)
+   */
+  MockContentFragment_ContentVariation_Structured(MockContentFragment contentFragment, VariationDef variationDef,
+      String structuredDataKey, MockContentFragment.LazyValueMap structuredDataProps,
+      MockContentFragment.LazyValueMap fallbackDataProps) {
+    this.contentFragment = contentFragment;
     this.variationDef = variationDef;
     this.structuredDataKey = structuredDataKey;
     this.structuredDataProps = structuredDataProps;
+    this.fallbackDataProps = fallbackDataProps;
   }
 
   @Override
@@ -66,17 +78,35 @@ class MockContentFragment_ContentVariation_Structured implements ContentVariatio
 
   @Override
   public String getContent() {
-    return MockContentFragment_ContentElement_Structured.getContent(structuredDataKey, structuredDataProps);
+    MockContentFragment.LazyValueMap props = structuredDataProps;
+    if (fallbackDataProps != null && !props.read().containsKey(structuredDataKey)) {
+      props = fallbackDataProps;
+    }
+    return MockContentFragment_ContentElement_Structured.getContent(structuredDataKey, props.read());
   }
 
   @Override
   public void setContent(String content, String mimeType) throws ContentFragmentException {
-    MockContentFragment_ContentElement_Structured.setContent(structuredDataKey, structuredDataProps, content);
+    contentFragment.checkWritable();
+    MockContentFragment_ContentElement_Structured.setContent(structuredDataKey, structuredDataProps.write(), content);
+    contentFragment.modified(false);
   }
 
   @Override
   public String getContentType() {
-    return null;
+    return getValue().getContentType();
+  }
+
+  @Override
+  public FragmentData getValue() {
+    return new MockContentFragment_FragmentData(contentFragment, structuredDataKey, structuredDataProps, fallbackDataProps);
+  }
+
+  @Override
+  public void setValue(FragmentData fragmentData) throws ContentFragmentException {
+    FragmentData value = getValue();
+    value.setValue(fragmentData != null ? fragmentData.getValue() : null);
+    value.setContentType(fragmentData != null ? fragmentData.getContentType() : null);
   }
 
 
@@ -102,16 +132,6 @@ class MockContentFragment_ContentVariation_Structured implements ContentVariatio
     throw new UnsupportedOperationException();
   }
 
-  @Override
-  public FragmentData getValue() {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public void setValue(FragmentData arg0) throws ContentFragmentException {
-    throw new UnsupportedOperationException();
-  }
-
   // latest AEM Cloud API
   @Override
   public @NotNull Calendar getCreated() {
@@ -31,19 +31,18 @@ import com.adobe.cq.dam.cfm.SyncStatus;
 import com.adobe.cq.dam.cfm.VariationDef;
 import com.adobe.cq.dam.cfm.VersionDef;
 import com.adobe.cq.dam.cfm.VersionedContent;
-import com.day.cq.dam.api.Asset;
 
 /**
  * Mock implementation of {@link ContentVariation}.
  */
 class MockContentFragment_ContentVariation_Text implements ContentVariation {
 
+  private final MockContentFragment contentFragment;
   private final VariationDef variationDef;
-  private final Asset asset;
 
-  MockContentFragment_ContentVariation_Text(VariationDef variationDef, Asset asset) {
+  MockContentFragment_ContentVariation_Text(MockContentFragment contentFragment, VariationDef variationDef) {
+    this.contentFragment = contentFragment;
     this.variationDef = variationDef;
-    this.asset = asset;
   }
 
   @Override
@@ -63,17 +62,19 @@ class MockContentFragment_ContentVariation_Text implements ContentVariation {
 
   @Override
   public String getContent() {
-    return MockContentFragment_ContentElement_Text.getContent(asset, getName());
+    return contentFragment.getTextContent(getName());
   }
 
   @Override
   public void setContent(String content, String contentType) throws ContentFragmentException {
-    MockContentFragment_ContentElement_Text.setContent(asset, getName(), content, contentType);
+    contentFragment.checkWritable();
+    MockContentFragment_ContentElement_Text.setContent(contentFragment.getAsset(), getName(), content, contentType);
+    contentFragment.modified(false);
   }
 
   @Override
   public String getContentType() {
-    return MockContentFragment_ContentElement_Text.getContentType(asset, getName());
+    return contentFragment.getTextContentType(getName());
   }
 
 
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.adobe.cq.dam.cfm.DataType;
+
+/**
+ * Mock implementation of {@link DataType}, derived from the Java type of a structured content fragment value.
+ */
+final class MockContentFragment_DataType implements DataType {
+
+  static final String TYPE_STRING = "string";
+  static final String TYPE_LONG = "long";
+  static final String TYPE_DOUBLE = "double";
+  static final String TYPE_BOOLEAN = "boolean";
+  static final String TYPE_CALENDAR = "calendar";
+
+  private final String typeString;
+  private final boolean multiValue;
+
+  private MockContentFragment_DataType(String typeString, boolean multiValue) {
+    this.typeString = typeString;
+    this.multiValue = multiValue;
+  }
+
+  /**
+   * @param value Value (may be null)
+   * @return Data type of the given value. Values without value are treated as single string values.
+   */
+  static @NotNull DataType forValue(Object value) {
+    if (value == null) {
+      return new MockContentFragment_DataType(TYPE_STRING, false);
+    }
+    Class<?> valueType = value.getClass();
+    boolean multiValue = valueType.isArray();
+    if (multiValue) {
+      valueType = valueType.getComponentType();
+    }
+    return new MockContentFragment_DataType(getTypeString(valueType), multiValue);
+  }
+
+  /**
+   * @param valueType Value type
+   * @return Type string or null if the type is not supported
+   */
+  static String getTypeString(Class<?> valueType) {
+    if (valueType == String.class) {
+      return TYPE_STRING;
+    }
+    if (valueType == Long.class || valueType == long.class || valueType == Integer.class || valueType == int.class) {
+      return TYPE_LONG;
+    }
+    if (valueType == Double.class || valueType == double.class || valueType == Float.class || valueType == float.class
+        || valueType == BigDecimal.class) {
+      return TYPE_DOUBLE;
+    }
+    if (valueType == Boolean.class || valueType == boolean.class) {
+      return TYPE_BOOLEAN;
+    }
+    if (Calendar.class.isAssignableFrom(valueType) || Date.class.isAssignableFrom(valueType)) {
+      return TYPE_CALENDAR;
+    }
+    return null;
+  }
+
+  @Override
+  public @NotNull String getTypeString() {
+    return typeString;
+  }
+
+  @Override
+  public boolean isMultiValue() {
+    return multiValue;
+  }
+
+  @Override
+  public String toString() {
+    return typeString + (multiValue ? "[]" : "");
+  }
+
+}
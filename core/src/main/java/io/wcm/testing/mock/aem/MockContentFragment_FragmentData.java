@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.adobe.cq.dam.cfm.ContentFragmentException;
+import com.adobe.cq.dam.cfm.DataType;
+import com.adobe.cq.dam.cfm.FragmentData;
+
+/**
+ * Mock implementation of {@link FragmentData} for structured content.
+ * <p>
+ * Values are read and written with their native types (e.g. arrays, numbers, calendars, booleans) directly from
+ * the structured data properties, there is no conversion to and from strings. Conversions are only applied
+ * when a value is requested with a different type via {@link #getValue(Class)}.
+ * </p>
+ */
+class MockContentFragment_FragmentData implements FragmentData {
+
+  /**
+   * Suffix of the property that stores the content type of a structured data value.
+   */
+  static final String CONTENT_TYPE_SUFFIX = "@ContentType";
+
+  private final MockContentFragment contentFragment;
+  private final String structuredDataKey;
+  private final MockContentFragment.LazyValueMap structuredDataProps;
+  private final MockContentFragment.LazyValueMap fallbackDataProps;
+
+  /**
+   * @param contentFragment Content fragment
+   * @param structuredDataKey Structured data key
+   * @param structuredDataProps Structured data properties of master or variation
+   * @param fallbackDataProps Structured data properties to read from if the value is not set (optional)
+   */
+  MockContentFragment_FragmentData(@NotNull MockContentFragment contentFragment, @NotNull String structuredDataKey,
+      @NotNull MockContentFragment.LazyValueMap structuredDataProps,
+      @Nullable MockContentFragment.LazyValueMap fallbackDataProps) {
+    this.contentFragment = contentFragment;
+    this.structuredDataKey = structuredDataKey;
+    this.structuredDataProps = structuredDataProps;
+    this.fallbackDataProps = fallbackDataProps;
+  }
+
+  private MockContentFragment.LazyValueMap getReadProps() {
+    if (fallbackDataProps != null && !structuredDataProps.read().containsKey(structuredDataKey)) {
+      return fallbackDataProps;
+    }
+    return structuredDataProps;
+  }
+
+  @Override
+  public @NotNull DataType getDataType() {
+    return MockContentFragment_DataType.forValue(getValue());
+  }
+
+  @Override
+  public @Nullable Object getValue() {
+    return getReadProps().read().get(structuredDataKey);
+  }
+
+  @Override
+  public <T> @Nullable T getValue(Class<T> type) {
+    Object value = getValue();
+    if (value == null || type.isInstance(value)) {
+      return type.cast(value);
+    }
+    return getReadProps().read().get(structuredDataKey, type);
+  }
+
+  @Override
+  public boolean isTypeSupported(@NotNull Class type) {
+    Class<?> valueType = type.isArray() ? type.getComponentType() : type;
+    return MockContentFragment_DataType.getTypeString(valueType) != null;
+  }
+
+  @Override
+  public void setValue(@Nullable Object value) throws ContentFragmentException {
+    contentFragment.checkWritable();
+    if (value != null && !isTypeSupported(value.getClass())) {
+      throw new ContentFragmentException("Unsupported value type: " + value.getClass().getName());
+    }
+    if (value == null) {
+      structuredDataProps.write().remove(structuredDataKey);
+    }
+    else {
+      structuredDataProps.write().put(structuredDataKey, value);
+    }
+    // structured data may contain references to other content fragments
+    contentFragment.modified(true);
+  }
+
+  @Override
+  public @Nullable String getContentType() {
+    return getReadProps().read().get(structuredDataKey + CONTENT_TYPE_SUFFIX, String.class);
+  }
+
+  @Override
+  public void setContentType(@Nullable String contentType) throws ContentFragmentException {
+    contentFragment.checkWritable();
+    String key = structuredDataKey + CONTENT_TYPE_SUFFIX;
+    if (contentType == null) {
+      if (!structuredDataProps.read().containsKey(key)) {
+        return;
+      }
+      structuredDataProps.write().remove(key);
+    }
+    else {
+      structuredDataProps.write().put(key, contentType);
+    }
+    contentFragment.modified(false);
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Calendar;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.adobe.cq.dam.cfm.VersionDef;
+import com.day.cq.dam.api.Revision;
+
+/**
+ * Mock implementation of {@link VersionDef}. Content fragment versions are stored as asset revisions.
+ */
+class MockContentFragment_VersionDef implements VersionDef {
+
+  private final Revision revision;
+
+  MockContentFragment_VersionDef(@NotNull Revision revision) {
+    this.revision = revision;
+  }
+
+  Revision getRevision() {
+    return this.revision;
+  }
+
+  @Override
+  public String getIdentifier() {
+    return revision.getId();
+  }
+
+  @Override
+  public String getLabel() {
+    return revision.getLabel();
+  }
+
+  @Override
+  public String getComment() {
+    return revision.getComment();
+  }
+
+  @Override
+  public Calendar getCreationDate() {
+    return revision.getCreated();
+  }
+
+}
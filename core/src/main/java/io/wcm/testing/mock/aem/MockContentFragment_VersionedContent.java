@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.adobe.cq.dam.cfm.ContentElement;
+import com.adobe.cq.dam.cfm.FragmentData;
+import com.adobe.cq.dam.cfm.VersionedContent;
+
+/**
+ * Mock implementation of {@link VersionedContent}, backed by the element of a content fragment version.
+ */
+class MockContentFragment_VersionedContent implements VersionedContent {
+
+  private final ContentElement element;
+
+  MockContentFragment_VersionedContent(@Nullable ContentElement element) {
+    this.element = element;
+  }
+
+  @Override
+  public String getContent() {
+    return element != null ? element.getContent() : null;
+  }
+
+  @Override
+  public String getContentType() {
+    return element != null ? element.getContentType() : null;
+  }
+
+  @Override
+  public FragmentData getValue() {
+    return element != null ? element.getValue() : null;
+  }
+
+}
@@ -19,7 +19,16 @@
  */
 package io.wcm.testing.mock.aem;
 
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static io.wcm.testing.mock.aem.MockContentPolicyStorage.MOCK_POLICY_NAME;
+import static io.wcm.testing.mock.aem.MockContentPolicyStorage.PN_POLICY;
+import static io.wcm.testing.mock.aem.MockContentPolicyStorage.RT_CONTENTPOLICY;
+import static io.wcm.testing.mock.aem.MockTemplate.NN_POLICIES;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.Predicate;
 import org.apache.commons.lang3.StringUtils;
@@ -29,6 +38,9 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.Template;
 import com.day.cq.wcm.api.components.ComponentContext;
 import com.day.cq.wcm.api.policies.ContentPolicy;
@@ -36,14 +48,31 @@ import com.day.cq.wcm.api.policies.ContentPolicyManager;
 import com.day.cq.wcm.api.policies.ContentPolicyMapping;
 
 /**
- * Mock implementation of {@link ContentPolicy}.
+ * Mock implementation of {@link ContentPolicyManager}.
+ * <p>
+ * Policy mappings are resolved from the editable template referenced by the containing page via
+ * <code>cq:template</code>: First the mapping at the relative path of the resource below
+ * <code>policies/jcr:content</code> is checked, then the mappings for the resource type in the parent
+ * containers, nearest container first. The resolved mapping paths are cached per context and validated against
+ * the template resources they were resolved from.
+ * If the template contains no mapping, the global mappings stored via {@link MockContentPolicyStorage} are used.
+ * </p>
  */
 class MockContentPolicyManager implements ContentPolicyManager {
 
   private final ResourceResolver resourceResolver;
+  private final ContentPolicyMappingCache mappingCache;
 
-  MockContentPolicyManager(@NotNull ResourceResolver resourceResolver) {
+  MockContentPolicyManager(@NotNull ResourceResolver resourceResolver, @NotNull ContentPolicyMappingCache mappingCache) {
     this.resourceResolver = resourceResolver;
+    this.mappingCache = mappingCache;
+  }
+
+  /**
+   * Removes all cached policy mappings.
+   */
+  void invalidateCache() {
+    mappingCache.invalidate();
   }
 
   @Override
@@ -55,6 +84,10 @@ class MockContentPolicyManager implements ContentPolicyManager {
   public ContentPolicyMapping getPolicyMapping(Resource contentResource) {
     String resourceType = contentResource.getResourceType();
     if (StringUtils.isNotBlank(resourceType)) {
+      ContentPolicyMapping mapping = getTemplatePolicyMapping(contentResource, resourceType);
+      if (mapping != null) {
+        return mapping;
+      }
       return MockContentPolicyStorage.getContentPolicyMapping(resourceType, resourceResolver);
     }
     return null;
@@ -74,41 +107,196 @@ class MockContentPolicyManager implements ContentPolicyManager {
     return getPolicy(contentResource);
   }
 
+  private @Nullable ContentPolicyMapping getTemplatePolicyMapping(@NotNull Resource contentResource,
+      @NotNull String resourceType) {
+    Page page = getContainingPage(contentResource);
+    String templatePath = getTemplatePath(page);
+    if (page == null || templatePath == null) {
+      return null;
+    }
+    Resource policiesContent = resourceResolver.getResource(templatePath + "/" + NN_POLICIES + "/" + JCR_CONTENT);
+    String relativePath = getRelativePath(page, contentResource);
+    if (policiesContent == null || relativePath == null) {
+      return null;
+    }
+    String mappingPath = mappingCache.getMappingPath(templatePath, relativePath, resourceType, resourceResolver,
+        stamps -> resolveMappingPath(policiesContent, relativePath, resourceType, stamps));
+    if (mappingPath == null) {
+      return null;
+    }
+    Resource mappingResource = resourceResolver.getResource(mappingPath);
+    if (mappingResource == null) {
+      return null;
+    }
+    return new MockContentPolicyMapping(mappingResource);
+  }
 
-  // --- unsupported operations ---
+  /**
+   * Looks up the policy mapping in the template policies.
+   * @param policiesContent Template policies content resource
+   * @param relativePath Path of the content resource relative to the page content
+   * @param resourceType Resource type of the content resource
+   * @param stamps Receives the stamp of each resource that was consulted
+   * @return Mapping path or null
+   */
+  private static @Nullable String resolveMappingPath(@NotNull Resource policiesContent, @NotNull String relativePath,
+      @NotNull String resourceType, @NotNull Map<String, Long> stamps) {
+    stamps.put(policiesContent.getPath(), ResourceStamps.getStamp(policiesContent));
+    // mapping for the resource path in the template structure
+    Resource mapping = getChild(policiesContent, relativePath, stamps);
+    if (isPolicyMapping(mapping)) {
+      return mapping.getPath();
+    }
+    // mapping for the resource type in the parent containers, nearest container first
+    String relativeResourceType = MockContentPolicyStorage.makeResourceTypeRelative(resourceType);
+    String parentPath = relativePath;
+    while (StringUtils.isNotEmpty(parentPath)) {
+      parentPath = StringUtils.contains(parentPath, "/") ? StringUtils.substringBeforeLast(parentPath, "/") : "";
+      mapping = getChild(policiesContent, StringUtils.isEmpty(parentPath) ? relativeResourceType
+          : parentPath + "/" + relativeResourceType, stamps);
+      if (isPolicyMapping(mapping)) {
+        return mapping.getPath();
+      }
+    }
+    return null;
+  }
 
-  @Override
-  public List<ContentPolicy> getPolicies(String path) {
-    throw new UnsupportedOperationException();
+  private static @Nullable Resource getChild(@NotNull Resource parent, @NotNull String relativePath,
+      @NotNull Map<String, Long> stamps) {
+    if (StringUtils.isEmpty(relativePath)) {
+      return parent;
+    }
+    Resource child = parent.getChild(relativePath);
+    stamps.put(parent.getPath() + "/" + relativePath, ResourceStamps.getStamp(child));
+    return child;
+  }
+
+  private static boolean isPolicyMapping(@Nullable Resource resource) {
+    return resource != null && StringUtils.isNotBlank(resource.getValueMap().get(PN_POLICY, String.class));
+  }
+
+  private @Nullable Page getContainingPage(@NotNull Resource resource) {
+    PageManager pageManager = resourceResolver.adaptTo(PageManager.class);
+    if (pageManager == null) {
+      return null;
+    }
+    return pageManager.getContainingPage(resource);
+  }
+
+  private static @Nullable String getTemplatePath(@Nullable Page page) {
+    if (page == null) {
+      return null;
+    }
+    return StringUtils.defaultIfBlank(page.getProperties().get(NameConstants.PN_TEMPLATE, String.class), null);
+  }
+
+  /**
+   * @return Path of the resource relative to the page content, or null if the resource is not part of the content
+   */
+  private static @Nullable String getRelativePath(@NotNull Page page, @NotNull Resource resource) {
+    String contentPath = page.getPath() + "/" + JCR_CONTENT;
+    if (StringUtils.equals(resource.getPath(), contentPath)) {
+      return "";
+    }
+    if (StringUtils.startsWith(resource.getPath(), contentPath + "/")) {
+      return StringUtils.substringAfter(resource.getPath(), contentPath + "/");
+    }
+    return null;
   }
 
   @Override
-  public List<ContentPolicy> getPolicies(String path, String policyResourceType) {
-    throw new UnsupportedOperationException();
+  public List<ContentPolicy> getPolicies(String path) {
+    List<ContentPolicy> result = new ArrayList<>();
+    Resource resource = resourceResolver.getResource(path);
+    if (resource != null) {
+      for (Resource child : resource.getChildren()) {
+        if (child.isResourceType(RT_CONTENTPOLICY) || StringUtils.equals(child.getName(), MOCK_POLICY_NAME)) {
+          result.add(new MockContentPolicy(child));
+        }
+      }
+    }
+    return result;
   }
 
   @Override
-  public ContentPolicy copyPolicy(ContentPolicy originalPolicy, String newTitle, String newDescription) {
-    throw new UnsupportedOperationException();
+  public List<ContentPolicy> getPolicies(String path, String policyResourceType) {
+    return getPolicies(path + "/" + MockContentPolicyStorage.makeResourceTypeRelative(policyResourceType));
   }
 
   @Override
   public List<ContentPolicyMapping> getPolicyMappings(ContentPolicy contentPolicy) {
-    throw new UnsupportedOperationException();
+    List<ContentPolicyMapping> result = new ArrayList<>();
+    for (Resource mappingResource : findMappingResources(contentPolicy.getPath())) {
+      result.add(new MockContentPolicyMapping(mappingResource));
+    }
+    return result;
   }
 
   @Override
   public String getPolicyLocation(Resource resource) {
-    throw new UnsupportedOperationException();
+    String templatePath = getTemplatePath(getContainingPage(resource));
+    if (templatePath == null) {
+      return null;
+    }
+    return MockContentPolicyStorage.getPoliciesPath(templatePath);
   }
 
   @Override
   public List<Template> getTemplates(String policyAbsolutePath) {
-    throw new UnsupportedOperationException();
+    return getTemplates(policyAbsolutePath, null);
   }
 
   @Override
   public List<Template> getTemplates(String policyAbsolutePath, Predicate filter) {
+    Map<String, Template> result = new LinkedHashMap<>();
+    for (Resource mappingResource : findMappingResources(policyAbsolutePath)) {
+      Template template = new MockContentPolicyMapping(mappingResource).getTemplate();
+      if (template != null && (filter == null || filter.evaluate(template))) {
+        result.putIfAbsent(template.getPath(), template);
+      }
+    }
+    return new ArrayList<>(result.values());
+  }
+
+  /**
+   * Finds all mappings in the templates of the policy's configuration that reference the given policy.
+   * @param policyPath Policy path
+   * @return Mapping resources
+   */
+  private List<Resource> findMappingResources(String policyPath) {
+    List<Resource> result = new ArrayList<>();
+    String templatesPath = MockContentPolicyStorage.getTemplatesPath(policyPath);
+    Resource templates = templatesPath != null ? resourceResolver.getResource(templatesPath) : null;
+    if (templates == null) {
+      return result;
+    }
+    String policiesPath = MockContentPolicyStorage.getPoliciesPath(policyPath);
+    String relativePolicyPath = StringUtils.substringAfter(policyPath, policiesPath + "/");
+    for (Resource template : templates.getChildren()) {
+      Resource policiesContent = template.getChild(NN_POLICIES + "/" + JCR_CONTENT);
+      if (policiesContent != null) {
+        collectMappingResources(policiesContent, policyPath, relativePolicyPath, result);
+      }
+    }
+    return result;
+  }
+
+  private static void collectMappingResources(@NotNull Resource resource, @NotNull String policyPath,
+      @NotNull String relativePolicyPath, @NotNull List<Resource> result) {
+    String policy = resource.getValueMap().get(PN_POLICY, String.class);
+    if (StringUtils.equals(policy, relativePolicyPath) || StringUtils.equals(policy, policyPath)) {
+      result.add(resource);
+    }
+    for (Resource child : resource.getChildren()) {
+      collectMappingResources(child, policyPath, relativePolicyPath, result);
+    }
+  }
+
+
+  // --- unsupported operations ---
+
+  @Override
+  public ContentPolicy copyPolicy(ContentPolicy originalPolicy, String newTitle, String newDescription) {
     throw new UnsupportedOperationException();
   }
 
@@ -19,9 +19,10 @@
  */
 package io.wcm.testing.mock.aem;
 
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
 import static com.day.cq.commons.jcr.JcrConstants.JCR_LASTMODIFIED;
-import static io.wcm.testing.mock.aem.MockContentPolicyStorage.MOCK_POLICIES_PATH;
 import static io.wcm.testing.mock.aem.MockContentPolicyStorage.PN_POLICY;
+import static io.wcm.testing.mock.aem.MockTemplate.NN_POLICIES;
 
 import java.util.Calendar;
 
@@ -56,7 +57,10 @@ class MockContentPolicyMapping implements ContentPolicyMapping {
   public ContentPolicy getPolicy() {
     String policyRelativePath = resource.getValueMap().get(PN_POLICY, String.class);
     if (StringUtils.isNotBlank(policyRelativePath)) {
-      String policyPath = MOCK_POLICIES_PATH + "/" + policyRelativePath;
+      String policyPath = policyRelativePath;
+      if (!StringUtils.startsWith(policyPath, "/")) {
+        policyPath = MockContentPolicyStorage.getPoliciesPath(resource.getPath()) + "/" + policyRelativePath;
+      }
       Resource policyResource = resourceResolver.getResource(policyPath);
       if (policyResource != null) {
         return new MockContentPolicy(policyResource);
@@ -75,12 +79,18 @@ class MockContentPolicyMapping implements ContentPolicyMapping {
     return resource.getValueMap().get(JCR_LASTMODIFIED, Calendar.class);
   }
 
-
-  // --- unsupported operations ---
-
   @Override
   public Template getTemplate() {
-    throw new UnsupportedOperationException();
+    String policiesContentPath = "/" + NN_POLICIES + "/" + JCR_CONTENT;
+    String path = resource.getPath();
+    if (!StringUtils.contains(path + "/", policiesContentPath + "/")) {
+      return null;
+    }
+    Resource templateResource = resourceResolver.getResource(StringUtils.substringBefore(path + "/", policiesContentPath + "/"));
+    if (templateResource == null) {
+      return null;
+    }
+    return templateResource.adaptTo(Template.class);
   }
 
 }
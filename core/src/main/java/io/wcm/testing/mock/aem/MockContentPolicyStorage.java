@@ -22,30 +22,48 @@ package io.wcm.testing.mock.aem;
 import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
 import static com.day.cq.commons.jcr.JcrConstants.JCR_PRIMARYTYPE;
 import static com.day.cq.commons.jcr.JcrConstants.JCR_TITLE;
+import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
 import static com.day.cq.wcm.api.NameConstants.NT_TEMPLATE;
 import static io.wcm.testing.mock.aem.MockTemplate.NN_INITIAL;
 import static io.wcm.testing.mock.aem.MockTemplate.NN_POLICIES;
 import static io.wcm.testing.mock.aem.MockTemplate.NN_STRUCTURE;
 import static org.apache.sling.api.resource.ResourceResolver.PROPERTY_RESOURCE_TYPE;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.testing.mock.sling.builder.ImmutableValueMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.day.cq.wcm.api.policies.ContentPolicyManager;
 import com.day.cq.wcm.api.policies.ContentPolicyMapping;
 
 import io.wcm.testing.mock.aem.builder.ContentBuilder;
+import io.wcm.testing.mock.aem.impl.JsonProperties;
 
 /**
  * Implements a very simplified storage concept for storing and resolving content policies and
  * their mappings. Basically it stores one global content policy per resource type, and one mapping
  * for it. This is usually enough for unit tests.
+ * <p>
+ * Policy mappings of editable templates referenced by the pages are resolved before these global mappings.
+ * </p>
  */
 public final class MockContentPolicyStorage {
 
@@ -58,6 +76,8 @@ public final class MockContentPolicyStorage {
   static final String MOCK_TEMPLATE_PATH = "/conf/$aem-mock$/settings/wcm/templates/$mock-template$";
   static final String MOCK_POLICY_NAME = "$mock-policy";
 
+  private static final String SETTINGS_WCM_PATH = "/settings/wcm/";
+
   private MockContentPolicyStorage() {
     // static methods only
   }
@@ -72,30 +92,90 @@ public final class MockContentPolicyStorage {
    */
   public static @NotNull ContentPolicyMapping storeContentPolicyMapping(@NotNull String resourceType,
       @NotNull Map<String, Object> properties, @NotNull ResourceResolver resourceResolver) {
+    return storeContentPolicyMappings(Map.of(resourceType, properties), resourceResolver).get(resourceType);
+  }
 
-    String relativeResourceType = makeResourceTypeRelative(resourceType);
+  /**
+   * Creates mocked content policies with the given properties and maps each of them to all content resources with
+   * the given resource type. All policies and mappings are written in one pass and committed once.
+   * @param policies Content policy properties per resource type. Nested maps are stored as child resources.
+   * @param resourceResolver Resource resolver
+   * @return New content policy mappings per resource type
+   */
+  public static @NotNull Map<String, ContentPolicyMapping> storeContentPolicyMappings(
+      @NotNull Map<String, Map<String, Object>> policies, @NotNull ResourceResolver resourceResolver) {
 
     // ensure mock template exists
-    ContentBuilder builder = new ContentBuilder(resourceResolver);
-    ensureMockTemplate(resourceResolver, builder);
-
-    // store content policy
-    String relativePolicyPath = relativeResourceType + "/" + MOCK_POLICY_NAME;
-    String policyPath = MOCK_POLICIES_PATH + "/" + relativePolicyPath;
-    storeResource(policyPath, properties, resourceResolver, builder);
-
-    // store policy mapping
-    Map<String, Object> policyMappingProperties = ImmutableValueMap.of(
-        PROPERTY_RESOURCE_TYPE, RT_CONTENT_POLICY_MAPPING,
-        PN_POLICY, relativePolicyPath);
-    String policyMappingPath = buildPolicyMappingPath(relativeResourceType);
-    Resource mappingResource = storeResource(policyMappingPath, policyMappingProperties, resourceResolver, builder);
+    ensureMockTemplate(resourceResolver, new ContentBuilder(resourceResolver));
+
+    Map<String, ContentPolicyMapping> result = new LinkedHashMap<>();
+    Map<String, Resource> parents = new HashMap<>();
+    try {
+      for (Map.Entry<String, Map<String, Object>> entry : policies.entrySet()) {
+        String relativeResourceType = makeResourceTypeRelative(entry.getKey());
+
+        // store content policy
+        String relativePolicyPath = relativeResourceType + "/" + MOCK_POLICY_NAME;
+        storeResource(MOCK_POLICIES_PATH + "/" + relativePolicyPath, entry.getValue(), resourceResolver, parents);
 
-    ContentPolicyMapping mapping = mappingResource.adaptTo(ContentPolicyMapping.class);
-    if (mapping == null) {
-      throw new RuntimeException("Unable to map to ContentPolicyMapping.");
+        // store policy mapping
+        Map<String, Object> policyMappingProperties = ImmutableValueMap.of(
+            PROPERTY_RESOURCE_TYPE, RT_CONTENT_POLICY_MAPPING,
+            PN_POLICY, relativePolicyPath);
+        Resource mappingResource = storeResource(buildPolicyMappingPath(relativeResourceType), policyMappingProperties,
+            resourceResolver, parents);
+        result.put(entry.getKey(), new MockContentPolicyMapping(mappingResource));
+      }
+      resourceResolver.commit();
+    }
+    catch (PersistenceException ex) {
+      throw new RuntimeException("Unable to store content policies.", ex);
+    }
+
+    invalidateCache(resourceResolver);
+    return result;
+  }
+
+  /**
+   * Creates mocked content policies from a JSON object and maps each of them to all content resources with
+   * the given resource type. The JSON object contains the resource types as keys and the content policy properties
+   * as values. Nested JSON objects are stored as child resources.
+   * All policies and mappings are written in one pass and committed once.
+   * @param inputStream JSON input stream (UTF-8). The stream is not closed.
+   * @param resourceResolver Resource resolver
+   * @return New content policy mappings per resource type
+   */
+  public static @NotNull Map<String, ContentPolicyMapping> storeContentPolicyMappings(@NotNull InputStream inputStream,
+      @NotNull ResourceResolver resourceResolver) {
+    Map<String, Map<String, Object>> policies = new LinkedHashMap<>();
+    // do not close the reader, it would close the input stream
+    JsonReader reader = Json.createReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    try {
+      JsonObject json = reader.readObject();
+      for (Map.Entry<String, JsonValue> entry : json.entrySet()) {
+        if (entry.getValue().getValueType() != JsonValue.ValueType.OBJECT) {
+          throw new JsonException("Content policy for " + entry.getKey() + " is not a JSON object.");
+        }
+        policies.put(entry.getKey(), JsonProperties.toMap((JsonObject)entry.getValue()));
+      }
+    }
+    catch (JsonException ex) {
+      throw new RuntimeException("Unable to parse content policies JSON.", ex);
+    }
+    return storeContentPolicyMappings(policies, resourceResolver);
+  }
+
+  /**
+   * Invalidates the cached policy mappings resolved from editable templates.
+   * Cached mappings are resolved again automatically when one of the template resources they were resolved from
+   * is changed, added or removed, so calling this method is usually not required.
+   * @param resourceResolver Resource resolver
+   */
+  public static void invalidateCache(@NotNull ResourceResolver resourceResolver) {
+    ContentPolicyManager policyManager = resourceResolver.adaptTo(ContentPolicyManager.class);
+    if (policyManager instanceof MockContentPolicyManager) {
+      ((MockContentPolicyManager)policyManager).invalidateCache();
     }
-    return mapping;
   }
 
   /**
@@ -125,29 +205,53 @@ public final class MockContentPolicyStorage {
   }
 
   /**
-   * Writes properties to resource. Overwrites existing resources.
+   * Writes properties to resource. Overwrites existing resources. Changes are not committed.
    * @param path Path
-   * @param properties Properties
+   * @param properties Properties, nested maps are stored as child resources
    * @param resourceResolver Resource resolver
-   * @param builder Content builder
+   * @param parents Parent resources that were already looked up or created
    * @return Resource
+   * @throws PersistenceException Persistence exception
    */
   private static Resource storeResource(@NotNull String path, @NotNull Map<String, Object> properties,
-      @NotNull ResourceResolver resourceResolver, @NotNull ContentBuilder builder) {
+      @NotNull ResourceResolver resourceResolver, @NotNull Map<String, Resource> parents) throws PersistenceException {
+    String parentPath = ResourceUtil.getParent(path);
+    Resource parent = parents.get(parentPath);
+    if (parent == null) {
+      parent = ResourceUtil.getOrCreateResource(resourceResolver, parentPath,
+          Map.of(JCR_PRIMARYTYPE, NT_UNSTRUCTURED), null, false);
+      parents.put(parentPath, parent);
+    }
 
     // delete resource if it exists already
-    Resource resource = resourceResolver.getResource(path);
+    String name = ResourceUtil.getName(path);
+    Resource resource = parent.getChild(name);
     if (resource != null) {
-      try {
-        resourceResolver.delete(resource);
-      }
-      catch (PersistenceException ex) {
-        throw new RuntimeException("Unable to delete resource " + path, ex);
-      }
+      resourceResolver.delete(resource);
     }
 
     // create resource
-    return builder.resource(path, properties);
+    return createResource(parent, name, properties, resourceResolver);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Resource createResource(@NotNull Resource parent, @NotNull String name,
+      @NotNull Map<String, Object> properties, @NotNull ResourceResolver resourceResolver) throws PersistenceException {
+    Map<String, Object> resourceProperties = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> children = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+      if (entry.getValue() instanceof Map) {
+        children.put(entry.getKey(), (Map<String, Object>)entry.getValue());
+      }
+      else {
+        resourceProperties.put(entry.getKey(), entry.getValue());
+      }
+    }
+    Resource resource = resourceResolver.create(parent, name, resourceProperties);
+    for (Map.Entry<String, Map<String, Object>> child : children.entrySet()) {
+      createResource(resource, child.getKey(), child.getValue(), resourceResolver);
+    }
+    return resource;
   }
 
   /**
@@ -169,12 +273,34 @@ public final class MockContentPolicyStorage {
     }
   }
 
+  /**
+   * @param path Path of a template, policy mapping or policy
+   * @return Path of the policies of the configuration the given path belongs to
+   */
+  static @NotNull String getPoliciesPath(@NotNull String path) {
+    if (StringUtils.contains(path, SETTINGS_WCM_PATH)) {
+      return StringUtils.substringBefore(path, SETTINGS_WCM_PATH) + SETTINGS_WCM_PATH + "policies";
+    }
+    return MOCK_POLICIES_PATH;
+  }
+
+  /**
+   * @param path Path of a template, policy mapping or policy
+   * @return Path of the templates of the configuration the given path belongs to, or null
+   */
+  static @Nullable String getTemplatesPath(@NotNull String path) {
+    if (StringUtils.contains(path, SETTINGS_WCM_PATH)) {
+      return StringUtils.substringBefore(path, SETTINGS_WCM_PATH) + SETTINGS_WCM_PATH + "templates";
+    }
+    return null;
+  }
+
   /**
    * Ensures the given resource is relative (not starting with /apps, /libs, or /)
    * @param resourceType Resource type
    * @return Relative resource type
    */
-  private static @NotNull String makeResourceTypeRelative(@NotNull String resourceType) {
+  static @NotNull String makeResourceTypeRelative(@NotNull String resourceType) {
     if (StringUtils.startsWith(resourceType, "/apps/")) {
       return StringUtils.substringAfter(resourceType, "/apps/");
     }
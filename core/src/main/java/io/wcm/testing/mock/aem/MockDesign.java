@@ -27,11 +27,17 @@ import java.util.Map;
 import javax.jcr.RepositoryException;
 import javax.servlet.jsp.PageContext;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.components.ComponentContext;
 import com.day.cq.wcm.api.designer.Cell;
 import com.day.cq.wcm.api.designer.ComponentStyle;
 import com.day.cq.wcm.api.designer.Design;
@@ -47,25 +53,46 @@ class MockDesign implements Design {
 
   private final Style emptyStyle = new MockStyle(ValueMap.EMPTY, this);
   private final ResourceResolver resourceResolver;
-
-  MockDesign(ResourceResolver resourceResolver) {
+  private final String designPath;
+  private final DesignStyleCache styleCache;
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @param designPath Design path or null for the default design
+   * @param styleCache Style cache
+   */
+  MockDesign(@NotNull ResourceResolver resourceResolver, @Nullable String designPath, @NotNull DesignStyleCache styleCache) {
     this.resourceResolver = resourceResolver;
+    this.designPath = designPath;
+    this.styleCache = styleCache;
   }
 
+  /**
+   * @param path Resource path (absolute) or cell path (relative)
+   * @return Style
+   */
   @Override
   public Style getStyle(String path) {
-    Resource resource = resourceResolver.getResource(path);
-    if (resource != null) {
-      return getStyle(resource);
+    if (StringUtils.startsWith(path, "/")) {
+      Resource resource = resourceResolver.getResource(path);
+      if (resource != null) {
+        return getStyle(resource);
+      }
+      return emptyStyle;
     }
-    return emptyStyle;
+    return getCellStyle(new MockCell(StringUtils.split(StringUtils.defaultString(path), '/')));
   }
 
   @Override
   public Style getStyle(Cell cell) {
     if (cell instanceof MockCell) {
-      Resource resource = ((MockCell)cell).getComponentContext().getResource();
-      return getStyle(resource);
+      ComponentContext componentContext = ((MockCell)cell).getComponentContext();
+      if (componentContext != null && componentContext.getResource() != null) {
+        return getStyle(componentContext.getResource());
+      }
+    }
+    if (cell != null) {
+      return getCellStyle(cell);
     }
     return emptyStyle;
   }
@@ -78,9 +105,13 @@ class MockDesign implements Design {
       Resource unwrappedResource = ResourceUtil.unwrap(resource);
       ContentPolicy policy = ((MockContentPolicyManager)contentPolicyManager).getPolicy(unwrappedResource);
       if (policy != null) {
-        return new MockStyle(policy.getProperties(), this);
+        return new MockStyle(policy.getProperties(), this, null, policy.getPath(), null, resourceResolver);
       }
     }
+    MockCell cell = MockCell.forResource(resource);
+    if (cell != null) {
+      return getCellStyle(cell);
+    }
     return emptyStyle;
   }
 
@@ -89,58 +120,89 @@ class MockDesign implements Design {
     return getStyle(resource);
   }
 
+  /**
+   * Resolves the classic design style for the given cell.
+   * Properties are inherited along the cell's search paths, the resolved properties are cached per design and cell path.
+   * @param cell Cell
+   * @return Style
+   */
+  private Style getCellStyle(@NotNull Cell cell) {
+    if (designPath == null) {
+      return emptyStyle;
+    }
+    MockCell mockCell = (cell instanceof MockCell) ? (MockCell)cell : new MockCell(StringUtils.split(cell.getPath(), '/'));
+    DesignStyleCache.StyleData styleData = styleCache.getStyleData(designPath, getContentResource(), mockCell);
+    String stylePath = designPath + "/" + JcrConstants.JCR_CONTENT + "/" + mockCell.getPath();
+    return new MockStyle(styleData.getProperties(), this, mockCell, stylePath, styleData.getDefiningPaths(), resourceResolver);
+  }
+
   @Override
   @SuppressWarnings("deprecation")
   public String getPath() {
+    if (designPath != null) {
+      return designPath;
+    }
     return Designer.DEFAULT_DESIGN_PATH;
   }
 
-
-  // --- unsupported operations ---
-
   @Override
-  public Map<String, ComponentStyle> getComponentStyles(Cell cell) {
-    throw new UnsupportedOperationException();
+  public String getId() {
+    return getPath();
   }
 
   @Override
   public Resource getContentResource() {
-    throw new UnsupportedOperationException();
+    if (designPath == null) {
+      return null;
+    }
+    return resourceResolver.getResource(designPath + "/" + JcrConstants.JCR_CONTENT);
   }
 
   @Override
-  public String getCssPath() {
-    throw new UnsupportedOperationException();
+  public boolean hasContent() {
+    return getContentResource() != null;
   }
 
   @Override
-  @SuppressWarnings("deprecation")
-  public com.day.cq.commons.Doctype getDoctype(Style style) {
-    throw new UnsupportedOperationException();
+  public Calendar getLastModified() {
+    Resource contentResource = getContentResource();
+    if (contentResource == null) {
+      return null;
+    }
+    ValueMap props = contentResource.getValueMap();
+    Calendar lastModified = props.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+    if (lastModified == null) {
+      lastModified = props.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    }
+    return lastModified;
   }
 
+
+  // --- unsupported operations ---
+
   @Override
-  public String getId() {
+  public Map<String, ComponentStyle> getComponentStyles(Cell cell) {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public String getJSON() {
+  public String getCssPath() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public Calendar getLastModified() {
+  @SuppressWarnings("deprecation")
+  public com.day.cq.commons.Doctype getDoctype(Style style) {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public String getStaticCssPath() {
+  public String getJSON() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public boolean hasContent() {
+  public String getStaticCssPath() {
     throw new UnsupportedOperationException();
   }
 
@@ -19,9 +19,15 @@
  */
 package io.wcm.testing.mock.aem;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.designer.Design;
@@ -30,23 +36,59 @@ import com.day.cq.wcm.api.designer.Style;
 
 /**
  * Mock implementation of {@link Designer}.
+ * <p>
+ * The design of a page is defined by the <code>cq:designPath</code> property, which is inherited from the
+ * parent pages. Without design path the default design is used, which only supports content policies.
+ * </p>
  */
 class MockDesigner implements Designer {
 
   private final ResourceResolver resourceResolver;
+  private final DesignStyleCache styleCache;
 
-  MockDesigner(ResourceResolver resourceResolver) {
+  MockDesigner(@NotNull ResourceResolver resourceResolver, @NotNull DesignStyleCache styleCache) {
     this.resourceResolver = resourceResolver;
+    this.styleCache = styleCache;
+  }
+
+  /**
+   * Invalidates the cached style properties of all designs.
+   */
+  void invalidateCache() {
+    styleCache.invalidate();
   }
 
   @Override
   public String getDesignPath(Page page) {
+    if (page == null) {
+      return null;
+    }
+    return getDesignPathForPageContent(page.getPath() + "/" + JcrConstants.JCR_CONTENT);
+  }
+
+  /**
+   * Looks up the design path in the given page content and the content of all parent pages.
+   * @param pageContentPath Page content path
+   * @return Design path or null
+   */
+  private @Nullable String getDesignPathForPageContent(@NotNull String pageContentPath) {
+    String pagePath = ResourceUtil.getParent(pageContentPath);
+    while (pagePath != null) {
+      Resource pageContent = resourceResolver.getResource(pagePath + "/" + JcrConstants.JCR_CONTENT);
+      if (pageContent != null) {
+        String designPath = pageContent.getValueMap().get(NameConstants.PN_DESIGN_PATH, String.class);
+        if (StringUtils.isNotEmpty(designPath)) {
+          return designPath;
+        }
+      }
+      pagePath = ResourceUtil.getParent(pagePath);
+    }
     return null;
   }
 
   @Override
   public Design getDesign(Page page) {
-    return getDefaultDesign();
+    return new MockDesign(resourceResolver, getDesignPath(page), styleCache);
   }
 
   @Override
@@ -56,31 +98,61 @@ class MockDesigner implements Designer {
 
   @Override
   public Design getDesign(String id) {
+    if (id != null && resourceResolver.getResource(id) != null) {
+      return new MockDesign(resourceResolver, id, styleCache);
+    }
     return getDefaultDesign();
   }
 
   @Override
   public Style getStyle(Resource resource) {
-    if (resource != null) {
-      PageManager pageManager = resource.getResourceResolver().adaptTo(PageManager.class);
-      if (pageManager != null) {
-        Page page = pageManager.getContainingPage(resource);
-        if (page != null) {
-          return getDesign(page).getStyle(resource);
-        }
-      }
+    Design design = getDesign(resource);
+    if (design != null) {
+      return design.getStyle(resource);
     }
     return null;
   }
 
   @Override
   public Style getStyle(Resource resource, String cellPath) {
-    return getStyle(resource);
+    if (StringUtils.isEmpty(cellPath)) {
+      return getStyle(resource);
+    }
+    Design design = getDesign(resource);
+    if (design != null) {
+      return design.getStyle(StringUtils.removeStart(cellPath, "/"));
+    }
+    return null;
+  }
+
+  /**
+   * Gets the design of the page containing the given resource.
+   * The page is derived from the resource path if it points into page content,
+   * otherwise it is looked up via {@link PageManager}.
+   * @param resource Resource
+   * @return Design or null if the resource is not contained in a page
+   */
+  private @Nullable Design getDesign(@Nullable Resource resource) {
+    if (resource == null) {
+      return null;
+    }
+    String pageContentPath = MockCell.getPageContentPath(resource.getPath());
+    if (pageContentPath != null) {
+      return new MockDesign(resourceResolver, getDesignPathForPageContent(pageContentPath), styleCache);
+    }
+    PageManager pageManager = resource.getResourceResolver().adaptTo(PageManager.class);
+    if (pageManager != null) {
+      Page page = pageManager.getContainingPage(resource);
+      if (page != null) {
+        return getDesign(page);
+      }
+    }
+    return null;
   }
 
   @Override
   public Design getDefaultDesign() {
-    return new MockDesign(resourceResolver);
+    return new MockDesign(resourceResolver, null, styleCache);
   }
 
 }
@@ -22,6 +22,9 @@ package io.wcm.testing.mock.aem;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.apache.sling.commons.json.JSONException;
 import org.apache.sling.commons.json.io.JSONWriter;
 
@@ -49,6 +52,38 @@ final class MockEditConfig implements EditConfig {
   private Boolean deepCancel;
   private JSONItem liveRelationship;
   private final Map<String, DropTarget> dropTargets = new HashMap<>();
+  private boolean targetingDisabled;
+  private final boolean defaultConfig;
+
+  MockEditConfig() {
+    this.defaultConfig = false;
+  }
+
+  /**
+   * Creates an edit config from the properties of a <code>cq:editConfig</code> node.
+   * @param editConfigProps Edit config properties, or null if the component has no edit config
+   */
+  MockEditConfig(Map<String, Object> editConfigProps) {
+    this.defaultConfig = (editConfigProps == null);
+    if (editConfigProps != null) {
+      ValueMap props = new ValueMapDecorator(editConfigProps);
+      this.layout = toEnum(EditLayout.values(), props.get("cq:layout", String.class), EditLayout.AUTO);
+      this.dialogMode = toEnum(DialogMode.values(), props.get("cq:dialogMode", String.class), DialogMode.AUTO);
+      this.emptyText = props.get("cq:emptyText", String.class);
+      this.targetingDisabled = props.get("cq:disableTargeting", false);
+    }
+  }
+
+  private static <T extends Enum<T>> T toEnum(T[] values, String value, T defaultValue) {
+    if (value != null) {
+      for (T item : values) {
+        if (StringUtils.equalsIgnoreCase(item.name(), value) || StringUtils.equalsIgnoreCase(item.toString(), value)) {
+          return item;
+        }
+      }
+    }
+    return defaultValue;
+  }
 
   @Override
   public EditLayout getLayout() {
@@ -145,14 +180,19 @@ final class MockEditConfig implements EditConfig {
     return this.dropTargets;
   }
 
-
-  // --- unsupported operations ---
-
   @Override
   public boolean isTargetingDisabled() {
-    throw new UnsupportedOperationException();
+    return this.targetingDisabled;
+  }
+
+  @Override
+  public boolean isDefault() {
+    return this.defaultConfig;
   }
 
+
+  // --- unsupported operations ---
+
   @Override
   public void write(JSONWriter out) throws JSONException {
     throw new UnsupportedOperationException();
@@ -178,9 +218,4 @@ final class MockEditConfig implements EditConfig {
     throw new UnsupportedOperationException();
   }
 
-  @Override
-  public boolean isDefault() {
-    throw new UnsupportedOperationException();
-  }
-
 }
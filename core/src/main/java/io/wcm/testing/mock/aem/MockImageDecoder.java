@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.sling.api.adapter.Adaptable;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.image.Layer;
+
+import io.wcm.testing.mock.aem.dam.MockBlobStore;
+
+/**
+ * Decodes image binaries for {@link MockLayerAdapterFactory} and the mocked
+ * {@link com.day.cq.dam.api.handler.AssetHandler}.
+ * <p>
+ * Images are read only at the resolution required by the requested max. dimension (using ImageIO source subsampling),
+ * and decoded images of resources are cached with soft references, keyed by resource path, last modified date,
+ * binary identity (blob ID or binary size) and max. dimension. Each caller gets its own view of the cached image that
+ * shares the pixel data with the cache until the caller modifies it (copy on write).
+ * Images of resources whose binary identity cannot be determined without reading the binary are not cached.
+ * </p>
+ * <p>
+ * Formats without ImageIO reader, and binaries ImageIO fails to read, are decoded via {@link Layer}.
+ * </p>
+ */
+@Component(service = MockImageDecoder.class)
+@ProviderType
+public final class MockImageDecoder {
+
+  private final Map<CacheKey, SoftReference<BufferedImage>> cache = new ConcurrentHashMap<>();
+
+  @Deactivate
+  private void deactivate() {
+    cache.clear();
+  }
+
+  /**
+   * Decodes the image binary of the given adaptable.
+   * @param adaptable Adaptable that can be adapted to {@link InputStream}, e.g. a resource or rendition
+   * @param maxDimension Max. dimension of the image. If the image is bigger, it is downscaled preserving its ratio.
+   *          If null, the image is decoded in full resolution.
+   * @return Decoded image or null if the adaptable does not provide a supported image binary
+   */
+  public @Nullable BufferedImage getImage(@NotNull Adaptable adaptable, @Nullable Dimension maxDimension) {
+    CacheKey key = null;
+    if (adaptable instanceof Resource) {
+      key = CacheKey.of((Resource)adaptable, maxDimension);
+    }
+    if (key != null) {
+      SoftReference<BufferedImage> ref = cache.get(key);
+      BufferedImage cached = ref != null ? ref.get() : null;
+      if (cached != null) {
+        return view(cached);
+      }
+    }
+    BufferedImage image = decode(adaptable, maxDimension);
+    if (image == null) {
+      return null;
+    }
+    if (key != null) {
+      removeClearedEntries();
+      cache.put(key, new SoftReference<>(image));
+      return view(image);
+    }
+    return image;
+  }
+
+  /**
+   * @return Number of cache entries
+   */
+  int getCacheSize() {
+    removeClearedEntries();
+    return cache.size();
+  }
+
+  private void removeClearedEntries() {
+    cache.values().removeIf(ref -> ref.get() == null);
+  }
+
+  private static @Nullable BufferedImage decode(@NotNull Adaptable adaptable, @Nullable Dimension maxDimension) {
+    try (InputStream is = adaptable.adaptTo(InputStream.class)) {
+      if (is == null) {
+        return null;
+      }
+      int width = maxDimension != null ? maxDimension.width : 0;
+      int height = maxDimension != null ? maxDimension.height : 0;
+      BufferedImage image = decodeSubsampled(is, width, height);
+      if (image != null) {
+        return constrain(image, maxDimension);
+      }
+    }
+    catch (IOException ex) {
+      // ImageIO is unable to read the binary - fallback to layer
+    }
+    // no ImageIO reader available for this format or reading failed - fallback to layer
+    try (InputStream is = adaptable.adaptTo(InputStream.class)) {
+      if (is == null) {
+        return null;
+      }
+      return new Layer(is, maxDimension).getImage();
+    }
+    /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
+      return null;
+    }
+  }
+
+  /**
+   * Decodes an image, reading only every n-th pixel if the image is considerably larger than the given size.
+   * The decoded image is never smaller than the given size (unless the image itself is smaller).
+   * @param is Image binary
+   * @param width Minimum width required, 0 to decode in full resolution
+   * @param height Minimum height required, 0 to decode in full resolution
+   * @return Image or null if there is no ImageIO reader for this format
+   * @throws IOException I/O exception
+   */
+  public static @Nullable BufferedImage decodeSubsampled(@NotNull InputStream is, int width, int height) throws IOException {
+    try (ImageInputStream iis = ImageIO.createImageInputStream(is)) {
+      if (iis == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(iis, true, true);
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (width > 0 && height > 0) {
+          int subsampling = Math.max(1, Math.min(reader.getWidth(0) / width, reader.getHeight(0) / height));
+          param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        return reader.read(0, param);
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private static @NotNull BufferedImage constrain(@NotNull BufferedImage image, @Nullable Dimension maxDimension) {
+    if (maxDimension == null || maxDimension.width <= 0 || maxDimension.height <= 0
+        || (image.getWidth() <= maxDimension.width && image.getHeight() <= maxDimension.height)) {
+      return image;
+    }
+    double ratio = Math.min((double)maxDimension.width / image.getWidth(), (double)maxDimension.height / image.getHeight());
+    int width = Math.max(1, (int)Math.round(image.getWidth() * ratio));
+    int height = Math.max(1, (int)Math.round(image.getHeight() * ratio));
+    int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    BufferedImage scaled = new BufferedImage(width, height, type);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(image, 0, 0, width, height, null);
+    }
+    finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+
+  /**
+   * Creates an image that shares the pixel data of the given image until it is modified.
+   */
+  private static @NotNull BufferedImage view(@NotNull BufferedImage image) {
+    WritableRaster raster = image.getRaster();
+    if (raster.getParent() != null || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+        || !CopyOnWriteDataBuffer.isSupported(raster.getDataBuffer())) {
+      return new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+    }
+    WritableRaster viewRaster = Raster.createWritableRaster(raster.getSampleModel(),
+        new CopyOnWriteDataBuffer(raster.getDataBuffer()), null);
+    return new BufferedImage(image.getColorModel(), viewRaster, image.isAlphaPremultiplied(), null);
+  }
+
+
+  private static final class CacheKey {
+
+    private final String path;
+    private final long lastModified;
+    private final String binaryId;
+    private final int maxWidth;
+    private final int maxHeight;
+
+    private CacheKey(String path, long lastModified, String binaryId, int maxWidth, int maxHeight) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.binaryId = binaryId;
+      this.maxWidth = maxWidth;
+      this.maxHeight = maxHeight;
+    }
+
+    /**
+     * @return Cache key or null if the last modified date or the binary identity of the resource is unknown
+     */
+    static @Nullable CacheKey of(@NotNull Resource resource, @Nullable Dimension maxDimension) {
+      long lastModified = getLastModified(resource);
+      if (lastModified <= 0) {
+        return null;
+      }
+      String binaryId = getBinaryId(resource);
+      if (binaryId == null) {
+        return null;
+      }
+      return new CacheKey(resource.getPath(), lastModified, binaryId,
+          maxDimension != null ? maxDimension.width : 0,
+          maxDimension != null ? maxDimension.height : 0);
+    }
+
+    private static long getLastModified(@NotNull Resource resource) {
+      Resource content = resource.getChild(JcrConstants.JCR_CONTENT);
+      ValueMap props = (content != null ? content : resource).getValueMap();
+      Calendar lastModified = props.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+      if (lastModified != null) {
+        return lastModified.getTimeInMillis();
+      }
+      return resource.getResourceMetadata().getModificationTime();
+    }
+
+    /**
+     * Identifies the binary without reading it: the blob ID if stored in the blob store, otherwise the binary size.
+     */
+    private static @Nullable String getBinaryId(@NotNull Resource resource) {
+      Resource content = resource.getChild(JcrConstants.JCR_CONTENT);
+      Resource dataResource = content != null ? content : resource;
+      ValueMap props = dataResource.getValueMap();
+      String blobId = props.get(MockBlobStore.PN_BLOB_ID, String.class);
+      if (blobId != null) {
+        return blobId;
+      }
+      Node node = dataResource.adaptTo(Node.class);
+      if (node != null) {
+        try {
+          if (node.hasProperty(JcrConstants.JCR_DATA)) {
+            return "size:" + node.getProperty(JcrConstants.JCR_DATA).getLength();
+          }
+          return null;
+        }
+        catch (RepositoryException ex) {
+          return null;
+        }
+      }
+      Object data = props.get(JcrConstants.JCR_DATA);
+      if (data instanceof byte[]) {
+        return "size:" + ((byte[])data).length;
+      }
+      return null;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, binaryId, maxWidth, maxHeight);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey)obj;
+      return path.equals(other.path) && lastModified == other.lastModified && binaryId.equals(other.binaryId)
+          && maxWidth == other.maxWidth && maxHeight == other.maxHeight;
+    }
+
+  }
+
+}
@@ -19,8 +19,7 @@
  */
 package io.wcm.testing.mock.aem;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.awt.image.BufferedImage;
 
 import org.apache.sling.api.adapter.Adaptable;
 import org.apache.sling.api.adapter.AdapterFactory;
@@ -28,11 +27,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 
 import com.day.image.Layer;
 
 /**
  * Tries to adapt to an InputStream to get a Layer instance for an image binary.
+ * Decoded images are cached by {@link MockImageDecoder}.
  */
 @Component(service = AdapterFactory.class,
     property = {
@@ -42,17 +45,18 @@ import com.day.image.Layer;
 @ProviderType
 public final class MockLayerAdapterFactory implements AdapterFactory {
 
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private MockImageDecoder imageDecoder;
+
   @SuppressWarnings("unchecked")
   @Override
   public @Nullable <AdapterType> AdapterType getAdapter(@NotNull Object object, @NotNull Class<AdapterType> type) {
     if (type == Layer.class && object instanceof Adaptable) {
-      try (InputStream is = ((Adaptable)object).adaptTo(InputStream.class)) {
-        if (is != null) {
-          return (AdapterType)new Layer(is);
-        }
-      }
-      catch (IOException ex) {
-        // ignore
+      // decoded images are cached per resource by the image decoder service, fallback to uncached decoding
+      MockImageDecoder decoder = imageDecoder != null ? imageDecoder : new MockImageDecoder();
+      BufferedImage image = decoder.getImage((Adaptable)object, null);
+      if (image != null) {
+        return (AdapterType)new Layer(image);
       }
     }
     return null;
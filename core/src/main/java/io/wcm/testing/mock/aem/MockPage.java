@@ -23,7 +23,6 @@ import java.util.Calendar;
 import java.util.Iterator;
 import java.util.Locale;
 
-import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.adapter.SlingAdaptable;
@@ -46,7 +45,6 @@ import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.Template;
 import com.day.cq.wcm.api.WCMException;
-import com.day.cq.wcm.commons.DeepResourceIterator;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -284,21 +282,7 @@ class MockPage extends SlingAdaptable implements Page {
 
   @Override
   public Iterator<Page> listChildren(final Filter<Page> filter, final boolean deep) {
-    Iterator<Resource> resources;
-    if (deep) {
-      resources = new DeepResourceIterator(resource);
-    }
-    else {
-      resources = resource.getResourceResolver().listChildren(resource);
-    }
-
-    // transform resources to pages
-    final Iterator<Page> pages = IteratorUtils.transformedIterator(resources,
-        resourceItem -> resourceItem.adaptTo(Page.class));
-
-    // filter pages
-    return IteratorUtils.filteredIterator(pages,
-        pageItem -> pageItem != null && (filter == null || filter.includes(pageItem)));
+    return PageTreeWalker.iterate(resource, filter, deep ? PageTreeWalker.UNLIMITED_DEPTH : 1);
   }
 
   @Override
@@ -32,9 +32,13 @@ import static com.day.cq.wcm.api.NameConstants.PN_PAGE_LAST_REPLICATED_BY;
 import static com.day.cq.wcm.api.NameConstants.PN_PAGE_LAST_REPLICATION_ACTION;
 import static com.day.cq.wcm.api.NameConstants.PN_TEMPLATE;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.jcr.Node;
@@ -61,6 +65,8 @@ import com.day.cq.wcm.api.msm.Blueprint;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
+
 /**
  * Mock implementation of {@link PageManager}
  */
@@ -68,9 +74,11 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 class MockPageManager extends SlingAdaptable implements PageManager {
 
   private final ResourceResolver resourceResolver;
+  private final MockPageRevisionStore revisionStore;
 
-  MockPageManager(@NotNull final ResourceResolver resourceResolver) {
+  MockPageManager(@NotNull final ResourceResolver resourceResolver, @NotNull final MockPageRevisionStore revisionStore) {
     this.resourceResolver = resourceResolver;
+    this.revisionStore = revisionStore;
   }
 
   @Override
@@ -263,6 +271,204 @@ class MockPageManager extends SlingAdaptable implements PageManager {
     }
   }
 
+  @Override
+  public Revision createRevision(final Page page) throws WCMException {
+    return createRevision(page, null, null);
+  }
+
+  @Override
+  public Revision createRevision(final Page page, final String label, final String comment) throws WCMException {
+    Resource pageResource = page.adaptTo(Resource.class);
+    if (pageResource == null) {
+      throw new WCMException("Page is not backed by a resource: " + page.getPath());
+    }
+    // share all unchanged nodes with the latest revision of the same page
+    ResourceSnapshot previous = revisionStore.getLatestSnapshot(page.getPath());
+    ResourceSnapshot snapshot = ResourceSnapshot.capture(pageResource, previous, MockPageManager::isPageRevisionContent);
+    return new MockRevision(revisionStore.add(page.getPath(), snapshot, label, comment), resourceResolver);
+  }
+
+  @Override
+  public Collection<Revision> getRevisions(final String path, final Calendar cal) throws WCMException {
+    return getRevisions(path, cal, true);
+  }
+
+  @Override
+  public Collection<Revision> getRevisions(final String path, final Calendar cal, final boolean includeNoLocal) throws WCMException {
+    if (!includeNoLocal && resourceResolver.getResource(path) == null) {
+      return Collections.emptyList();
+    }
+    return toRevisions(revisionStore.getRevisions(path, cal));
+  }
+
+  @Override
+  public Collection<Revision> getChildRevisions(final String parentPath, final Calendar cal) throws WCMException {
+    return getChildRevisions(parentPath, cal, true);
+  }
+
+  @Override
+  public Collection<Revision> getChildRevisions(final String parentPath, final Calendar cal, final boolean includeNoLocal)
+      throws WCMException {
+    List<MockPageRevisionStore.Entry> entries = new ArrayList<>();
+    for (String childPath : revisionStore.getChildPaths(parentPath)) {
+      if (!includeNoLocal && resourceResolver.getResource(childPath) == null) {
+        continue;
+      }
+      entries.addAll(revisionStore.getRevisions(childPath, cal));
+    }
+    return toRevisions(entries);
+  }
+
+  /**
+   * Returns the revisions of the child pages of the given parent path that are located in the tree below
+   * <code>treeRoot</code> (including the tree root itself).
+   */
+  @Override
+  public Collection<Revision> getChildRevisions(final String parentPath, final String treeRoot, final Calendar cal)
+      throws WCMException {
+    List<MockPageRevisionStore.Entry> entries = new ArrayList<>();
+    for (String childPath : revisionStore.getChildPaths(parentPath)) {
+      if (treeRoot != null && !StringUtils.equals(childPath, treeRoot) && !StringUtils.startsWith(childPath, treeRoot + "/")) {
+        continue;
+      }
+      entries.addAll(revisionStore.getRevisions(childPath, cal));
+    }
+    return toRevisions(entries);
+  }
+
+  @Override
+  public Page restore(final String path, final String revisionId) throws WCMException {
+    MockPageRevisionStore.Entry entry = revisionStore.get(revisionId);
+    if (entry == null) {
+      throw new WCMException("Revision not found: " + revisionId);
+    }
+    // path is either the page path or the parent path of a deleted page
+    if (!StringUtils.equals(entry.getPath(), path) && !StringUtils.equals(ResourceUtil.getParent(entry.getPath()), path)) {
+      throw new WCMException("Revision " + revisionId + " does not belong to " + path);
+    }
+    try {
+      boolean deleted = resourceResolver.getResource(entry.getPath()) == null;
+      Page page = restoreRevision(entry);
+      if (deleted) {
+        restoreChildPages(entry.getPath());
+      }
+      resourceResolver.commit();
+      return page;
+    }
+    catch (PersistenceException ex) {
+      throw new WCMException("Restoring revision " + revisionId + " at " + entry.getPath() + " failed.", ex);
+    }
+  }
+
+  @Override
+  public Page restoreTree(final String path, final Calendar date) throws WCMException {
+    return restoreTree(path, date, false);
+  }
+
+  @Override
+  public Page restoreTree(final String path, final Calendar date, final boolean preserveNV) throws WCMException {
+    try {
+      // remove pages that did not exist at the given point in time
+      if (!preserveNV) {
+        removeNonVersionedPages(path, date);
+      }
+      // restore all revisions (paths are sorted, so parents are restored before their children)
+      for (String pagePath : revisionStore.getDescendantPaths(path)) {
+        MockPageRevisionStore.Entry entry = revisionStore.getRevisionAt(pagePath, date);
+        if (entry != null) {
+          restoreRevision(entry);
+        }
+      }
+      resourceResolver.commit();
+    }
+    catch (PersistenceException ex) {
+      throw new WCMException("Restoring tree at " + path + " failed.", ex);
+    }
+    return getPage(path);
+  }
+
+  private void removeNonVersionedPages(final String path, final Calendar date) throws PersistenceException {
+    Resource rootResource = resourceResolver.getResource(path);
+    if (rootResource == null) {
+      return;
+    }
+    List<Resource> pagesToRemove = new ArrayList<>();
+    Iterator<Page> pages = PageTreeWalker.iterate(rootResource, null, PageTreeWalker.UNLIMITED_DEPTH);
+    while (pages.hasNext()) {
+      Page page = pages.next();
+      if (revisionStore.getRevisionAt(page.getPath(), date) == null) {
+        pagesToRemove.add(page.adaptTo(Resource.class));
+      }
+    }
+    for (Resource pageResource : pagesToRemove) {
+      // parent page may already be removed
+      if (resourceResolver.getResource(pageResource.getPath()) != null) {
+        resourceResolver.delete(pageResource);
+      }
+    }
+  }
+
+  /**
+   * Restores the latest revisions of the child pages of a deleted page that was restored.
+   * Pages whose parent cannot be restored are skipped.
+   */
+  private void restoreChildPages(final String path) throws PersistenceException {
+    // paths are sorted, so parents are restored before their children
+    for (String pagePath : revisionStore.getDescendantPaths(path)) {
+      if (StringUtils.equals(pagePath, path)
+          || resourceResolver.getResource(pagePath) != null
+          || resourceResolver.getResource(ResourceUtil.getParent(pagePath)) == null) {
+        continue;
+      }
+      MockPageRevisionStore.Entry entry = revisionStore.getRevisionAt(pagePath, null);
+      if (entry != null) {
+        restoreRevision(entry);
+      }
+    }
+  }
+
+  /**
+   * Restores the given revision. If the page still exists, only the content that differs from the
+   * revision is rewritten: the properties of the page node are replaced and the page content is recreated.
+   * Child pages are left untouched.
+   */
+  private Page restoreRevision(MockPageRevisionStore.Entry entry) throws PersistenceException {
+    ResourceSnapshot snapshot = entry.getSnapshot();
+    Resource pageResource = resourceResolver.getResource(entry.getPath());
+    if (pageResource == null) {
+      Resource parentResource = resourceResolver.getResource(ResourceUtil.getParent(entry.getPath()));
+      if (parentResource == null) {
+        throw new PersistenceException("Parent of page " + entry.getPath() + " does not exist.");
+      }
+      pageResource = snapshot.restore(parentResource, resourceResolver);
+    }
+    else if (!snapshot.matches(pageResource, MockPageManager::isPageRevisionContent)) {
+      snapshot.restoreProperties(pageResource);
+      for (Resource child : pageResource.getChildren()) {
+        if (isPageRevisionContent(child)) {
+          resourceResolver.delete(child);
+        }
+      }
+      snapshot.restoreChildren(pageResource, resourceResolver);
+    }
+    return pageResource.adaptTo(Page.class);
+  }
+
+  /**
+   * Revisions contain the page with its content, but not its child pages.
+   */
+  private static boolean isPageRevisionContent(Resource child) {
+    return PageTreeWalker.toPage(child) == null;
+  }
+
+  private Collection<Revision> toRevisions(List<MockPageRevisionStore.Entry> entries) {
+    List<Revision> revisions = new ArrayList<>();
+    for (MockPageRevisionStore.Entry entry : entries) {
+      revisions.add(new MockRevision(entry, resourceResolver));
+    }
+    return revisions;
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
@@ -368,56 +574,6 @@ class MockPageManager extends SlingAdaptable implements PageManager {
     throw new UnsupportedOperationException();
   }
 
-  @Override
-  public Revision createRevision(final Page page) throws WCMException {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Revision createRevision(final Page page, final String label, final String comment) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Collection<Revision> getRevisions(final String path, final Calendar cal) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Collection<Revision> getRevisions(final String path, final Calendar cal, final boolean includeNoLocal) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Collection<Revision> getChildRevisions(final String parentPath, final Calendar cal) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Collection<Revision> getChildRevisions(final String parentPath, final Calendar cal, final boolean includeNoLocal) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Collection<Revision> getChildRevisions(final String parentPath, final String treeRoot, final Calendar cal) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Page restore(final String path, final String revisionId) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Page restoreTree(final String path, final Calendar date) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Page restoreTree(final String path, final Calendar date, final boolean preserveNV) {
-    throw new UnsupportedOperationException();
-  }
-
   @Override
   public Page move(Page page, String destination, String beforeName, boolean shallow,
       boolean resolveConflict, String[] adjustRefs, String[] publishRefs) throws WCMException {
@@ -22,6 +22,7 @@ package io.wcm.testing.mock.aem;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 
 import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.PageManagerFactory;
@@ -33,9 +34,22 @@ import com.day.cq.wcm.api.PageManagerFactory;
 @ProviderType
 public final class MockPageManagerFactory implements PageManagerFactory {
 
+  // page revisions of page managers that are not provided by the adapter factory
+  private final MockPageRevisionStore pageRevisionStore = new MockPageRevisionStore();
+
+  @Deactivate
+  private void deactivate() {
+    pageRevisionStore.discard();
+  }
+
   @Override
   public PageManager getPageManager(ResourceResolver resourceResolver) {
-    return new MockPageManager(resourceResolver);
+    // prefer adapting the resource resolver to share page revisions with the page managers of the context
+    PageManager pageManager = resourceResolver.adaptTo(PageManager.class);
+    if (pageManager != null) {
+      return pageManager;
+    }
+    return new MockPageManager(resourceResolver, pageRevisionStore);
   }
 
 }
@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
+
+/**
+ * In-memory storage for page revisions.
+ * Each revision holds a {@link ResourceSnapshot} of the page that shares all unchanged nodes
+ * with the previous revision of the same page.
+ * One instance is shared by all page managers of the same context.
+ */
+final class MockPageRevisionStore {
+
+  // revisions per page path, ordered by page path and creation order
+  private final TreeMap<String, List<Entry>> revisionsByPath = new TreeMap<>();
+  private final Map<String, Entry> revisionsById = new HashMap<>();
+  private long lastTimestamp;
+
+  /**
+   * Adds a new revision.
+   * @param path Page path
+   * @param snapshot Page snapshot
+   * @param label Label
+   * @param comment Comment
+   * @return Revision entry
+   */
+  synchronized @NotNull Entry add(@NotNull String path, @NotNull ResourceSnapshot snapshot,
+      @Nullable String label, @Nullable String comment) {
+    List<Entry> revisions = revisionsByPath.computeIfAbsent(path, key -> new ArrayList<>());
+    Entry entry = new Entry(UUID.randomUUID().toString(), "1." + revisions.size(), path,
+        snapshot, label, comment, nextCreated());
+    revisions.add(entry);
+    revisionsById.put(entry.getId(), entry);
+    return entry;
+  }
+
+  /**
+   * Creation dates are strictly increasing, so revisions created within the same millisecond are still
+   * distinguished when looking up revisions by date.
+   * @return Date for a new revision
+   */
+  private @NotNull Calendar nextCreated() {
+    lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(lastTimestamp);
+    return calendar;
+  }
+
+  /**
+   * Removes all revisions and deletes the temporary files holding their binary data.
+   */
+  synchronized void discard() {
+    for (Entry entry : revisionsById.values()) {
+      entry.getSnapshot().discard();
+    }
+    revisionsByPath.clear();
+    revisionsById.clear();
+  }
+
+  /**
+   * @param path Page path
+   * @return Latest snapshot of the given page or null if no revision exists
+   */
+  synchronized @Nullable ResourceSnapshot getLatestSnapshot(@NotNull String path) {
+    List<Entry> revisions = revisionsByPath.get(path);
+    if (revisions == null || revisions.isEmpty()) {
+      return null;
+    }
+    return revisions.get(revisions.size() - 1).getSnapshot();
+  }
+
+  /**
+   * @param id Revision id
+   * @return Revision entry or null
+   */
+  synchronized @Nullable Entry get(@NotNull String id) {
+    return revisionsById.get(id);
+  }
+
+  /**
+   * @param path Page path
+   * @param date Point in time (optional)
+   * @return All revisions of the given page created at or before the given date, oldest first
+   */
+  synchronized @NotNull List<Entry> getRevisions(@NotNull String path, @Nullable Calendar date) {
+    List<Entry> revisions = revisionsByPath.get(path);
+    if (revisions == null) {
+      return Collections.emptyList();
+    }
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : revisions) {
+      if (entry.isCreatedAtOrBefore(date)) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param path Page path
+   * @param date Point in time (optional)
+   * @return Latest revision of the given page created at or before the given date, or null
+   */
+  synchronized @Nullable Entry getRevisionAt(@NotNull String path, @Nullable Calendar date) {
+    List<Entry> revisions = revisionsByPath.get(path);
+    if (revisions == null) {
+      return null;
+    }
+    for (int i = revisions.size() - 1; i >= 0; i--) {
+      Entry entry = revisions.get(i);
+      if (entry.isCreatedAtOrBefore(date)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param parentPath Parent path
+   * @return Paths of all pages below the given parent path that have revisions (direct children only)
+   */
+  synchronized @NotNull List<String> getChildPaths(@NotNull String parentPath) {
+    List<String> result = new ArrayList<>();
+    for (String path : getDescendantPaths(parentPath)) {
+      if (StringUtils.equals(ResourceUtil.getParent(path), parentPath)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param rootPath Root path
+   * @return Paths of all pages at or below the given root path that have revisions, parents before children
+   */
+  synchronized @NotNull List<String> getDescendantPaths(@NotNull String rootPath) {
+    List<String> result = new ArrayList<>();
+    // paths are sorted, so all descendants follow the root path directly
+    for (String path : revisionsByPath.tailMap(rootPath, true).keySet()) {
+      if (StringUtils.equals(path, rootPath) || StringUtils.startsWith(path, rootPath + "/")) {
+        result.add(path);
+      }
+      else if (!StringUtils.startsWith(path, rootPath)) {
+        break;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Revision data stored for a page.
+   */
+  static final class Entry {
+
+    private final String id;
+    private final String name;
+    private final String path;
+    private final ResourceSnapshot snapshot;
+    private final String label;
+    private final String comment;
+    private final Calendar created;
+
+    Entry(String id, String name, String path, ResourceSnapshot snapshot, String label, String comment, Calendar created) {
+      this.id = id;
+      this.name = name;
+      this.path = path;
+      this.snapshot = snapshot;
+      this.label = label;
+      this.comment = comment;
+      this.created = created;
+    }
+
+    String getId() {
+      return this.id;
+    }
+
+    String getName() {
+      return this.name;
+    }
+
+    String getPath() {
+      return this.path;
+    }
+
+    ResourceSnapshot getSnapshot() {
+      return this.snapshot;
+    }
+
+    String getLabel() {
+      return this.label;
+    }
+
+    String getComment() {
+      return this.comment;
+    }
+
+    Calendar getCreated() {
+      return (Calendar)this.created.clone();
+    }
+
+    boolean isCreatedAtOrBefore(@Nullable Calendar date) {
+      return date == null || !created.after(date);
+    }
+
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Calendar;
+
+import javax.jcr.version.Version;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.NotNull;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Revision;
+
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
+
+/**
+ * Mock implementation of {@link Revision}.
+ */
+class MockRevision implements Revision {
+
+  private final MockPageRevisionStore.Entry entry;
+  private final ResourceResolver resourceResolver;
+  private final ValueMap properties;
+
+  MockRevision(@NotNull MockPageRevisionStore.Entry entry, @NotNull ResourceResolver resourceResolver) {
+    this.entry = entry;
+    this.resourceResolver = resourceResolver;
+    ResourceSnapshot contentSnapshot = entry.getSnapshot().getChild(JcrConstants.JCR_CONTENT);
+    if (contentSnapshot != null) {
+      this.properties = new ValueMapDecorator(contentSnapshot.getProperties());
+    }
+    else {
+      this.properties = ValueMap.EMPTY;
+    }
+  }
+
+  MockPageRevisionStore.Entry getEntry() {
+    return this.entry;
+  }
+
+  @Override
+  public String getId() {
+    return entry.getId();
+  }
+
+  @Override
+  public String getLabel() {
+    return entry.getLabel();
+  }
+
+  @Override
+  public String getComment() {
+    return entry.getComment();
+  }
+
+  @Override
+  public Calendar getCreated() {
+    return entry.getCreated();
+  }
+
+  @Override
+  public ValueMap getProperties() {
+    return this.properties;
+  }
+
+  @Override
+  public String getTitle() {
+    return properties.get(JcrConstants.JCR_TITLE, String.class);
+  }
+
+  @Override
+  public String getDescription() {
+    return properties.get(JcrConstants.JCR_DESCRIPTION, String.class);
+  }
+
+  @Override
+  public String getNavigationTitle() {
+    return properties.get(NameConstants.PN_NAV_TITLE, String.class);
+  }
+
+  @Override
+  public String getPageTitle() {
+    return properties.get(NameConstants.PN_PAGE_TITLE, String.class);
+  }
+
+  @Override
+  public Calendar getLastModified() {
+    return properties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+  }
+
+  @Override
+  public String getParentPath() {
+    return ResourceUtil.getParent(entry.getPath());
+  }
+
+  @Override
+  public boolean isDeleted() {
+    return resourceResolver.getResource(entry.getPath()) == null;
+  }
+
+  /**
+   * @return Path of the page this revision belongs to
+   */
+  public String getPath() {
+    return entry.getPath();
+  }
+
+  /**
+   * @return Version name of this revision
+   */
+  public String getName() {
+    return entry.getName();
+  }
+
+  /**
+   * @return Version history id (the page path is used as identifier)
+   */
+  public String getVersionHistoryId() {
+    return entry.getPath();
+  }
+
+  @Override
+  public String toString() {
+    return "MockRevision [id=" + entry.getId() + ", path=" + entry.getPath() + ", name=" + entry.getName() + "]";
+  }
+
+
+  // --- unsupported operations ---
+
+  @Override
+  public Version getVersion() {
+    throw new UnsupportedOperationException();
+  }
+
+}
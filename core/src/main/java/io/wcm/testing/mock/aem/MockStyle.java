@@ -23,7 +23,9 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -39,14 +41,36 @@ class MockStyle implements Style {
 
   private final ValueMap props;
   private final Design design;
+  private final Cell cell;
+  private final String path;
+  private final Map<String, String> definingPaths;
+  private final ResourceResolver resourceResolver;
 
   /**
    * @param props Value map for style properties
    * @param design Design
+   * @param cell Cell (optional)
+   * @param path Style path (optional)
+   * @param definingPaths Path of the resource defining each property (optional).
+   *          If not set, all properties are defined by the style path.
+   * @param resourceResolver Resource resolver (optional)
    */
-  MockStyle(@NotNull ValueMap props, @Nullable Design design) {
+  MockStyle(@NotNull ValueMap props, @Nullable Design design, @Nullable Cell cell, @Nullable String path,
+      @Nullable Map<String, String> definingPaths, @Nullable ResourceResolver resourceResolver) {
     this.props = props;
     this.design = design;
+    this.cell = cell;
+    this.path = path;
+    this.definingPaths = definingPaths;
+    this.resourceResolver = resourceResolver;
+  }
+
+  /**
+   * @param props Value map for style properties
+   * @param design Design
+   */
+  MockStyle(@NotNull ValueMap props, @Nullable Design design) {
+    this(props, design, null, null, null, null);
   }
 
   /**
@@ -61,6 +85,53 @@ class MockStyle implements Style {
     return design;
   }
 
+  @Override
+  public Cell getCell() {
+    return cell;
+  }
+
+  @Override
+  public String getPath() {
+    return path;
+  }
+
+  @Override
+  public String getDefiningPath(String name) {
+    if (definingPaths != null) {
+      return definingPaths.get(name);
+    }
+    if (props.containsKey(name)) {
+      return path;
+    }
+    return null;
+  }
+
+  @Override
+  public Resource getDefiningResource(String name) {
+    String definingPath = getDefiningPath(name);
+    if (definingPath == null || resourceResolver == null) {
+      return null;
+    }
+    return resourceResolver.getResource(definingPath);
+  }
+
+  @Override
+  public Style getSubStyle(String relPath) {
+    String relativePath = StringUtils.removeStart(relPath, "/");
+    if (cell != null && design instanceof MockDesign) {
+      String cellPath = StringUtils.isEmpty(cell.getPath()) ? relativePath : cell.getPath() + "/" + relativePath;
+      return ((MockDesign)design).getStyle(cellPath);
+    }
+    if (path != null && resourceResolver != null) {
+      String subPath = path + "/" + relativePath;
+      Resource resource = resourceResolver.getResource(subPath);
+      if (resource != null) {
+        return new MockStyle(resource.getValueMap(), design, null, subPath, null, resourceResolver);
+      }
+    }
+    return new MockStyle(ValueMap.EMPTY, design);
+  }
+
 
   // --- delegate methods to ValueMap ---
 
@@ -146,32 +217,4 @@ class MockStyle implements Style {
     return this.props.hashCode();
   }
 
-
-  // --- unsupported operations ---
-
-  @Override
-  public Cell getCell() {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public String getDefiningPath(String arg0) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Resource getDefiningResource(String arg0) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public String getPath() {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Style getSubStyle(String arg0) {
-    throw new UnsupportedOperationException();
-  }
-
 }
@@ -0,0 +1,285 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static com.day.cq.commons.jcr.JcrConstants.JCR_PRIMARYTYPE;
+import static com.day.cq.wcm.api.NameConstants.NT_PAGE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.day.cq.commons.Filter;
+import com.day.cq.wcm.api.Page;
+
+/**
+ * Lazy iteration over page trees, and parallel walking of page trees.
+ * <p>
+ * Pages are detected by their primary type and instantiated directly, without going through the adapter manager.
+ * The <code>jcr:content</code> subtrees of pages are never descended into. Non-page resources (e.g. folders)
+ * are descended into, but not returned.
+ * </p>
+ */
+@ProviderType
+public final class PageTreeWalker {
+
+  /**
+   * Max. depth value for iterating the whole subtree.
+   */
+  public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+  private PageTreeWalker() {
+    // static methods only
+  }
+
+  /**
+   * Iterates lazily over all pages below the given root page (excluding the root page itself).
+   * No lists of pages are materialized - resources are read only when the iterator advances.
+   * @param root Root page
+   * @param filter Filter for pages to include (optional). Pages not included are still descended into.
+   * @param maxDepth Max. number of hierarchy levels below the root page. 1 = only direct children.
+   * @return Page iterator
+   */
+  public static @NotNull Iterator<Page> iterate(@NotNull Page root, @Nullable Filter<Page> filter, int maxDepth) {
+    return iterate(toResource(root), filter, maxDepth);
+  }
+
+  /**
+   * Iterates lazily over all pages below the given root resource (excluding the root resource itself).
+   * @param root Root resource
+   * @param filter Filter for pages to include (optional). Pages not included are still descended into.
+   * @param maxDepth Max. number of hierarchy levels below the root resource. 1 = only direct children.
+   * @return Page iterator
+   */
+  public static @NotNull Iterator<Page> iterate(@NotNull Resource root, @Nullable Filter<Page> filter, int maxDepth) {
+    return new PageIterator(root, filter, maxDepth);
+  }
+
+  /**
+   * Streams lazily over all pages below the given root page (excluding the root page itself).
+   * @param root Root page
+   * @param filter Filter for pages to include (optional). Pages not included are still descended into.
+   * @param maxDepth Max. number of hierarchy levels below the root page. 1 = only direct children.
+   * @return Page stream (sequential)
+   */
+  public static @NotNull Stream<Page> stream(@NotNull Page root, @Nullable Filter<Page> filter, int maxDepth) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterate(root, filter, maxDepth),
+        Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+  }
+
+  /**
+   * Walks all pages below the given root page (excluding the root page itself) in parallel using a fork/join pool.
+   * Each subtree is handed over to a worker thread. Each worker thread uses its own resource resolver
+   * (cloned from the resource resolver of the root page), so only content that is committed is visible
+   * to the workers. The page instances passed to the consumer are only valid within the consumer call.
+   * @param root Root page
+   * @param filter Filter for pages to include (optional). Pages not included are still descended into.
+   * @param maxDepth Max. number of hierarchy levels below the root page. 1 = only direct children.
+   * @param parallelism Number of worker threads
+   * @param consumer Consumer that is called for each page. Has to be thread-safe.
+   */
+  public static void walkParallel(@NotNull Page root, @Nullable Filter<Page> filter, int maxDepth,
+      int parallelism, @NotNull Consumer<Page> consumer) {
+    Resource rootResource = toResource(root);
+    ResourceResolver rootResolver = rootResource.getResourceResolver();
+    Map<Thread, ResourceResolver> workerResolvers = new ConcurrentHashMap<>();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new SubtreeTask(rootResource.getPath(), 0, new WalkContext(rootResolver, workerResolvers, filter, maxDepth, consumer)));
+    }
+    finally {
+      pool.shutdown();
+      workerResolvers.values().forEach(ResourceResolver::close);
+    }
+  }
+
+  private static @NotNull Resource toResource(@NotNull Page page) {
+    Resource resource = page.adaptTo(Resource.class);
+    if (resource == null) {
+      throw new IllegalArgumentException("Page is not backed by a resource: " + page.getPath());
+    }
+    return resource;
+  }
+
+  static @Nullable Page toPage(@NotNull Resource resource) {
+    if (StringUtils.equals(resource.getValueMap().get(JCR_PRIMARYTYPE, String.class), NT_PAGE)) {
+      return new MockPage(resource);
+    }
+    return null;
+  }
+
+  static boolean isPageContent(@NotNull Resource resource) {
+    return StringUtils.equals(resource.getName(), JCR_CONTENT);
+  }
+
+
+  /**
+   * Depth-first page iterator that keeps only one child iterator per hierarchy level on its stack.
+   */
+  private static final class PageIterator implements Iterator<Page> {
+
+    private final Filter<Page> filter;
+    private final int maxDepth;
+    private final Deque<Iterator<Resource>> stack = new ArrayDeque<>();
+    private Page next;
+
+    PageIterator(@NotNull Resource root, @Nullable Filter<Page> filter, int maxDepth) {
+      this.filter = filter;
+      this.maxDepth = maxDepth;
+      if (maxDepth > 0) {
+        stack.push(root.listChildren());
+      }
+      this.next = seek();
+    }
+
+    private Page seek() {
+      while (!stack.isEmpty()) {
+        Iterator<Resource> children = stack.peek();
+        if (!children.hasNext()) {
+          stack.pop();
+          continue;
+        }
+        Resource child = children.next();
+        if (isPageContent(child)) {
+          continue;
+        }
+        // stack size equals the depth of the current child relative to the root
+        if (stack.size() < maxDepth) {
+          stack.push(child.listChildren());
+        }
+        Page page = toPage(child);
+        if (page != null && (filter == null || filter.includes(page))) {
+          return page;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Page next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Page result = next;
+      next = seek();
+      return result;
+    }
+
+  }
+
+  private static final class WalkContext {
+
+    private final ResourceResolver rootResolver;
+    private final Map<Thread, ResourceResolver> workerResolvers;
+    private final Filter<Page> filter;
+    private final int maxDepth;
+    private final Consumer<Page> consumer;
+
+    WalkContext(ResourceResolver rootResolver, Map<Thread, ResourceResolver> workerResolvers,
+        Filter<Page> filter, int maxDepth, Consumer<Page> consumer) {
+      this.rootResolver = rootResolver;
+      this.workerResolvers = workerResolvers;
+      this.filter = filter;
+      this.maxDepth = maxDepth;
+      this.consumer = consumer;
+    }
+
+    ResourceResolver getWorkerResolver() {
+      return workerResolvers.computeIfAbsent(Thread.currentThread(), thread -> {
+        try {
+          return rootResolver.clone(null);
+        }
+        catch (LoginException ex) {
+          throw new RuntimeException("Unable to clone resource resolver for worker thread.", ex);
+        }
+      });
+    }
+
+  }
+
+  @SuppressWarnings("serial")
+  private static final class SubtreeTask extends RecursiveAction {
+
+    private final String path;
+    private final int depth;
+    private final transient WalkContext walkContext;
+
+    SubtreeTask(String path, int depth, WalkContext walkContext) {
+      this.path = path;
+      this.depth = depth;
+      this.walkContext = walkContext;
+    }
+
+    @Override
+    protected void compute() {
+      if (depth >= walkContext.maxDepth) {
+        return;
+      }
+      Resource resource = walkContext.getWorkerResolver().getResource(path);
+      if (resource == null) {
+        return;
+      }
+      List<SubtreeTask> subtasks = new ArrayList<>();
+      Iterator<Resource> children = resource.listChildren();
+      while (children.hasNext()) {
+        Resource child = children.next();
+        if (isPageContent(child)) {
+          continue;
+        }
+        Page page = toPage(child);
+        if (page != null && (walkContext.filter == null || walkContext.filter.includes(page))) {
+          walkContext.consumer.accept(page);
+        }
+        if (depth + 1 < walkContext.maxDepth) {
+          subtasks.add(new SubtreeTask(child.getPath(), depth + 1, walkContext));
+        }
+      }
+      invokeAll(subtasks);
+    }
+
+  }
+
+}
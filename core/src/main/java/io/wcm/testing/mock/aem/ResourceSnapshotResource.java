@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Iterator;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.AbstractResource;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
+
+/**
+ * Read-only resource view of a {@link ResourceSnapshot}, e.g. to access a content fragment version with the same
+ * implementation as the current content fragment. Binary properties are returned as input streams.
+ */
+final class ResourceSnapshotResource extends AbstractResource {
+
+  private static final String PN_RESOURCE_TYPE = "sling:resourceType";
+
+  private final ResourceSnapshot snapshot;
+  private final String path;
+  private final ResourceResolver resourceResolver;
+  private final ValueMap properties;
+  private final ResourceMetadata metadata = new ResourceMetadata();
+
+  ResourceSnapshotResource(@NotNull ResourceSnapshot snapshot, @NotNull String path, @NotNull ResourceResolver resourceResolver) {
+    this.snapshot = snapshot;
+    this.path = path;
+    this.resourceResolver = resourceResolver;
+    this.properties = new ValueMapDecorator(snapshot.getProperties());
+    this.metadata.setResolutionPath(path);
+  }
+
+  @Override
+  public @NotNull String getPath() {
+    return this.path;
+  }
+
+  @Override
+  public @NotNull String getResourceType() {
+    String resourceType = properties.get(PN_RESOURCE_TYPE, String.class);
+    if (resourceType == null) {
+      resourceType = properties.get(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+    }
+    return resourceType;
+  }
+
+  @Override
+  public @Nullable String getResourceSuperType() {
+    return null;
+  }
+
+  @Override
+  public @NotNull ResourceMetadata getResourceMetadata() {
+    return this.metadata;
+  }
+
+  @Override
+  public @NotNull ResourceResolver getResourceResolver() {
+    return this.resourceResolver;
+  }
+
+  @Override
+  public @NotNull ValueMap getValueMap() {
+    return this.properties;
+  }
+
+  @Override
+  public @Nullable Resource getChild(@NotNull String relPath) {
+    ResourceSnapshot current = snapshot;
+    for (String name : StringUtils.split(relPath, '/')) {
+      current = current.getChild(name);
+      if (current == null) {
+        return null;
+      }
+    }
+    return new ResourceSnapshotResource(current, path + "/" + StringUtils.strip(relPath, "/"), resourceResolver);
+  }
+
+  @Override
+  public @NotNull Iterator<Resource> listChildren() {
+    return snapshot.getChildren().stream()
+        .map(child -> (Resource)new ResourceSnapshotResource(child, path + "/" + child.getName(), resourceResolver))
+        .iterator();
+  }
+
+  @Override
+  public @NotNull Iterable<Resource> getChildren() {
+    return this::listChildren;
+  }
+
+  @Override
+  public boolean hasChildren() {
+    return !snapshot.getChildren().isEmpty();
+  }
+
+  @Override
+  @SuppressWarnings({ "unchecked", "null" })
+  public <AdapterType> @Nullable AdapterType adaptTo(@NotNull Class<AdapterType> type) {
+    if (type == ValueMap.class) {
+      return (AdapterType)properties;
+    }
+    return super.adaptTo(type);
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+
+/**
+ * Computes stamps of resources that cached data was resolved from, to detect changes of these resources.
+ */
+final class ResourceStamps {
+
+  private ResourceStamps() {
+    // static methods only
+  }
+
+  /**
+   * @param resource Resource
+   * @return Last modified date of the resource, or hash of its properties if it has no date. -1 if the resource
+   *         does not exist.
+   */
+  static long getStamp(@Nullable Resource resource) {
+    if (resource == null) {
+      return -1L;
+    }
+    long lastModified = getLastModified(resource);
+    if (lastModified != 0L) {
+      return lastModified;
+    }
+    long hash = 0L;
+    for (Map.Entry<String, Object> entry : resource.getValueMap().entrySet()) {
+      hash += entry.getKey().hashCode() ^ Arrays.deepHashCode(new Object[] { entry.getValue() });
+    }
+    return hash;
+  }
+
+  /**
+   * @param resource Resource
+   * @return Value of <code>cq:lastModified</code> or <code>jcr:lastModified</code>, 0 if not set
+   */
+  static long getLastModified(@Nullable Resource resource) {
+    if (resource == null) {
+      return 0L;
+    }
+    Calendar lastModified = resource.getValueMap().get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+    if (lastModified == null) {
+      lastModified = resource.getValueMap().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    }
+    return lastModified != null ? lastModified.getTimeInMillis() : 0L;
+  }
+
+}
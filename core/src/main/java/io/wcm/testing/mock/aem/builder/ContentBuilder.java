@@ -26,10 +26,14 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.AccessControlException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.ModifiableValueMap;
@@ -38,13 +42,13 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.mime.MimeTypeService;
 import org.apache.sling.testing.mock.osgi.MapUtil;
 import org.apache.sling.testing.mock.sling.builder.ImmutableValueMap;
 import org.apache.sling.testing.mock.sling.loader.ContentLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ProviderType;
-import org.osgi.service.event.EventAdmin;
 
 import com.adobe.cq.dam.cfm.ContentFragment;
 import com.day.cq.commons.jcr.JcrConstants;
@@ -64,6 +68,9 @@ import com.day.image.Layer;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.wcm.testing.mock.aem.context.AemContextImpl;
+import io.wcm.testing.mock.aem.dam.AssetFolderImporter;
+import io.wcm.testing.mock.aem.dam.MockAssetMetadataIndex;
+import io.wcm.testing.mock.aem.dam.MockDamEventDispatcher;
 
 /**
  * Helper class for building test content in the resource hierarchy with as less boilerplate code as possible.
@@ -74,11 +81,13 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
 
   static final String DUMMY_TEMPLATE = "/apps/sample/templates/template1";
   private static final String MIMETYPE_SVG = "image/svg+xml";
+  private static final int DEFAULT_BULK_COMMIT_INTERVAL = 1000;
 
   // cache generated dummy images in cache because often the a dummy image with the same parameter is reused.
   private static final Map<String, byte[]> DUMMY_IMAGE_CACHE = new HashMap<>();
 
   private final @Nullable AemContextImpl context;
+  private @Nullable Batch batch;
 
   /**
    * @param resourceResolver Resource resolver
@@ -142,21 +151,30 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
     if (parentPath == null) {
       throw new IllegalArgumentException("Resource has no parent: " + path);
     }
-    ensureResourceExists(parentPath);
+    if (batch != null) {
+      batch.operationStarted();
+    }
+    ensureParentExists(parentPath);
     String name = ResourceUtil.getName(path);
     try {
       PageManager pageManager = resourceResolver.adaptTo(PageManager.class);
       if (pageManager == null) {
         throw new RuntimeException("No page manager.");
       }
-      Page page = pageManager.create(parentPath, name, template, name, true);
+      Page page = pageManager.create(parentPath, name, template, name, batch == null);
       if (!pageProperties.isEmpty()) {
         ModifiableValueMap props = page.getContentResource().adaptTo(ModifiableValueMap.class);
         if (props == null) {
           throw new RuntimeException("No ModifiableValueMap.");
         }
         props.putAll(pageProperties);
-        resourceResolver.commit();
+        if (batch == null) {
+          resourceResolver.commit();
+        }
+      }
+      if (batch != null) {
+        batch.markExisting(page.getPath());
+        batch.operationCompleted();
       }
       return page;
     }
@@ -165,6 +183,21 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
     }
   }
 
+  /**
+   * Ensures the parent resource exists. Within a batch, parent paths that are already known to exist are not
+   * looked up again.
+   * @param parentPath Parent path
+   */
+  private void ensureParentExists(@NotNull String parentPath) {
+    if (batch != null && batch.isExisting(parentPath)) {
+      return;
+    }
+    ensureResourceExists(parentPath);
+    if (batch != null) {
+      batch.markExisting(parentPath);
+    }
+  }
+
   /**
    * Create content page.
    * If parent resource(s) do not exist they are created automatically using <code>nt:unstructured</code> nodes.
@@ -350,7 +383,14 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
     if (assetManager == null) {
       throw new RuntimeException("No asset manager.");
     }
-    Asset asset = assetManager.createAsset(path, inputStream, mimeType, true);
+    if (batch != null) {
+      batch.operationStarted();
+      String parentPath = ResourceUtil.getParent(path);
+      if (parentPath != null) {
+        ensureParentExists(parentPath);
+      }
+    }
+    Asset asset = assetManager.createAsset(path, inputStream, mimeType, batch == null);
 
     if (metadata != null && !metadata.isEmpty()) {
       String metadataPath = asset.getPath() + "/" + JcrConstants.JCR_CONTENT + "/" + DamConstants.METADATA_FOLDER;
@@ -363,8 +403,16 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
         throw new RuntimeException("No ModifiableValueMap.");
       }
       metadataProperties.putAll(metadata);
+      MockAssetMetadataIndex metadataIndex = getAssetMetadataIndex();
+      if (metadataIndex != null) {
+        metadataIndex.update(asset.adaptTo(Resource.class));
+      }
     }
 
+    if (batch != null) {
+      batch.markExisting(asset.getPath());
+      batch.operationCompleted();
+    }
     return asset;
   }
 
@@ -380,6 +428,32 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
     return asset(path, inputStream, mimeType, MapUtil.toMap(metadata));
   }
 
+  /**
+   * Imports all files from a directory tree in the file system as DAM assets. Subdirectories are created as
+   * DAM folders. The binaries are read and analyzed in parallel, the changes are committed in batches.
+   * @param path DAM folder path to import to
+   * @param directory Directory in the file system
+   * @return Number of assets created
+   */
+  public int assetFolder(@NotNull String path, @NotNull Path directory) {
+    return assetFolder(path, directory, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Imports all files from a directory tree in the file system as DAM assets. Subdirectories are created as
+   * DAM folders. The binaries are read and analyzed in parallel, the changes are committed in batches.
+   * @param path DAM folder path to import to
+   * @param directory Directory in the file system
+   * @param threads Number of threads reading the binaries
+   * @return Number of assets created
+   */
+  public int assetFolder(@NotNull String path, @NotNull Path directory, int threads) {
+    MimeTypeService mimeTypeService = context != null ? context.getService(MimeTypeService.class) : null;
+    return new AssetFolderImporter(resourceResolver, mimeTypeService)
+        .threads(threads)
+        .importFolder(directory, path);
+  }
+
   /**
    * Create dummy image
    * @param width Width
@@ -545,6 +619,38 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
     return contentFragmentTextOrStructured(path, text, mimeType, null);
   }
 
+  /**
+   * Create DAM content fragments from a JSON array or from newline-delimited JSON (NDJSON) with one fragment
+   * definition per line. The input is processed as stream, the changes are committed in batches.
+   * The DAM events for all created content fragments are sent once after the last commit.
+   * <p>
+   * Each fragment definition supports the properties <code>name</code> or <code>path</code>, <code>title</code>,
+   * <code>description</code>, <code>model</code>, <code>data</code>, <code>text</code>, <code>mimeType</code>,
+   * <code>variations</code>, <code>tags</code> and <code>metadata</code>.
+   * </p>
+   * @param parentPath Parent path for fragments defined by name
+   * @param reader JSON input. The reader is not closed.
+   * @return Number of content fragments created
+   */
+  public int contentFragments(@NotNull String parentPath, @NotNull Reader reader) {
+    return contentFragments(parentPath, reader, DEFAULT_BULK_COMMIT_INTERVAL);
+  }
+
+  /**
+   * Create DAM content fragments from a JSON array or from newline-delimited JSON (NDJSON) with one fragment
+   * definition per line. The input is processed as stream, the changes are committed in batches.
+   * The DAM events for all created content fragments are sent once after the last commit.
+   * @param parentPath Parent path for fragments defined by name
+   * @param reader JSON input. The reader is not closed.
+   * @param commitInterval Number of content fragments after which the changes are committed.
+   *          0 = commit only once at the end.
+   * @return Number of content fragments created
+   */
+  public int contentFragments(@NotNull String parentPath, @NotNull Reader reader, int commitInterval) {
+    return new ContentFragmentBulkLoader(resourceResolver, getDamEventDispatcher(), getAssetMetadataIndex(), commitInterval)
+        .load(parentPath, reader);
+  }
+
   @SuppressFBWarnings("STYLE")
   private ContentFragment contentFragmentTextOrStructured(@NotNull String path,
       @Nullable String text, @Nullable String mimeType,
@@ -583,17 +689,37 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
       resource(path + "/" + JcrConstants.JCR_CONTENT + "/data/master", data);
     }
 
+    MockAssetMetadataIndex metadataIndex = getAssetMetadataIndex();
+    if (metadataIndex != null) {
+      metadataIndex.update(resourceResolver.getResource(path));
+    }
+
     // send DamEvent after asset creation
-    if (context != null) {
-      EventAdmin eventAdmin = context.getService(EventAdmin.class);
-      if (eventAdmin != null) {
-        eventAdmin.sendEvent(DamEvent.assetCreated(path, resourceResolver.getUserID()).toEvent());
+    MockDamEventDispatcher eventDispatcher = getDamEventDispatcher();
+    if (eventDispatcher != null) {
+      eventDispatcher.dispatch(DamEvent.assetCreated(path, resourceResolver.getUserID()));
+      if (batch == null) {
+        eventDispatcher.commit();
       }
     }
 
     return resourceResolver.getResource(path).adaptTo(ContentFragment.class);
   }
 
+  private @Nullable MockDamEventDispatcher getDamEventDispatcher() {
+    if (context == null) {
+      return null;
+    }
+    return context.getService(MockDamEventDispatcher.class);
+  }
+
+  private @Nullable MockAssetMetadataIndex getAssetMetadataIndex() {
+    if (context == null) {
+      return null;
+    }
+    return context.getService(MockAssetMetadataIndex.class);
+  }
+
   /**
    * Adds a tag definition.
    * @param tagId Tag ID. May include namespace (separated by ":"). May include nested levels (separated by "/").
@@ -605,8 +731,17 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
       throw new RuntimeException("No tag manager.");
     }
     String tagTitle = ResourceUtil.getName(StringUtils.substringAfter(tagId, ":"));
+    if (batch != null) {
+      batch.operationStarted();
+    }
     try {
-      return tagManager.createTag(tagId, tagTitle, null, true);
+      // parent tags are created by the tag manager
+      Tag tag = tagManager.createTag(tagId, tagTitle, null, batch == null);
+      if (batch != null) {
+        batch.markExisting(tag.getPath());
+        batch.operationCompleted();
+      }
+      return tag;
     }
     catch (AccessControlException | InvalidTagFormatException ex) {
       throw new RuntimeException("Unable to create tag: " + tagId, ex);
@@ -649,4 +784,141 @@ public final class ContentBuilder extends org.apache.sling.testing.mock.sling.bu
     return resource(page, name, MapUtil.toMap(properties));
   }
 
+  /**
+   * Starts a batch scope: All pages, assets and tags created via this content builder are not committed
+   * individually, but only once when the batch is closed. Parent resources that are known to exist are not
+   * looked up again within the batch. If a content builder operation fails within the batch, the pending changes
+   * are discarded when the batch is closed.
+   * <p>
+   * Usage: <code>try (ContentBuilder.Batch batch = context.create().batch()) { ... }</code>
+   * </p>
+   * @return Batch scope that has to be closed to commit the changes
+   */
+  public @NotNull Batch batch() {
+    return batch(0);
+  }
+
+  /**
+   * Starts a batch scope: All pages, assets and tags created via this content builder are committed
+   * every <code>commitInterval</code> operations and when the batch is closed. Parent resources that are known
+   * to exist are not looked up again within the batch.
+   * @param commitInterval Number of create operations after which the changes are committed.
+   *          0 = commit only when the batch is closed.
+   * @return Batch scope that has to be closed to commit the changes
+   */
+  public @NotNull Batch batch(int commitInterval) {
+    if (batch != null) {
+      throw new IllegalStateException("A batch is already active for this content builder.");
+    }
+    batch = new Batch(commitInterval);
+    return batch;
+  }
+
+  /**
+   * Batch scope for creating content with a reduced number of commits.
+   */
+  public final class Batch implements AutoCloseable {
+
+    private final int commitInterval;
+    private final Set<String> existingPaths = new HashSet<>();
+    private int pendingOperations;
+    private boolean operationInProgress;
+    private boolean aborted;
+
+    Batch(int commitInterval) {
+      this.commitInterval = commitInterval;
+    }
+
+    boolean isExisting(@NotNull String path) {
+      return existingPaths.contains(path);
+    }
+
+    void markExisting(@NotNull String path) {
+      String currentPath = path;
+      while (currentPath != null && existingPaths.add(currentPath)) {
+        currentPath = ResourceUtil.getParent(currentPath);
+      }
+    }
+
+    void operationStarted() {
+      operationInProgress = true;
+    }
+
+    void operationCompleted() {
+      operationInProgress = false;
+      pendingOperations++;
+      if (commitInterval > 0 && pendingOperations >= commitInterval) {
+        commit();
+      }
+    }
+
+    /**
+     * Commits all pending changes of this batch.
+     */
+    public void commit() {
+      try {
+        resourceResolver.commit();
+        pendingOperations = 0;
+      }
+      catch (PersistenceException ex) {
+        throw new RuntimeException("Unable to commit batch.", ex);
+      }
+      // deliver DAM events queued while the batch was open
+      MockDamEventDispatcher eventDispatcher = getDamEventDispatcher();
+      if (eventDispatcher != null) {
+        eventDispatcher.commit();
+      }
+    }
+
+    /**
+     * Deletes a resource within the batch scope. The resource and its descendants are no longer assumed to exist
+     * when creating content below them. Resources that are deleted directly via the resource resolver while
+     * the batch is open have to be deleted via this method instead.
+     * @param path Resource path
+     */
+    public void delete(@NotNull String path) {
+      Resource resource = resourceResolver.getResource(path);
+      if (resource != null) {
+        try {
+          resourceResolver.delete(resource);
+        }
+        catch (PersistenceException ex) {
+          throw new RuntimeException("Unable to delete resource at " + path, ex);
+        }
+      }
+      existingPaths.removeIf(existingPath -> StringUtils.equals(existingPath, path)
+          || StringUtils.startsWith(existingPath, path + "/"));
+    }
+
+    /**
+     * Discards all pending changes of this batch. Closing the batch does not commit anything afterwards.
+     * Call this if the batch body fails outside of content builder operations.
+     */
+    public void abort() {
+      aborted = true;
+      resourceResolver.revert();
+    }
+
+    /**
+     * Commits all pending changes and ends the batch scope. If a content builder operation of this batch failed,
+     * or the batch was aborted, the pending changes are discarded instead.
+     */
+    @Override
+    public void close() {
+      try {
+        if (operationInProgress) {
+          // the batch body threw an exception within a content builder operation
+          abort();
+        }
+        if (!aborted) {
+          commit();
+        }
+      }
+      finally {
+        batch = null;
+      }
+    }
+
+  }
+
 }
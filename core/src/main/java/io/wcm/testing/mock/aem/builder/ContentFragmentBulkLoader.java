@@ -0,0 +1,331 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.builder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.stream.JsonParser;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.testing.mock.sling.loader.ContentLoader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.DamEvent;
+
+import io.wcm.testing.mock.aem.dam.MockAssetMetadataIndex;
+import io.wcm.testing.mock.aem.dam.MockDamEventDispatcher;
+import io.wcm.testing.mock.aem.impl.JsonProperties;
+
+/**
+ * Creates content fragments from a JSON array or from newline-delimited JSON (NDJSON) with one fragment per line.
+ * <p>
+ * The input is read as a stream, only one fragment is kept in memory at a time. The resources of each fragment are
+ * created directly below their parent without looking up the intermediate paths again, the changes are committed
+ * in batches. The <code>assetCreated</code> DAM events of all fragments are emitted as one batch after the last commit.
+ * There is one event per fragment, as event handlers expect the asset path in each DAM event.
+ * </p>
+ * <p>
+ * Supported properties for each fragment:
+ * </p>
+ * <ul>
+ * <li><code>name</code> (relative to the parent path) or <code>path</code> (absolute)</li>
+ * <li><code>title</code>, <code>description</code></li>
+ * <li><code>model</code>: Path of the content fragment model</li>
+ * <li><code>data</code>: Structured data of the master variation</li>
+ * <li><code>text</code>, <code>mimeType</code>: Text content for text-based fragments</li>
+ * <li><code>variations</code>: Object with variation name as key and <code>title</code>, <code>description</code>,
+ * <code>data</code> or <code>text</code> as value</li>
+ * <li><code>tags</code>: Array of tag IDs</li>
+ * <li><code>metadata</code>: Additional asset metadata</li>
+ * </ul>
+ */
+final class ContentFragmentBulkLoader {
+
+  static final String PN_MODEL = "cq:model";
+  static final String PN_TAGS = "cq:tags";
+
+  private static final String NT_SLING_FOLDER = "sling:Folder";
+  private static final String DEFAULT_TEXT_MIME_TYPE = "text/plain";
+
+  private final ResourceResolver resourceResolver;
+  private final ContentLoader contentLoader;
+  private final MockDamEventDispatcher eventDispatcher;
+  private final MockAssetMetadataIndex metadataIndex;
+  private final int commitInterval;
+
+  // parent folders that are known to exist
+  private final Map<String, Resource> folders = new HashMap<>();
+  private final List<String> createdPaths = new ArrayList<>();
+  private int pendingFragments;
+
+  ContentFragmentBulkLoader(@NotNull ResourceResolver resourceResolver, @Nullable MockDamEventDispatcher eventDispatcher,
+      @Nullable MockAssetMetadataIndex metadataIndex, int commitInterval) {
+    this.resourceResolver = resourceResolver;
+    this.contentLoader = new ContentLoader(resourceResolver);
+    this.eventDispatcher = eventDispatcher;
+    this.metadataIndex = metadataIndex;
+    this.commitInterval = commitInterval;
+  }
+
+  /**
+   * Creates all content fragments from the given JSON array or NDJSON input.
+   * @param parentPath Parent path for fragments defined by name
+   * @param reader JSON input. The reader is not closed.
+   * @return Number of content fragments created
+   */
+  int load(@NotNull String parentPath, @NotNull Reader reader) {
+    try {
+      BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
+      int first = peekNonWhitespace(bufferedReader);
+      if (first == '[') {
+        loadArray(parentPath, bufferedReader);
+      }
+      else if (first != -1) {
+        loadLines(parentPath, bufferedReader);
+      }
+      resourceResolver.commit();
+    }
+    catch (IOException | JsonException ex) {
+      throw new RuntimeException("Unable to load content fragments to " + parentPath, ex);
+    }
+
+    // send DamEvents for all fragments as one batch after the last commit
+    if (eventDispatcher != null) {
+      List<DamEvent> events = new ArrayList<>(createdPaths.size());
+      for (String path : createdPaths) {
+        events.add(DamEvent.assetCreated(path, resourceResolver.getUserID()));
+      }
+      eventDispatcher.dispatch(events);
+      eventDispatcher.commit();
+    }
+    return createdPaths.size();
+  }
+
+  /**
+   * Skips leading whitespace and returns the next character without consuming it.
+   */
+  private static int peekNonWhitespace(@NotNull BufferedReader reader) throws IOException {
+    while (true) {
+      reader.mark(1);
+      int c = reader.read();
+      if (c == -1 || !Character.isWhitespace(c)) {
+        reader.reset();
+        return c;
+      }
+    }
+  }
+
+  private void loadLines(@NotNull String parentPath, @NotNull BufferedReader reader) throws IOException {
+    String line = reader.readLine();
+    while (line != null) {
+      if (StringUtils.isNotBlank(line)) {
+        try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+          create(parentPath, jsonReader.readObject());
+        }
+      }
+      line = reader.readLine();
+    }
+  }
+
+  /**
+   * Reads the top-level objects of a JSON array one by one.
+   */
+  private void loadArray(@NotNull String parentPath, @NotNull Reader reader) throws IOException {
+    // do not close the parser, it would close the reader
+    JsonParser parser = Json.createParser(reader);
+    parser.next();
+    while (parser.hasNext()) {
+      JsonParser.Event event = parser.next();
+      if (event == JsonParser.Event.START_OBJECT) {
+        create(parentPath, parser.getObject());
+      }
+      else if (event == JsonParser.Event.END_ARRAY) {
+        return;
+      }
+      else {
+        throw new JsonException("Unexpected value in JSON array: " + event);
+      }
+    }
+    throw new JsonException("Unterminated JSON array.");
+  }
+
+  private void create(@NotNull String parentPath, @NotNull JsonObject json) throws IOException {
+    String path = json.getString("path", null);
+    if (path == null) {
+      String name = json.getString("name", null);
+      if (name == null) {
+        throw new JsonException("Content fragment without name or path: " + json);
+      }
+      path = parentPath + "/" + name;
+    }
+    Resource parent = ensureFolder(ResourceUtil.getParent(path));
+
+    String text = json.getString("text", null);
+    String mimeType = text != null ? json.getString("mimeType", DEFAULT_TEXT_MIME_TYPE) : null;
+
+    // create asset
+    Resource asset = resourceResolver.create(parent, ResourceUtil.getName(path),
+        Map.of(JcrConstants.JCR_PRIMARYTYPE, DamConstants.NT_DAM_ASSET));
+    Map<String, Object> contentProps = new HashMap<>();
+    contentProps.put(JcrConstants.JCR_PRIMARYTYPE, DamConstants.NT_DAM_ASSETCONTENT);
+    putIfNotNull(contentProps, JcrConstants.JCR_TITLE, json.getString("title", null));
+    putIfNotNull(contentProps, JcrConstants.JCR_DESCRIPTION, json.getString("description", null));
+    Resource content = resourceResolver.create(asset, JcrConstants.JCR_CONTENT, contentProps);
+    Resource renditions = resourceResolver.create(content, DamConstants.RENDITIONS_FOLDER,
+        Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FOLDER));
+
+    // store asset metadata
+    Map<String, Object> metadataProps = toMap(json.getJsonObject("metadata"));
+    metadataProps.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+    putIfNotNull(metadataProps, DamConstants.DC_FORMAT, mimeType);
+    JsonArray tags = json.getJsonArray("tags");
+    if (tags != null) {
+      metadataProps.put(PN_TAGS, JsonProperties.toArray(tags));
+    }
+    resourceResolver.create(content, DamConstants.METADATA_FOLDER, metadataProps);
+
+    // store structured data and model reference
+    JsonObject data = json.getJsonObject("data");
+    String model = json.getString("model", null);
+    Resource dataResource = null;
+    if (data != null || model != null) {
+      Map<String, Object> dataProps = new HashMap<>();
+      dataProps.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+      putIfNotNull(dataProps, PN_MODEL, model);
+      dataResource = resourceResolver.create(content, "data", dataProps);
+      if (data != null) {
+        resourceResolver.create(dataResource, "master", toMap(data));
+      }
+    }
+
+    // store text as original rendition
+    Resource modelResource = null;
+    if (text != null) {
+      createTextRendition(renditions, DamConstants.ORIGINAL_FILE, text, mimeType);
+      modelResource = resourceResolver.create(content, "model", Map.of());
+      Resource elements = resourceResolver.create(modelResource, "elements", Map.of());
+      resourceResolver.create(elements, "main", Map.of("name", "main", JcrConstants.JCR_TITLE, "Main"));
+    }
+
+    // create variations
+    JsonObject variations = json.getJsonObject("variations");
+    if (variations != null && !variations.isEmpty()) {
+      if (modelResource == null) {
+        modelResource = resourceResolver.create(content, "model", Map.of());
+      }
+      Resource variationsResource = resourceResolver.create(modelResource, "variations", Map.of());
+      for (String name : variations.keySet()) {
+        JsonObject variation = variations.getJsonObject(name);
+        resourceResolver.create(variationsResource, name, Map.of(
+            "name", name,
+            JcrConstants.JCR_TITLE, variation.getString("title", name),
+            JcrConstants.JCR_DESCRIPTION, variation.getString("description", "")));
+        JsonObject variationData = variation.getJsonObject("data");
+        if (variationData != null) {
+          if (dataResource == null) {
+            dataResource = resourceResolver.create(content, "data", Map.of());
+          }
+          resourceResolver.create(dataResource, name, toMap(variationData));
+        }
+        String variationText = variation.getString("text", null);
+        if (variationText != null) {
+          createTextRendition(renditions, name, variationText, StringUtils.defaultString(mimeType, DEFAULT_TEXT_MIME_TYPE));
+        }
+      }
+    }
+
+    if (metadataIndex != null) {
+      metadataIndex.update(asset);
+    }
+    createdPaths.add(path);
+
+    pendingFragments++;
+    if (commitInterval > 0 && pendingFragments >= commitInterval) {
+      resourceResolver.commit();
+      pendingFragments = 0;
+    }
+  }
+
+  private void createTextRendition(@NotNull Resource renditions, @NotNull String name, @NotNull String text,
+      @NotNull String mimeType) throws IOException {
+    try (InputStream is = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))) {
+      contentLoader.binaryFile(is, renditions.getPath() + "/" + name, mimeType);
+    }
+  }
+
+  private Resource ensureFolder(@NotNull String path) throws PersistenceException {
+    Resource resource = folders.get(path);
+    if (resource == null) {
+      resource = resourceResolver.getResource(path);
+      if (resource == null) {
+        String parentPath = ResourceUtil.getParent(path);
+        if (parentPath == null) {
+          throw new IllegalArgumentException("Invalid path: " + path);
+        }
+        resource = resourceResolver.create(ensureFolder(parentPath), ResourceUtil.getName(path),
+            Map.of(JcrConstants.JCR_PRIMARYTYPE, NT_SLING_FOLDER));
+      }
+      folders.put(path, resource);
+    }
+    return resource;
+  }
+
+  private static void putIfNotNull(@NotNull Map<String, Object> props, @NotNull String key, @Nullable Object value) {
+    if (value != null) {
+      props.put(key, value);
+    }
+  }
+
+  /**
+   * Converts a JSON object to properties, nested objects are not supported.
+   */
+  private static Map<String, Object> toMap(@Nullable JsonObject json) {
+    Map<String, Object> props = JsonProperties.toMap(json);
+    for (Map.Entry<String, Object> entry : props.entrySet()) {
+      if (entry.getValue() instanceof Map) {
+        throw new JsonException("Nested objects are not supported for property " + entry.getKey());
+      }
+    }
+    return props;
+  }
+
+}
@@ -19,6 +19,8 @@
  */
 package io.wcm.testing.mock.aem.context;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -45,6 +47,7 @@ import io.wcm.testing.mock.aem.MockAemAdapterFactory;
 import io.wcm.testing.mock.aem.MockComponentContext;
 import io.wcm.testing.mock.aem.MockContentPolicyStorage;
 import io.wcm.testing.mock.aem.MockExternalizer;
+import io.wcm.testing.mock.aem.MockImageDecoder;
 import io.wcm.testing.mock.aem.MockJcrTagManagerFactory;
 import io.wcm.testing.mock.aem.MockLanguageManager;
 import io.wcm.testing.mock.aem.MockLayerAdapterFactory;
@@ -54,6 +57,7 @@ import io.wcm.testing.mock.aem.builder.ContentBuilder;
 import io.wcm.testing.mock.aem.dam.MockAemDamAdapterFactory;
 import io.wcm.testing.mock.aem.dam.MockAssetHandler;
 import io.wcm.testing.mock.aem.dam.MockAssetStore;
+import io.wcm.testing.mock.aem.dam.MockDamEventDispatcher;
 import io.wcm.testing.mock.aem.dam.MockPublishUtils;
 import io.wcm.testing.mock.aem.granite.MockResourceCollectionManager;
 import io.wcm.testing.mock.aem.xf.MockExperienceFragmentAdapterFactory;
@@ -75,7 +79,9 @@ public class AemContextImpl extends SlingContextImpl {
 
     // adapter factories
     registerInjectActivateService(new MockAemAdapterFactory());
+    registerInjectActivateService(new MockDamEventDispatcher());
     registerInjectActivateService(new MockAemDamAdapterFactory());
+    registerInjectActivateService(new MockImageDecoder());
     registerInjectActivateService(new MockLayerAdapterFactory());
     registerInjectActivateService(new MockExperienceFragmentAdapterFactory());
 
@@ -191,6 +197,26 @@ public class AemContextImpl extends SlingContextImpl {
     return (ContentBuilder)this.contentBuilder;
   }
 
+  /**
+   * Starts a batch scope for the content builder of this context: All pages, assets and tags created via
+   * {@link #create()} are committed only once when the batch is closed.
+   * @return Batch scope that has to be closed to commit the changes
+   */
+  public @NotNull ContentBuilder.Batch batch() {
+    return create().batch();
+  }
+
+  /**
+   * Starts a batch scope for the content builder of this context: All pages, assets and tags created via
+   * {@link #create()} are committed every <code>commitInterval</code> operations and when the batch is closed.
+   * @param commitInterval Number of create operations after which the changes are committed.
+   *          0 = commit only when the batch is closed.
+   * @return Batch scope that has to be closed to commit the changes
+   */
+  public @NotNull ContentBuilder.Batch batch(int commitInterval) {
+    return create().batch(commitInterval);
+  }
+
   @Override
   public @Nullable Resource currentResource(@Nullable Resource resource) {
     Resource result = super.currentResource(resource);
@@ -300,6 +326,36 @@ public class AemContextImpl extends SlingContextImpl {
     return contentPolicyMapping(resourceType, MapUtil.toMap(properties));
   }
 
+  /**
+   * Creates mocked content policies with the given properties and maps each of them to all content resources with
+   * the given resource type. All policies and mappings are written in one pass and committed once, which is
+   * much faster than registering many policies individually.
+   * @param policies Content policy properties per resource type
+   * @return New content policy mappings per resource type
+   */
+  public @NotNull Map<String, ContentPolicyMapping> contentPolicyMappings(@NotNull Map<String, Map<String, Object>> policies) {
+    return MockContentPolicyStorage.storeContentPolicyMappings(policies, resourceResolver());
+  }
+
+  /**
+   * Creates mocked content policies from a JSON file in the classpath and maps each of them to all content resources
+   * with the given resource type. The JSON file contains an object with the resource types as keys and the content
+   * policy properties as values. All policies and mappings are written in one pass and committed once.
+   * @param classpathResource Classpath resource URL for JSON content
+   * @return New content policy mappings per resource type
+   */
+  public @NotNull Map<String, ContentPolicyMapping> contentPolicyMappings(@NotNull String classpathResource) {
+    try (InputStream is = AemContextImpl.class.getResourceAsStream(classpathResource)) {
+      if (is == null) {
+        throw new IllegalArgumentException("Classpath resource not found: " + classpathResource);
+      }
+      return MockContentPolicyStorage.storeContentPolicyMappings(is, resourceResolver());
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read classpath resource: " + classpathResource, ex);
+    }
+  }
+
   @Override
   protected @Nullable Object resolveSlingBindingProperty(@NotNull String property,
       @NotNull SlingHttpServletRequest bindingsContextRequest) {
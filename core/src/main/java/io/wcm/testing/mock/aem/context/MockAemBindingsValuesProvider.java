@@ -65,18 +65,18 @@ class MockAemBindingsValuesProvider implements BindingsValuesProvider {
     }
     SlingHttpServletRequest request = (SlingHttpServletRequest)bindings.get(SlingBindings.REQUEST);
     for (SlingBindingsProperty property : SlingBindingsProperty.values()) {
-      putProperty(bindings, property.key(), request);
+      putProperty(bindings, property, request);
     }
   }
 
-  private void putProperty(Bindings bindings, String key, SlingHttpServletRequest request) {
+  private void putProperty(Bindings bindings, SlingBindingsProperty property, SlingHttpServletRequest request) {
     if (bindings instanceof LazyBindings) {
-      bindings.put(key, (LazyBindings.Supplier)() -> resolveSlingBindingProperty(context, key, request));
+      bindings.put(property.key(), (LazyBindings.Supplier)() -> resolveSlingBindingProperty(context, property, request));
     }
     else {
-      Object value = resolveSlingBindingProperty(context, key, request);
+      Object value = resolveSlingBindingProperty(context, property, request);
       if (value != null) {
-        bindings.put(key, value);
+        bindings.put(property.key(), value);
       }
     }
   }
@@ -19,9 +19,19 @@
  */
 package io.wcm.testing.mock.aem.context;
 
-import org.apache.commons.lang3.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.xss.XSSAPI;
@@ -29,6 +39,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.day.cq.commons.ValueMapWrapper;
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.components.Component;
 import com.day.cq.wcm.api.components.ComponentContext;
@@ -50,49 +62,70 @@ final class MockAemSlingBindings {
 
   enum SlingBindingsProperty {
 
-    COMPONENT_CONTEXT("componentContext"),
+    COMPONENT_CONTEXT("componentContext", false, (context, request) -> getWcmComponentContext(request)),
+
+    EDIT_CONTEXT("editContext", false, (context, request) -> getEditContext(request)),
 
-    EDIT_CONTEXT("editContext"),
+    PROPERTIES("properties", false, (context, request) -> getProperties(request)),
 
-    PROPERTIES("properties"),
+    PAGE_MANAGER("pageManager", false, (context, request) -> context.pageManager()),
 
-    PAGE_MANAGER("pageManager"),
+    CURRENT_PAGE("currentPage", true, (context, request) -> getCurrentPage(request)),
 
-    CURRENT_PAGE("currentPage"),
+    RESOURCE_PAGE("resourcePage", true, (context, request) -> getResourcePage(request, context)),
 
-    RESOURCE_PAGE("resourcePage"),
+    PAGE_PROPERTIES("pageProperties", true, (context, request) -> getPageProperties(request)),
 
-    PAGE_PROPERTIES("pageProperties"),
+    COMPONENT("component", false, (context, request) -> getComponent(request)),
 
-    COMPONENT("component"),
+    DESIGNER("designer", false, (context, request) -> getDesigner(request)),
 
-    DESIGNER("designer"),
+    CURRENT_DESIGN("currentDesign", false, (context, request) -> getCurrentDesign(request)),
 
-    CURRENT_DESIGN("currentDesign"),
+    RESOURCE_DESIGN("resourceDesign", false, (context, request) -> getResourceDesign(request, context)),
 
-    RESOURCE_DESIGN("resourceDesign"),
+    CURRENT_STYLE("currentStyle", false, (context, request) -> getStyle(request)),
 
-    CURRENT_STYLE("currentStyle"),
+    XSSAPI("xssAPI", false, (context, request) -> getXssApi(context)),
 
-    XSSAPI("xssAPI"),
+    CURRENT_CONTENT_POLICY("currentContentPolicy", false, (context, request) -> getCurrentContentPolicy(request)),
 
-    CURRENT_CONTENT_POLICY("currentContentPolicy"),
+    CURRENT_CONTENT_POLICY_PROPS("currentContentPolicyProperties", false, (context, request) -> getCurrentContentPolicyProperties(request));
 
-    CURRENT_CONTENT_POLICY_PROPS("currentContentPolicyProperties");
+    private static final Map<String, SlingBindingsProperty> PROPERTIES_BY_KEY = Arrays.stream(values())
+        .collect(Collectors.toMap(SlingBindingsProperty::key, Function.identity()));
 
     private final String key;
+    private final boolean memoized;
+    private final Resolver resolver;
 
-    SlingBindingsProperty(String key) {
+    SlingBindingsProperty(String key, boolean memoized, Resolver resolver) {
       this.key = key;
+      this.memoized = memoized;
+      this.resolver = resolver;
     }
 
     public String key() {
       return this.key;
     }
 
+    /**
+     * @param key Binding key
+     * @return Property or null if the key is not an AEM-specific binding
+     */
+    static @Nullable SlingBindingsProperty forKey(@NotNull String key) {
+      return PROPERTIES_BY_KEY.get(key);
+    }
+
+  }
+
+  @FunctionalInterface
+  private interface Resolver {
+    Object resolve(@NotNull AemContextImpl context, @NotNull SlingHttpServletRequest request);
   }
 
   private static final String RA_DESIGN_CACHE_PREFIX = MockAemSlingBindings.class.getName() + "_design_";
+  private static final String RA_RESOLVED_VALUES = MockAemSlingBindings.class.getName() + "_resolvedValues";
 
   private MockAemSlingBindings() {
     // static methods only
@@ -100,58 +133,60 @@ final class MockAemSlingBindings {
 
   static @Nullable Object resolveSlingBindingProperty(@NotNull AemContextImpl context, @NotNull String property,
       @Nullable SlingHttpServletRequest givenRequest) {
+    SlingBindingsProperty bindingsProperty = SlingBindingsProperty.forKey(property);
+    if (bindingsProperty == null) {
+      return null;
+    }
+    return resolveSlingBindingProperty(context, bindingsProperty, givenRequest);
+  }
+
+  /**
+   * Resolves the given binding property. Values that are fixed once the current resource and page are set (current
+   * page, resource page and page properties) are memoized in the request, and resolved again when the current
+   * resource, the WCM component context or its page changes. The memoized resource page is validated against the
+   * resources between the current resource and the page, so pages added or removed in any way are detected.
+   * Values that depend on other content (component, designs, styles, content policies) are always resolved
+   * again, they are served from the per-context caches that validate themselves against the content.
+   * @param context AEM context
+   * @param property Binding property
+   * @param givenRequest Request (optional, the context request is used if not set)
+   * @return Resolved value or null
+   */
+  static @Nullable Object resolveSlingBindingProperty(@NotNull AemContextImpl context, @NotNull SlingBindingsProperty property,
+      @Nullable SlingHttpServletRequest givenRequest) {
     SlingHttpServletRequest request = givenRequest;
     if (givenRequest == null) {
       request = context.request();
     }
 
-    if (StringUtils.equals(property, SlingBindingsProperty.COMPONENT_CONTEXT.key)) {
-      return getWcmComponentContext(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.EDIT_CONTEXT.key())) {
-      return getEditContext(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.PROPERTIES.key())) {
-      return getProperties(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.PAGE_MANAGER.key())) {
-      return context.pageManager();
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.CURRENT_PAGE.key())) {
-      return getCurrentPage(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.RESOURCE_PAGE.key())) {
-      return getResourcePage(request, context);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.PAGE_PROPERTIES.key())) {
-      return getPageProperties(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.COMPONENT.key())) {
-      return getComponent(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.DESIGNER.key())) {
-      return getDesigner(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.CURRENT_DESIGN.key())) {
-      return getCurrentDesign(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.RESOURCE_DESIGN.key())) {
-      return getResourceDesign(request, context);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.CURRENT_STYLE.key())) {
-      return getStyle(request);
-    }
-    if (StringUtils.equals(property, SlingBindingsProperty.XSSAPI.key())) {
-      return getXssApi(context);
+    if (!property.memoized) {
+      return property.resolver.resolve(context, request);
     }
-    if (StringUtils.equals(property, SlingBindingsProperty.CURRENT_CONTENT_POLICY.key())) {
-      return getCurrentContentPolicy(request);
+    ResolvedValues resolvedValues = getResolvedValues(request);
+    if (resolvedValues.values.containsKey(property)
+        && (property != SlingBindingsProperty.RESOURCE_PAGE || resolvedValues.isResourcePageValid(request))) {
+      return resolvedValues.values.get(property);
     }
-    if (StringUtils.equals(property, SlingBindingsProperty.CURRENT_CONTENT_POLICY_PROPS.key())) {
-      return getCurrentContentPolicyProperties(request);
+    Object value = property.resolver.resolve(context, request);
+    resolvedValues.values.put(property, value);
+    if (property == SlingBindingsProperty.RESOURCE_PAGE) {
+      resolvedValues.resourcePagePaths = getResourcePagePaths(request.getResource(), (Page)value);
     }
+    return value;
+  }
 
-    return null;
+  private static @NotNull ResolvedValues getResolvedValues(@NotNull SlingHttpServletRequest request) {
+    Resource resource = request.getResource();
+    ComponentContext wcmComponentContext = getWcmComponentContext(request);
+    Page page = wcmComponentContext != null ? wcmComponentContext.getPage() : null;
+    Object attribute = request.getAttribute(RA_RESOLVED_VALUES);
+    if (attribute instanceof ResolvedValues
+        && ((ResolvedValues)attribute).matches(resource, wcmComponentContext, page)) {
+      return (ResolvedValues)attribute;
+    }
+    ResolvedValues resolvedValues = new ResolvedValues(resource, wcmComponentContext, page);
+    request.setAttribute(RA_RESOLVED_VALUES, resolvedValues);
+    return resolvedValues;
   }
 
   private static ComponentContext getWcmComponentContext(SlingHttpServletRequest request) {
@@ -183,11 +218,29 @@ final class MockAemSlingBindings {
   private static Page getResourcePage(SlingHttpServletRequest request, AemContextImpl context) {
     Resource resource = request.getResource();
     if (resource != null) {
-      return context.pageManager().getContainingPage(resource);
+      // look up by path, the memoized value is resolved again after the resource tree was changed
+      return context.pageManager().getContainingPage(resource.getPath());
     }
     return null;
   }
 
+  /**
+   * @return Paths from the resource up to the given containing page, or up to the top-level resource if there is no
+   *         containing page
+   */
+  private static @NotNull List<String> getResourcePagePaths(@Nullable Resource resource, @Nullable Page page) {
+    List<String> paths = new ArrayList<>();
+    String path = resource != null ? resource.getPath() : null;
+    while (path != null && !StringUtils.equals(path, "/")) {
+      paths.add(path);
+      if (page != null && StringUtils.equals(path, page.getPath())) {
+        break;
+      }
+      path = ResourceUtil.getParent(path);
+    }
+    return paths;
+  }
+
   private static ValueMap getPageProperties(SlingHttpServletRequest request) {
     Page currentPage = getCurrentPage(request);
     if (currentPage != null) {
@@ -278,4 +331,55 @@ final class MockAemSlingBindings {
     return design;
   }
 
+
+  /**
+   * Binding values resolved for a request, valid as long as the current resource and page do not change.
+   */
+  private static final class ResolvedValues {
+
+    private final Resource resource;
+    private final ComponentContext wcmComponentContext;
+    private final Page page;
+    private final Map<SlingBindingsProperty, Object> values = new EnumMap<>(SlingBindingsProperty.class);
+    // paths from the current resource up to the resolved resource page
+    private List<String> resourcePagePaths = Collections.emptyList();
+
+    ResolvedValues(Resource resource, ComponentContext wcmComponentContext, Page page) {
+      this.resource = resource;
+      this.wcmComponentContext = wcmComponentContext;
+      this.page = page;
+    }
+
+    boolean matches(Resource currentResource, ComponentContext currentWcmComponentContext, Page currentPage) {
+      return resource == currentResource
+          && wcmComponentContext == currentWcmComponentContext
+          && page == currentPage;
+    }
+
+    /**
+     * @return true if all resources between the current resource and the resolved resource page still exist, and
+     *         only the last one is a page
+     */
+    boolean isResourcePageValid(@NotNull SlingHttpServletRequest request) {
+      Page resourcePage = (Page)values.get(SlingBindingsProperty.RESOURCE_PAGE);
+      ResourceResolver resourceResolver = request.getResourceResolver();
+      for (int i = 0; i < resourcePagePaths.size(); i++) {
+        Resource pathResource = resourceResolver.getResource(resourcePagePaths.get(i));
+        if (pathResource == null) {
+          return false;
+        }
+        boolean expectPage = resourcePage != null && i == resourcePagePaths.size() - 1;
+        if (isPage(pathResource) != expectPage) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isPage(@NotNull Resource resource) {
+      return StringUtils.equals(resource.getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class), NameConstants.NT_PAGE);
+    }
+
+  }
+
 }
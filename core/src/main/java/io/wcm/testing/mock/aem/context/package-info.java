@@ -20,5 +20,5 @@
 /**
  * AEM context implementation for unit tests.
  */
-@org.osgi.annotation.versioning.Version("2.0.0")
+@org.osgi.annotation.versioning.Version("2.1.0")
 package io.wcm.testing.mock.aem.context;
@@ -0,0 +1,277 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_PRIMARYTYPE;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.commons.mime.MimeTypeService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.day.cq.dam.api.AssetManager;
+
+/**
+ * Imports a directory tree from the file system as DAM folders and assets.
+ * <p>
+ * Reading the binaries and extracting metadata and image dimensions is executed in parallel by a bounded
+ * thread pool. The repository is only accessed from the calling thread, as resource resolvers are not thread-safe:
+ * assets are created in file order, and the changes are committed in batches instead of once per asset.
+ * </p>
+ * <p>
+ * Usage: <code>context.create().assetFolder("/content/dam/sample", directory)</code>
+ * </p>
+ */
+@ProviderType
+public final class AssetFolderImporter {
+
+  /**
+   * Default number of assets after which the changes are committed.
+   */
+  public static final int DEFAULT_COMMIT_INTERVAL = 500;
+
+  private static final String NT_SLING_FOLDER = "sling:Folder";
+  private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+  private final ResourceResolver resourceResolver;
+  private final MimeTypeService mimeTypeService;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @param mimeTypeService Mime type service to detect the mime type from the file name (optional)
+   */
+  public AssetFolderImporter(@NotNull ResourceResolver resourceResolver, @Nullable MimeTypeService mimeTypeService) {
+    this.resourceResolver = resourceResolver;
+    this.mimeTypeService = mimeTypeService;
+  }
+
+  /**
+   * @param value Number of threads reading the binaries. Default: number of available processors.
+   * @return this
+   */
+  public @NotNull AssetFolderImporter threads(int value) {
+    if (value < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + value);
+    }
+    this.threads = value;
+    return this;
+  }
+
+  /**
+   * @param value Number of assets after which the changes are committed. 0 = commit only once at the end.
+   * @return this
+   */
+  public @NotNull AssetFolderImporter commitInterval(int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Invalid commit interval: " + value);
+    }
+    this.commitInterval = value;
+    return this;
+  }
+
+  /**
+   * Imports all files from the given directory and its subdirectories. Subdirectories are created as DAM folders,
+   * each file is created as DAM asset with its original rendition and extracted metadata.
+   * Hidden files and directories (name starting with a dot) are skipped.
+   * @param directory Directory in the file system
+   * @param damPath DAM folder path to import to. It is created if it does not exist.
+   * @return Number of assets created
+   */
+  public int importFolder(@NotNull Path directory, @NotNull String damPath) {
+    if (!Files.isDirectory(directory)) {
+      throw new IllegalArgumentException("Not a directory: " + directory);
+    }
+    AssetManager assetManager = resourceResolver.adaptTo(AssetManager.class);
+    if (!(assetManager instanceof MockAssetManager)) {
+      throw new RuntimeException("No asset manager.");
+    }
+    MockAssetManager mockAssetManager = (MockAssetManager)assetManager;
+
+    try {
+      List<ImportFile> files = createFolders(directory, damPath);
+      int count = importFiles(files, mockAssetManager);
+      mockAssetManager.commit();
+      return count;
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to import assets from " + directory, ex);
+    }
+  }
+
+  /**
+   * Creates the DAM folders for all directories and collects the files to import.
+   */
+  private List<ImportFile> createFolders(@NotNull Path directory, @NotNull String damPath) throws IOException {
+    ensureFolder(damPath);
+    List<Path> paths;
+    try (Stream<Path> stream = Files.walk(directory)) {
+      // sorted paths list parent directories before their children
+      paths = stream
+          .filter(path -> !path.equals(directory) && !isHidden(directory.relativize(path)))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    List<ImportFile> files = new ArrayList<>();
+    for (Path path : paths) {
+      String targetPath = getTargetPath(damPath, directory.relativize(path));
+      if (Files.isDirectory(path)) {
+        ensureFolder(targetPath);
+      }
+      else if (Files.isRegularFile(path)) {
+        files.add(new ImportFile(path, targetPath, getMimeType(path.getFileName().toString())));
+      }
+    }
+    return files;
+  }
+
+  private int importFiles(@NotNull List<ImportFile> files, @NotNull MockAssetManager assetManager) throws IOException {
+    // limit the number of prepared binaries that are kept in memory waiting to be stored
+    int maxPending = threads * 2;
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "aem-mock-asset-import");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      Deque<Future<MockAssetManager.PreparedBinary>> pending = new ArrayDeque<>();
+      int count = 0;
+      int next = 0;
+      while (count < files.size()) {
+        while (next < files.size() && pending.size() < maxPending) {
+          Path file = files.get(next++).file;
+          pending.add(executor.submit(() -> prepare(file, assetManager)));
+        }
+        ImportFile importFile = files.get(count);
+        assetManager.createAsset(importFile.assetPath, await(pending.poll(), importFile), importFile.mimeType, false);
+        count++;
+        if (commitInterval > 0 && count % commitInterval == 0) {
+          assetManager.commit();
+        }
+      }
+      return count;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static MockAssetManager.PreparedBinary prepare(@NotNull Path file, @NotNull MockAssetManager assetManager)
+      throws IOException {
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+      return assetManager.prepareBinary(is);
+    }
+  }
+
+  private static MockAssetManager.PreparedBinary await(@NotNull Future<MockAssetManager.PreparedBinary> future,
+      @NotNull ImportFile importFile) {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Import interrupted at " + importFile.file, ex);
+    }
+    catch (ExecutionException ex) {
+      throw new RuntimeException("Unable to import asset from " + importFile.file, ex.getCause());
+    }
+  }
+
+  private Resource ensureFolder(@NotNull String path) throws PersistenceException {
+    Resource resource = resourceResolver.getResource(path);
+    if (resource != null) {
+      return resource;
+    }
+    String parentPath = ResourceUtil.getParent(path);
+    if (parentPath == null) {
+      throw new IllegalArgumentException("Invalid path: " + path);
+    }
+    Resource parent = ensureFolder(parentPath);
+    return resourceResolver.create(parent, ResourceUtil.getName(path), Map.of(JCR_PRIMARYTYPE, NT_SLING_FOLDER));
+  }
+
+  private static boolean isHidden(@NotNull Path relativePath) {
+    for (Path segment : relativePath) {
+      if (segment.toString().startsWith(".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getTargetPath(@NotNull String damPath, @NotNull Path relativePath) {
+    StringBuilder targetPath = new StringBuilder(damPath);
+    for (Path segment : relativePath) {
+      targetPath.append('/').append(Text.escapeIllegalJcrChars(segment.toString()));
+    }
+    return targetPath.toString();
+  }
+
+  private String getMimeType(@NotNull String fileName) {
+    String mimeType = mimeTypeService != null ? mimeTypeService.getMimeType(fileName) : null;
+    if (mimeType == null) {
+      mimeType = URLConnection.guessContentTypeFromName(fileName);
+    }
+    return mimeType != null ? mimeType : DEFAULT_MIME_TYPE;
+  }
+
+
+  /**
+   * File to import with its target asset path.
+   */
+  private static final class ImportFile {
+
+    private final Path file;
+    private final String assetPath;
+    private final String mimeType;
+
+    ImportFile(Path file, String assetPath, String mimeType) {
+      this.file = file;
+      this.assetPath = assetPath;
+      this.mimeType = mimeType;
+    }
+
+  }
+
+}
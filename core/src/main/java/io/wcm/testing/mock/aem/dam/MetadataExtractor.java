@@ -0,0 +1,882 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static com.day.cq.dam.api.DamConstants.TIFF_IMAGELENGTH;
+import static com.day.cq.dam.api.DamConstants.TIFF_IMAGEWIDTH;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Extracts asset metadata (image dimensions, EXIF, XMP and IPTC) from JPEG, PNG, GIF and TIFF binaries.
+ * <p>
+ * The binary is read as a stream, and only the file headers and metadata segments are read into memory.
+ * Reading stops before the image data for JPEG and PNG files, pixel data is never decoded.
+ * XMP values take precedence over EXIF and IPTC values, as in AEM.
+ * </p>
+ */
+final class MetadataExtractor {
+
+  // limit for single metadata segments/values read into memory
+  private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] XMP_HEADER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] PHOTOSHOP_HEADER = "Photoshop 3.0\0".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] PNG_SIGNATURE = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+  private static final String RDF_NAMESPACE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+  private static final String PNG_XMP_KEYWORD = "XML:com.adobe.xmp";
+  private static final int PHOTOSHOP_IPTC_RESOURCE = 0x0404;
+
+  // standard prefixes of the XMP namespaces registered in the repository, properties of other namespaces are skipped
+  private static final Map<String, String> XMP_NAMESPACE_PREFIXES = Map.ofEntries(
+      Map.entry("http://purl.org/dc/elements/1.1/", "dc"),
+      Map.entry("http://ns.adobe.com/xap/1.0/", "xmp"),
+      Map.entry("http://ns.adobe.com/xap/1.0/rights/", "xmpRights"),
+      Map.entry("http://ns.adobe.com/xap/1.0/mm/", "xmpMM"),
+      Map.entry("http://ns.adobe.com/xap/1.0/bj/", "xmpBJ"),
+      Map.entry("http://ns.adobe.com/xap/1.0/t/pg/", "xmpTPg"),
+      Map.entry("http://ns.adobe.com/xmp/1.0/DynamicMedia/", "xmpDM"),
+      Map.entry("http://ns.adobe.com/xmp/note/", "xmpNote"),
+      Map.entry("http://ns.adobe.com/tiff/1.0/", "tiff"),
+      Map.entry("http://ns.adobe.com/exif/1.0/", "exif"),
+      Map.entry("http://ns.adobe.com/exif/1.0/aux/", "psAux"),
+      Map.entry("http://ns.adobe.com/photoshop/1.0/", "photoshop"),
+      Map.entry("http://ns.adobe.com/pdf/1.3/", "pdf"),
+      Map.entry("http://ns.adobe.com/camera-raw-settings/1.0/", "crs"),
+      Map.entry("http://ns.adobe.com/lightroom/1.0/", "lr"),
+      Map.entry("http://iptc.org/std/Iptc4xmpCore/1.0/xmlns/", "Iptc4xmpCore"),
+      Map.entry("http://iptc.org/std/Iptc4xmpExt/2008-02-29/", "Iptc4xmpExt"),
+      Map.entry("http://ns.useplus.org/ldf/xmp/1.0/", "plus"),
+      Map.entry("http://creativecommons.org/ns#", "cc"));
+
+  private final Map<String, Object> headerProps = new LinkedHashMap<>();
+  private final Map<String, Object> exifProps = new LinkedHashMap<>();
+  private final Map<String, Object> iptcProps = new LinkedHashMap<>();
+  private final Map<String, Object> xmpProps = new LinkedHashMap<>();
+
+  private MetadataExtractor() {
+    // use static extract method
+  }
+
+  /**
+   * Extracts metadata from the given binary. The stream is not closed.
+   * @param is Binary data
+   * @return Metadata properties. Empty if the format is not supported.
+   * @throws IOException I/O exception
+   */
+  static @NotNull Map<String, Object> extract(@NotNull InputStream is) throws IOException {
+    MetadataExtractor extractor = new MetadataExtractor();
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+    dis.mark(8);
+    byte[] magic = new byte[8];
+    int read = IOUtils.read(dis, magic);
+    dis.reset();
+    if (read < 4) {
+      return Map.of();
+    }
+    if ((magic[0] & 0xff) == 0xff && (magic[1] & 0xff) == 0xd8) {
+      extractor.readJpeg(dis);
+    }
+    else if (read == 8 && Arrays.equals(magic, PNG_SIGNATURE)) {
+      extractor.readPng(dis);
+    }
+    else if (magic[0] == 'G' && magic[1] == 'I' && magic[2] == 'F') {
+      extractor.readGif(dis);
+    }
+    else if ((magic[0] == 'I' && magic[1] == 'I' && magic[2] == 42 && magic[3] == 0)
+        || (magic[0] == 'M' && magic[1] == 'M' && magic[2] == 0 && magic[3] == 42)) {
+      new TiffParser(extractor, new StreamSource(dis)).parse(true);
+    }
+    return extractor.getResult();
+  }
+
+  private Map<String, Object> getResult() {
+    Map<String, Object> result = new LinkedHashMap<>(exifProps);
+    iptcProps.forEach(result::putIfAbsent);
+    result.putAll(xmpProps);
+    result.putAll(headerProps);
+    return result;
+  }
+
+  private void readJpeg(DataInputStream dis) throws IOException {
+    dis.readUnsignedShort();
+    while (true) {
+      if (dis.read() != 0xff) {
+        return;
+      }
+      int marker = dis.read();
+      while (marker == 0xff) {
+        marker = dis.read();
+      }
+      if (marker < 0 || marker == 0xd9 || marker == 0xda) {
+        // end of image or start of scan: no more metadata before image data
+        return;
+      }
+      if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd7)) {
+        continue;
+      }
+      int length = dis.readUnsignedShort() - 2;
+      if (length < 0) {
+        // invalid segment length
+        return;
+      }
+      if (isStartOfFrame(marker) && length >= 5) {
+        dis.readUnsignedByte();
+        headerProps.put(TIFF_IMAGELENGTH, dis.readUnsignedShort());
+        headerProps.put(TIFF_IMAGEWIDTH, dis.readUnsignedShort());
+        IOUtils.skipFully(dis, length - 5L);
+      }
+      else if (marker == 0xe1 || marker == 0xed) {
+        byte[] segment = new byte[length];
+        dis.readFully(segment);
+        if (marker == 0xe1 && startsWith(segment, EXIF_HEADER)) {
+          byte[] tiff = Arrays.copyOfRange(segment, EXIF_HEADER.length, segment.length);
+          new TiffParser(this, new ArraySource(tiff)).parse(false);
+        }
+        else if (marker == 0xe1 && startsWith(segment, XMP_HEADER)) {
+          readXmp(new String(segment, XMP_HEADER.length, segment.length - XMP_HEADER.length, StandardCharsets.UTF_8));
+        }
+        else if (marker == 0xed && startsWith(segment, PHOTOSHOP_HEADER)) {
+          readPhotoshopResources(Arrays.copyOfRange(segment, PHOTOSHOP_HEADER.length, segment.length));
+        }
+      }
+      else {
+        IOUtils.skipFully(dis, length);
+      }
+    }
+  }
+
+  private static boolean isStartOfFrame(int marker) {
+    return marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc;
+  }
+
+  private void readPng(DataInputStream dis) throws IOException {
+    IOUtils.skipFully(dis, PNG_SIGNATURE.length);
+    while (true) {
+      int length;
+      byte[] type = new byte[4];
+      try {
+        length = dis.readInt();
+        dis.readFully(type);
+      }
+      catch (IOException ex) {
+        return;
+      }
+      if (length < 0) {
+        // invalid chunk length
+        return;
+      }
+      String chunkType = new String(type, StandardCharsets.ISO_8859_1);
+      if ("IHDR".equals(chunkType) && length >= 8) {
+        headerProps.put(TIFF_IMAGEWIDTH, dis.readInt());
+        headerProps.put(TIFF_IMAGELENGTH, dis.readInt());
+        IOUtils.skipFully(dis, length - 8L + 4);
+      }
+      else if (("iTXt".equals(chunkType) || "eXIf".equals(chunkType)) && length <= MAX_SEGMENT_SIZE) {
+        byte[] data = new byte[length];
+        dis.readFully(data);
+        IOUtils.skipFully(dis, 4);
+        if ("eXIf".equals(chunkType)) {
+          new TiffParser(this, new ArraySource(data)).parse(false);
+        }
+        else {
+          readPngText(data);
+        }
+      }
+      else if ("IDAT".equals(chunkType) || "IEND".equals(chunkType)) {
+        // metadata chunks after image data are not read
+        return;
+      }
+      else {
+        IOUtils.skipFully(dis, length + 4L);
+      }
+    }
+  }
+
+  private void readPngText(byte[] data) {
+    // keyword \0 compression flag, compression method, language tag \0 translated keyword \0 text
+    int keywordEnd = indexOf(data, 0, 0);
+    if (keywordEnd < 0 || keywordEnd + 2 >= data.length
+        || !PNG_XMP_KEYWORD.equals(new String(data, 0, keywordEnd, StandardCharsets.ISO_8859_1))
+        || data[keywordEnd + 1] != 0) {
+      return;
+    }
+    int languageEnd = indexOf(data, 0, keywordEnd + 3);
+    int translatedEnd = languageEnd >= 0 ? indexOf(data, 0, languageEnd + 1) : -1;
+    if (translatedEnd >= 0) {
+      readXmp(new String(data, translatedEnd + 1, data.length - translatedEnd - 1, StandardCharsets.UTF_8));
+    }
+  }
+
+  private void readGif(DataInputStream dis) throws IOException {
+    IOUtils.skipFully(dis, 6);
+    int width = dis.readUnsignedByte() | (dis.readUnsignedByte() << 8);
+    int height = dis.readUnsignedByte() | (dis.readUnsignedByte() << 8);
+    headerProps.put(TIFF_IMAGEWIDTH, width);
+    headerProps.put(TIFF_IMAGELENGTH, height);
+  }
+
+  /**
+   * Reads Photoshop image resource blocks ("8BIM") and extracts the IPTC block.
+   */
+  private void readPhotoshopResources(byte[] data) {
+    int pos = 0;
+    while (pos + 12 <= data.length && data[pos] == '8' && data[pos + 1] == 'B' && data[pos + 2] == 'I' && data[pos + 3] == 'M') {
+      int id = ((data[pos + 4] & 0xff) << 8) | (data[pos + 5] & 0xff);
+      int nameLength = data[pos + 6] & 0xff;
+      // pascal string including length byte is padded to even size
+      int nameSize = nameLength + 1 + ((nameLength + 1) % 2);
+      int sizePos = pos + 6 + nameSize;
+      if (sizePos + 4 > data.length) {
+        return;
+      }
+      int size = getInt(data, sizePos, false);
+      int dataPos = sizePos + 4;
+      if (size < 0 || dataPos + size > data.length) {
+        return;
+      }
+      if (id == PHOTOSHOP_IPTC_RESOURCE) {
+        readIptc(Arrays.copyOfRange(data, dataPos, dataPos + size));
+      }
+      pos = dataPos + size + (size % 2);
+    }
+  }
+
+  /**
+   * Reads IPTC IIM datasets of the application record.
+   */
+  private void readIptc(byte[] data) {
+    Charset charset = StandardCharsets.ISO_8859_1;
+    Map<String, List<String>> values = new LinkedHashMap<>();
+    int pos = 0;
+    while (pos + 5 <= data.length && data[pos] == 0x1c) {
+      int record = data[pos + 1] & 0xff;
+      int dataset = data[pos + 2] & 0xff;
+      int size = ((data[pos + 3] & 0xff) << 8) | (data[pos + 4] & 0xff);
+      if ((size & 0x8000) != 0 || pos + 5 + size > data.length) {
+        // extended datasets are not supported
+        break;
+      }
+      byte[] value = Arrays.copyOfRange(data, pos + 5, pos + 5 + size);
+      if (record == 1 && dataset == 90 && Arrays.equals(value, new byte[] { 0x1b, '%', 'G' })) {
+        charset = StandardCharsets.UTF_8;
+      }
+      else if (record == 2) {
+        String name = IptcDataset.getPropertyName(dataset);
+        if (name != null) {
+          values.computeIfAbsent(name, key -> new ArrayList<>()).add(new String(value, charset).trim());
+        }
+      }
+      pos += 5 + size;
+    }
+    for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+      if (IptcDataset.isMultiValue(entry.getKey())) {
+        iptcProps.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+      }
+      else {
+        iptcProps.put(entry.getKey(), entry.getValue().get(0));
+      }
+    }
+  }
+
+  /**
+   * Reads simple properties, language alternatives and arrays from a XMP packet.
+   * Structured properties are ignored.
+   */
+  private void readXmp(String xmp) {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try {
+      XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(xmp));
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT && isRdf(reader, "Description")) {
+            readXmpDescription(reader);
+          }
+        }
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (XMLStreamException ex) {
+      // ignore invalid XMP packet
+    }
+  }
+
+  private void readXmpDescription(XMLStreamReader reader) throws XMLStreamException {
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String name = getXmpPropertyName(reader.getAttributeNamespace(i), reader.getAttributeLocalName(i));
+      if (name != null) {
+        xmpProps.put(name, reader.getAttributeValue(i));
+      }
+    }
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        readXmpProperty(reader);
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @param namespace Namespace URI
+   * @param localName Local name
+   * @return Property name with the standard prefix of the namespace, or null if the namespace is not known
+   */
+  private static @Nullable String getXmpPropertyName(@Nullable String namespace, @NotNull String localName) {
+    String prefix = namespace != null ? XMP_NAMESPACE_PREFIXES.get(namespace) : null;
+    if (prefix == null) {
+      return null;
+    }
+    return prefix + ":" + localName;
+  }
+
+  private void readXmpProperty(XMLStreamReader reader) throws XMLStreamException {
+    String name = getXmpPropertyName(reader.getNamespaceURI(), reader.getLocalName());
+    if (name == null) {
+      skipElement(reader);
+      return;
+    }
+    String resource = reader.getAttributeValue(RDF_NAMESPACE, "resource");
+    if (resource != null) {
+      xmpProps.put(name, resource);
+      skipElement(reader);
+      return;
+    }
+    if (hasNonLanguageAttributes(reader)) {
+      skipElement(reader);
+      return;
+    }
+    StringBuilder text = new StringBuilder();
+    Object value = null;
+    boolean structured = false;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+        text.append(reader.getText());
+      }
+      else if (event == XMLStreamConstants.START_ELEMENT) {
+        if (isRdf(reader, "Alt") || isRdf(reader, "Seq") || isRdf(reader, "Bag")) {
+          value = readXmpArray(reader, isRdf(reader, "Alt"));
+        }
+        else {
+          structured = true;
+          skipElement(reader);
+        }
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      }
+    }
+    if (value != null) {
+      xmpProps.put(name, value);
+    }
+    else if (!structured && StringUtils.isNotBlank(text)) {
+      xmpProps.put(name, text.toString().trim());
+    }
+  }
+
+  private Object readXmpArray(XMLStreamReader reader, boolean alternative) throws XMLStreamException {
+    List<String> values = new ArrayList<>();
+    String defaultValue = null;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (hasNonLanguageAttributes(reader)) {
+          skipElement(reader);
+          continue;
+        }
+        String language = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+        String value = readText(reader);
+        if (value != null) {
+          values.add(value);
+          if ("x-default".equals(language)) {
+            defaultValue = value;
+          }
+        }
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      }
+    }
+    if (values.isEmpty()) {
+      return null;
+    }
+    if (alternative) {
+      return defaultValue != null ? defaultValue : values.get(0);
+    }
+    return values.toArray(new String[0]);
+  }
+
+  /**
+   * @return Text content of current element, or null if it has child elements
+   */
+  private static String readText(XMLStreamReader reader) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    boolean structured = false;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+        text.append(reader.getText());
+      }
+      else if (event == XMLStreamConstants.START_ELEMENT) {
+        structured = true;
+        skipElement(reader);
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      }
+    }
+    return structured ? null : text.toString().trim();
+  }
+
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  private static boolean isRdf(XMLStreamReader reader, String localName) {
+    return RDF_NAMESPACE.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+  }
+
+  private static boolean hasNonLanguageAttributes(XMLStreamReader reader) {
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (!XMLConstants.XML_NS_URI.equals(reader.getAttributeNamespace(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(byte[] data, byte[] prefix) {
+    if (data.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (data[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] data, int value, int start) {
+    for (int i = start; i < data.length; i++) {
+      if (data[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static int getShort(byte[] data, int pos, boolean littleEndian) {
+    if (littleEndian) {
+      return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8);
+    }
+    return ((data[pos] & 0xff) << 8) | (data[pos + 1] & 0xff);
+  }
+
+  static int getInt(byte[] data, int pos, boolean littleEndian) {
+    if (littleEndian) {
+      return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8) | ((data[pos + 2] & 0xff) << 16) | ((data[pos + 3] & 0xff) << 24);
+    }
+    return ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16) | ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+  }
+
+
+  /**
+   * Mapping of IPTC application record datasets to asset metadata properties.
+   */
+  private static final class IptcDataset {
+
+    private static final Map<Integer, String> PROPERTY_NAMES = Map.of(
+        5, "dc:title",
+        25, "dc:subject",
+        80, "dc:creator",
+        105, "photoshop:Headline",
+        110, "photoshop:Credit",
+        115, "photoshop:Source",
+        116, "dc:rights",
+        120, "dc:description");
+
+    private IptcDataset() {
+      // constants only
+    }
+
+    static @Nullable String getPropertyName(int dataset) {
+      return PROPERTY_NAMES.get(dataset);
+    }
+
+    static boolean isMultiValue(String propertyName) {
+      return "dc:subject".equals(propertyName) || "dc:creator".equals(propertyName);
+    }
+
+  }
+
+
+  /**
+   * Random read access to TIFF data.
+   */
+  private interface ByteSource {
+
+    /**
+     * @param offset Offset
+     * @param length Length
+     * @return Data or null if the data cannot be read
+     * @throws IOException I/O exception
+     */
+    byte @Nullable [] read(long offset, int length) throws IOException;
+
+  }
+
+  /**
+   * TIFF data fully in memory (e.g. EXIF segment).
+   */
+  private static final class ArraySource implements ByteSource {
+
+    private final byte[] data;
+
+    ArraySource(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte @Nullable [] read(long offset, int length) {
+      if (offset < 0 || length < 0 || offset + length > data.length) {
+        return null;
+      }
+      return Arrays.copyOfRange(data, (int)offset, (int)offset + length);
+    }
+
+  }
+
+  /**
+   * TIFF data read forward-only from a stream. Data before the current stream position cannot be read anymore,
+   * data in between (e.g. image strips) is skipped without reading it into memory.
+   */
+  private static final class StreamSource implements ByteSource {
+
+    private final InputStream is;
+    private long position;
+
+    StreamSource(InputStream is) {
+      this.is = is;
+    }
+
+    @Override
+    public byte @Nullable [] read(long offset, int length) throws IOException {
+      if (offset < position || length < 0 || length > MAX_SEGMENT_SIZE) {
+        return null;
+      }
+      try {
+        IOUtils.skipFully(is, offset - position);
+        position = offset;
+        byte[] data = IOUtils.readFully(is, length);
+        position += length;
+        return data;
+      }
+      catch (IOException ex) {
+        // end of stream reached
+        return null;
+      }
+    }
+
+  }
+
+
+  /**
+   * Parses TIFF structures (TIFF files or EXIF data). Reads are processed in order of their offsets
+   * to support forward-only stream sources.
+   */
+  private static final class TiffParser {
+
+    private static final int IFD_MAIN = 0;
+    private static final int IFD_EXIF = 1;
+
+    private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8 };
+
+    private final MetadataExtractor extractor;
+    private final ByteSource source;
+    private final PriorityQueue<Request> requests = new PriorityQueue<>(Comparator.comparingLong(request -> request.offset));
+    private boolean littleEndian;
+    private boolean imageFile;
+
+    TiffParser(MetadataExtractor extractor, ByteSource source) {
+      this.extractor = extractor;
+      this.source = source;
+    }
+
+    /**
+     * @param isImageFile true if the TIFF data is the image file itself (not EXIF data in another format)
+     */
+    void parse(boolean isImageFile) throws IOException {
+      this.imageFile = isImageFile;
+      byte[] header = source.read(0, 8);
+      if (header == null) {
+        return;
+      }
+      littleEndian = header[0] == 'I';
+      requests.add(new Request(Integer.toUnsignedLong(getInt(header, 4, littleEndian)), IFD_MAIN, null));
+      while (!requests.isEmpty()) {
+        Request request = requests.poll();
+        if (request.entry == null) {
+          readIfd(request.offset, request.ifd);
+        }
+        else {
+          byte[] data = source.read(request.offset, request.entry.size);
+          if (data != null) {
+            handleValue(request.ifd, request.entry, data);
+          }
+        }
+      }
+    }
+
+    private void readIfd(long offset, int ifd) throws IOException {
+      byte[] countData = source.read(offset, 2);
+      if (countData == null) {
+        return;
+      }
+      int count = getShort(countData, 0, littleEndian);
+      byte[] entries = source.read(offset + 2, count * 12);
+      if (entries == null) {
+        return;
+      }
+      for (int i = 0; i < count; i++) {
+        int pos = i * 12;
+        int type = getShort(entries, pos + 2, littleEndian);
+        long valueCount = Integer.toUnsignedLong(getInt(entries, pos + 4, littleEndian));
+        if (type <= 0 || type >= TYPE_SIZES.length || valueCount == 0) {
+          continue;
+        }
+        long size = TYPE_SIZES[type] * valueCount;
+        if (size > MAX_SEGMENT_SIZE) {
+          continue;
+        }
+        Entry entry = new Entry(getShort(entries, pos, littleEndian), type, (int)size);
+        if (!isRelevant(ifd, entry.tag)) {
+          continue;
+        }
+        if (size <= 4) {
+          handleValue(ifd, entry, Arrays.copyOfRange(entries, pos + 8, pos + 8 + (int)size));
+        }
+        else {
+          requests.add(new Request(Integer.toUnsignedLong(getInt(entries, pos + 8, littleEndian)), ifd, entry));
+        }
+      }
+    }
+
+    private boolean isRelevant(int ifd, int tag) {
+      if (ifd == IFD_EXIF) {
+        return ExifTag.getExifPropertyName(tag) != null;
+      }
+      return ExifTag.getMainPropertyName(tag) != null
+          || (imageFile && (tag == ExifTag.IMAGE_WIDTH || tag == ExifTag.IMAGE_LENGTH))
+          || tag == ExifTag.EXIF_IFD || tag == ExifTag.XMP || tag == ExifTag.IPTC || tag == ExifTag.PHOTOSHOP;
+    }
+
+    private void handleValue(int ifd, Entry entry, byte[] data) {
+      if (ifd == IFD_EXIF) {
+        putValue(ExifTag.getExifPropertyName(entry.tag), entry, data);
+        return;
+      }
+      switch (entry.tag) {
+        case ExifTag.IMAGE_WIDTH:
+          extractor.headerProps.put(TIFF_IMAGEWIDTH, getNumber(entry, data).intValue());
+          break;
+        case ExifTag.IMAGE_LENGTH:
+          extractor.headerProps.put(TIFF_IMAGELENGTH, getNumber(entry, data).intValue());
+          break;
+        case ExifTag.EXIF_IFD:
+          requests.add(new Request(Integer.toUnsignedLong(getInt(data, 0, littleEndian)), IFD_EXIF, null));
+          break;
+        case ExifTag.XMP:
+          extractor.readXmp(new String(data, StandardCharsets.UTF_8));
+          break;
+        case ExifTag.IPTC:
+          extractor.readIptc(data);
+          break;
+        case ExifTag.PHOTOSHOP:
+          extractor.readPhotoshopResources(data);
+          break;
+        default:
+          putValue(ExifTag.getMainPropertyName(entry.tag), entry, data);
+      }
+    }
+
+    private void putValue(String name, Entry entry, byte[] data) {
+      if (name == null) {
+        return;
+      }
+      if (entry.type == 2) {
+        // ASCII
+        String value = StringUtils.trim(StringUtils.substringBefore(new String(data, StandardCharsets.UTF_8), "\0"));
+        if (StringUtils.isNotEmpty(value)) {
+          extractor.exifProps.put(name, value);
+        }
+      }
+      else if (entry.type == 5 || entry.type == 10) {
+        // rational
+        long numerator = getInt(data, 0, littleEndian);
+        long denominator = getInt(data, 4, littleEndian);
+        if (entry.type == 5) {
+          numerator = Integer.toUnsignedLong((int)numerator);
+          denominator = Integer.toUnsignedLong((int)denominator);
+        }
+        if (denominator != 0) {
+          extractor.exifProps.put(name, numerator + "/" + denominator);
+        }
+      }
+      else if (entry.type != 7) {
+        extractor.exifProps.put(name, getNumber(entry, data).intValue());
+      }
+    }
+
+    private Number getNumber(Entry entry, byte[] data) {
+      switch (entry.type) {
+        case 1:
+        case 7:
+          return data[0] & 0xff;
+        case 3:
+          return getShort(data, 0, littleEndian);
+        case 8:
+          return (short)getShort(data, 0, littleEndian);
+        case 9:
+          return getInt(data, 0, littleEndian);
+        default:
+          return Integer.toUnsignedLong(getInt(data, 0, littleEndian));
+      }
+    }
+
+  }
+
+  /**
+   * TIFF/EXIF tags and their mapping to asset metadata properties.
+   */
+  private static final class ExifTag {
+
+    static final int IMAGE_WIDTH = 256;
+    static final int IMAGE_LENGTH = 257;
+    static final int XMP = 700;
+    static final int IPTC = 33723;
+    static final int PHOTOSHOP = 34377;
+    static final int EXIF_IFD = 34665;
+
+    private static final Map<Integer, String> MAIN_PROPERTY_NAMES = Map.of(
+        270, "tiff:ImageDescription",
+        271, "tiff:Make",
+        272, "tiff:Model",
+        274, "tiff:Orientation",
+        305, "tiff:Software",
+        306, "tiff:DateTime",
+        315, "tiff:Artist",
+        33432, "tiff:Copyright");
+
+    private static final Map<Integer, String> EXIF_PROPERTY_NAMES = Map.of(
+        33434, "exif:ExposureTime",
+        33437, "exif:FNumber",
+        34855, "exif:ISOSpeedRatings",
+        36867, "exif:DateTimeOriginal",
+        36868, "exif:DateTimeDigitized",
+        37386, "exif:FocalLength",
+        40962, "exif:PixelXDimension",
+        40963, "exif:PixelYDimension");
+
+    private ExifTag() {
+      // constants only
+    }
+
+    static @Nullable String getMainPropertyName(int tag) {
+      return MAIN_PROPERTY_NAMES.get(tag);
+    }
+
+    static @Nullable String getExifPropertyName(int tag) {
+      return EXIF_PROPERTY_NAMES.get(tag);
+    }
+
+  }
+
+  private static final class Entry {
+
+    private final int tag;
+    private final int type;
+    private final int size;
+
+    Entry(int tag, int type, int size) {
+      this.tag = tag;
+      this.type = type;
+      this.size = size;
+    }
+
+  }
+
+  private static final class Request {
+
+    private final long offset;
+    private final int ifd;
+    private final Entry entry;
+
+    Request(long offset, int ifd, @Nullable Entry entry) {
+      this.offset = offset;
+      this.ifd = ifd;
+      this.entry = entry;
+    }
+
+  }
+
+}
@@ -28,7 +28,11 @@ import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.event.EventAdmin;
 
 import com.day.cq.dam.api.Asset;
@@ -53,11 +57,40 @@ public final class MockAemDamAdapterFactory implements AdapterFactory {
   @Reference
   private EventAdmin eventAdmin;
 
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY)
+  private volatile MockDamEventDispatcher eventDispatcher;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY)
+  private volatile MockBlobStore blobStore;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY)
+  private volatile MockAssetMetadataIndex metadataIndex;
+
+  private final MockAssetRevisionStore assetRevisionStore = new MockAssetRevisionStore();
   private BundleContext bundleContext;
+  // delivers events synchronously to the event admin if no dispatcher service is registered
+  private MockDamEventDispatcher fallbackEventDispatcher;
 
   @Activate
   private void activate(BundleContext context) {
     this.bundleContext = context;
+    this.fallbackEventDispatcher = new MockDamEventDispatcher(eventAdmin);
+  }
+
+  @Deactivate
+  private void deactivate() {
+    assetRevisionStore.discard();
+  }
+
+  private @NotNull MockDamEventDispatcher getEventDispatcher() {
+    MockDamEventDispatcher dispatcher = this.eventDispatcher;
+    return dispatcher != null ? dispatcher : fallbackEventDispatcher;
   }
 
   @Override
@@ -74,10 +107,10 @@ public final class MockAemDamAdapterFactory implements AdapterFactory {
   @SuppressWarnings("unchecked")
   private @Nullable <AdapterType> AdapterType getAdapter(@NotNull final Resource resource, @NotNull final Class<AdapterType> type) {
     if (type == Asset.class && DamUtil.isAsset(resource)) {
-      return (AdapterType)new MockAsset(resource, eventAdmin, bundleContext);
+      return (AdapterType)new MockAsset(resource, getEventDispatcher(), bundleContext, blobStore);
     }
     if (type == Rendition.class && DamUtil.isRendition(resource)) {
-      return (AdapterType)new MockRendition(resource);
+      return (AdapterType)new MockRendition(resource, blobStore);
     }
     return null;
   }
@@ -85,7 +118,8 @@ public final class MockAemDamAdapterFactory implements AdapterFactory {
   @SuppressWarnings("unchecked")
   private @Nullable <AdapterType> AdapterType getAdapter(@NotNull final ResourceResolver resolver, @NotNull final Class<AdapterType> type) {
     if (type == AssetManager.class) {
-      return (AdapterType)new MockAssetManager(resolver, eventAdmin, bundleContext);
+      return (AdapterType)new MockAssetManager(resolver, getEventDispatcher(), bundleContext, blobStore, metadataIndex,
+          assetRevisionStore);
     }
     return null;
   }
@@ -19,7 +19,10 @@
  */
 package io.wcm.testing.mock.aem.dam;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractCollection;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -40,11 +43,12 @@ import org.apache.sling.api.resource.ResourceWrapper;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.testing.mock.sling.loader.ContentLoader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.BundleContext;
-import org.osgi.service.event.EventAdmin;
 
 import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.AssetManager;
 import com.day.cq.dam.api.DamConstants;
 import com.day.cq.dam.api.DamEvent;
 import com.day.cq.dam.api.Rendition;
@@ -57,23 +61,29 @@ import com.day.cq.dam.api.Revision;
 @SuppressWarnings("null")
 class MockAsset extends ResourceWrapper implements Asset {
 
+  // property in the map passed to addRendition that defines the mime type
+  private static final String PROPERTY_RENDITION_MIME_TYPE = "rendition.mime";
+
   private final ResourceResolver resourceResolver;
   private final Resource resource;
   private final ValueMap contentProps;
   private final Resource renditionsResource;
-  private final EventAdmin eventAdmin;
+  private final MockDamEventDispatcher eventDispatcher;
   private final BundleContext bundleContext;
+  private final MockBlobStore blobStore;
   private boolean batchMode;
 
-  MockAsset(@NotNull Resource resource, EventAdmin eventAdmin, BundleContext bundleContext) {
+  MockAsset(@NotNull Resource resource, MockDamEventDispatcher eventDispatcher, BundleContext bundleContext,
+      @Nullable MockBlobStore blobStore) {
     super(resource);
     this.resourceResolver = resource.getResourceResolver();
     this.resource = resource;
     Resource contentResource = resource.getChild(JcrConstants.JCR_CONTENT);
     this.contentProps = ResourceUtil.getValueMap(contentResource);
     this.renditionsResource = resource.getChild(JcrConstants.JCR_CONTENT + "/" + DamConstants.RENDITIONS_FOLDER);
-    this.eventAdmin = eventAdmin;
+    this.eventDispatcher = eventDispatcher;
     this.bundleContext = bundleContext;
+    this.blobStore = blobStore;
   }
 
   @SuppressWarnings("unchecked")
@@ -150,6 +160,7 @@ class MockAsset extends ResourceWrapper implements Asset {
     if (this.renditionsResource == null) {
       return Collections.emptyIterator();
     }
+    extractSubAssetPage();
     Iterator<Resource> renditionResources = this.resourceResolver.listChildren(this.renditionsResource);
     return ResourceUtil.adaptTo(renditionResources, Rendition.class);
   }
@@ -194,23 +205,150 @@ class MockAsset extends ResourceWrapper implements Asset {
     if (getRendition(name) != null) {
       removeRendition(name);
     }
-    ContentLoader contentLoader = new ContentLoader(resourceResolver, bundleContext, false);
-    Resource rendition = contentLoader.binaryFile(is, renditionsResource.getPath() + "/" + name, mimeType);
+    String renditionPath = renditionsResource.getPath() + "/" + name;
+    Resource rendition;
     try {
+      rendition = storeRendition(renditionPath, is, mimeType);
       if (!isBatchMode()) {
         resourceResolver.commit();
       }
     }
     catch (PersistenceException ex) {
-      throw new RuntimeException("Unable to remove resource: " + rendition.getPath(), ex);
+      throw new RuntimeException("Unable to create rendition: " + renditionPath, ex);
     }
 
     // send DamEvent after rendition creation
-    eventAdmin.sendEvent(DamEvent.renditionUpdated(getPath(), resourceResolver.getUserID(), rendition.getPath()).toEvent());
+    eventDispatcher.dispatch(DamEvent.renditionUpdated(getPath(), resourceResolver.getUserID(), rendition.getPath()));
+    if (!isBatchMode()) {
+      eventDispatcher.commit();
+    }
 
     return rendition.adaptTo(Rendition.class);
   }
 
+  @Override
+  public Rendition addRendition(String name, InputStream is, Map<String, Object> map) {
+    Object mimeType = map != null ? map.get(PROPERTY_RENDITION_MIME_TYPE) : null;
+    return addRendition(name, is, mimeType != null ? mimeType.toString() : null);
+  }
+
+  // AEM 6.5
+  public Rendition addRendition(String name, Binary binary, String mimeType) {
+    try (InputStream is = MockBinary.getStream(binary)) {
+      return addRendition(name, is, mimeType);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read binary.", ex);
+    }
+  }
+
+  // AEM 6.5
+  public Rendition addRendition(String name, Binary binary, Map<String, Object> map) {
+    try (InputStream is = MockBinary.getStream(binary)) {
+      return addRendition(name, is, map);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read binary.", ex);
+    }
+  }
+
+  // AEM Cloud
+  public Rendition setRendition(String name, Binary binary, String mimeType) {
+    return addRendition(name, binary, mimeType);
+  }
+
+  private Resource storeRendition(@NotNull String renditionPath, @NotNull InputStream is, @Nullable String mimeType)
+      throws PersistenceException {
+    if (blobStore != null) {
+      // store binary data only once in blob store and reference it from the rendition
+      return MockRendition.createBlobRendition(resourceResolver, renditionPath, blobStore.put(is), mimeType);
+    }
+    ContentLoader contentLoader = new ContentLoader(resourceResolver, bundleContext, false);
+    Resource rendition = contentLoader.binaryFile(is, renditionPath, mimeType);
+    MockRendition.touch(rendition);
+    return rendition;
+  }
+
+  /**
+   * If this is a sub-asset of a multi-page image whose page was not extracted yet, extract the page from the
+   * parent asset's original rendition and store it as original rendition.
+   */
+  private void extractSubAssetPage() {
+    Integer pageIndex = contentProps.get(SubAssetExtractor.PN_SUBASSET_INDEX, Integer.class);
+    if (pageIndex == null || renditionsResource.getChild(DamConstants.ORIGINAL_FILE) != null) {
+      return;
+    }
+    Asset parentAsset = getParentAsset();
+    Rendition parentOriginal = parentAsset != null ? parentAsset.getOriginal() : null;
+    byte[] page = parentOriginal != null ? SubAssetExtractor.extractPage(parentOriginal, pageIndex) : null;
+    if (page == null) {
+      return;
+    }
+    String renditionPath = renditionsResource.getPath() + "/" + DamConstants.ORIGINAL_FILE;
+    try {
+      storeRendition(renditionPath, new ByteArrayInputStream(page), SubAssetExtractor.PAGE_MIME_TYPE);
+      if (!isBatchMode()) {
+        resourceResolver.commit();
+      }
+    }
+    catch (PersistenceException ex) {
+      throw new RuntimeException("Unable to create rendition: " + renditionPath, ex);
+    }
+  }
+
+  private @Nullable Asset getParentAsset() {
+    Resource subAssetsFolder = resource.getParent();
+    Resource parentAsset = subAssetsFolder != null ? subAssetsFolder.getParent() : null;
+    return parentAsset != null ? parentAsset.adaptTo(Asset.class) : null;
+  }
+
+  @Override
+  public boolean isSubAsset() {
+    Resource subAssetsFolder = resource.getParent();
+    return subAssetsFolder != null
+        && StringUtils.equals(subAssetsFolder.getName(), DamConstants.SUBASSETS_FOLDER)
+        && getParentAsset() != null;
+  }
+
+  @Override
+  public Asset addSubAsset(String name, String mimeType, InputStream stream) {
+    String subAssetsPath = getPath() + "/" + DamConstants.SUBASSETS_FOLDER;
+    try {
+      if (resource.getChild(DamConstants.SUBASSETS_FOLDER) == null) {
+        resourceResolver.create(resource, DamConstants.SUBASSETS_FOLDER,
+            Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FOLDER));
+      }
+    }
+    catch (PersistenceException ex) {
+      throw new RuntimeException("Unable to create sub-assets folder: " + subAssetsPath, ex);
+    }
+    AssetManager assetManager = resourceResolver.adaptTo(AssetManager.class);
+    if (assetManager == null) {
+      throw new RuntimeException("No asset manager.");
+    }
+    return assetManager.createAsset(subAssetsPath + "/" + name, stream, mimeType, !isBatchMode());
+  }
+
+  /**
+   * Gets the sub-assets. For multi-page images (TIFF, GIF) without sub-assets, the sub-asset nodes are
+   * created on first access and committed at once, the page binaries are extracted when the sub-asset renditions
+   * are accessed.
+   * The returned collection is a view that adapts the sub-asset resources while iterating.
+   * @return Sub-assets
+   */
+  @Override
+  public Collection<Asset> getSubAssets() {
+    Resource subAssetsFolder = resource.getChild(DamConstants.SUBASSETS_FOLDER);
+    if (subAssetsFolder == null && !isSubAsset()) {
+      SubAssetExtractor.processSubAssets(this);
+      subAssetsFolder = resource.getChild(DamConstants.SUBASSETS_FOLDER);
+    }
+    if (subAssetsFolder == null) {
+      return Collections.emptyList();
+    }
+    return new SubAssetCollection(subAssetsFolder);
+  }
+
   @Override
   public void removeRendition(String name) {
     Resource rendition = renditionsResource.getChild(name);
@@ -230,7 +368,10 @@ class MockAsset extends ResourceWrapper implements Asset {
     }
 
     // send DamEvent after rendition creation
-    eventAdmin.sendEvent(DamEvent.renditionRemoved(getPath(), resourceResolver.getUserID(), rendition.getPath()).toEvent());
+    eventDispatcher.dispatch(DamEvent.renditionRemoved(getPath(), resourceResolver.getUserID(), rendition.getPath()));
+    if (!isBatchMode()) {
+      eventDispatcher.commit();
+    }
   }
 
   @Override
@@ -239,55 +380,49 @@ class MockAsset extends ResourceWrapper implements Asset {
   }
 
   @Override
-  public String getID() {
-    return resource.getValueMap().get(JcrConstants.JCR_UUID, "");
+  public Revision createRevision(String label, String comment) {
+    return getAssetManager().createRevision(this, label, comment);
   }
 
-
-  // --- unsupported operations ---
-
-  @Override
-  public Rendition addRendition(String name, InputStream is, Map<String, Object> map) {
-    throw new UnsupportedOperationException();
+  // AEM 6.5.5
+  @SuppressWarnings("unused")
+  public Revision createRevision(String label, String comment, User user) {
+    return createRevision(label, comment);
   }
 
   @Override
-  public Rendition getCurrentOriginal() {
-    throw new UnsupportedOperationException();
+  public Asset restore(String revisionId) {
+    return getAssetManager().restore(revisionId);
   }
 
   @Override
-  public boolean isSubAsset() {
-    throw new UnsupportedOperationException();
+  public Collection<Revision> getRevisions(Calendar cal) {
+    return getAssetManager().getRevisions(getPath(), cal);
   }
 
-  @Override
-  public void setCurrentOriginal(String name) {
-    throw new UnsupportedOperationException();
+  private @NotNull MockAssetManager getAssetManager() {
+    AssetManager assetManager = resourceResolver.adaptTo(AssetManager.class);
+    if (!(assetManager instanceof MockAssetManager)) {
+      throw new RuntimeException("No mock asset manager.");
+    }
+    return (MockAssetManager)assetManager;
   }
 
   @Override
-  public Revision createRevision(String label, String comment) {
-    throw new UnsupportedOperationException();
+  public String getID() {
+    return resource.getValueMap().get(JcrConstants.JCR_UUID, "");
   }
 
-  @Override
-  public Asset restore(String revisionId) {
-    throw new UnsupportedOperationException();
-  }
 
-  @Override
-  public Collection<Revision> getRevisions(Calendar cal) {
-    throw new UnsupportedOperationException();
-  }
+  // --- unsupported operations ---
 
   @Override
-  public Asset addSubAsset(String name, String mimeType, InputStream stream) {
+  public Rendition getCurrentOriginal() {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public Collection<Asset> getSubAssets() {
+  public void setCurrentOriginal(String name) {
     throw new UnsupportedOperationException();
   }
 
@@ -311,28 +446,34 @@ class MockAsset extends ResourceWrapper implements Asset {
     throw new UnsupportedOperationException();
   }
 
-  // AEM 6.5
-  @SuppressWarnings("unused")
-  public Rendition addRendition(String arg0, Binary arg1, String arg2) {
-    throw new UnsupportedOperationException();
-  }
 
-  // AEM 6.5
-  @SuppressWarnings("unused")
-  public Rendition addRendition(String arg0, Binary arg1, Map<String, Object> arg2) {
-    throw new UnsupportedOperationException();
-  }
+  /**
+   * Collection view on the sub-assets. Sub-assets are adapted one by one while iterating.
+   */
+  private static final class SubAssetCollection extends AbstractCollection<Asset> {
 
-  // AEM 6.5.5
-  @SuppressWarnings("unused")
-  public Revision createRevision(String arg0, String arg1, User arg2) {
-    throw new UnsupportedOperationException();
-  }
+    private final Resource subAssetsFolder;
+
+    SubAssetCollection(@NotNull Resource subAssetsFolder) {
+      this.subAssetsFolder = subAssetsFolder;
+    }
+
+    @Override
+    public Iterator<Asset> iterator() {
+      return ResourceUtil.adaptTo(subAssetsFolder.listChildren(), Asset.class);
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      Iterator<Resource> children = subAssetsFolder.listChildren();
+      while (children.hasNext()) {
+        children.next();
+        size++;
+      }
+      return size;
+    }
 
-  // AEM Cloud
-  @SuppressWarnings("unused")
-  public Rendition setRendition(String arg0, Binary arg1, String arg2) {
-    throw new UnsupportedOperationException();
   }
 
 }
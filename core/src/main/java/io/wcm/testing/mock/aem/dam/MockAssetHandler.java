@@ -21,14 +21,22 @@ package io.wcm.testing.mock.aem.dam;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 
 import com.adobe.granite.asset.api.AssetRelation;
 import com.day.cq.dam.api.Asset;
@@ -37,7 +45,8 @@ import com.day.cq.dam.api.Rendition;
 import com.day.cq.dam.api.handler.AssetHandler;
 import com.day.cq.dam.api.metadata.ExtractedMetadata;
 import com.day.cq.dam.api.thumbnail.ThumbnailConfig;
-import com.day.image.Layer;
+
+import io.wcm.testing.mock.aem.MockImageDecoder;
 
 /**
  * Mock implementation of {@link AssetHandler}.
@@ -59,6 +68,29 @@ public final class MockAssetHandler implements AssetHandler {
       SVG_MIME_TYPE
   };
 
+  /**
+   * Thumbnails created by {@link #createThumbnails(Asset)}, as created by the "DAM Update Asset" workflow.
+   */
+  private static final List<ThumbnailConfig> DEFAULT_THUMBNAIL_CONFIGS = List.of(
+      new MockThumbnailConfig(48, 48),
+      new MockThumbnailConfig(140, 100),
+      new MockThumbnailConfig(319, 319));
+
+  private static final int MAX_THUMBNAIL_THREADS = 4;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private MockImageDecoder imageDecoder;
+
+  private ExecutorService thumbnailExecutor;
+
+  @Deactivate
+  private synchronized void deactivate() {
+    if (thumbnailExecutor != null) {
+      thumbnailExecutor.shutdown();
+      thumbnailExecutor = null;
+    }
+  }
+
   @Override
   public String[] getMimeTypes() {
     return MIME_TYPES;
@@ -71,52 +103,99 @@ public final class MockAssetHandler implements AssetHandler {
 
   @Override
   public BufferedImage getImage(Rendition rendition, Dimension maxDimension) throws IOException {
-    try (InputStream is = rendition.getStream()) {
-      Layer layer = new Layer(is, maxDimension);
-      return layer.getImage();
+    // decoded images are cached per rendition by the image decoder service, fallback to uncached decoding
+    MockImageDecoder decoder = imageDecoder != null ? imageDecoder : new MockImageDecoder();
+    BufferedImage image = decoder.getImage(rendition, maxDimension);
+    if (image == null) {
+      throw new IOException("Unable to decode image: " + rendition.getPath());
     }
+    return image;
   }
 
   @Override
   public boolean canHandleSubAssets() {
-    return false;
+    return true;
   }
 
-
-  // --- unsupported operations ---
+  /**
+   * Creates a sub-asset for each page of multi-page images (TIFF, GIF). The binary data of the pages is extracted
+   * when the renditions of the sub-assets are accessed. Changes are committed unless the asset is in batch mode.
+   * @param asset Asset
+   * @return Paths of the created sub-assets
+   */
+  @Override
+  public List<String> processSubAssets(Asset asset) {
+    return SubAssetExtractor.processSubAssets(asset);
+  }
 
   @Override
   public void createThumbnails(Asset asset) throws IOException {
-    throw new UnsupportedOperationException();
+    createThumbnails(asset, DEFAULT_THUMBNAIL_CONFIGS);
   }
 
   @Override
   public void createThumbnails(Asset asset, Collection<ThumbnailConfig> configs) throws IOException {
-    throw new UnsupportedOperationException();
+    createThumbnails(asset, asset.getOriginal(), configs);
   }
 
   @Override
   public void createThumbnails(Asset asset, Rendition rendition, Collection<ThumbnailConfig> configs) throws IOException {
-    throw new UnsupportedOperationException();
+    if (rendition == null || configs == null || configs.isEmpty()) {
+      return;
+    }
+    Map<String, byte[]> thumbnails;
+    try (InputStream is = rendition.getStream()) {
+      if (is == null) {
+        return;
+      }
+      thumbnails = ThumbnailGenerator.generate(is, configs, getThumbnailExecutor());
+    }
+    // renditions are stored sequentially as the resource resolver is not thread-safe
+    for (Map.Entry<String, byte[]> thumbnail : thumbnails.entrySet()) {
+      asset.addRendition(thumbnail.getKey(), new ByteArrayInputStream(thumbnail.getValue()), ThumbnailGenerator.THUMBNAIL_MIME_TYPE);
+    }
   }
 
   @Override
-  public void exportAsset(Asset asset, OutputStream os) throws AssetHandlerException {
-    throw new UnsupportedOperationException();
+  public ExtractedMetadata extractMetadata(Asset asset) {
+    ExtractedMetadata metadata = new ExtractedMetadata();
+    Rendition original = asset.getOriginal();
+    if (original == null) {
+      return metadata;
+    }
+    try (InputStream is = original.getStream()) {
+      if (is != null) {
+        MetadataExtractor.extract(is).forEach(metadata::setMetaDataProperty);
+      }
+    }
+    /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
+      // ignore malformed binary data, no metadata is extracted in this case
+    }
+    return metadata;
   }
 
-  @Override
-  public ExtractedMetadata extractMetadata(Asset asset) {
-    throw new UnsupportedOperationException();
+  private synchronized ExecutorService getThumbnailExecutor() {
+    if (thumbnailExecutor == null) {
+      int threads = Math.min(MAX_THUMBNAIL_THREADS, Runtime.getRuntime().availableProcessors());
+      thumbnailExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+        Thread thread = new Thread(runnable, "aem-mock-thumbnail");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return thumbnailExecutor;
   }
 
+
+  // --- unsupported operations ---
+
   @Override
-  public Iterator<? extends AssetRelation> processRelated(Asset asset) {
+  public void exportAsset(Asset asset, OutputStream os) throws AssetHandlerException {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public List<String> processSubAssets(Asset asset) {
+  public Iterator<? extends AssetRelation> processRelated(Asset asset) {
     throw new UnsupportedOperationException();
   }
 
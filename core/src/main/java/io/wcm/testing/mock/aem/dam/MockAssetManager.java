@@ -20,9 +20,12 @@
 package io.wcm.testing.mock.aem.dam;
 
 import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static com.day.cq.commons.jcr.JcrConstants.JCR_DATA;
+import static com.day.cq.commons.jcr.JcrConstants.JCR_MIMETYPE;
 import static com.day.cq.commons.jcr.JcrConstants.JCR_PRIMARYTYPE;
 import static com.day.cq.commons.jcr.JcrConstants.NT_FOLDER;
 import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
+import static com.day.cq.dam.api.DamConstants.DC_FORMAT;
 import static com.day.cq.dam.api.DamConstants.METADATA_FOLDER;
 import static com.day.cq.dam.api.DamConstants.NT_DAM_ASSET;
 import static com.day.cq.dam.api.DamConstants.NT_DAM_ASSETCONTENT;
@@ -34,30 +37,40 @@ import static com.day.cq.dam.api.DamConstants.TIFF_IMAGEWIDTH;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.jcr.Binary;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.function.IOSupplier;
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.testing.mock.sling.loader.ContentLoader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.BundleContext;
-import org.osgi.service.event.EventAdmin;
 
 import com.day.cq.dam.api.Asset;
 import com.day.cq.dam.api.AssetManager;
 import com.day.cq.dam.api.DamEvent;
+import com.day.cq.dam.api.Rendition;
 import com.day.cq.dam.api.Revision;
-import com.day.image.Layer;
+import com.day.cq.dam.commons.util.DamUtil;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.wcm.testing.mock.aem.builder.ContentBuilder;
@@ -71,18 +84,98 @@ class MockAssetManager implements AssetManager {
   private final ResourceResolver resourceResolver;
   private final ContentBuilder contentBuilder;
   private final ContentLoader contentLoader;
-  private final EventAdmin eventAdmin;
-
-  MockAssetManager(@NotNull ResourceResolver resourceResolver, EventAdmin eventAdmin, BundleContext bundleContext) {
+  private final MockDamEventDispatcher eventDispatcher;
+  private final MockBlobStore blobStore;
+  private final MockAssetMetadataIndex metadataIndex;
+  private final MockAssetRevisionStore revisionStore;
+
+  MockAssetManager(@NotNull ResourceResolver resourceResolver, MockDamEventDispatcher eventDispatcher, BundleContext bundleContext,
+      @Nullable MockBlobStore blobStore, @Nullable MockAssetMetadataIndex metadataIndex,
+      @NotNull MockAssetRevisionStore revisionStore) {
     this.resourceResolver = resourceResolver;
     this.contentBuilder = new ContentBuilder(resourceResolver);
     this.contentLoader = new ContentLoader(resourceResolver, bundleContext, false);
-    this.eventAdmin = eventAdmin;
+    this.eventDispatcher = eventDispatcher;
+    this.blobStore = blobStore;
+    this.metadataIndex = metadataIndex;
+    this.revisionStore = revisionStore;
   }
 
   @Override
-  @SuppressFBWarnings({ "BAD_PRACTICE", "STYLE" })
   public Asset createAsset(String assetPath, InputStream inputStream, String mimeType, boolean autoSave) {
+    return storeAsset(assetPath, inputStream, mimeType, autoSave, false);
+  }
+
+  /**
+   * Reads the binary data and extracts the asset metadata (EXIF, XMP, IPTC, image dimensions).
+   * This does not access the repository and can be executed in parallel for different binaries.
+   * Without blob store, the binary data is kept in memory until the asset is created.
+   * @param inputStream Binary data (optional)
+   * @return Prepared binary
+   * @throws IOException I/O exception
+   */
+  @NotNull
+  PreparedBinary prepareBinary(@Nullable InputStream inputStream) throws IOException {
+    if (blobStore != null) {
+      // store binary data only once in blob store and reference it from the original rendition
+      String blobId = inputStream != null ? blobStore.put(inputStream) : null;
+      Map<String, Object> metadataProps = blobId != null ? extractMetadata(() -> blobStore.getStream(blobId)) : new HashMap<>();
+      return new PreparedBinary(null, blobId, null, metadataProps);
+    }
+    byte[] data = inputStream != null ? IOUtils.toByteArray(inputStream) : null;
+    Map<String, Object> metadataProps = data != null ? extractMetadata(() -> new ByteArrayInputStream(data)) : new HashMap<>();
+    return new PreparedBinary(data, null, null, metadataProps);
+  }
+
+  /**
+   * Creates or updates an asset from a stream. Without blob store, the binary data is streamed directly into the
+   * original rendition and the metadata is extracted from the stored rendition afterwards.
+   */
+  private Asset storeAsset(@NotNull String assetPath, @Nullable InputStream inputStream, String mimeType, boolean autoSave,
+      boolean update) {
+    PreparedBinary binary;
+    if (blobStore != null) {
+      try {
+        binary = prepareBinary(inputStream);
+      }
+      catch (IOException ex) {
+        throw new RuntimeException("Unable to create asset at " + assetPath, ex);
+      }
+    }
+    else {
+      binary = new PreparedBinary(null, null, inputStream, null);
+    }
+    return storeAsset(assetPath, binary, mimeType, autoSave, update);
+  }
+
+  /**
+   * Creates the asset resources for a binary prepared with {@link #prepareBinary(InputStream)}.
+   * @param assetPath Asset path
+   * @param binary Prepared binary
+   * @param mimeType Mime type
+   * @param autoSave Commit changes
+   * @return Asset
+   */
+  Asset createAsset(@NotNull String assetPath, @NotNull PreparedBinary binary, String mimeType, boolean autoSave) {
+    return storeAsset(assetPath, binary, mimeType, autoSave, false);
+  }
+
+  /**
+   * Creates the asset resources or updates an existing asset for a binary prepared with
+   * {@link #prepareBinary(InputStream)}.
+   * When updating, the original rendition is replaced and the extracted metadata and <code>dc:format</code> are
+   * merged into the existing metadata. Image dimensions of the previous binary are removed if they cannot be
+   * detected for the new binary. Other renditions and metadata are kept.
+   * @param assetPath Asset path
+   * @param binary Prepared binary
+   * @param mimeType Mime type
+   * @param autoSave Commit changes
+   * @param update Update an existing asset
+   * @return Asset
+   */
+  @SuppressFBWarnings({ "BAD_PRACTICE", "STYLE" })
+  private Asset storeAsset(@NotNull String assetPath, @NotNull PreparedBinary binary, String mimeType, boolean autoSave,
+      boolean update) {
     String assetContentPath = assetPath + "/" + JCR_CONTENT;
     String metadataPath = assetContentPath + "/" + METADATA_FOLDER;
     String renditionsPath = assetContentPath + "/" + RENDITIONS_FOLDER;
@@ -93,41 +186,62 @@ class MockAssetManager implements AssetManager {
       createOrUpdateResource(assetContentPath, NT_DAM_ASSETCONTENT, null);
       createOrUpdateResource(renditionsPath, NT_FOLDER, null);
 
-      // store asset metadata
-      Map<String, Object> metadataProps = new HashMap<>();
-
-      // try to detect image with/height if input stream contains image data
-      byte[] data = inputStream != null ? IOUtils.toByteArray(inputStream) : null;
-      if (data != null) {
-        try (InputStream is = new ByteArrayInputStream(data)) {
-          try {
-            Layer layer = new Layer(is);
-            metadataProps.put(TIFF_IMAGEWIDTH, layer.getWidth());
-            metadataProps.put(TIFF_IMAGELENGTH, layer.getHeight());
-          }
-          /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
-            // ignore
-          }
+      // store original rendition
+      String originalRenditionPath = renditionsPath + "/" + ORIGINAL_FILE;
+      Resource existingOriginal = resourceResolver.getResource(originalRenditionPath);
+      if (existingOriginal != null) {
+        resourceResolver.delete(existingOriginal);
+      }
+      if (binary.blobId != null) {
+        MockRendition.createBlobRendition(resourceResolver, originalRenditionPath, binary.blobId, mimeType);
+        eventDispatcher.dispatch(DamEvent.renditionUpdated(assetPath, resourceResolver.getUserID(), originalRenditionPath));
+      }
+      else if (binary.data != null) {
+        try (InputStream is = new ByteArrayInputStream(binary.data)) {
+          MockRendition.touch(contentLoader.binaryFile(is, originalRenditionPath, mimeType));
         }
+        eventDispatcher.dispatch(DamEvent.renditionUpdated(assetPath, resourceResolver.getUserID(), originalRenditionPath));
+      }
+      else if (binary.stream != null) {
+        MockRendition.touch(contentLoader.binaryFile(binary.stream, originalRenditionPath, mimeType));
+        eventDispatcher.dispatch(DamEvent.renditionUpdated(assetPath, resourceResolver.getUserID(), originalRenditionPath));
       }
 
+      // store asset metadata extracted from binary headers (EXIF, XMP, IPTC)
+      Map<String, Object> metadataProps = binary.metadata;
+      if (metadataProps == null) {
+        metadataProps = extractMetadata(originalRenditionPath);
+      }
+      if (update && mimeType != null) {
+        metadataProps = new HashMap<>(metadataProps);
+        metadataProps.put(DC_FORMAT, mimeType);
+      }
       createOrUpdateResource(metadataPath, NT_UNSTRUCTURED, metadataProps);
-
-      // store original rendition
-      String originalRenditionPath = renditionsPath + "/" + ORIGINAL_FILE;
-      if (data != null) {
-        try (InputStream is = new ByteArrayInputStream(data)) {
-          contentLoader.binaryFile(is, originalRenditionPath, mimeType);
-        }
-        eventAdmin.sendEvent(DamEvent.renditionUpdated(assetPath, resourceResolver.getUserID(), originalRenditionPath).toEvent());
+      if (update && !metadataProps.containsKey(TIFF_IMAGEWIDTH)) {
+        // remove image dimensions of the previous binary
+        ModifiableValueMap existingMetadataProps = resourceResolver.getResource(metadataPath).adaptTo(ModifiableValueMap.class);
+        existingMetadataProps.remove(TIFF_IMAGEWIDTH);
+        existingMetadataProps.remove(TIFF_IMAGELENGTH);
       }
 
       if (autoSave) {
         resourceResolver.commit();
       }
 
-      // send DamEvent after asset creation
-      eventAdmin.sendEvent(DamEvent.assetCreated(assetPath, resourceResolver.getUserID()).toEvent());
+      if (metadataIndex != null) {
+        metadataIndex.update(resourceResolver.getResource(assetPath));
+      }
+
+      // send DamEvent after asset creation or update
+      if (update) {
+        eventDispatcher.dispatch(DamEvent.metadataUpdated(assetPath, resourceResolver.getUserID(), null));
+      }
+      else {
+        eventDispatcher.dispatch(DamEvent.assetCreated(assetPath, resourceResolver.getUserID()));
+      }
+      if (autoSave) {
+        eventDispatcher.commit();
+      }
 
     }
     catch (IOException ex) {
@@ -137,83 +251,296 @@ class MockAssetManager implements AssetManager {
     return resourceResolver.getResource(assetPath).adaptTo(Asset.class);
   }
 
-  @SuppressFBWarnings("STYLE")
-  private void createOrUpdateResource(String path, String jcrPrimaryType, Map<String, Object> props) {
-    Resource resource = resourceResolver.getResource(path);
-    if (resource == null) {
-      // create new resource
-      Map<String, Object> newResourceProps = new HashMap<>();
-      newResourceProps.put(JCR_PRIMARYTYPE, jcrPrimaryType);
-      if (props != null) {
-        newResourceProps.putAll(props);
+  /**
+   * Commits all pending changes and delivers the queued DAM events.
+   * @throws PersistenceException Persistence exception
+   */
+  void commit() throws PersistenceException {
+    resourceResolver.commit();
+    eventDispatcher.commit();
+  }
+
+  /**
+   * Extracts metadata from the binary headers of the stored rendition.
+   */
+  private @NotNull Map<String, Object> extractMetadata(@NotNull String renditionPath) throws IOException {
+    Resource renditionResource = resourceResolver.getResource(renditionPath);
+    Rendition rendition = renditionResource != null ? renditionResource.adaptTo(Rendition.class) : null;
+    if (rendition == null) {
+      return new HashMap<>();
+    }
+    return extractMetadata(rendition::getStream);
+  }
+
+  /**
+   * Extracts metadata from the binary headers. If the image dimensions are not contained in the metadata,
+   * they are read from the image header.
+   * @param streamSupplier Supplies a new stream of the binary data for each pass
+   * @return Metadata
+   */
+  private static @NotNull Map<String, Object> extractMetadata(@NotNull IOSupplier<InputStream> streamSupplier) throws IOException {
+    Map<String, Object> metadataProps = new HashMap<>();
+    try (InputStream is = streamSupplier.get()) {
+      if (is == null) {
+        return metadataProps;
       }
-      contentBuilder.resource(path, newResourceProps);
+      extractMetadata(is, metadataProps);
     }
-    else if (props != null) {
-      // update existing resource
-      ModifiableValueMap existingResourceProps = resource.adaptTo(ModifiableValueMap.class);
-      existingResourceProps.putAll(props);
+    if (!metadataProps.containsKey(TIFF_IMAGEWIDTH)) {
+      try (InputStream is = streamSupplier.get()) {
+        detectImageDimensions(is, metadataProps);
+      }
     }
+    return metadataProps;
   }
 
-  // --- unsupported operations ---
+  /**
+   * Extracts metadata from the binary headers. Malformed or truncated binaries are ignored,
+   * the asset is created without the metadata in this case.
+   */
+  private static void extractMetadata(@NotNull InputStream is, @NotNull Map<String, Object> metadataProps) {
+    try {
+      metadataProps.putAll(MetadataExtractor.extract(is));
+    }
+    /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
+      // ignore
+    }
+  }
 
-  @Override
-  public Asset restore(String s) throws Exception {
-    throw new UnsupportedOperationException();
+  /**
+   * Fallback for formats not supported by {@link MetadataExtractor}: try to detect image with/height
+   * from the image header with ImageIO, without decoding the image.
+   */
+  private static void detectImageDimensions(@Nullable InputStream is, @NotNull Map<String, Object> metadataProps) {
+    if (is == null) {
+      return;
+    }
+    try (ImageInputStream iis = ImageIO.createImageInputStream(is)) {
+      Iterator<ImageReader> readers = iis != null ? ImageIO.getImageReaders(iis) : null;
+      if (readers == null || !readers.hasNext()) {
+        return;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(iis, true, true);
+        metadataProps.put(TIFF_IMAGEWIDTH, reader.getWidth(0));
+        metadataProps.put(TIFF_IMAGELENGTH, reader.getHeight(0));
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+    /*CHECKSTYLE:OFF*/ catch (Exception ex) { /*CHECKSTYLE:ON*/
+      // ignore
+    }
   }
 
   @Override
-  public Collection<Revision> getRevisions(String s, Calendar calendar) throws Exception {
-    throw new UnsupportedOperationException();
+  public Asset createAssetForBinary(String binaryFilePath, boolean doSave) {
+    Asset asset = getAssetForBinary(binaryFilePath);
+    if (asset != null) {
+      return asset;
+    }
+    Resource binaryFile = resourceResolver.getResource(binaryFilePath);
+    if (binaryFile == null) {
+      return null;
+    }
+    Resource binaryContent = binaryFile.getChild(JCR_CONTENT);
+    String mimeType = ResourceUtil.getValueMap(binaryContent).get(JCR_MIMETYPE, String.class);
+    try (InputStream is = binaryContent != null ? binaryContent.getValueMap().get(JCR_DATA, InputStream.class) : null) {
+      return createAsset(DamUtil.binaryToAssetPath(binaryFilePath), is, mimeType, doSave);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read binary data: " + binaryFilePath, ex);
+    }
   }
 
   @Override
-  public Asset createAssetForBinary(String s, boolean b) {
-    throw new UnsupportedOperationException();
+  public Asset getAssetForBinary(String binaryFilePath) {
+    Resource assetResource = resourceResolver.getResource(DamUtil.binaryToAssetPath(binaryFilePath));
+    if (assetResource == null) {
+      return null;
+    }
+    return assetResource.adaptTo(Asset.class);
   }
 
   @Override
-  public Asset getAssetForBinary(String s) {
-    throw new UnsupportedOperationException();
+  public boolean removeAssetForBinary(String binaryFilePath) {
+    Resource assetResource = resourceResolver.getResource(DamUtil.binaryToAssetPath(binaryFilePath));
+    if (assetResource == null) {
+      return false;
+    }
+    String assetPath = assetResource.getPath();
+    try {
+      resourceResolver.delete(assetResource);
+      resourceResolver.commit();
+    }
+    catch (PersistenceException ex) {
+      throw new RuntimeException("Unable to remove asset at " + assetPath, ex);
+    }
+    if (metadataIndex != null) {
+      metadataIndex.remove(assetPath);
+    }
+    eventDispatcher.dispatch(DamEvent.assetRemoved(assetPath, resourceResolver.getUserID()));
+    eventDispatcher.commit();
+    return true;
   }
 
-  @Override
-  public boolean removeAssetForBinary(String s) {
-    throw new UnsupportedOperationException();
+  /**
+   * Creates a new asset or replaces the original rendition of an existing asset.
+   * The metadata extracted from the new binary and <code>dc:format</code> are updated,
+   * other metadata and renditions of an existing asset are kept.
+   */
+  // AEM 6.5
+  public Asset createOrUpdateAsset(String assetPath, Binary binary, String mimeType, boolean doSave) {
+    boolean update = resourceResolver.getResource(assetPath) != null;
+    try (InputStream is = MockBinary.getStream(binary)) {
+      return storeAsset(assetPath, is, mimeType, doSave, update);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to create asset at " + assetPath, ex);
+    }
   }
 
-  @Override
-  public Revision createRevision(Asset asset, String s, String s1) throws Exception {
-    throw new UnsupportedOperationException();
+  /**
+   * Creates a new asset or updates an existing asset, optionally creating a revision of the existing asset before.
+   */
+  // AEM Cloud
+  @SuppressWarnings("PMD.UseObjectForClearerAPI")
+  public Asset createOrUpdateAsset(String assetPath, Binary binary, String mimeType, boolean doSave,
+      boolean createRevision, String revisionLabel, String revisionComment) {
+    if (createRevision) {
+      Resource assetResource = resourceResolver.getResource(assetPath);
+      Asset asset = assetResource != null ? assetResource.adaptTo(Asset.class) : null;
+      if (asset != null) {
+        createRevision(asset, revisionLabel, revisionComment);
+      }
+    }
+    return createOrUpdateAsset(assetPath, binary, mimeType, doSave);
   }
 
-  @Override
-  public String assignAssetID(Asset asset) throws PathNotFoundException, RepositoryException {
-    throw new UnsupportedOperationException();
+  /**
+   * Creates a new asset, removing an existing asset at the same path with all its renditions and metadata.
+   */
+  // AEM Cloud
+  public Asset createOrReplaceAsset(String assetPath, Binary binary, String mimeType, boolean doSave) {
+    Resource assetResource = resourceResolver.getResource(assetPath);
+    if (assetResource != null) {
+      try {
+        resourceResolver.delete(assetResource);
+      }
+      catch (PersistenceException ex) {
+        throw new RuntimeException("Unable to remove asset at " + assetPath, ex);
+      }
+      if (metadataIndex != null) {
+        metadataIndex.remove(assetPath);
+      }
+      eventDispatcher.dispatch(DamEvent.assetRemoved(assetPath, resourceResolver.getUserID()));
+    }
+    try (InputStream is = MockBinary.getStream(binary)) {
+      return createAsset(assetPath, is, mimeType, doSave);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to create asset at " + assetPath, ex);
+    }
   }
 
-  // AEM 6.5
-  @SuppressWarnings("unused")
-  public Asset createOrUpdateAsset(String arg0, Binary arg1, String arg2, boolean arg3) {
-    throw new UnsupportedOperationException();
+  @Override
+  public Revision createRevision(Asset asset, String label, String comment) {
+    Resource assetResource = resourceResolver.getResource(asset.getPath());
+    if (assetResource == null) {
+      throw new IllegalArgumentException("Asset does not exist: " + asset.getPath());
+    }
+    return new MockAssetRevision(revisionStore.createRevision(assetResource, label, comment), resourceResolver,
+        blobStore);
   }
 
   // AEM 6.5.5
   @SuppressWarnings("unused")
-  public Revision createRevision(Asset arg0, String arg1, String arg2, User arg3) {
-    throw new UnsupportedOperationException();
+  public Revision createRevision(Asset asset, String label, String comment, User user) {
+    return createRevision(asset, label, comment);
   }
 
-  // AEM Cloud
-  @SuppressWarnings("unused")
-  public Asset createOrReplaceAsset(String arg0, Binary arg1, String arg2, boolean arg3) {
-    throw new UnsupportedOperationException();
+  @Override
+  public Collection<Revision> getRevisions(String path, Calendar calendar) {
+    List<Revision> revisions = new ArrayList<>();
+    for (MockAssetRevisionStore.Entry entry : revisionStore.getRevisions(path, calendar)) {
+      revisions.add(new MockAssetRevision(entry, resourceResolver, blobStore));
+    }
+    return revisions;
   }
 
-  // AEM Cloud
-  @SuppressWarnings({ "unused", "PMD.UseObjectForClearerAPI" })
-  public Asset createOrUpdateAsset(String arg0, Binary arg1, String arg2, boolean arg3, boolean arg4, String arg5, String arg6) {
+  @Override
+  public Asset restore(String revisionId) {
+    MockAssetRevisionStore.Entry entry = revisionStore.get(revisionId);
+    if (entry == null) {
+      throw new IllegalArgumentException("Revision not found: " + revisionId);
+    }
+    Resource assetResource;
+    try {
+      assetResource = revisionStore.restore(resourceResolver, entry);
+      resourceResolver.commit();
+    }
+    catch (PersistenceException ex) {
+      throw new RuntimeException("Restoring revision " + revisionId + " at " + entry.getPath() + " failed.", ex);
+    }
+    if (metadataIndex != null) {
+      metadataIndex.update(assetResource);
+    }
+    return assetResource.adaptTo(Asset.class);
+  }
+
+  @SuppressFBWarnings("STYLE")
+  private void createOrUpdateResource(String path, String jcrPrimaryType, Map<String, Object> props) {
+    Resource resource = resourceResolver.getResource(path);
+    if (resource == null) {
+      // create new resource
+      Map<String, Object> newResourceProps = new HashMap<>();
+      newResourceProps.put(JCR_PRIMARYTYPE, jcrPrimaryType);
+      if (props != null) {
+        newResourceProps.putAll(props);
+      }
+      contentBuilder.resource(path, newResourceProps);
+    }
+    else if (props != null) {
+      // update existing resource
+      ModifiableValueMap existingResourceProps = resource.adaptTo(ModifiableValueMap.class);
+      existingResourceProps.putAll(props);
+    }
+  }
+
+
+  /**
+   * Binary data and extracted metadata of an asset that is not yet stored in the repository.
+   */
+  static final class PreparedBinary {
+
+    private final byte[] data;
+    private final String blobId;
+    private final InputStream stream;
+    private final Map<String, Object> metadata;
+
+    /**
+     * @param data Binary data kept in memory
+     * @param blobId Blob ID of binary data stored in blob store
+     * @param stream Binary data that is streamed into the original rendition
+     * @param metadata Extracted metadata, or null to extract it from the stored original rendition
+     */
+    PreparedBinary(@Nullable byte[] data, @Nullable String blobId, @Nullable InputStream stream,
+        @Nullable Map<String, Object> metadata) {
+      this.data = data;
+      this.blobId = blobId;
+      this.stream = stream;
+      this.metadata = metadata;
+    }
+
+  }
+
+
+  // --- unsupported operations ---
+
+  @Override
+  public String assignAssetID(Asset asset) throws PathNotFoundException, RepositoryException {
     throw new UnsupportedOperationException();
   }
 
@@ -0,0 +1,469 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.component.annotations.Component;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+
+/**
+ * Index over the metadata properties (<code>jcr:content/metadata</code>) of DAM assets, supporting equality and
+ * range lookups without traversing the asset tree.
+ * <p>
+ * The index is updated incrementally when assets are created or removed via the mocked
+ * {@link com.day.cq.dam.api.AssetManager} or created via the content builder. When asset metadata is changed
+ * or content is loaded by other means (e.g. from JSON files), call {@link #update(Resource)} for the changed assets or
+ * {@link #rebuild(ResourceResolver, String)} for a whole subtree.
+ * </p>
+ * <p>
+ * Numeric values and dates are indexed as numbers (dates as milliseconds), all other values as strings.
+ * Each value of a multi-value property is indexed separately.
+ * </p>
+ * <p>
+ * This OSGi service is not registered by default in AEM Mocks. Register it with
+ * <code>context.registerInjectActivateService(MockAssetMetadataIndex.class)</code> before creating assets.
+ * </p>
+ */
+@Component(service = MockAssetMetadataIndex.class)
+@ProviderType
+public final class MockAssetMetadataIndex {
+
+  private static final Set<String> IGNORED_PROPERTIES = Set.of(
+      JcrConstants.JCR_PRIMARYTYPE,
+      JcrConstants.JCR_MIXINTYPES);
+
+  private final Map<String, PropertyIndex> propertyIndexes = new HashMap<>();
+  // indexed values per asset path, to remove them when the asset is updated or removed
+  private final TreeMap<String, Map<String, List<Object>>> indexedValues = new TreeMap<>();
+
+  /**
+   * Adds or updates the index entries for the given asset.
+   * @param assetResource Asset resource
+   */
+  public void update(@NotNull Resource assetResource) {
+    String path = assetResource.getPath();
+    Resource metadata = assetResource.getChild(JcrConstants.JCR_CONTENT + "/" + DamConstants.METADATA_FOLDER);
+    Map<String, List<Object>> values = new HashMap<>();
+    if (metadata != null) {
+      for (Map.Entry<String, Object> entry : metadata.getValueMap().entrySet()) {
+        if (IGNORED_PROPERTIES.contains(entry.getKey())) {
+          continue;
+        }
+        List<Object> keys = toKeys(entry.getValue());
+        if (!keys.isEmpty()) {
+          values.put(entry.getKey(), keys);
+        }
+      }
+    }
+    synchronized (this) {
+      removeEntries(path);
+      indexedValues.put(path, values);
+      for (Map.Entry<String, List<Object>> entry : values.entrySet()) {
+        PropertyIndex propertyIndex = propertyIndexes.computeIfAbsent(entry.getKey(), key -> new PropertyIndex());
+        for (Object key : entry.getValue()) {
+          propertyIndex.add(key, path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes the index entries for the given asset.
+   * @param assetPath Asset path
+   */
+  public synchronized void remove(@NotNull String assetPath) {
+    removeEntries(assetPath);
+  }
+
+  /**
+   * Removes all index entries at or below the given path and indexes all assets found in the resource tree
+   * at or below this path.
+   * @param resourceResolver Resource resolver
+   * @param rootPath Root path
+   */
+  public void rebuild(@NotNull ResourceResolver resourceResolver, @NotNull String rootPath) {
+    synchronized (this) {
+      for (String path : new ArrayList<>(getPathsAtOrBelow(rootPath))) {
+        removeEntries(path);
+      }
+    }
+    Resource root = resourceResolver.getResource(rootPath);
+    if (root != null) {
+      indexTree(root);
+    }
+  }
+
+  private void indexTree(@NotNull Resource resource) {
+    if (isAsset(resource)) {
+      update(resource);
+      return;
+    }
+    for (Resource child : resource.getChildren()) {
+      indexTree(child);
+    }
+  }
+
+  private static boolean isAsset(@NotNull Resource resource) {
+    return StringUtils.equals(resource.getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class), DamConstants.NT_DAM_ASSET);
+  }
+
+  /**
+   * @return Number of indexed assets
+   */
+  public synchronized int getAssetCount() {
+    return indexedValues.size();
+  }
+
+  /**
+   * Starts a new query. All conditions of the query have to match.
+   * @return Query
+   */
+  public @NotNull Query query() {
+    return new Query();
+  }
+
+  private void removeEntries(@NotNull String path) {
+    Map<String, List<Object>> values = indexedValues.remove(path);
+    if (values == null) {
+      return;
+    }
+    for (Map.Entry<String, List<Object>> entry : values.entrySet()) {
+      PropertyIndex propertyIndex = propertyIndexes.get(entry.getKey());
+      for (Object key : entry.getValue()) {
+        propertyIndex.remove(key, path);
+      }
+      if (propertyIndex.isEmpty()) {
+        propertyIndexes.remove(entry.getKey());
+      }
+    }
+  }
+
+  private Set<String> getPathsAtOrBelow(@NotNull String rootPath) {
+    Set<String> result = new HashSet<>();
+    // paths are sorted, so all descendants follow the root path directly
+    for (String path : indexedValues.tailMap(rootPath, true).keySet()) {
+      if (!StringUtils.startsWith(path, rootPath)) {
+        break;
+      }
+      if (isAtOrBelow(path, rootPath)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  private static boolean isAtOrBelow(@NotNull String path, @NotNull String rootPath) {
+    return StringUtils.equals(path, rootPath) || StringUtils.startsWith(path, StringUtils.removeEnd(rootPath, "/") + "/");
+  }
+
+  private static @NotNull List<Object> toKeys(@Nullable Object value) {
+    List<Object> keys = new ArrayList<>();
+    if (value instanceof Object[]) {
+      for (Object item : (Object[])value) {
+        Object key = toKey(item);
+        if (key != null) {
+          keys.add(key);
+        }
+      }
+    }
+    else {
+      Object key = toKey(value);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  private static @Nullable Object toKey(@Nullable Object value) {
+    if (value == null || value instanceof InputStream) {
+      return null;
+    }
+    if (value instanceof Number) {
+      return ((Number)value).doubleValue();
+    }
+    if (value instanceof Calendar) {
+      return (double)((Calendar)value).getTimeInMillis();
+    }
+    if (value instanceof Date) {
+      return (double)((Date)value).getTime();
+    }
+    return value.toString();
+  }
+
+  private static @NotNull Object toQueryKey(@NotNull Object value) {
+    Object key = toKey(value);
+    if (key == null) {
+      throw new IllegalArgumentException("Unsupported query value: " + value);
+    }
+    return key;
+  }
+
+
+  /**
+   * Index for a single property. Numbers and strings are kept in separate sorted maps.
+   */
+  private static final class PropertyIndex {
+
+    private final NavigableMap<Double, Set<String>> numbers = new TreeMap<>();
+    private final NavigableMap<String, Set<String>> strings = new TreeMap<>();
+
+    void add(@NotNull Object key, @NotNull String path) {
+      getMap(key).computeIfAbsent(key, k -> new HashSet<>()).add(path);
+    }
+
+    void remove(@NotNull Object key, @NotNull String path) {
+      NavigableMap<Object, Set<String>> map = getMap(key);
+      Set<String> paths = map.get(key);
+      if (paths != null) {
+        paths.remove(path);
+        if (paths.isEmpty()) {
+          map.remove(key);
+        }
+      }
+    }
+
+    boolean isEmpty() {
+      return numbers.isEmpty() && strings.isEmpty();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    NavigableMap<Object, Set<String>> getMap(@NotNull Object key) {
+      return (NavigableMap)(key instanceof Double ? numbers : strings);
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    Set<String> find(@Nullable Object lower, boolean lowerInclusive, @Nullable Object upper, boolean upperInclusive) {
+      NavigableMap<Object, Set<String>> map = getMap(lower != null ? lower : upper);
+      if (lower != null && upper != null) {
+        if (lower.getClass() != upper.getClass()) {
+          throw new IllegalArgumentException("Lower and upper bound have different types: " + lower + ", " + upper);
+        }
+        if (((Comparable<Object>)lower).compareTo(upper) > 0) {
+          return Collections.emptySet();
+        }
+        map = map.subMap(lower, lowerInclusive, upper, upperInclusive);
+      }
+      else if (lower != null) {
+        map = map.tailMap(lower, lowerInclusive);
+      }
+      else {
+        map = map.headMap(upper, upperInclusive);
+      }
+      Set<String> result = new HashSet<>();
+      for (Set<String> paths : map.values()) {
+        result.addAll(paths);
+      }
+      return result;
+    }
+
+  }
+
+
+  /**
+   * Query for assets by metadata properties.
+   */
+  public final class Query {
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private String rootPath;
+
+    private Query() {
+      // created via query()
+    }
+
+    /**
+     * Restricts the results to assets at or below the given path.
+     * @param path Root path
+     * @return this
+     */
+    public @NotNull Query path(@NotNull String path) {
+      this.rootPath = path;
+      return this;
+    }
+
+    /**
+     * Property has the given value (or contains it, for multi-value properties).
+     * @param property Metadata property name
+     * @param value Value
+     * @return this
+     */
+    public @NotNull Query equalTo(@NotNull String property, @NotNull Object value) {
+      Object key = toQueryKey(value);
+      return range(property, key, true, key, true);
+    }
+
+    /**
+     * Property value is greater than the given value.
+     * @param property Metadata property name
+     * @param value Value
+     * @return this
+     */
+    public @NotNull Query greaterThan(@NotNull String property, @NotNull Object value) {
+      return range(property, value, false, null, false);
+    }
+
+    /**
+     * Property value is greater than or equal to the given value.
+     * @param property Metadata property name
+     * @param value Value
+     * @return this
+     */
+    public @NotNull Query greaterThanOrEqualTo(@NotNull String property, @NotNull Object value) {
+      return range(property, value, true, null, false);
+    }
+
+    /**
+     * Property value is less than the given value.
+     * @param property Metadata property name
+     * @param value Value
+     * @return this
+     */
+    public @NotNull Query lessThan(@NotNull String property, @NotNull Object value) {
+      return range(property, null, false, value, false);
+    }
+
+    /**
+     * Property value is less than or equal to the given value.
+     * @param property Metadata property name
+     * @param value Value
+     * @return this
+     */
+    public @NotNull Query lessThanOrEqualTo(@NotNull String property, @NotNull Object value) {
+      return range(property, null, false, value, true);
+    }
+
+    /**
+     * Property value is in the given range.
+     * @param property Metadata property name
+     * @param lower Lower bound (optional)
+     * @param lowerInclusive Lower bound is included
+     * @param upper Upper bound (optional)
+     * @param upperInclusive Upper bound is included
+     * @return this
+     */
+    public @NotNull Query range(@NotNull String property, @Nullable Object lower, boolean lowerInclusive,
+        @Nullable Object upper, boolean upperInclusive) {
+      if (lower == null && upper == null) {
+        throw new IllegalArgumentException("No bounds given for property " + property);
+      }
+      conditions.add(new Condition(property,
+          lower != null ? toQueryKey(lower) : null, lowerInclusive,
+          upper != null ? toQueryKey(upper) : null, upperInclusive));
+      return this;
+    }
+
+    /**
+     * @return Paths of all matching assets, sorted by path
+     */
+    public @NotNull List<String> getPaths() {
+      List<Set<String>> matches = new ArrayList<>();
+      Set<String> candidates;
+      synchronized (MockAssetMetadataIndex.this) {
+        for (Condition condition : conditions) {
+          PropertyIndex propertyIndex = propertyIndexes.get(condition.property);
+          if (propertyIndex == null) {
+            return Collections.emptyList();
+          }
+          matches.add(propertyIndex.find(condition.lower, condition.lowerInclusive, condition.upper, condition.upperInclusive));
+        }
+        if (matches.isEmpty()) {
+          candidates = rootPath != null ? getPathsAtOrBelow(rootPath) : new HashSet<>(indexedValues.keySet());
+        }
+        else {
+          // intersect, starting with the smallest set
+          matches.sort(Comparator.comparingInt(Set::size));
+          candidates = matches.get(0);
+          for (int i = 1; i < matches.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(matches.get(i));
+          }
+        }
+      }
+      TreeSet<String> result = new TreeSet<>();
+      for (String path : candidates) {
+        if (rootPath == null || isAtOrBelow(path, rootPath)) {
+          result.add(path);
+        }
+      }
+      return new ArrayList<>(result);
+    }
+
+    /**
+     * @param resourceResolver Resource resolver
+     * @return All matching assets, sorted by path
+     */
+    public @NotNull List<Asset> getAssets(@NotNull ResourceResolver resourceResolver) {
+      List<Asset> result = new ArrayList<>();
+      for (String path : getPaths()) {
+        Resource resource = resourceResolver.getResource(path);
+        Asset asset = resource != null ? resource.adaptTo(Asset.class) : null;
+        if (asset != null) {
+          result.add(asset);
+        }
+      }
+      return result;
+    }
+
+  }
+
+
+  private static final class Condition {
+
+    private final String property;
+    private final Object lower;
+    private final boolean lowerInclusive;
+    private final Object upper;
+    private final boolean upperInclusive;
+
+    Condition(String property, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+      this.property = property;
+      this.lower = lower;
+      this.lowerInclusive = lowerInclusive;
+      this.upper = upper;
+      this.upperInclusive = upperInclusive;
+    }
+
+  }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.io.InputStream;
+import java.util.Calendar;
+
+import javax.jcr.version.Version;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Revision;
+
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
+import io.wcm.testing.mock.aem.impl.SnapshotRevision;
+
+/**
+ * Mock implementation of {@link Revision}.
+ */
+final class MockAssetRevision implements Revision, SnapshotRevision {
+
+  private final MockAssetRevisionStore.Entry entry;
+  private final ResourceResolver resourceResolver;
+  private final MockBlobStore blobStore;
+  private final ValueMap properties;
+  private final ValueMap metadataProperties;
+
+  MockAssetRevision(@NotNull MockAssetRevisionStore.Entry entry, @NotNull ResourceResolver resourceResolver,
+      @Nullable MockBlobStore blobStore) {
+    this.entry = entry;
+    this.resourceResolver = resourceResolver;
+    this.blobStore = blobStore;
+    ResourceSnapshot contentSnapshot = entry.getSnapshot().getChild(JcrConstants.JCR_CONTENT);
+    ResourceSnapshot metadataSnapshot = contentSnapshot != null ? contentSnapshot.getChild(DamConstants.METADATA_FOLDER) : null;
+    this.properties = contentSnapshot != null ? new ValueMapDecorator(contentSnapshot.getProperties()) : ValueMap.EMPTY;
+    this.metadataProperties = metadataSnapshot != null ? new ValueMapDecorator(metadataSnapshot.getProperties()) : ValueMap.EMPTY;
+  }
+
+  MockAssetRevisionStore.Entry getEntry() {
+    return this.entry;
+  }
+
+  @Override
+  public String getId() {
+    return entry.getId();
+  }
+
+  @Override
+  public String getLabel() {
+    return entry.getLabel();
+  }
+
+  @Override
+  public String getComment() {
+    return entry.getComment();
+  }
+
+  @Override
+  public Calendar getCreated() {
+    return entry.getCreated();
+  }
+
+  @Override
+  public ValueMap getProperties() {
+    return this.properties;
+  }
+
+  /**
+   * @return Metadata properties of the asset at the time the revision was created
+   */
+  public ValueMap getMetadataProperties() {
+    return this.metadataProperties;
+  }
+
+  /**
+   * @return Parent path of the asset this revision belongs to
+   */
+  public String getParentPath() {
+    return ResourceUtil.getParent(entry.getPath());
+  }
+
+  /**
+   * @return true if the asset this revision belongs to was deleted
+   */
+  public boolean isDeleted() {
+    return resourceResolver.getResource(entry.getPath()) == null;
+  }
+
+  /**
+   * @return Path of the asset this revision belongs to
+   */
+  public String getPath() {
+    return entry.getPath();
+  }
+
+  /**
+   * @return Name of the asset this revision belongs to
+   */
+  public String getName() {
+    return ResourceUtil.getName(entry.getPath());
+  }
+
+  @Override
+  public @NotNull ResourceSnapshot getSnapshot() {
+    return entry.getSnapshot();
+  }
+
+  @Override
+  public @Nullable InputStream getRenditionStream(@NotNull String renditionName) {
+    ResourceSnapshot renditionContent = getChild(entry.getSnapshot(), JcrConstants.JCR_CONTENT,
+        DamConstants.RENDITIONS_FOLDER, renditionName, JcrConstants.JCR_CONTENT);
+    if (renditionContent == null) {
+      return null;
+    }
+    ValueMap props = new ValueMapDecorator(renditionContent.getProperties());
+    String blobId = props.get(MockBlobStore.PN_BLOB_ID, String.class);
+    if (blobId != null && blobStore != null) {
+      return blobStore.getStream(blobId);
+    }
+    return props.get(JcrConstants.JCR_DATA, InputStream.class);
+  }
+
+  private static @Nullable ResourceSnapshot getChild(@NotNull ResourceSnapshot snapshot, @NotNull String... names) {
+    ResourceSnapshot current = snapshot;
+    for (String name : names) {
+      current = current.getChild(name);
+      if (current == null) {
+        return null;
+      }
+    }
+    return current;
+  }
+
+  @Override
+  public String toString() {
+    return "MockAssetRevision [id=" + entry.getId() + ", path=" + entry.getPath() + "]";
+  }
+
+
+  // --- unsupported operations ---
+
+  @Override
+  public Version getVersion() {
+    throw new UnsupportedOperationException();
+  }
+
+}
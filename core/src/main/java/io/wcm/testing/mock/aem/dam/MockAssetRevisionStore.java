@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
+
+/**
+ * In-memory storage for asset revisions.
+ * Each revision holds a {@link ResourceSnapshot} of the asset that shares all unchanged nodes, metadata and
+ * rendition binaries with the previous revision of the same asset.
+ * One instance is shared by all asset managers and assets of the same context.
+ */
+final class MockAssetRevisionStore {
+
+  private final Map<String, List<Entry>> revisionsByPath = new HashMap<>();
+  private final Map<String, Entry> revisionsById = new HashMap<>();
+
+  /**
+   * Captures a snapshot of the given asset and adds it as new revision.
+   * @param assetResource Asset resource
+   * @param label Label
+   * @param comment Comment
+   * @return Revision entry
+   */
+  @NotNull
+  Entry createRevision(@NotNull Resource assetResource, @Nullable String label, @Nullable String comment) {
+    // share all unchanged nodes and binaries with the latest revision of the same asset
+    ResourceSnapshot previous = getLatestSnapshot(assetResource.getPath());
+    ResourceSnapshot snapshot = ResourceSnapshot.capture(assetResource, previous);
+    return add(assetResource.getPath(), snapshot, label, comment);
+  }
+
+  /**
+   * Restores the given revision. If the asset still exists, its properties and content are only rewritten if they
+   * differ from the revision.
+   * @param resourceResolver Resource resolver
+   * @param entry Revision entry
+   * @return Restored asset resource
+   * @throws PersistenceException Persistence exception
+   */
+  @NotNull
+  Resource restore(@NotNull ResourceResolver resourceResolver, @NotNull Entry entry) throws PersistenceException {
+    ResourceSnapshot snapshot = entry.getSnapshot();
+    Resource assetResource = resourceResolver.getResource(entry.getPath());
+    if (assetResource == null) {
+      Resource parentResource = resourceResolver.getResource(ResourceUtil.getParent(entry.getPath()));
+      if (parentResource == null) {
+        throw new PersistenceException("Parent of asset " + entry.getPath() + " does not exist.");
+      }
+      return snapshot.restore(parentResource, resourceResolver);
+    }
+    if (!snapshot.matches(assetResource, child -> true)) {
+      snapshot.restoreProperties(assetResource);
+      for (Resource child : assetResource.getChildren()) {
+        resourceResolver.delete(child);
+      }
+      snapshot.restoreChildren(assetResource, resourceResolver);
+    }
+    return assetResource;
+  }
+
+  /**
+   * Adds a new revision.
+   * @param path Asset path
+   * @param snapshot Asset snapshot
+   * @param label Label
+   * @param comment Comment
+   * @return Revision entry
+   */
+  synchronized @NotNull Entry add(@NotNull String path, @NotNull ResourceSnapshot snapshot,
+      @Nullable String label, @Nullable String comment) {
+    List<Entry> revisions = revisionsByPath.computeIfAbsent(path, key -> new ArrayList<>());
+    Entry entry = new Entry(UUID.randomUUID().toString(), path, snapshot, label, comment, Calendar.getInstance());
+    revisions.add(entry);
+    revisionsById.put(entry.getId(), entry);
+    return entry;
+  }
+
+  /**
+   * Removes all revisions and deletes the temporary files holding their binary data.
+   */
+  synchronized void discard() {
+    for (Entry entry : revisionsById.values()) {
+      entry.getSnapshot().discard();
+    }
+    revisionsByPath.clear();
+    revisionsById.clear();
+  }
+
+  /**
+   * @param path Asset path
+   * @return Latest snapshot of the given asset or null if no revision exists
+   */
+  synchronized @Nullable ResourceSnapshot getLatestSnapshot(@NotNull String path) {
+    List<Entry> revisions = revisionsByPath.get(path);
+    if (revisions == null || revisions.isEmpty()) {
+      return null;
+    }
+    return revisions.get(revisions.size() - 1).getSnapshot();
+  }
+
+  /**
+   * @param id Revision id
+   * @return Revision entry or null
+   */
+  synchronized @Nullable Entry get(@NotNull String id) {
+    return revisionsById.get(id);
+  }
+
+  /**
+   * @param path Asset path
+   * @param date Point in time (optional)
+   * @return All revisions of the given asset created at or before the given date, oldest first
+   */
+  synchronized @NotNull List<Entry> getRevisions(@NotNull String path, @Nullable Calendar date) {
+    List<Entry> revisions = revisionsByPath.get(path);
+    if (revisions == null) {
+      return Collections.emptyList();
+    }
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : revisions) {
+      if (date == null || !entry.created.after(date)) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Revision data stored for an asset.
+   */
+  static final class Entry {
+
+    private final String id;
+    private final String path;
+    private final ResourceSnapshot snapshot;
+    private final String label;
+    private final String comment;
+    private final Calendar created;
+
+    Entry(String id, String path, ResourceSnapshot snapshot, String label, String comment, Calendar created) {
+      this.id = id;
+      this.path = path;
+      this.snapshot = snapshot;
+      this.label = label;
+      this.comment = comment;
+      this.created = created;
+    }
+
+    String getId() {
+      return this.id;
+    }
+
+    String getPath() {
+      return this.path;
+    }
+
+    ResourceSnapshot getSnapshot() {
+      return this.snapshot;
+    }
+
+    String getLabel() {
+      return this.label;
+    }
+
+    String getComment() {
+      return this.comment;
+    }
+
+    Calendar getCreated() {
+      return (Calendar)this.created.clone();
+    }
+
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Mock implementation of {@link Binary} for rendition binaries.
+ * Binaries stored in the {@link MockBlobStore} are read with random access from the memory-mapped blob, if the blob
+ * is small enough to be memory-mapped.
+ * Other binaries are read from a new stream for each access, skipping to the requested position.
+ */
+final class MockBinary implements Binary {
+
+  private final ByteBuffer buffer;
+  private final Supplier<InputStream> streamSupplier;
+  private final LongSupplier sizeSupplier;
+  private long size = -1L;
+  private boolean disposed;
+
+  private MockBinary(@Nullable ByteBuffer buffer, @Nullable Supplier<InputStream> streamSupplier,
+      @NotNull LongSupplier sizeSupplier) {
+    this.buffer = buffer;
+    this.streamSupplier = streamSupplier;
+    this.sizeSupplier = sizeSupplier;
+  }
+
+  /**
+   * @param buffer Read-only buffer with the binary data
+   * @return Binary
+   */
+  static @NotNull MockBinary forBuffer(@NotNull ByteBuffer buffer) {
+    long remaining = buffer.remaining();
+    return new MockBinary(buffer, null, () -> remaining);
+  }
+
+  /**
+   * @param streamSupplier Opens a new stream for the binary data
+   * @param size Size of the binary data
+   * @return Binary
+   */
+  static @NotNull MockBinary forStream(@NotNull Supplier<InputStream> streamSupplier, long size) {
+    return new MockBinary(null, streamSupplier, () -> size);
+  }
+
+  /**
+   * @param streamSupplier Opens a new stream for the binary data
+   * @param sizeSupplier Determines the size of the binary data, called only when the size is needed
+   * @return Binary
+   */
+  static @NotNull MockBinary forStream(@NotNull Supplier<InputStream> streamSupplier, @NotNull LongSupplier sizeSupplier) {
+    return new MockBinary(null, streamSupplier, sizeSupplier);
+  }
+
+  /**
+   * Gets the stream of the given binary, wrapping the repository exception.
+   * @param binary Binary
+   * @return Input stream
+   */
+  static @NotNull InputStream getStream(@NotNull Binary binary) {
+    try {
+      return binary.getStream();
+    }
+    catch (RepositoryException ex) {
+      throw new RuntimeException("Unable to read binary.", ex);
+    }
+  }
+
+  @Override
+  public InputStream getStream() throws RepositoryException {
+    checkDisposed();
+    if (buffer != null) {
+      return new MockBlobStore.ByteBufferInputStream(buffer.duplicate());
+    }
+    InputStream is = streamSupplier.get();
+    if (is == null) {
+      throw new RepositoryException("Binary data not available.");
+    }
+    return is;
+  }
+
+  @Override
+  public int read(byte[] b, long position) throws IOException, RepositoryException {
+    checkDisposed();
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position: " + position);
+    }
+    if (position >= getSizeInternal()) {
+      return -1;
+    }
+    if (buffer != null) {
+      ByteBuffer view = buffer.duplicate();
+      view.position(view.position() + (int)position);
+      int count = Math.min(b.length, view.remaining());
+      view.get(b, 0, count);
+      return count;
+    }
+    try (InputStream is = getStream()) {
+      IOUtils.skipFully(is, position);
+      return IOUtils.read(is, b);
+    }
+  }
+
+  @Override
+  public long getSize() throws RepositoryException {
+    checkDisposed();
+    return getSizeInternal();
+  }
+
+  private long getSizeInternal() {
+    if (size < 0) {
+      size = sizeSupplier.getAsLong();
+    }
+    return size;
+  }
+
+  @Override
+  public void dispose() {
+    disposed = true;
+  }
+
+  private void checkDisposed() {
+    if (disposed) {
+      throw new IllegalStateException("Binary is disposed.");
+    }
+  }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+/**
+ * Content-addressed store for DAM rendition binaries.
+ * <p>
+ * Binaries are keyed by their SHA-256 hash, so identical binaries are stored only once. They are kept in temporary
+ * files that are memory-mapped for reading, so the binary data does not live on the Java heap. Binaries larger than
+ * 2GB cannot be mapped into a single buffer, they are streamed from the file instead.
+ * </p>
+ * <p>
+ * If this service is registered, renditions created via the mocked {@link com.day.cq.dam.api.AssetManager} and
+ * {@link com.day.cq.dam.api.Asset} implementations only store a reference to the binary in the repository
+ * (property <code>blobId</code> in the <code>jcr:content</code> node instead of <code>jcr:data</code>).
+ * The binary data is available via the rendition's {@link com.day.cq.dam.api.Rendition#getStream()} method
+ * and by adapting the rendition to {@link InputStream}.
+ * </p>
+ * <p>
+ * This OSGi service is not registered by default in AEM Mocks, as it changes how rendition binaries are stored.
+ * The temporary files are deleted when the service is deactivated, or when the blob store is closed.
+ * </p>
+ */
+@Component(service = MockBlobStore.class)
+@ProviderType
+public final class MockBlobStore implements AutoCloseable {
+
+  /**
+   * Property in the rendition's <code>jcr:content</code> node that references the binary in the blob store.
+   */
+  public static final String PN_BLOB_ID = "blobId";
+
+  private final Path directory;
+  private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a blob store in a new temporary directory.
+   */
+  public MockBlobStore() {
+    try {
+      this.directory = Files.createTempDirectory("aem-mock-blobstore");
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException("Unable to create blob store directory.", ex);
+    }
+  }
+
+  /**
+   * Stores the binary data from the given stream. The stream is copied to a file while the hash is computed,
+   * the binary is never completely loaded into memory.
+   * @param inputStream Binary data. The stream is not closed.
+   * @return Blob ID (hex-encoded SHA-256 hash of the binary data)
+   */
+  public @NotNull String put(@NotNull InputStream inputStream) {
+    Path tempFile = null;
+    try {
+      tempFile = Files.createTempFile(directory, "upload", ".tmp");
+      MessageDigest digest = DigestUtils.getSha256Digest();
+      try (OutputStream os = Files.newOutputStream(tempFile)) {
+        IOUtils.copy(new DigestInputStream(inputStream, digest), os);
+      }
+      String blobId = Hex.encodeHexString(digest.digest());
+      // the file is moved to its final location only by the thread that adds the blob
+      Path uploadedFile = tempFile;
+      blobs.computeIfAbsent(blobId, id -> moveAndMap(uploadedFile, id));
+      return blobId;
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException("Unable to store binary.", ex);
+    }
+    finally {
+      // identical binary already stored (possibly concurrently by another thread), or storing failed
+      if (tempFile != null) {
+        FileUtils.deleteQuietly(tempFile.toFile());
+      }
+    }
+  }
+
+  /**
+   * @param blobId Blob ID
+   * @return true if a binary with this ID is stored
+   */
+  public boolean contains(@NotNull String blobId) {
+    return blobs.containsKey(blobId);
+  }
+
+  /**
+   * Gets read-only buffer with random access to the binary data.
+   * @param blobId Blob ID
+   * @return Read-only buffer or null if the blob does not exist or is too large to be memory-mapped (over 2GB)
+   */
+  public @Nullable ByteBuffer getBuffer(@NotNull String blobId) {
+    Blob blob = blobs.get(blobId);
+    if (blob == null || blob.buffer == null) {
+      return null;
+    }
+    return blob.buffer.asReadOnlyBuffer();
+  }
+
+  /**
+   * Opens a stream that reads directly from the memory-mapped binary data, or from the file if the binary
+   * is too large to be memory-mapped.
+   * @param blobId Blob ID
+   * @return Input stream or null if the blob does not exist
+   */
+  public @Nullable InputStream getStream(@NotNull String blobId) {
+    Blob blob = blobs.get(blobId);
+    if (blob == null) {
+      return null;
+    }
+    if (blob.buffer != null) {
+      return new ByteBufferInputStream(blob.buffer.asReadOnlyBuffer());
+    }
+    try {
+      return Channels.newInputStream(FileChannel.open(blob.file, StandardOpenOption.READ));
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException("Unable to read binary " + blobId, ex);
+    }
+  }
+
+  /**
+   * @param blobId Blob ID
+   * @return Size of the binary in bytes, or -1 if the blob does not exist
+   */
+  public long getSize(@NotNull String blobId) {
+    Blob blob = blobs.get(blobId);
+    if (blob == null) {
+      return -1L;
+    }
+    return blob.size;
+  }
+
+  /**
+   * @return Number of distinct binaries stored
+   */
+  public int getBlobCount() {
+    return blobs.size();
+  }
+
+  /**
+   * @return Total size of all distinct binaries stored in bytes
+   */
+  public long getTotalSize() {
+    return blobs.values().stream().mapToLong(blob -> blob.size).sum();
+  }
+
+  private Path getFile(String blobId) {
+    return directory.resolve(blobId);
+  }
+
+  private Blob moveAndMap(Path tempFile, String blobId) {
+    Path file = getFile(blobId);
+    try {
+      Files.move(tempFile, file);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long size = channel.size();
+        // a single buffer cannot hold more than Integer.MAX_VALUE bytes
+        MappedByteBuffer buffer = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        return new Blob(file, size, buffer);
+      }
+    }
+    catch (IOException ex) {
+      FileUtils.deleteQuietly(file.toFile());
+      throw new UncheckedIOException("Unable to store binary " + blobId, ex);
+    }
+  }
+
+  /**
+   * Removes all binaries and deletes the temporary directory of the blob store.
+   * Called automatically when the OSGi service is deactivated, e.g. when the AEM context is torn down.
+   */
+  @Override
+  public void close() {
+    blobs.clear();
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Deactivate
+  private void deactivate() {
+    close();
+  }
+
+
+  /**
+   * Stored binary.
+   */
+  private static final class Blob {
+
+    private final Path file;
+    private final long size;
+    // null if the binary is too large to be memory-mapped
+    private final MappedByteBuffer buffer;
+
+    Blob(@NotNull Path file, long size, @Nullable MappedByteBuffer buffer) {
+      this.file = file;
+      this.size = size;
+      this.buffer = buffer;
+    }
+
+  }
+
+
+  /**
+   * Input stream reading from a byte buffer.
+   */
+  static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int)Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+  }
+
+}
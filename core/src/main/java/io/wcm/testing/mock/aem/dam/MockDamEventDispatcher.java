@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.EventAdmin;
+
+import com.day.cq.dam.api.DamEvent;
+
+/**
+ * Delivers the {@link DamEvent}s emitted by the mocked DAM API implementations to the {@link EventAdmin}.
+ * <p>
+ * The delivery mode can be configured via the OSGi property <code>deliveryMode</code> or
+ * {@link #setDeliveryMode(DeliveryMode)}:
+ * </p>
+ * <ul>
+ * <li>{@link DeliveryMode#SYNCHRONOUS}: Events are delivered on the calling thread when they are emitted (default).</li>
+ * <li>{@link DeliveryMode#ASYNCHRONOUS}: Events are delivered on a pool of worker threads (OSGi property
+ * <code>threads</code>). Events of the same asset are always delivered in the order they were emitted.</li>
+ * <li>{@link DeliveryMode#BATCHED}: Events are queued and delivered on the calling thread when the changes
+ * are committed by the mocked DAM API implementations or the content builder.</li>
+ * </ul>
+ * <p>
+ * In {@link DeliveryMode#BATCHED} mode a plain {@link org.apache.sling.api.resource.ResourceResolver#commit()} is
+ * not detected by the dispatcher: the queued events are only delivered when {@link #commit()} or {@link #flush()}
+ * is called, or when the dispatcher is deactivated at the end of the test.
+ * </p>
+ * <p>
+ * Use {@link #flush()} to wait until all emitted events are delivered.
+ * </p>
+ */
+@Component(service = MockDamEventDispatcher.class)
+@ProviderType
+public final class MockDamEventDispatcher {
+
+  /**
+   * OSGi property for the delivery mode.
+   */
+  public static final String PROPERTY_DELIVERY_MODE = "deliveryMode";
+
+  /**
+   * OSGi property for the number of worker threads used for asynchronous delivery.
+   */
+  public static final String PROPERTY_THREADS = "threads";
+
+  static final int DEFAULT_THREADS = 4;
+
+  /**
+   * DAM event delivery mode.
+   */
+  public enum DeliveryMode {
+
+    /**
+     * Deliver events synchronously on the calling thread.
+     */
+    SYNCHRONOUS,
+
+    /**
+     * Deliver events asynchronously on a worker pool, preserving the order of events per asset.
+     */
+    ASYNCHRONOUS,
+
+    /**
+     * Queue events and deliver them when the changes are committed.
+     */
+    BATCHED
+
+  }
+
+  @Reference
+  private EventAdmin eventAdmin;
+
+  private volatile DeliveryMode deliveryMode = DeliveryMode.SYNCHRONOUS;
+  private int threads = DEFAULT_THREADS;
+  private ExecutorService[] workers;
+  private final List<DamEvent> pendingEvents = new ArrayList<>();
+
+  /**
+   * Constructor for OSGi.
+   */
+  public MockDamEventDispatcher() {
+    // injected by OSGi
+  }
+
+  /**
+   * Creates a dispatcher that delivers events synchronously to the given event admin, used as fallback if
+   * no dispatcher service is registered.
+   * @param eventAdmin Event admin
+   */
+  MockDamEventDispatcher(@NotNull EventAdmin eventAdmin) {
+    this.eventAdmin = eventAdmin;
+  }
+
+  @Activate
+  private void activate(Map<String, Object> config) {
+    Object mode = config.get(PROPERTY_DELIVERY_MODE);
+    if (mode != null) {
+      this.deliveryMode = DeliveryMode.valueOf(StringUtils.upperCase(mode.toString()));
+    }
+    Object threadsValue = config.get(PROPERTY_THREADS);
+    if (threadsValue != null) {
+      this.threads = Math.max(1, Integer.parseInt(threadsValue.toString()));
+    }
+  }
+
+  @Deactivate
+  private void deactivate() {
+    flush();
+    synchronized (this) {
+      if (workers != null) {
+        for (ExecutorService worker : workers) {
+          worker.shutdown();
+        }
+        workers = null;
+      }
+    }
+  }
+
+  /**
+   * @return Delivery mode
+   */
+  public @NotNull DeliveryMode getDeliveryMode() {
+    return this.deliveryMode;
+  }
+
+  /**
+   * Sets the delivery mode. All events emitted before are delivered before the mode is switched.
+   * @param deliveryMode Delivery mode
+   */
+  public void setDeliveryMode(@NotNull DeliveryMode deliveryMode) {
+    flush();
+    this.deliveryMode = deliveryMode;
+  }
+
+  /**
+   * Emits a DAM event using the configured delivery mode.
+   * @param event DAM event
+   */
+  public void dispatch(@NotNull DamEvent event) {
+    switch (deliveryMode) {
+      case ASYNCHRONOUS:
+        getWorker(event.getAssetPath()).execute(() -> eventAdmin.sendEvent(event.toEvent()));
+        break;
+      case BATCHED:
+        synchronized (pendingEvents) {
+          pendingEvents.add(event);
+        }
+        break;
+      default:
+        eventAdmin.sendEvent(event.toEvent());
+    }
+  }
+
+  /**
+   * Emits multiple DAM events using the configured delivery mode. In {@link DeliveryMode#BATCHED} mode all events
+   * are queued at once and delivered with the next {@link #commit()}.
+   * @param events DAM events
+   */
+  public void dispatch(@NotNull Collection<DamEvent> events) {
+    if (deliveryMode == DeliveryMode.BATCHED) {
+      synchronized (pendingEvents) {
+        pendingEvents.addAll(events);
+      }
+      return;
+    }
+    for (DamEvent event : events) {
+      dispatch(event);
+    }
+  }
+
+  /**
+   * Delivers all events queued in {@link DeliveryMode#BATCHED} mode. This is called by the mocked DAM API
+   * implementations after they committed their changes. Call it after committing changes that were made
+   * without auto-save, as commits via the resource resolver are not detected.
+   */
+  public void commit() {
+    List<DamEvent> events;
+    synchronized (pendingEvents) {
+      if (pendingEvents.isEmpty()) {
+        return;
+      }
+      events = new ArrayList<>(pendingEvents);
+      pendingEvents.clear();
+    }
+    for (DamEvent event : events) {
+      eventAdmin.sendEvent(event.toEvent());
+    }
+  }
+
+  /**
+   * Delivers all queued events and waits until all events delivered asynchronously are processed.
+   */
+  public void flush() {
+    commit();
+    ExecutorService[] currentWorkers;
+    synchronized (this) {
+      currentWorkers = this.workers;
+    }
+    if (currentWorkers != null) {
+      CompletableFuture<?>[] futures = new CompletableFuture<?>[currentWorkers.length];
+      for (int i = 0; i < currentWorkers.length; i++) {
+        futures[i] = CompletableFuture.runAsync(() -> {
+          // wait for all previously submitted events of this worker
+        }, currentWorkers[i]);
+      }
+      CompletableFuture.allOf(futures).join();
+    }
+  }
+
+  private synchronized ExecutorService getWorker(String assetPath) {
+    if (workers == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      workers = new ExecutorService[threads];
+      for (int i = 0; i < threads; i++) {
+        workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "aem-mock-dam-event-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+    // events of the same asset are always delivered by the same single-threaded worker to preserve their order
+    return workers[Math.floorMod(StringUtils.defaultString(assetPath).hashCode(), workers.length)];
+  }
+
+}
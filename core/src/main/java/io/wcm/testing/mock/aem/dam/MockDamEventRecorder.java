@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+import com.day.cq.dam.api.DamEvent;
+
+/**
+ * Records all {@link DamEvent}s delivered via the {@link org.osgi.service.event.EventAdmin}, so tests can assert on
+ * the emitted events and the delivery throughput.
+ * <p>
+ * This OSGi service is not registered by default in AEM Mocks. Register it with
+ * <code>context.registerInjectActivateService(new MockDamEventRecorder())</code>.
+ * </p>
+ */
+@Component(service = EventHandler.class,
+    property = EventConstants.EVENT_TOPIC + "=" + DamEvent.EVENT_TOPIC)
+@ProviderType
+public final class MockDamEventRecorder implements EventHandler {
+
+  private final List<DamEvent> events = new ArrayList<>();
+  private long firstEventNanos;
+  private long lastEventNanos;
+
+  @Override
+  public void handleEvent(Event event) {
+    DamEvent damEvent = DamEvent.fromEvent(event);
+    if (damEvent == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    synchronized (events) {
+      if (events.isEmpty()) {
+        firstEventNanos = now;
+      }
+      lastEventNanos = now;
+      events.add(damEvent);
+      events.notifyAll();
+    }
+  }
+
+  /**
+   * @return All recorded events in the order they were delivered
+   */
+  public @NotNull List<DamEvent> getEvents() {
+    synchronized (events) {
+      return new ArrayList<>(events);
+    }
+  }
+
+  /**
+   * @param type Event type
+   * @return All recorded events of the given type in the order they were delivered
+   */
+  public @NotNull List<DamEvent> getEvents(@NotNull DamEvent.Type type) {
+    return getEvents().stream()
+        .filter(event -> event.getType() == type)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @return Number of recorded events
+   */
+  public int getEventCount() {
+    synchronized (events) {
+      return events.size();
+    }
+  }
+
+  /**
+   * Waits until at least the given number of events is recorded.
+   * @param count Number of events
+   * @param timeout Timeout
+   * @param unit Timeout unit
+   * @return true if the number of events was reached, false if the timeout elapsed before
+   * @throws InterruptedException Interrupted exception
+   */
+  public boolean awaitEvents(int count, long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (events) {
+      while (events.size() < count) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+          return false;
+        }
+        events.wait(remainingMillis);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * @return Delivery throughput in events per second, measured between the first and the last recorded event.
+   *         Returns 0 if less than two events are recorded.
+   */
+  public double getThroughput() {
+    synchronized (events) {
+      long durationNanos = lastEventNanos - firstEventNanos;
+      if (events.size() < 2 || durationNanos <= 0) {
+        return 0d;
+      }
+      return (events.size() - 1) * (double)TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+  }
+
+  /**
+   * Removes all recorded events.
+   */
+  public void clear() {
+    synchronized (events) {
+      events.clear();
+      firstEventNanos = 0;
+      lastEventNanos = 0;
+    }
+  }
+
+}
@@ -21,16 +21,28 @@ package io.wcm.testing.mock.aem.dam;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ResourceWrapper;
 import org.apache.sling.api.resource.ValueMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.Asset;
@@ -43,15 +55,77 @@ import com.day.cq.dam.commons.util.DamUtil;
 @SuppressWarnings("null")
 class MockRendition extends ResourceWrapper implements Rendition {
 
+  private static final AtomicLong LAST_MODIFIED = new AtomicLong();
+
   private final Resource resource;
   private final Resource contentResource;
   private final ValueMap contentProps;
+  private final MockBlobStore blobStore;
 
-  MockRendition(@NotNull Resource resource) {
+  MockRendition(@NotNull Resource resource, @Nullable MockBlobStore blobStore) {
     super(resource);
     this.resource = resource;
     this.contentResource = resource.getChild(JcrConstants.JCR_CONTENT);
     this.contentProps = ResourceUtil.getValueMap(this.contentResource);
+    this.blobStore = blobStore;
+  }
+
+  /**
+   * Creates a rendition resource that references the binary data in the blob store instead of storing
+   * it in the <code>jcr:data</code> property.
+   * @param resourceResolver Resource resolver
+   * @param path Rendition path. The parent resource has to exist.
+   * @param blobId Blob ID
+   * @param mimeType Mime type
+   * @return Rendition resource
+   * @throws PersistenceException Persistence exception
+   */
+  static @NotNull Resource createBlobRendition(@NotNull ResourceResolver resourceResolver, @NotNull String path,
+      @NotNull String blobId, @Nullable String mimeType) throws PersistenceException {
+    Resource existing = resourceResolver.getResource(path);
+    if (existing != null) {
+      resourceResolver.delete(existing);
+    }
+    Resource parent = resourceResolver.getResource(ResourceUtil.getParent(path));
+    if (parent == null) {
+      throw new PersistenceException("Parent resource does not exist: " + path);
+    }
+    Resource rendition = resourceResolver.create(parent, ResourceUtil.getName(path),
+        Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FILE));
+    Map<String, Object> contentProps = new HashMap<>();
+    contentProps.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+    contentProps.put(JcrConstants.JCR_LASTMODIFIED, nextLastModified());
+    contentProps.put(MockBlobStore.PN_BLOB_ID, blobId);
+    if (mimeType != null) {
+      contentProps.put(JcrConstants.JCR_MIMETYPE, mimeType);
+    }
+    resourceResolver.create(rendition, JcrConstants.JCR_CONTENT, contentProps);
+    return rendition;
+  }
+
+  /**
+   * Sets the last modified date of a rendition that was created or updated.
+   * @param rendition Rendition resource
+   */
+  static void touch(@NotNull Resource rendition) {
+    Resource content = rendition.getChild(JcrConstants.JCR_CONTENT);
+    ModifiableValueMap props = content != null ? content.adaptTo(ModifiableValueMap.class) : null;
+    if (props != null) {
+      props.put(JcrConstants.JCR_LASTMODIFIED, nextLastModified());
+    }
+  }
+
+  /**
+   * Last modified dates of renditions are strictly increasing, so a rendition that is replaced within the same
+   * millisecond still gets a new last modified date (it is used as cache key for decoded images).
+   * @return Last modified date
+   */
+  private static Calendar nextLastModified() {
+    long now = System.currentTimeMillis();
+    long timestamp = LAST_MODIFIED.updateAndGet(last -> Math.max(now, last + 1));
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(timestamp);
+    return calendar;
   }
 
   @SuppressWarnings("unchecked")
@@ -60,9 +134,23 @@ class MockRendition extends ResourceWrapper implements Rendition {
     if (type == Resource.class) {
       return (AdapterType)resource;
     }
+    if (type == InputStream.class) {
+      return (AdapterType)getStream();
+    }
     return super.adaptTo(type);
   }
 
+  /**
+   * @return Blob ID if the binary data of this rendition is stored in the blob store
+   */
+  @Nullable
+  String getBlobId() {
+    if (blobStore == null) {
+      return null;
+    }
+    return this.contentProps.get(MockBlobStore.PN_BLOB_ID, String.class);
+  }
+
   @Override
   public ValueMap getProperties() {
     return this.contentProps;
@@ -75,6 +163,13 @@ class MockRendition extends ResourceWrapper implements Rendition {
 
   @Override
   public InputStream getStream() {
+    String blobId = getBlobId();
+    if (blobId != null) {
+      return blobStore.getStream(blobId);
+    }
+    if (contentResource == null) {
+      return null;
+    }
     Resource data = contentResource.getChild(JcrConstants.JCR_DATA);
     if (data != null) {
       return data.adaptTo(InputStream.class);
@@ -84,20 +179,55 @@ class MockRendition extends ResourceWrapper implements Rendition {
     }
   }
 
+  /**
+   * Gets the size of the binary data without reading it, if possible: from the blob store, the length of the
+   * JCR binary property, or the binary value stored in the resource. Otherwise the stream is read.
+   * @return Size in bytes
+   */
   @Override
   public long getSize() {
+    String blobId = getBlobId();
+    if (blobId != null) {
+      return Math.max(0L, blobStore.getSize(blobId));
+    }
+    if (contentResource == null) {
+      return 0L;
+    }
     try {
-      InputStream is = getStream();
+      Property data = getDataProperty();
+      if (data != null) {
+        return data.getLength();
+      }
+    }
+    catch (RepositoryException ex) {
+      throw new RuntimeException("Unable to read binary data: " + getPath(), ex);
+    }
+    Object value = contentProps.get(JcrConstants.JCR_DATA);
+    if (value instanceof byte[]) {
+      return ((byte[])value).length;
+    }
+    try (InputStream is = getStream()) {
       if (is == null) {
         return 0L;
       }
-      return IOUtils.toByteArray(is).length;
+      return IOUtils.consume(is);
     }
     catch (IOException ex) {
       throw new RuntimeException("Unable to read binary data: " + getPath(), ex);
     }
   }
 
+  /**
+   * @return JCR property with the binary data, or null if the resource is not backed by a JCR node
+   */
+  private @Nullable Property getDataProperty() throws RepositoryException {
+    Node node = contentResource != null ? contentResource.adaptTo(Node.class) : null;
+    if (node != null && node.hasProperty(JcrConstants.JCR_DATA)) {
+      return node.getProperty(JcrConstants.JCR_DATA);
+    }
+    return null;
+  }
+
   @Override
   public Asset getAsset() {
     return DamUtil.resolveToAsset(this.resource);
@@ -116,12 +246,32 @@ class MockRendition extends ResourceWrapper implements Rendition {
     return StringUtils.equals(getPath(), ((MockRendition)obj).getPath());
   }
 
-
-  // --- unsupported operations ---
-
   // AEM 6.5
   public Binary getBinary() {
-    throw new UnsupportedOperationException();
+    // binaries stored in the blob store support random access without reading the data before the requested position
+    String blobId = getBlobId();
+    if (blobId != null) {
+      ByteBuffer buffer = blobStore.getBuffer(blobId);
+      if (buffer != null) {
+        return MockBinary.forBuffer(buffer);
+      }
+      // binaries that are too large to be memory-mapped are streamed from the blob store
+      return blobStore.contains(blobId) ? MockBinary.forStream(this::getStream, this::getSize) : null;
+    }
+    try {
+      Property data = getDataProperty();
+      if (data != null) {
+        return data.getBinary();
+      }
+    }
+    catch (RepositoryException ex) {
+      throw new RuntimeException("Unable to read binary data: " + getPath(), ex);
+    }
+    if (contentResource == null || contentResource.getChild(JcrConstants.JCR_DATA) == null) {
+      return null;
+    }
+    // the size is determined only when it is requested
+    return MockBinary.forStream(this::getStream, this::getSize);
   }
 
 }
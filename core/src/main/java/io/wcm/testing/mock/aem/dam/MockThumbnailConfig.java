@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.day.cq.dam.api.thumbnail.ThumbnailConfig;
+
+/**
+ * Simple implementation of {@link ThumbnailConfig} to be used with
+ * {@link com.day.cq.dam.api.handler.AssetHandler#createThumbnails(com.day.cq.dam.api.Asset, java.util.Collection)}.
+ */
+@ProviderType
+public final class MockThumbnailConfig implements ThumbnailConfig {
+
+  private final int width;
+  private final int height;
+  private final boolean center;
+
+  /**
+   * @param width Max. width
+   * @param height Max. height
+   */
+  public MockThumbnailConfig(int width, int height) {
+    this(width, height, false);
+  }
+
+  /**
+   * @param width Max. width
+   * @param height Max. height
+   * @param center Center the thumbnail on a canvas of exactly the given width and height
+   */
+  public MockThumbnailConfig(int width, int height, boolean center) {
+    this.width = width;
+    this.height = height;
+    this.center = center;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public boolean doCenter() {
+    return this.center;
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Rendition;
+
+/**
+ * Extracts the pages (frames) of multi-page images (TIFF, GIF) as sub-assets.
+ * <p>
+ * Sub-assets are created in two steps: first only the sub-asset nodes are created, referencing the page index of the
+ * parent asset's original rendition, without decoding any page. The binary data of a page is extracted when the
+ * renditions of the sub-asset are accessed the first time, so only the pages that are actually used are decoded.
+ * </p>
+ */
+final class SubAssetExtractor {
+
+  /**
+   * Property in the sub-asset's <code>jcr:content</code> node with the page index of a page that was not extracted yet.
+   */
+  static final String PN_SUBASSET_INDEX = "subAssetIndex";
+
+  static final String PAGE_MIME_TYPE = MockAssetHandler.PNG_MIME_TYPE;
+  private static final String PAGE_FORMAT = "png";
+
+  private static final Set<String> MULTI_PAGE_MIME_TYPES = Set.of(
+      MockAssetHandler.TIFF_MIME_TYPE,
+      MockAssetHandler.GIF_MIME_TYPE);
+
+  private SubAssetExtractor() {
+    // static methods only
+  }
+
+  /**
+   * Creates sub-asset nodes for all pages of the given asset's original rendition.
+   * Existing sub-assets are removed. No sub-assets are created if the original has only one page.
+   * All sub-asset nodes are committed at once, unless the asset is in batch mode.
+   * @param asset Asset
+   * @return Paths of the created sub-assets
+   */
+  static @NotNull List<String> processSubAssets(@NotNull Asset asset) {
+    Resource assetResource = asset.adaptTo(Resource.class);
+    Rendition original = asset.getOriginal();
+    if (assetResource == null || original == null) {
+      return List.of();
+    }
+    int pageCount = getPageCount(original);
+    ResourceResolver resourceResolver = assetResource.getResourceResolver();
+    List<String> paths = new ArrayList<>();
+    try {
+      Resource existing = assetResource.getChild(DamConstants.SUBASSETS_FOLDER);
+      if (existing != null) {
+        resourceResolver.delete(existing);
+      }
+      if (pageCount <= 1) {
+        return paths;
+      }
+      Resource folder = resourceResolver.create(assetResource, DamConstants.SUBASSETS_FOLDER,
+          Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FOLDER));
+      for (int i = 0; i < pageCount; i++) {
+        Resource subAsset = resourceResolver.create(folder, "page" + (i + 1) + "." + PAGE_FORMAT,
+            Map.of(JcrConstants.JCR_PRIMARYTYPE, DamConstants.NT_DAM_ASSET));
+        Resource content = resourceResolver.create(subAsset, JcrConstants.JCR_CONTENT,
+            Map.of(JcrConstants.JCR_PRIMARYTYPE, DamConstants.NT_DAM_ASSETCONTENT,
+                PN_SUBASSET_INDEX, i));
+        resourceResolver.create(content, DamConstants.METADATA_FOLDER,
+            Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED,
+                DamConstants.DC_FORMAT, PAGE_MIME_TYPE));
+        resourceResolver.create(content, DamConstants.RENDITIONS_FOLDER,
+            Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FOLDER));
+        paths.add(subAsset.getPath());
+      }
+      if (!asset.isBatchMode()) {
+        resourceResolver.commit();
+      }
+    }
+    catch (PersistenceException ex) {
+      throw new RuntimeException("Unable to create sub-assets for " + asset.getPath(), ex);
+    }
+    return paths;
+  }
+
+  /**
+   * @param original Original rendition
+   * @return Number of pages, or 0 if the rendition is not a supported multi-page image
+   */
+  static int getPageCount(@NotNull Rendition original) {
+    if (!MULTI_PAGE_MIME_TYPES.contains(original.getMimeType())) {
+      return 0;
+    }
+    try (InputStream is = original.getStream();
+        ImageInputStream iis = is != null ? ImageIO.createImageInputStream(is) : null) {
+      ImageReader reader = getReader(iis, false);
+      if (reader == null) {
+        return 0;
+      }
+      try {
+        return reader.getNumImages(true);
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read binary data: " + original.getPath(), ex);
+    }
+  }
+
+  /**
+   * Extracts a single page. Only this page is decoded.
+   * @param original Original rendition
+   * @param index Page index
+   * @return Page as PNG image, or null if the page does not exist
+   */
+  @Nullable
+  static byte[] extractPage(@NotNull Rendition original, int index) {
+    try (InputStream is = original.getStream();
+        ImageInputStream iis = is != null ? ImageIO.createImageInputStream(is) : null) {
+      // pages before the requested page are skipped, not kept in memory
+      ImageReader reader = getReader(iis, true);
+      if (reader == null) {
+        return null;
+      }
+      BufferedImage page;
+      try {
+        page = reader.read(index);
+      }
+      catch (IndexOutOfBoundsException ex) {
+        return null;
+      }
+      finally {
+        reader.dispose();
+      }
+      try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+        ImageIO.write(page, PAGE_FORMAT, bos);
+        return bos.toByteArray();
+      }
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to extract page " + index + " from " + original.getPath(), ex);
+    }
+  }
+
+  private static @Nullable ImageReader getReader(@Nullable ImageInputStream iis, boolean seekForwardOnly) {
+    if (iis == null) {
+      return null;
+    }
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+    if (!readers.hasNext()) {
+      return null;
+    }
+    ImageReader reader = readers.next();
+    reader.setInput(iis, seekForwardOnly, true);
+    return reader;
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.imageio.ImageIO;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.thumbnail.ThumbnailConfig;
+
+import io.wcm.testing.mock.aem.MockImageDecoder;
+
+/**
+ * Generates thumbnail images for a set of {@link ThumbnailConfig}s.
+ * The original image is decoded only once, subsampled to the largest requested size, and all thumbnails
+ * are scaled and encoded concurrently.
+ */
+final class ThumbnailGenerator {
+
+  static final String THUMBNAIL_MIME_TYPE = MockAssetHandler.PNG_MIME_TYPE;
+  private static final String THUMBNAIL_FORMAT = "png";
+
+  private ThumbnailGenerator() {
+    // static methods only
+  }
+
+  /**
+   * @param config Thumbnail config
+   * @return Rendition name for the thumbnail
+   */
+  static @NotNull String getRenditionName(@NotNull ThumbnailConfig config) {
+    return DamConstants.PREFIX_ASSET_THUMBNAIL + "." + config.getWidth() + "." + config.getHeight() + "." + THUMBNAIL_FORMAT;
+  }
+
+  /**
+   * Generates thumbnails.
+   * @param is Original image binary
+   * @param configs Thumbnail configs
+   * @param executor Executor to scale and encode the thumbnails
+   * @return Encoded thumbnail binaries mapped by rendition name, in the order of the given configs.
+   *         Empty map if the original is not a supported image.
+   * @throws IOException I/O exception
+   */
+  static @NotNull Map<String, byte[]> generate(@NotNull InputStream is, @NotNull Collection<ThumbnailConfig> configs,
+      @NotNull Executor executor) throws IOException {
+    int maxWidth = 0;
+    int maxHeight = 0;
+    for (ThumbnailConfig config : configs) {
+      maxWidth = Math.max(maxWidth, config.getWidth());
+      maxHeight = Math.max(maxHeight, config.getHeight());
+    }
+    BufferedImage original = MockImageDecoder.decodeSubsampled(is, maxWidth, maxHeight);
+    if (original == null) {
+      return Map.of();
+    }
+
+    List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+    for (ThumbnailConfig config : configs) {
+      futures.add(CompletableFuture.supplyAsync(() -> encode(scale(original, config)), executor));
+    }
+    Map<String, byte[]> result = new LinkedHashMap<>();
+    Iterator<CompletableFuture<byte[]>> futureIterator = futures.iterator();
+    for (ThumbnailConfig config : configs) {
+      try {
+        result.put(getRenditionName(config), futureIterator.next().join());
+      }
+      catch (CompletionException ex) {
+        if (ex.getCause() instanceof UncheckedIOException) {
+          throw ((UncheckedIOException)ex.getCause()).getCause();
+        }
+        throw ex;
+      }
+    }
+    return result;
+  }
+
+  private static BufferedImage scale(@NotNull BufferedImage original, @NotNull ThumbnailConfig config) {
+    double ratio = Math.min((double)config.getWidth() / original.getWidth(), (double)config.getHeight() / original.getHeight());
+    // never upscale
+    ratio = Math.min(ratio, 1d);
+    int width = Math.max(1, (int)Math.round(original.getWidth() * ratio));
+    int height = Math.max(1, (int)Math.round(original.getHeight() * ratio));
+
+    int canvasWidth = config.doCenter() ? config.getWidth() : width;
+    int canvasHeight = config.doCenter() ? config.getHeight() : height;
+    BufferedImage thumbnail = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D graphics = thumbnail.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(original, (canvasWidth - width) / 2, (canvasHeight - height) / 2, width, height, null);
+    }
+    finally {
+      graphics.dispose();
+    }
+    return thumbnail;
+  }
+
+  private static byte[] encode(@NotNull BufferedImage image) {
+    try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+      ImageIO.write(image, THUMBNAIL_FORMAT, bos);
+      return bos.toByteArray();
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam.ngdm;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.DamConstants;
+
+/**
+ * Maps Asset IDs to asset paths and vice versa. Asset IDs not known yet are looked up by scanning the assets
+ * below <code>/content/dam</code>. Asset IDs not found by a scan are remembered until {@link #invalidate()}
+ * is called, so repeated lookups of unknown Asset IDs do not scan the DAM again.
+ */
+final class AssetIdIndex {
+
+  private static final String DAM_ROOT = "/content/dam";
+
+  private final Map<String, String> assetIdsByPath = new ConcurrentHashMap<>();
+  private final Map<String, String> assetPathsById = new ConcurrentHashMap<>();
+  private final Set<String> unknownAssetIds = ConcurrentHashMap.newKeySet();
+
+  @Nullable
+  String getAssetId(@NotNull String path) {
+    return assetIdsByPath.get(path);
+  }
+
+  @Nullable
+  String getAssetPath(@NotNull String assetId) {
+    return assetPathsById.get(assetId);
+  }
+
+  void put(@NotNull String path, @NotNull String assetId) {
+    assetIdsByPath.put(path, assetId);
+    assetPathsById.put(assetId, path);
+    unknownAssetIds.remove(assetId);
+  }
+
+  /**
+   * Resolves the asset path for the given Asset ID, scanning the DAM if the Asset ID is not indexed
+   * or the indexed asset does not exist anymore.
+   * @param resourceResolver Resource resolver
+   * @param assetId Asset ID
+   * @return Asset path or null if no asset with this Asset ID exists
+   */
+  @Nullable
+  String resolveAssetPath(@NotNull ResourceResolver resourceResolver, @NotNull String assetId) {
+    String assetPath = assetPathsById.get(assetId);
+    if (assetPath != null && resourceResolver.getResource(assetPath) != null) {
+      return assetPath;
+    }
+    if (unknownAssetIds.contains(assetId)) {
+      return null;
+    }
+    Resource damRoot = resourceResolver.getResource(DAM_ROOT);
+    if (damRoot != null) {
+      scanAssets(damRoot);
+    }
+    assetPath = assetPathsById.get(assetId);
+    if (assetPath == null) {
+      unknownAssetIds.add(assetId);
+    }
+    return assetPath;
+  }
+
+  private void scanAssets(@NotNull Resource parent) {
+    for (Resource child : parent.getChildren()) {
+      if (StringUtils.equals(child.getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class), DamConstants.NT_DAM_ASSET)) {
+        Resource contentResource = child.getChild(JcrConstants.JCR_CONTENT);
+        String persistedAssetId = contentResource != null
+            ? contentResource.getValueMap().get(MockAssetDelivery.PN_ASSET_ID, String.class) : null;
+        put(child.getPath(), StringUtils.defaultString(persistedAssetId, MockAssetDelivery.getAssetId(child.getPath())));
+      }
+      else if (!StringUtils.equals(child.getName(), JcrConstants.JCR_CONTENT)) {
+        scanAssets(child);
+      }
+    }
+  }
+
+  /**
+   * Removes the given asset and all assets below it from the index.
+   * @param path Asset or folder path
+   */
+  void remove(@NotNull String path) {
+    String prefix = path + "/";
+    assetIdsByPath.entrySet().removeIf(entry -> {
+      if (StringUtils.equals(entry.getKey(), path) || StringUtils.startsWith(entry.getKey(), prefix)) {
+        assetPathsById.remove(entry.getValue(), entry.getKey());
+        return true;
+      }
+      return false;
+    });
+  }
+
+  /**
+   * Removes all entries from the index.
+   */
+  void clear() {
+    assetIdsByPath.clear();
+    assetPathsById.clear();
+    unknownAssetIds.clear();
+  }
+
+  /**
+   * Forgets the Asset IDs not found by previous scans. Called when the DAM content changes.
+   */
+  void invalidate() {
+    unknownAssetIds.clear();
+  }
+
+}
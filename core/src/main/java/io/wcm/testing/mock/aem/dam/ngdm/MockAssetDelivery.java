@@ -21,31 +21,60 @@ package io.wcm.testing.mock.aem.dam.ngdm;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 
 import com.adobe.cq.wcm.spi.AssetDelivery;
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamEvent;
 
 /**
  * Mock implementation of {@link AssetDelivery} for Web-Optimized Image Delivery.
  * <p>
- * As Asset ID a md5 hash of the path is used.
+ * As Asset ID a md5 hash of the path is used. Asset IDs are cached per service instance in an index of paths and
+ * Asset IDs, so the hash is computed only once per path. Cache entries of moved or removed assets are dropped when the corresponding {@link DamEvent}
+ * is received.
+ * </p>
+ * <p>
+ * If the OSGi property <code>persistAssetId</code> is set to true, the Asset ID is stored in the property
+ * <code>assetId</code> of the asset's <code>jcr:content</code> node when it is generated the first time. The property
+ * is set in the resource resolver of the given resource and not committed, so pending changes of the caller are not
+ * committed by generating a URL. An Asset ID that is already present in this property is used instead of the md5 hash.
  * </p>
  * <p>
  * This OSGi service is not registered by default in AEM Mocks, as it is not available in all contexts
  * (e.g. not in AEM 6.5 and AEMaaCS SDK).
  * </p>
  */
-@Component(service = AssetDelivery.class)
-public final class MockAssetDelivery implements AssetDelivery {
+@Component(service = { AssetDelivery.class, MockAssetDelivery.class, EventHandler.class },
+    property = EventConstants.EVENT_TOPIC + "=" + DamEvent.EVENT_TOPIC)
+public final class MockAssetDelivery implements AssetDelivery, EventHandler {
+
+  /**
+   * OSGi property to enable storing the Asset ID in the asset's <code>jcr:content</code> node.
+   */
+  public static final String PROPERTY_PERSIST_ASSET_ID = "persistAssetId";
+
+  /**
+   * Property in the asset's <code>jcr:content</code> node that holds the Asset ID.
+   */
+  public static final String PN_ASSET_ID = "assetId";
 
   private static final String ASSET_DELIVERY_URL_PREFIX = "/adobe/dynamicmedia/deliver";
 
@@ -56,34 +85,114 @@ public final class MockAssetDelivery implements AssetDelivery {
   private static final Set<String> DISALLOWED_URL_PARAMS = Set.of(
       PARAM_PATH, PARAM_SEO_NAME, PARAM_FORMAT);
 
+  private final AssetIdIndex index = new AssetIdIndex();
+  private boolean persistAssetId;
+
+  @Activate
+  private void activate(Map<String, Object> config) {
+    Object persistValue = config.get(PROPERTY_PERSIST_ASSET_ID);
+    if (persistValue != null) {
+      this.persistAssetId = Boolean.parseBoolean(persistValue.toString());
+    }
+  }
+
+  @Override
+  public void handleEvent(Event event) {
+    DamEvent damEvent = DamEvent.fromEvent(event);
+    if (damEvent == null) {
+      return;
+    }
+    switch (damEvent.getType()) {
+      case ASSET_REMOVED:
+        index.remove(damEvent.getAssetPath());
+        break;
+      case ASSET_MOVED:
+        index.clear();
+        break;
+      default:
+        index.invalidate();
+    }
+  }
+
   @Override
   public @Nullable String getDeliveryURL(@NotNull Resource resource, @Nullable Map<String, Object> parameterMap) {
     if (parameterMap == null) {
       throw new IllegalArgumentException("No parameter map given.");
     }
+    return buildDeliveryURL(resource.getResourceResolver(), parameterMap, new StringBuilder());
+  }
+
+  /**
+   * Generates delivery URLs for multiple parameter sets in one call, e.g. all entries of a srcset.
+   * Each parameter map has to contain the same mandatory parameters as for {@link #getDeliveryURL(Resource, Map)},
+   * so the URLs may point to different assets.
+   * @param resource Resource
+   * @param parameterMaps List of parameter maps
+   * @return List of delivery URLs in the same order as the parameter maps
+   */
+  public @NotNull List<String> getDeliveryURLs(@NotNull Resource resource, @NotNull List<Map<String, Object>> parameterMaps) {
+    ResourceResolver resourceResolver = resource.getResourceResolver();
+    StringBuilder sb = new StringBuilder();
+    List<String> urls = new ArrayList<>(parameterMaps.size());
+    for (Map<String, Object> parameterMap : parameterMaps) {
+      if (parameterMap == null) {
+        throw new IllegalArgumentException("No parameter map given.");
+      }
+      urls.add(buildDeliveryURL(resourceResolver, parameterMap, sb));
+    }
+    return urls;
+  }
+
+  private @NotNull String buildDeliveryURL(@NotNull ResourceResolver resourceResolver,
+      @NotNull Map<String, Object> parameterMap, @NotNull StringBuilder sb) {
     String path = getMandatoryStringParam(parameterMap, PARAM_PATH);
     String seoname = getMandatoryStringParam(parameterMap, PARAM_SEO_NAME);
     String format = getMandatoryStringParam(parameterMap, PARAM_FORMAT);
 
-    String urlParams = parameterMap.entrySet().stream()
-        .filter(entry -> !DISALLOWED_URL_PARAMS.contains(entry.getKey()) && entry.getValue() != null)
-        .sorted(Map.Entry.comparingByKey())
-        .map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(entry.getValue().toString(), StandardCharsets.UTF_8))
-        .collect(Collectors.joining("&"));
-
-    String assetId = getAssetId(path);
-
-    StringBuilder sb = new StringBuilder();
+    sb.setLength(0);
     sb.append(ASSET_DELIVERY_URL_PREFIX)
-        .append("/").append(assetId)
-        .append("/").append(URLEncoder.encode(seoname, StandardCharsets.UTF_8))
-        .append(".").append(URLEncoder.encode(format, StandardCharsets.UTF_8));
-    if (!urlParams.isEmpty()) {
-      sb.append("?").append(urlParams);
+        .append('/').append(resolveAssetId(resourceResolver, path))
+        .append('/');
+    appendEncoded(sb, seoname);
+    sb.append('.');
+    appendEncoded(sb, format);
+
+    String[] keys = parameterMap.keySet().toArray(new String[0]);
+    Arrays.sort(keys);
+    char separator = '?';
+    for (String key : keys) {
+      Object value = parameterMap.get(key);
+      if (value == null || DISALLOWED_URL_PARAMS.contains(key)) {
+        continue;
+      }
+      sb.append(separator);
+      appendEncoded(sb, key);
+      sb.append('=');
+      appendEncoded(sb, value.toString());
+      separator = '&';
     }
     return sb.toString();
   }
 
+  /**
+   * Appends the URL-encoded value. Values that contain only characters that are not changed by URL encoding
+   * are appended directly.
+   */
+  private static void appendEncoded(@NotNull StringBuilder sb, @NotNull String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (!isUnreserved(value.charAt(i))) {
+        sb.append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        return;
+      }
+    }
+    sb.append(value);
+  }
+
+  private static boolean isUnreserved(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || c == '.' || c == '-' || c == '*' || c == '_';
+  }
+
   private static @NotNull String getMandatoryStringParam(@NotNull Map<String, Object> parameterMap, @NotNull String paramName) {
     Object value = parameterMap.get(paramName);
     if (value == null) {
@@ -92,6 +201,65 @@ public final class MockAssetDelivery implements AssetDelivery {
     return value.toString();
   }
 
+  private @NotNull String resolveAssetId(@NotNull ResourceResolver resourceResolver, @NotNull String path) {
+    String assetId = index.getAssetId(path);
+    if (assetId != null) {
+      return assetId;
+    }
+    if (persistAssetId) {
+      assetId = readOrPersistAssetId(resourceResolver, path);
+    }
+    if (assetId == null) {
+      assetId = getAssetId(path);
+    }
+    index.put(path, assetId);
+    return assetId;
+  }
+
+  private @Nullable String readOrPersistAssetId(@NotNull ResourceResolver resourceResolver, @NotNull String path) {
+    Resource contentResource = resourceResolver.getResource(path + "/" + JcrConstants.JCR_CONTENT);
+    if (contentResource == null) {
+      return null;
+    }
+    String assetId = contentResource.getValueMap().get(PN_ASSET_ID, String.class);
+    if (assetId == null) {
+      ModifiableValueMap props = contentResource.adaptTo(ModifiableValueMap.class);
+      if (props != null) {
+        assetId = getAssetId(path);
+        // not committed, this is left to the caller
+        props.put(PN_ASSET_ID, assetId);
+      }
+    }
+    return assetId;
+  }
+
+  /**
+   * Get Asset ID used in delivery URLs generated by this service.
+   * @param asset Asset
+   * @return Asset ID
+   */
+  public @NotNull String getCachedAssetId(@NotNull Asset asset) {
+    Resource resource = asset.adaptTo(Resource.class);
+    if (resource == null) {
+      return getAssetId(asset.getPath());
+    }
+    return resolveAssetId(resource.getResourceResolver(), asset.getPath());
+  }
+
+  /**
+   * Get path of the asset for an Asset ID that was used in a delivery URL generated by this service.
+   * @param assetId Asset ID
+   * @return Asset path or null if the Asset ID is not known
+   */
+  public @Nullable String getAssetPath(@NotNull String assetId) {
+    return index.getAssetPath(assetId);
+  }
+
+  @NotNull
+  AssetIdIndex getIndex() {
+    return index;
+  }
+
   /**
    * Generate Asset ID for given asset.
    * @param asset Asset
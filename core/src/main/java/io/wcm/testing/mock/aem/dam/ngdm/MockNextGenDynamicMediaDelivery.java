@@ -0,0 +1,494 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam.ngdm;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+import com.adobe.cq.ui.wcm.commons.config.NextGenDynamicMediaConfig;
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamEvent;
+import com.day.cq.dam.api.Rendition;
+
+/**
+ * In-process stand-in for the Next-Gen Dynamic Media delivery service.
+ * <p>
+ * Resolves image delivery URLs (<code>/adobe/dynamicmedia/deliver/{asset-id}/{seoname}.{format}</code>) and
+ * original binary delivery URLs (<code>/adobe/assets/deliver/{asset-id}/{seoname}</code>) back to the mocked asset
+ * and returns the binary data. For image delivery URLs, the parameters <code>crop</code> (<code>x,y,width,height</code>
+ * in pixels), <code>width</code>, <code>height</code> and <code>quality</code> and the format from the URL extension
+ * are applied to the original rendition. Formats that cannot be written by Java ImageIO (e.g. <code>webp</code>)
+ * are delivered as PNG.
+ * </p>
+ * <p>
+ * Transformed images are kept in a cache with LRU eviction (OSGi property <code>cacheSize</code>, default: 100 entries).
+ * The cache key includes the last modified date of the original rendition, so updated assets are transformed again.
+ * </p>
+ * <p>
+ * Asset IDs are resolved via the index of {@link MockAssetDelivery} if it is registered, otherwise via an own index.
+ * Unknown Asset IDs are looked up by scanning the assets below <code>/content/dam</code> once, misses are remembered
+ * until a {@link DamEvent} signals a DAM content change.
+ * If a {@link NextGenDynamicMediaConfig} service is registered, the delivery paths are taken from it.
+ * </p>
+ * <p>
+ * This OSGi service is not registered by default in AEM Mocks.
+ * </p>
+ */
+@Component(service = { MockNextGenDynamicMediaDelivery.class, EventHandler.class },
+    property = EventConstants.EVENT_TOPIC + "=" + DamEvent.EVENT_TOPIC)
+@ProviderType
+public final class MockNextGenDynamicMediaDelivery implements EventHandler {
+
+  /**
+   * OSGi property for the maximum number of transformed images kept in the cache.
+   */
+  public static final String PROPERTY_CACHE_SIZE = "cacheSize";
+
+  static final int DEFAULT_CACHE_SIZE = 100;
+
+  static final String PARAM_WIDTH = "width";
+  static final String PARAM_HEIGHT = "height";
+  static final String PARAM_CROP = "crop";
+  static final String PARAM_QUALITY = "quality";
+
+  private static final String ASSET_ID_PLACEHOLDER = "{asset-id}";
+  private static final String FALLBACK_FORMAT = "png";
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY)
+  private volatile MockAssetDelivery assetDelivery;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY)
+  private volatile NextGenDynamicMediaConfig nextGenDynamicMediaConfig;
+
+  private int cacheSize = DEFAULT_CACHE_SIZE;
+  private final Map<String, Response> cache = newCache();
+  private final AssetIdIndex index = new AssetIdIndex();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
+
+  @Activate
+  private void activate(Map<String, Object> config) {
+    Object cacheSizeValue = config.get(PROPERTY_CACHE_SIZE);
+    if (cacheSizeValue != null) {
+      this.cacheSize = Math.max(0, Integer.parseInt(cacheSizeValue.toString()));
+    }
+  }
+
+  @Override
+  public void handleEvent(Event event) {
+    index.invalidate();
+  }
+
+  private Map<String, Response> newCache() {
+    return new LinkedHashMap<String, Response>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Delivers the binary for the given delivery URL.
+   * @param resourceResolver Resource resolver
+   * @param url Delivery URL, either a path with query string or an absolute URL
+   * @return Response. Status 404 if the URL or the asset is not known, 400 if the parameters are invalid.
+   */
+  public @NotNull Response deliver(@NotNull ResourceResolver resourceResolver, @NotNull String url) {
+    String imagePrefix = getPathPrefix(getImageDeliveryBasePath());
+    String originalPrefix = getPathPrefix(getAssetOriginalBinaryDeliveryPath());
+    try {
+      URI uri = URI.create(url);
+      String path = StringUtils.defaultString(uri.getRawPath());
+      Map<String, String> params = parseQueryString(uri.getRawQuery());
+      if (StringUtils.startsWith(path, imagePrefix)) {
+        return deliverImage(resourceResolver, StringUtils.substringAfter(path, imagePrefix), params);
+      }
+      if (StringUtils.startsWith(path, originalPrefix)) {
+        return deliverOriginal(resourceResolver, StringUtils.substringAfter(path, originalPrefix));
+      }
+    }
+    catch (IllegalArgumentException ex) {
+      return Response.error(400);
+    }
+    return Response.error(404);
+  }
+
+  private @NotNull Response deliverImage(@NotNull ResourceResolver resourceResolver, @NotNull String suffix,
+      @NotNull Map<String, String> params) {
+    String assetId = StringUtils.substringBefore(suffix, "/");
+    String fileName = StringUtils.substringAfter(suffix, "/");
+    String format = StringUtils.lowerCase(StringUtils.substringAfterLast(fileName, "."));
+    Rendition original = getOriginal(resourceResolver, assetId);
+    if (original == null || StringUtils.isEmpty(format)) {
+      return Response.error(404);
+    }
+
+    int[] crop = parseCrop(params.get(PARAM_CROP));
+    int width = parseInt(params.get(PARAM_WIDTH));
+    int height = parseInt(params.get(PARAM_HEIGHT));
+    int quality = parseInt(params.get(PARAM_QUALITY));
+    String cacheKey = original.getPath() + "|" + getLastModified(original)
+        + "|" + (crop != null ? crop[0] + "," + crop[1] + "," + crop[2] + "," + crop[3] : "")
+        + "|" + width + "|" + height + "|" + quality + "|" + format;
+
+    Response response;
+    synchronized (cache) {
+      response = cache.get(cacheKey);
+    }
+    if (response != null) {
+      cacheHits.incrementAndGet();
+      return response;
+    }
+    cacheMisses.incrementAndGet();
+    response = transform(original, crop, width, height, quality, format);
+    if (response.getStatus() == 200) {
+      synchronized (cache) {
+        cache.put(cacheKey, response);
+      }
+    }
+    return response;
+  }
+
+  private @NotNull Response deliverOriginal(@NotNull ResourceResolver resourceResolver, @NotNull String suffix) {
+    Rendition original = getOriginal(resourceResolver, StringUtils.substringBefore(suffix, "/"));
+    if (original == null) {
+      return Response.error(404);
+    }
+    try (InputStream is = original.getStream()) {
+      if (is == null) {
+        return Response.error(404);
+      }
+      return new Response(200, original.getMimeType(), IOUtils.toByteArray(is));
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read binary data: " + original.getPath(), ex);
+    }
+  }
+
+  private @NotNull Response transform(@NotNull Rendition original, @Nullable int[] crop, int width, int height,
+      int quality, @NotNull String format) {
+    BufferedImage image;
+    try (InputStream is = original.getStream()) {
+      image = is != null ? ImageIO.read(is) : null;
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to read binary data: " + original.getPath(), ex);
+    }
+    if (image == null) {
+      // not an image
+      return Response.error(404);
+    }
+    if (crop != null) {
+      int x = Math.min(crop[0], image.getWidth() - 1);
+      int y = Math.min(crop[1], image.getHeight() - 1);
+      image = image.getSubimage(x, y, Math.min(crop[2], image.getWidth() - x), Math.min(crop[3], image.getHeight() - y));
+    }
+    if (width > 0 || height > 0) {
+      image = scale(image, width, height);
+    }
+    String outputFormat = ImageIO.getImageWritersByFormatName(format).hasNext() ? format : FALLBACK_FORMAT;
+    return new Response(200, getMimeType(outputFormat), encode(image, outputFormat, quality));
+  }
+
+  private static @NotNull BufferedImage scale(@NotNull BufferedImage image, int width, int height) {
+    // keep aspect ratio, fit into the given width and/or height
+    double ratio;
+    if (width > 0 && height > 0) {
+      ratio = Math.min((double)width / image.getWidth(), (double)height / image.getHeight());
+    }
+    else if (width > 0) {
+      ratio = (double)width / image.getWidth();
+    }
+    else {
+      ratio = (double)height / image.getHeight();
+    }
+    int scaledWidth = Math.max(1, (int)Math.round(image.getWidth() * ratio));
+    int scaledHeight = Math.max(1, (int)Math.round(image.getHeight() * ratio));
+    BufferedImage scaled = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+    }
+    finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+
+  private static byte[] encode(@NotNull BufferedImage image, @NotNull String format, int quality) {
+    BufferedImage output = image;
+    boolean jpeg = StringUtils.equalsAny(format, "jpg", "jpeg");
+    if (jpeg && image.getType() != BufferedImage.TYPE_INT_RGB) {
+      // JPEG does not support alpha channel
+      output = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = output.createGraphics();
+      try {
+        graphics.drawImage(image, 0, 0, Color.WHITE, null);
+      }
+      finally {
+        graphics.dispose();
+      }
+    }
+    ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+      ImageWriteParam writeParam = writer.getDefaultWriteParam();
+      if (jpeg && quality > 0) {
+        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParam.setCompressionQuality(Math.min(quality, 100) / 100f);
+      }
+      writer.setOutput(ios);
+      writer.write(null, new IIOImage(output, null, null), writeParam);
+      ios.flush();
+      return bos.toByteArray();
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Unable to encode image.", ex);
+    }
+    finally {
+      writer.dispose();
+    }
+  }
+
+  private static @NotNull String getMimeType(@NotNull String format) {
+    if (StringUtils.equals(format, "jpg")) {
+      return "image/jpeg";
+    }
+    return "image/" + format;
+  }
+
+  private @Nullable Rendition getOriginal(@NotNull ResourceResolver resourceResolver, @NotNull String assetId) {
+    String assetPath = resolveAssetPath(resourceResolver, assetId);
+    if (assetPath == null) {
+      return null;
+    }
+    Resource resource = resourceResolver.getResource(assetPath);
+    Asset asset = resource != null ? resource.adaptTo(Asset.class) : null;
+    if (asset == null) {
+      return null;
+    }
+    return asset.getOriginal();
+  }
+
+  private @Nullable String resolveAssetPath(@NotNull ResourceResolver resourceResolver, @NotNull String assetId) {
+    MockAssetDelivery delivery = this.assetDelivery;
+    AssetIdIndex assetIdIndex = delivery != null ? delivery.getIndex() : this.index;
+    return assetIdIndex.resolveAssetPath(resourceResolver, assetId);
+  }
+
+  private static long getLastModified(@NotNull Rendition rendition) {
+    Calendar lastModified = rendition.getProperties().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    return lastModified != null ? lastModified.getTimeInMillis() : 0L;
+  }
+
+  private @NotNull String getImageDeliveryBasePath() {
+    NextGenDynamicMediaConfig config = this.nextGenDynamicMediaConfig;
+    if (config != null && config.getImageDeliveryBasePath() != null) {
+      return config.getImageDeliveryBasePath();
+    }
+    return MockNextGenDynamicMediaConfig.DEFAULT_IMAGE_DELIVERY_BASE_PATH;
+  }
+
+  private @NotNull String getAssetOriginalBinaryDeliveryPath() {
+    NextGenDynamicMediaConfig config = this.nextGenDynamicMediaConfig;
+    if (config != null && config.getAssetOriginalBinaryDeliveryPath() != null) {
+      return config.getAssetOriginalBinaryDeliveryPath();
+    }
+    return MockNextGenDynamicMediaConfig.DEFAULT_ASSET_ORIGINAL_BINARY_DELIVERY_PATH;
+  }
+
+  private static @NotNull String getPathPrefix(@NotNull String deliveryPath) {
+    return StringUtils.substringBefore(deliveryPath, ASSET_ID_PLACEHOLDER);
+  }
+
+  private static @NotNull Map<String, String> parseQueryString(@Nullable String queryString) {
+    Map<String, String> params = new HashMap<>();
+    if (StringUtils.isEmpty(queryString)) {
+      return params;
+    }
+    for (String param : StringUtils.split(queryString, '&')) {
+      String name = URLDecoder.decode(StringUtils.substringBefore(param, "="), StandardCharsets.UTF_8);
+      String value = URLDecoder.decode(StringUtils.substringAfter(param, "="), StandardCharsets.UTF_8);
+      params.put(name, value);
+    }
+    return params;
+  }
+
+  private static int parseInt(@Nullable String value) {
+    if (StringUtils.isEmpty(value)) {
+      return 0;
+    }
+    int result = Integer.parseInt(value);
+    if (result < 0) {
+      throw new IllegalArgumentException("Invalid value: " + value);
+    }
+    return result;
+  }
+
+  @Nullable
+  private static int[] parseCrop(@Nullable String value) {
+    if (StringUtils.isEmpty(value)) {
+      return null;
+    }
+    String[] parts = StringUtils.split(value, ',');
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Invalid crop value: " + value);
+    }
+    int[] crop = new int[4];
+    for (int i = 0; i < 4; i++) {
+      crop[i] = parseInt(StringUtils.trim(parts[i]));
+    }
+    if (crop[2] == 0 || crop[3] == 0) {
+      throw new IllegalArgumentException("Invalid crop value: " + value);
+    }
+    return crop;
+  }
+
+  /**
+   * @return Number of requests served from the cache
+   */
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * @return Number of requests that required transforming the image
+   */
+  public long getCacheMisses() {
+    return cacheMisses.get();
+  }
+
+  /**
+   * @return Ratio of cache hits to all image requests (0 if there were no requests)
+   */
+  public double getCacheHitRate() {
+    long hits = cacheHits.get();
+    long total = hits + cacheMisses.get();
+    return total > 0 ? (double)hits / total : 0d;
+  }
+
+  /**
+   * @return Number of transformed images in the cache
+   */
+  public int getCacheSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Removes all transformed images from the cache and resets the statistics.
+   */
+  public void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+    }
+    cacheHits.set(0);
+    cacheMisses.set(0);
+  }
+
+
+  /**
+   * Response of the delivery stand-in.
+   */
+  public static final class Response {
+
+    private final int status;
+    private final String contentType;
+    private final byte[] data;
+
+    Response(int status, @Nullable String contentType, byte[] data) {
+      this.status = status;
+      this.contentType = contentType;
+      this.data = data;
+    }
+
+    static Response error(int status) {
+      return new Response(status, null, new byte[0]);
+    }
+
+    /**
+     * @return HTTP status code
+     */
+    public int getStatus() {
+      return this.status;
+    }
+
+    /**
+     * @return Content type or null for error responses
+     */
+    public @Nullable String getContentType() {
+      return this.contentType;
+    }
+
+    /**
+     * @return Binary data. The array is shared with the cache and must not be modified.
+     */
+    public byte[] getData() {
+      return this.data;
+    }
+
+  }
+
+}
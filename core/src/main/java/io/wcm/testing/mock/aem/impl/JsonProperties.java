@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Converts parsed JSON objects to resource property maps.
+ * <p>
+ * Integral numbers are converted to {@link Long}, other numbers to {@link Double}. Nested objects are converted to
+ * nested maps, arrays to typed arrays. <code>null</code> values are skipped.
+ * </p>
+ */
+public final class JsonProperties {
+
+  private JsonProperties() {
+    // static methods only
+  }
+
+  /**
+   * Converts a JSON object to a property map.
+   * @param json JSON object
+   * @return Properties (preserving the order of the JSON object)
+   */
+  public static @NotNull Map<String, Object> toMap(@Nullable JsonObject json) {
+    Map<String, Object> props = new LinkedHashMap<>();
+    if (json == null) {
+      return props;
+    }
+    for (Map.Entry<String, JsonValue> entry : json.entrySet()) {
+      Object value = toValue(entry.getValue());
+      if (value != null) {
+        props.put(entry.getKey(), value);
+      }
+    }
+    return props;
+  }
+
+  /**
+   * Converts a JSON value to a property value.
+   * @param json JSON value
+   * @return Property value or null for JSON null values
+   */
+  public static @Nullable Object toValue(@NotNull JsonValue json) {
+    switch (json.getValueType()) {
+      case OBJECT:
+        return toMap((JsonObject)json);
+      case ARRAY:
+        return toArray((JsonArray)json);
+      case STRING:
+        return ((JsonString)json).getString();
+      case NUMBER:
+        JsonNumber number = (JsonNumber)json;
+        if (number.isIntegral()) {
+          return number.longValue();
+        }
+        return number.doubleValue();
+      case TRUE:
+        return true;
+      case FALSE:
+        return false;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Converts a JSON array to a typed array if all values have the same scalar type, otherwise to a string array.
+   * @param json JSON array
+   * @return Array
+   */
+  public static @NotNull Object toArray(@NotNull JsonArray json) {
+    Object[] values = new Object[json.size()];
+    Class<?> type = null;
+    for (int i = 0; i < values.length; i++) {
+      JsonValue value = json.get(i);
+      values[i] = isScalar(value) ? toValue(value) : value.toString();
+      type = type == null || type == values[i].getClass() ? values[i].getClass() : String.class;
+    }
+    if (type == Long.class) {
+      Long[] result = new Long[values.length];
+      System.arraycopy(values, 0, result, 0, values.length);
+      return result;
+    }
+    if (type == Double.class) {
+      Double[] result = new Double[values.length];
+      System.arraycopy(values, 0, result, 0, values.length);
+      return result;
+    }
+    if (type == Boolean.class) {
+      Boolean[] result = new Boolean[values.length];
+      System.arraycopy(values, 0, result, 0, values.length);
+      return result;
+    }
+    String[] result = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      result[i] = values[i].toString();
+    }
+    return result;
+  }
+
+  private static boolean isScalar(@NotNull JsonValue value) {
+    switch (value.getValueType()) {
+      case STRING:
+      case NUMBER:
+      case TRUE:
+      case FALSE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+}
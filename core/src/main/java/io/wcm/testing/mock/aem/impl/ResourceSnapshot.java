@@ -0,0 +1,512 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+/**
+ * Immutable snapshot of a resource subtree.
+ * <p>
+ * Snapshots are structurally shared: when a snapshot is captured with a previous snapshot of the same subtree,
+ * all nodes (and property maps) that did not change are reused from the previous snapshot instead of being copied.
+ * Capturing an unchanged subtree returns the previous snapshot instance itself.
+ * Binary data of a node whose <code>jcr:lastModified</code> date did not change is not read again, the binary
+ * data of the previous snapshot is referenced instead.
+ * </p>
+ * <p>
+ * Binary data is not copied to the heap: binaries of JCR-backed resources are referenced via their immutable
+ * JCR binary value, binaries of other resources are spooled to temporary files. Changed binaries are detected
+ * via their SHA-256 digest. The temporary files are deleted when the snapshots are discarded via {@link #discard()}.
+ * </p>
+ * <p>
+ * Used by the mock implementations for page and asset revisions, not part of the public API.
+ * </p>
+ */
+public final class ResourceSnapshot {
+
+  /**
+   * Properties that are maintained by the repository and cannot be written when restoring a snapshot.
+   */
+  private static final Set<String> PROTECTED_PROPERTIES = Set.of(
+      "jcr:uuid",
+      "jcr:created",
+      "jcr:createdBy",
+      "jcr:baseVersion",
+      "jcr:predecessors",
+      "jcr:versionHistory",
+      "jcr:isCheckedOut",
+      "jcr:lockOwner",
+      "jcr:lockIsDeep");
+
+  /**
+   * Properties that are kept when restoring the properties of an existing resource.
+   */
+  private static final Set<String> KEEP_ON_RESTORE_PROPERTIES = Set.of(
+      JcrConstants.JCR_PRIMARYTYPE,
+      JcrConstants.JCR_MIXINTYPES);
+
+  private final String name;
+  private final Map<String, Object> properties;
+  private final List<ResourceSnapshot> children;
+
+  private ResourceSnapshot(@NotNull String name, @NotNull Map<String, Object> properties,
+      @NotNull List<ResourceSnapshot> children) {
+    this.name = name;
+    this.properties = properties;
+    this.children = children;
+  }
+
+  /**
+   * Captures a snapshot of the given resource and all its children.
+   * @param resource Resource
+   * @param previous Previous snapshot of the same resource to share unchanged nodes with (optional)
+   * @return Snapshot
+   */
+  public static @NotNull ResourceSnapshot capture(@NotNull Resource resource, @Nullable ResourceSnapshot previous) {
+    return capture(resource, previous, child -> true);
+  }
+
+  /**
+   * Captures a snapshot of the given resource and its children.
+   * @param resource Resource
+   * @param previous Previous snapshot of the same resource to share unchanged nodes with (optional)
+   * @param childFilter Filter for the direct children of the given resource to include
+   * @return Snapshot
+   */
+  public static @NotNull ResourceSnapshot capture(@NotNull Resource resource, @Nullable ResourceSnapshot previous,
+      @NotNull Predicate<Resource> childFilter) {
+    return capture(resource, previous, childFilter, false);
+  }
+
+  /**
+   * @param compareOnly If true, binary data is only read to compute the digest, it is not stored
+   */
+  private static @NotNull ResourceSnapshot capture(@NotNull Resource resource, @Nullable ResourceSnapshot previous,
+      @NotNull Predicate<Resource> childFilter, boolean compareOnly) {
+    Map<String, Object> properties = readProperties(resource, previous, compareOnly);
+    boolean unchanged = previous != null && properties == previous.properties;
+
+    List<ResourceSnapshot> children = new ArrayList<>();
+    int index = 0;
+    for (Resource child : resource.getChildren()) {
+      if (!childFilter.test(child)) {
+        continue;
+      }
+      ResourceSnapshot previousChild = previous != null ? previous.getChild(child.getName()) : null;
+      ResourceSnapshot childSnapshot = capture(child, previousChild, c -> true, compareOnly);
+      unchanged = unchanged && index < previous.children.size() && previous.children.get(index) == childSnapshot;
+      children.add(childSnapshot);
+      index++;
+    }
+    if (unchanged && index == previous.children.size()) {
+      return previous;
+    }
+    return new ResourceSnapshot(resource.getName(), properties, Collections.unmodifiableList(children));
+  }
+
+  private static Map<String, Object> readProperties(@NotNull Resource resource, @Nullable ResourceSnapshot previous,
+      boolean compareOnly) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    boolean unmodified = isUnmodified(resource, previous);
+    for (Map.Entry<String, Object> entry : resource.getValueMap().entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof InputStream) {
+        Object previousValue = previous != null ? previous.properties.get(entry.getKey()) : null;
+        if (unmodified && previousValue instanceof BinaryValue) {
+          // reference binary data of previous snapshot instead of reading it again
+          closeQuietly((InputStream)value);
+          value = previousValue;
+        }
+        else {
+          value = BinaryValue.read(resource, entry.getKey(), (InputStream)value, compareOnly);
+        }
+      }
+      // share unchanged values (e.g. binary data) with previous snapshot
+      if (previous != null) {
+        Object previousValue = previous.properties.get(entry.getKey());
+        if (Objects.deepEquals(value, previousValue)) {
+          if (value != previousValue && value instanceof BinaryValue) {
+            ((BinaryValue)value).discard();
+          }
+          value = previousValue;
+        }
+      }
+      properties.put(entry.getKey(), value);
+    }
+    if (previous != null && propertiesEqual(properties, previous.properties)) {
+      return previous.properties;
+    }
+    return Collections.unmodifiableMap(properties);
+  }
+
+  private static boolean isUnmodified(@NotNull Resource resource, @Nullable ResourceSnapshot previous) {
+    if (previous == null) {
+      return false;
+    }
+    Calendar lastModified = resource.getValueMap().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    Object previousLastModified = previous.properties.get(JcrConstants.JCR_LASTMODIFIED);
+    return lastModified != null && previousLastModified instanceof Calendar
+        && lastModified.getTimeInMillis() == ((Calendar)previousLastModified).getTimeInMillis();
+  }
+
+  private static void closeQuietly(@NotNull InputStream is) {
+    try {
+      is.close();
+    }
+    catch (IOException ex) {
+      // ignore
+    }
+  }
+
+  private static boolean propertiesEqual(@NotNull Map<String, Object> props1, @NotNull Map<String, Object> props2) {
+    if (props1.size() != props2.size()) {
+      return false;
+    }
+    for (Map.Entry<String, Object> entry : props1.entrySet()) {
+      if (!props2.containsKey(entry.getKey()) || !Objects.deepEquals(entry.getValue(), props2.get(entry.getKey()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Resource name
+   */
+  @NotNull
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return Unmodifiable map of properties. Each access to a binary property opens a new input stream.
+   */
+  @NotNull
+  public Map<String, Object> getProperties() {
+    return new BinaryStreamMap(this.properties);
+  }
+
+  /**
+   * @return Unmodifiable list of child snapshots
+   */
+  @NotNull
+  public List<ResourceSnapshot> getChildren() {
+    return this.children;
+  }
+
+  /**
+   * @param childName Child name
+   * @return Child snapshot or null
+   */
+  @Nullable
+  public ResourceSnapshot getChild(@NotNull String childName) {
+    for (ResourceSnapshot child : children) {
+      if (child.name.equals(childName)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Deletes the temporary files holding the binary data of this snapshot and all its children.
+   * Binary data is shared with the snapshots captured from this snapshot, so this must only be called when
+   * all snapshots of the same subtree are discarded.
+   */
+  public void discard() {
+    for (Object value : properties.values()) {
+      if (value instanceof BinaryValue) {
+        ((BinaryValue)value).discard();
+      }
+    }
+    for (ResourceSnapshot child : children) {
+      child.discard();
+    }
+  }
+
+  /**
+   * Checks if the given resource still matches this snapshot.
+   * @param resource Resource
+   * @param childFilter Filter for the direct children of the given resource to include
+   * @return true if the resource subtree is unchanged
+   */
+  public boolean matches(@NotNull Resource resource, @NotNull Predicate<Resource> childFilter) {
+    return capture(resource, this, childFilter, true) == this;
+  }
+
+  /**
+   * Creates a new resource from this snapshot, including all children.
+   * @param parent Parent resource
+   * @param resourceResolver Resource resolver
+   * @return Created resource
+   * @throws PersistenceException Persistence exception
+   */
+  @NotNull
+  public Resource restore(@NotNull Resource parent, @NotNull ResourceResolver resourceResolver) throws PersistenceException {
+    Resource resource = resourceResolver.create(parent, name, toWritableProperties(properties));
+    restoreChildren(resource, resourceResolver);
+    return resource;
+  }
+
+  /**
+   * Creates all children of this snapshot below the given resource.
+   * @param resource Resource
+   * @param resourceResolver Resource resolver
+   * @throws PersistenceException Persistence exception
+   */
+  public void restoreChildren(@NotNull Resource resource, @NotNull ResourceResolver resourceResolver) throws PersistenceException {
+    for (ResourceSnapshot child : children) {
+      child.restore(resource, resourceResolver);
+    }
+  }
+
+  /**
+   * Replaces the properties of the given existing resource with the properties of this snapshot.
+   * Protected properties and the node type are kept.
+   * @param resource Resource
+   * @throws PersistenceException Persistence exception
+   */
+  public void restoreProperties(@NotNull Resource resource) throws PersistenceException {
+    ModifiableValueMap props = resource.adaptTo(ModifiableValueMap.class);
+    if (props == null) {
+      throw new PersistenceException("Resource is not modifiable: " + resource.getPath());
+    }
+    for (String key : new ArrayList<>(props.keySet())) {
+      if (!PROTECTED_PROPERTIES.contains(key) && !KEEP_ON_RESTORE_PROPERTIES.contains(key)) {
+        props.remove(key);
+      }
+    }
+    Map<String, Object> writableProperties = toWritableProperties(properties);
+    writableProperties.keySet().removeAll(KEEP_ON_RESTORE_PROPERTIES);
+    props.putAll(writableProperties);
+  }
+
+  private static Map<String, Object> toWritableProperties(@NotNull Map<String, Object> properties) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+      if (PROTECTED_PROPERTIES.contains(entry.getKey())) {
+        continue;
+      }
+      result.put(entry.getKey(), toValue(entry.getValue()));
+    }
+    return result;
+  }
+
+  private static Object toValue(@Nullable Object value) {
+    if (value instanceof BinaryValue) {
+      return ((BinaryValue)value).getStream();
+    }
+    return value;
+  }
+
+
+  /**
+   * Reference to binary data of a snapshot, identified by the SHA-256 digest of the data.
+   */
+  private static final class BinaryValue {
+
+    private final String digest;
+    private final Binary jcrBinary;
+    private final Path file;
+
+    private BinaryValue(@NotNull String digest, @Nullable Binary jcrBinary, @Nullable Path file) {
+      this.digest = digest;
+      this.jcrBinary = jcrBinary;
+      this.file = file;
+    }
+
+    static @NotNull BinaryValue read(@NotNull Resource resource, @NotNull String propertyName, @NotNull InputStream is,
+        boolean compareOnly) {
+      try {
+        // reference immutable JCR binary value if available
+        Binary jcrBinary = compareOnly ? null : getJcrBinary(resource, propertyName);
+        if (jcrBinary != null) {
+          closeQuietly(is);
+          try (InputStream binaryStream = jcrBinary.getStream()) {
+            return new BinaryValue(DigestUtils.sha256Hex(binaryStream), jcrBinary, null);
+          }
+        }
+        if (compareOnly) {
+          try (InputStream stream = is) {
+            return new BinaryValue(DigestUtils.sha256Hex(stream), null, null);
+          }
+        }
+        // spool binary data to temporary file
+        Path file = Files.createTempFile("aem-mock-snapshot", ".bin");
+        try (InputStream stream = is; OutputStream os = Files.newOutputStream(file)) {
+          return new BinaryValue(digest(stream, os), null, file);
+        }
+        catch (IOException ex) {
+          FileUtils.deleteQuietly(file.toFile());
+          throw ex;
+        }
+      }
+      catch (IOException | RepositoryException ex) {
+        throw new RuntimeException("Unable to read binary data: " + resource.getPath() + "/" + propertyName, ex);
+      }
+    }
+
+    private static @Nullable Binary getJcrBinary(@NotNull Resource resource, @NotNull String propertyName)
+        throws RepositoryException {
+      Node node = resource.adaptTo(Node.class);
+      if (node == null || !node.hasProperty(propertyName)) {
+        return null;
+      }
+      Property property = node.getProperty(propertyName);
+      if (property.isMultiple() || property.getType() != PropertyType.BINARY) {
+        return null;
+      }
+      return property.getBinary();
+    }
+
+    private static @NotNull String digest(@NotNull InputStream is, @NotNull OutputStream os) throws IOException {
+      MessageDigest messageDigest = DigestUtils.getSha256Digest();
+      IOUtils.copy(new DigestInputStream(is, messageDigest), os);
+      return Hex.encodeHexString(messageDigest.digest());
+    }
+
+    @NotNull
+    InputStream getStream() {
+      try {
+        if (jcrBinary != null) {
+          return jcrBinary.getStream();
+        }
+        if (file != null) {
+          return Files.newInputStream(file);
+        }
+      }
+      catch (IOException ex) {
+        throw new UncheckedIOException("Unable to read binary data " + digest, ex);
+      }
+      catch (RepositoryException ex) {
+        throw new RuntimeException("Unable to read binary data " + digest, ex);
+      }
+      throw new IllegalStateException("Binary data was not stored: " + digest);
+    }
+
+    /**
+     * Deletes the spooled binary data of a value.
+     */
+    void discard() {
+      if (file != null) {
+        FileUtils.deleteQuietly(file.toFile());
+      }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof BinaryValue && digest.equals(((BinaryValue)obj).digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return digest.hashCode();
+    }
+
+  }
+
+
+  /**
+   * Read-only view of the snapshot properties that opens a new input stream for each access to a binary property.
+   */
+  private static final class BinaryStreamMap extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> properties;
+
+    BinaryStreamMap(@NotNull Map<String, Object> properties) {
+      this.properties = properties;
+    }
+
+    @Override
+    public Object get(Object key) {
+      return toValue(properties.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return properties.containsKey(key);
+    }
+
+    @Override
+    public @NotNull Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public @NotNull Iterator<Entry<String, Object>> iterator() {
+          Iterator<Entry<String, Object>> entries = properties.entrySet().iterator();
+          return new Iterator<Entry<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+              return entries.hasNext();
+            }
+            @Override
+            public Entry<String, Object> next() {
+              Entry<String, Object> entry = entries.next();
+              return new SimpleImmutableEntry<>(entry.getKey(), toValue(entry.getValue()));
+            }
+          };
+        }
+        @Override
+        public int size() {
+          return properties.size();
+        }
+      };
+    }
+
+  }
+
+}
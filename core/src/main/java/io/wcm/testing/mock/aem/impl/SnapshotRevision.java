@@ -0,0 +1,47 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.impl;
+
+import java.io.InputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Internal access to the content of mocked asset revisions, e.g. to read content fragment versions.
+ */
+public interface SnapshotRevision {
+
+  /**
+   * @return Snapshot of the asset resource at the time the revision was created
+   */
+  @NotNull
+  ResourceSnapshot getSnapshot();
+
+  /**
+   * Opens the binary data of a rendition as it was at the time the revision was created.
+   * Binaries stored in the blob store are read from there.
+   * @param renditionName Rendition name
+   * @return Input stream or null if the rendition does not exist in the revision
+   */
+  @Nullable
+  InputStream getRenditionStream(@NotNull String renditionName);
+
+}
@@ -26,17 +26,33 @@ import static com.day.cq.wcm.api.NameConstants.PN_COMPONENT_GROUP;
 import static com.day.cq.wcm.api.NameConstants.PN_NO_DECORATION;
 import static com.day.cq.wcm.api.NameConstants.PN_TAG_NAME;
 import static com.day.cq.wcm.api.NameConstants.PN_IS_CONTAINER;
+import static com.day.cq.wcm.api.NameConstants.NT_COMPONENT;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.components.Component;
+import com.day.cq.wcm.api.components.ComponentEditConfig;
+import com.day.cq.wcm.api.components.DialogMode;
+import com.day.cq.wcm.api.components.EditLayout;
 import com.day.cq.wcm.api.components.ComponentManager;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -152,4 +168,189 @@ public class MockComponentManagerTest {
     assertNull(component.getProperties().get("child1/prop1"));
   }
 
+  @Test
+  public void testGetComponents() {
+    createComponents();
+
+    assertEquals(List.of("/apps/app2/components/comp1", "/apps/app2/components/comp2", "/libs/app2/components/comp3"),
+        getPaths(underTest.getComponents()));
+  }
+
+  @Test
+  public void testComponentGroups() {
+    createComponents();
+    ResourceResolver resolver = context.resourceResolver();
+
+    assertEquals(List.of("group1", "group2"), new ArrayList<>(MockComponentGroups.getComponentGroups(resolver)));
+    assertEquals(List.of("/apps/app2/components/comp1", "/libs/app2/components/comp3"),
+        getPaths(MockComponentGroups.getComponentsOfGroup(resolver, "group1")));
+    assertEquals(List.of("/apps/app2/components/comp2"),
+        getPaths(MockComponentGroups.getComponentsOfGroup(resolver, "group2")));
+    assertTrue(MockComponentGroups.getComponentsOfGroup(resolver, "group3").isEmpty());
+  }
+
+  @Test
+  public void testRegistryRefresh() throws PersistenceException {
+    createComponents();
+    assertEquals("/libs/app2/components/comp3", underTest.getComponent("app2/components/comp3").getPath());
+    assertEquals(3, underTest.getComponents().size());
+
+    // overlay component in /apps
+    context.create().resource("/apps/app2/components/comp3",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT);
+    assertEquals("/apps/app2/components/comp3", underTest.getComponent("app2/components/comp3").getPath());
+    assertEquals("/apps/app2/components/comp3", underTest.getComponentOfResource(
+        context.create().resource("/content/comp3", "sling:resourceType", "app2/components/comp3")).getPath());
+
+    // remove component
+    context.resourceResolver().delete(context.resourceResolver().getResource("/apps/app2/components/comp2"));
+    assertNull(underTest.getComponent("app2/components/comp2"));
+    assertEquals(List.of("/apps/app2/components/comp1", "/apps/app2/components/comp3"),
+        getPaths(underTest.getComponents()));
+  }
+
+  @Test
+  public void testRegistryChangesViaResourceResolver() throws PersistenceException {
+    createComponents();
+    ResourceResolver resolver = context.resourceResolver();
+    assertEquals("/libs/app2/components/comp3", underTest.getComponent("app2/components/comp3").getPath());
+    assertEquals(List.of("group1", "group2"), new ArrayList<>(MockComponentGroups.getComponentGroups(resolver)));
+
+    // overlay component created directly via the resource resolver is detected without invalidation
+    resolver.create(resolver.getResource("/apps/app2/components"), "comp3",
+        Map.of(JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT, PN_COMPONENT_GROUP, "group3"));
+    resolver.commit();
+    assertEquals("/apps/app2/components/comp3", underTest.getComponent("app2/components/comp3").getPath());
+    assertEquals(List.of("group1", "group2", "group3"), new ArrayList<>(MockComponentGroups.getComponentGroups(resolver)));
+  }
+
+  @Test
+  public void testRegistryInvalidation() {
+    createComponents();
+    assertEquals(3, underTest.getComponents().size());
+    MockCaches.invalidateComponents(context.resourceResolver());
+    assertEquals(3, underTest.getComponents().size());
+  }
+
+  @Test
+  public void testSuperComponentChain() {
+    createComponentChain();
+    Component component = underTest.getComponent("app3/components/proxy");
+
+    Component level1 = component.getSuperComponent();
+    assertEquals("/libs/app3/components/v2/base", level1.getPath());
+    Component level2 = level1.getSuperComponent();
+    assertEquals("/libs/app3/components/v1/base", level2.getPath());
+    assertNull(level2.getSuperComponent());
+    assertTrue(component.isContainer());
+  }
+
+  @Test
+  public void testInheritedHtmlTagAttributes() {
+    createComponentChain();
+    Component component = underTest.getComponent("app3/components/proxy");
+
+    assertEquals("section", component.getHtmlTagAttributes().get(PN_TAG_NAME));
+    assertEquals("proxy-class", component.getHtmlTagAttributes().get("class"));
+    assertEquals("v1-attr", component.getHtmlTagAttributes().get("data-v1"));
+  }
+
+  @Test
+  public void testInheritedDefinitionChange() throws PersistenceException {
+    createComponentChain();
+    assertEquals("v1-attr", underTest.getComponent("app3/components/proxy").getHtmlTagAttributes().get("data-v1"));
+    assertEquals("v2 empty text", underTest.getComponent("app3/components/proxy").getEditConfig().getEmptyText());
+
+    // change nodes of a super component directly, without using the content builder
+    ResourceResolver resolver = context.resourceResolver();
+    resolver.getResource("/libs/app3/components/v1/base/" + NN_HTML_TAG).adaptTo(ModifiableValueMap.class)
+        .put("data-v1", "v1-changed");
+    resolver.delete(resolver.getResource("/libs/app3/components/v2/base/" + NameConstants.NN_EDIT_CONFIG));
+    resolver.commit();
+
+    Component component = underTest.getComponent("app3/components/proxy");
+    assertEquals("v1-changed", component.getHtmlTagAttributes().get("data-v1"));
+    assertEquals("v1 empty text", component.getEditConfig().getEmptyText());
+  }
+
+  @Test
+  public void testEditConfig() {
+    createComponentChain();
+    Component component = underTest.getComponent("app3/components/proxy");
+
+    assertNull(component.getDeclaredEditConfig());
+    ComponentEditConfig editConfig = component.getEditConfig();
+    assertFalse(editConfig.isDefault());
+    assertEquals(EditLayout.EDITBAR, editConfig.getLayout());
+    assertEquals(DialogMode.FLOATING, editConfig.getDialogMode());
+    assertEquals("v2 empty text", editConfig.getEmptyText());
+
+    Component base = component.getSuperComponent();
+    assertEquals("v2 empty text", base.getDeclaredEditConfig().getEmptyText());
+    assertEquals(EditLayout.AUTO, base.getDeclaredEditConfig().getLayout());
+
+    assertTrue(component.getChildEditConfig().isDefault());
+    assertNull(component.getDeclaredChildEditConfig());
+  }
+
+  @Test
+  public void testCyclicSuperComponent() {
+    context.create().resource("/apps/app4/components/a",
+        "sling:resourceSuperType", "app4/components/b");
+    context.create().resource("/apps/app4/components/b",
+        "sling:resourceSuperType", "app4/components/a");
+
+    Component component = underTest.getComponent("app4/components/a");
+    assertEquals("/apps/app4/components/b", component.getSuperComponent().getPath());
+    assertTrue(component.getHtmlTagAttributes().isEmpty());
+  }
+
+  private void createComponentChain() {
+    context.create().resource("/libs/app3/components/v1/base",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        PN_IS_CONTAINER, true);
+    context.create().resource("/libs/app3/components/v1/base/" + NN_HTML_TAG,
+        PN_TAG_NAME, "div",
+        "class", "v1-class",
+        "data-v1", "v1-attr");
+    context.create().resource("/libs/app3/components/v1/base/" + NameConstants.NN_EDIT_CONFIG,
+        "cq:layout", "editbar",
+        "cq:dialogMode", "floating",
+        "cq:emptyText", "v1 empty text");
+    context.create().resource("/libs/app3/components/v2/base",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        "sling:resourceSuperType", "app3/components/v1/base");
+    context.create().resource("/libs/app3/components/v2/base/" + NN_HTML_TAG,
+        PN_TAG_NAME, "section");
+    context.create().resource("/libs/app3/components/v2/base/" + NameConstants.NN_EDIT_CONFIG,
+        "cq:emptyText", "v2 empty text");
+    context.create().resource("/apps/app3/components/proxy",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        "sling:resourceSuperType", "app3/components/v2/base");
+    context.create().resource("/apps/app3/components/proxy/" + NN_HTML_TAG,
+        "class", "proxy-class");
+  }
+
+  private void createComponents() {
+    context.create().resource("/apps/app2/components/comp1",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        PN_COMPONENT_GROUP, "group1");
+    context.create().resource("/apps/app2/components/comp2",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        PN_COMPONENT_GROUP, "group2");
+    context.create().resource("/libs/app2/components/comp1",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        PN_COMPONENT_GROUP, "group2");
+    context.create().resource("/libs/app2/components/comp3",
+        JcrConstants.JCR_PRIMARYTYPE, NT_COMPONENT,
+        PN_COMPONENT_GROUP, "group1");
+  }
+
+  private static List<String> getPaths(Collection<Component> components) {
+    return components.stream()
+        .map(Component::getPath)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
 }
@@ -19,21 +19,35 @@
  */
 package io.wcm.testing.mock.aem;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Calendar;
+
 import org.apache.commons.collections4.IteratorUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.junit.Rule;
 import org.junit.Test;
 
 import com.adobe.cq.dam.cfm.ContentElement;
 import com.adobe.cq.dam.cfm.ContentFragment;
+import com.adobe.cq.dam.cfm.ContentFragmentException;
 import com.adobe.cq.dam.cfm.ContentVariation;
+import com.adobe.cq.dam.cfm.FragmentData;
 import com.adobe.cq.dam.cfm.VariationTemplate;
+import com.adobe.cq.dam.cfm.VersionDef;
+import com.adobe.cq.dam.cfm.VersionedContent;
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.DamConstants;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.dam.MockBlobStore;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 public class MockContentFragmentTest {
@@ -155,4 +169,204 @@ public class MockContentFragmentTest {
     contentElement.removeVariation(var);
   }
 
+  @Test
+  @SuppressWarnings("null")
+  public void testElementAndVariationModelCache() throws Exception {
+    String assetPath = context.uniqueRoot().dam() + "/cfCache";
+    ContentFragment cf = context.create().contentFragmentStructured(assetPath,
+        "param1", "value1", "param2", "value2");
+
+    // same element instances are returned for repeated lookups
+    ContentElement param1 = cf.getElement("param1");
+    assertSame(param1, cf.getElement("param1"));
+    assertSame(param1, IteratorUtils.toList(cf.getElements()).stream()
+        .filter(element -> "param1".equals(element.getName())).findFirst().get());
+
+    // read access to variations does not create variation data resources
+    cf.createVariation("v1", "V1", null);
+    ContentVariation var = param1.getVariation("v1");
+    assertEquals("", var.getContent());
+    assertSame(var, param1.getVariation("v1"));
+    assertNull(context.resourceResolver().getResource(assetPath + "/jcr:content/data/v1"));
+
+    // write access creates data resource, new variations invalidate the cached variations
+    var.setContent("var_value", null);
+    assertNotNull(context.resourceResolver().getResource(assetPath + "/jcr:content/data/v1"));
+    cf.createVariation("v2", "V2", null);
+    assertEquals(2, IteratorUtils.toList(param1.getVariations()).size());
+    assertEquals("var_value", param1.getVariation("v1").getContent());
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testVersions() throws Exception {
+    String assetPath = context.uniqueRoot().dam() + "/cfVersions";
+    ContentFragment cf = context.create().contentFragmentStructured(assetPath,
+        "param1", "value1");
+    cf.setTitle("title1");
+
+    VersionDef version = cf.createVersion("label1", "comment1");
+    assertEquals("label1", version.getLabel());
+    assertEquals("comment1", version.getComment());
+
+    cf.setTitle("title2");
+    cf.getElement("param1").setContent("value2", null);
+    cf.createVersion("label2", null);
+    assertEquals(2, IteratorUtils.toList(cf.listVersions()).size());
+
+    // versions keep the content at the time they were created
+    assertEquals("value2", cf.getElement("param1").getContent());
+    assertEquals("value1", cf.getElement("param1").getVersionedContent(version).getContent());
+
+    ContentFragment cfVersion = ((MockContentFragment)cf).getVersion(version);
+    assertEquals("title1", cfVersion.getTitle());
+    assertEquals("value1", cfVersion.getElement("param1").getContent());
+    assertThrows(ContentFragmentException.class, () -> cfVersion.setTitle("title3"));
+    assertThrows(ContentFragmentException.class, () -> cfVersion.getElement("param1").setContent("value3", null));
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testTextVersions() throws Exception {
+    String assetPath = context.uniqueRoot().dam() + "/cfTextVersions";
+    ContentFragment cf = context.create().contentFragmentText(assetPath,
+        "text1", "text/plain");
+
+    VersionDef version = cf.createVersion("label1", null);
+    cf.getElement(null).setContent("text2", "text/plain");
+
+    assertEquals("text2", cf.getElement(null).getContent());
+    VersionedContent versionedContent = cf.getVersionedContent(version);
+    assertEquals("text1", versionedContent.getContent());
+    assertEquals("text/plain", versionedContent.getContentType());
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testTextVersions_BlobStore() throws Exception {
+    context.registerInjectActivateService(new MockBlobStore());
+    String assetPath = context.uniqueRoot().dam() + "/cfTextVersionsBlob";
+    ContentFragment cf = context.create().contentFragmentText(assetPath,
+        "text0", "text/plain");
+    cf.getElement(null).setContent("text1", "text/plain");
+
+    VersionDef version = cf.createVersion("label1", null);
+    cf.getElement(null).setContent("text2", "text/plain");
+
+    assertEquals("text2", cf.getElement(null).getContent());
+    assertEquals("text1", cf.getVersionedContent(version).getContent());
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testLastModifiedDeep() throws Exception {
+    String rootPath = context.uniqueRoot().dam();
+    ContentFragment cfReferenced = context.create().contentFragmentStructured(rootPath + "/cfReferenced",
+        "param1", "value1");
+    ContentFragment cfReferencing = context.create().contentFragmentStructured(rootPath + "/cfReferencing",
+        "param1", "value1", "reference", rootPath + "/cfReferenced");
+    ContentFragment cfOther = context.create().contentFragmentStructured(rootPath + "/cfOther",
+        "param1", "value1");
+
+    cfReferencing.setTitle("title1");
+    Calendar lastModified = cfReferencing.getLastModifiedDate();
+    assertNotNull(lastModified);
+    Calendar lastModifiedDeep = cfReferencing.getLastModifiedDeep();
+    assertEquals(lastModified.getTimeInMillis(), lastModifiedDeep.getTimeInMillis());
+
+    // modification of referenced fragment is propagated to the referencing fragment
+    cfReferenced.setTitle("title2");
+    Calendar referencedLastModified = cfReferenced.getLastModifiedDate();
+    assertTrue(referencedLastModified.after(lastModified));
+    assertEquals(lastModified.getTimeInMillis(), cfReferencing.getLastModifiedDate().getTimeInMillis());
+    assertEquals(referencedLastModified.getTimeInMillis(), cfReferencing.getLastModifiedDeep().getTimeInMillis());
+
+    // modification of other fragment is not propagated
+    cfOther.setTitle("title3");
+    assertEquals(referencedLastModified.getTimeInMillis(), cfReferencing.getLastModifiedDeep().getTimeInMillis());
+
+    // modification of referenced fragment outside the content fragment API is detected when reading its date
+    Calendar externalLastModified = Calendar.getInstance();
+    externalLastModified.setTimeInMillis(referencedLastModified.getTimeInMillis() + 60000L);
+    context.resourceResolver().getResource(rootPath + "/cfReferenced/jcr:content")
+        .adaptTo(ModifiableValueMap.class).put(JcrConstants.JCR_LASTMODIFIED, externalLastModified);
+    assertEquals(externalLastModified.getTimeInMillis(), context.resourceResolver().getResource(rootPath + "/cfReferenced")
+        .adaptTo(ContentFragment.class).getLastModifiedDeep().getTimeInMillis());
+    assertEquals(externalLastModified.getTimeInMillis(), cfReferencing.getLastModifiedDeep().getTimeInMillis());
+
+    // modification of the fragment itself outside the content fragment API is detected
+    Calendar ownLastModified = Calendar.getInstance();
+    ownLastModified.setTimeInMillis(externalLastModified.getTimeInMillis() + 60000L);
+    context.resourceResolver().getResource(rootPath + "/cfReferencing/jcr:content")
+        .adaptTo(ModifiableValueMap.class).put(JcrConstants.JCR_LASTMODIFIED, ownLastModified);
+    assertEquals(ownLastModified.getTimeInMillis(), context.resourceResolver().getResource(rootPath + "/cfReferencing")
+        .adaptTo(ContentFragment.class).getLastModifiedDeep().getTimeInMillis());
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testFragmentData() throws Exception {
+    String assetPath = context.uniqueRoot().dam() + "/cfFragmentData";
+    ContentFragment cf = context.create().contentFragmentStructured(assetPath,
+        "param1", "value1", "param2", 123L, "param3", true, "param4", new String[] { "v1", "v2" });
+
+    // values keep their native types
+    FragmentData param2 = cf.getElement("param2").getValue();
+    assertEquals(123L, param2.getValue());
+    assertEquals("long", param2.getDataType().getTypeString());
+    assertFalse(param2.getDataType().isMultiValue());
+    assertEquals((Integer)123, param2.getValue(Integer.class));
+    assertEquals(true, cf.getElement("param3").getValue().getValue());
+
+    FragmentData param4 = cf.getElement("param4").getValue();
+    assertArrayEquals(new String[] { "v1", "v2" }, (String[])param4.getValue());
+    assertEquals("string", param4.getDataType().getTypeString());
+    assertTrue(param4.getDataType().isMultiValue());
+
+    // set typed values
+    Calendar calendar = Calendar.getInstance();
+    FragmentData param1 = cf.getElement("param1").getValue();
+    param1.setValue(calendar);
+    param1.setContentType("text/plain");
+    assertEquals(calendar.getTimeInMillis(), param1.getValue(Calendar.class).getTimeInMillis());
+    assertEquals("calendar", param1.getDataType().getTypeString());
+    assertEquals("text/plain", cf.getElement("param1").getContentType());
+    assertFalse(cf.hasElement("param1" + MockContentFragment_FragmentData.CONTENT_TYPE_SUFFIX));
+
+    cf.getElement("param2").setValue(cf.getElement("param4").getValue());
+    assertArrayEquals(new String[] { "v1", "v2" }, (String[])cf.getElement("param2").getValue().getValue());
+
+    assertTrue(param1.isTypeSupported(Long[].class));
+    assertFalse(param1.isTypeSupported(Object.class));
+    assertThrows(ContentFragmentException.class, () -> param1.setValue(new Object()));
+
+    // versions are read-only
+    ContentFragment cfVersion = ((MockContentFragment)cf).getVersion(cf.createVersion("label1", null));
+    FragmentData versionParam1 = cfVersion.getElement("param1").getValue();
+    assertThrows(ContentFragmentException.class, () -> versionParam1.setContentType("text/html"));
+    assertEquals("text/plain", cfVersion.getElement("param1").getContentType());
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testResolvedVariation() throws Exception {
+    String assetPath = context.uniqueRoot().dam() + "/cfResolvedVariation";
+    ContentFragment cf = context.create().contentFragmentStructured(assetPath,
+        "param1", "value1", "param2", 123L);
+    cf.createVariation("v1", "V1", null);
+    cf.getElement("param1").getVariation("v1").getValue().setValue("var_value1");
+
+    ContentVariation param1 = cf.getElement("param1").getResolvedVariation("v1");
+    assertEquals("v1", param1.getName());
+    assertEquals("var_value1", param1.getValue().getValue());
+
+    // values missing in the variation are resolved from master
+    ContentVariation param2 = cf.getElement("param2").getResolvedVariation("v1");
+    assertEquals(123L, param2.getValue().getValue());
+    assertEquals("123", param2.getContent());
+    assertNull(cf.getElement("param2").getVariation("v1").getValue().getValue());
+
+    assertNull(cf.getElement("param1").getResolvedVariation("unknown"));
+  }
+
 }
@@ -20,12 +20,17 @@
 package io.wcm.testing.mock.aem;
 
 import static org.apache.sling.api.resource.ResourceResolver.PROPERTY_RESOURCE_TYPE;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Map;
 
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.scripting.SlingBindings;
 import org.junit.Before;
@@ -33,11 +38,15 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import com.adobe.cq.sightly.WCMBindings;
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.Template;
 import com.day.cq.wcm.api.components.ComponentContext;
 import com.day.cq.wcm.api.designer.Style;
 import com.day.cq.wcm.api.policies.ContentPolicy;
 import com.day.cq.wcm.api.policies.ContentPolicyManager;
+import com.day.cq.wcm.api.policies.ContentPolicyMapping;
 import com.day.cq.wcm.commons.WCMUtils;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -47,6 +56,9 @@ public class MockContentPolicyManagerTest {
 
   private static final String RT_TEST = "app1/components/test";
   private static final String RT_TEST_2 = "/apps/app1/components/test2";
+  private static final String RT_CONTAINER = "app1/components/container";
+  private static final String TEMPLATE_PATH = "/conf/app1/settings/wcm/templates/template1";
+  private static final String POLICIES_PATH = "/conf/app1/settings/wcm/policies";
 
   @Rule
   public AemContext context = TestAemContext.newAemContext();
@@ -172,6 +184,163 @@ public class MockContentPolicyManagerTest {
     assertEquals("value3", child2.getValueMap().get("prop3", String.class));
   }
 
+  @Test
+  @SuppressWarnings("null")
+  public void testBulkPolicies() {
+    Resource resource1 = context.create().resource(page, "resource1",
+        PROPERTY_RESOURCE_TYPE, RT_TEST);
+    Resource resource2 = context.create().resource(page, "resource2",
+        PROPERTY_RESOURCE_TYPE, RT_TEST_2);
+
+    Map<String, ContentPolicyMapping> mappings = context.contentPolicyMappings(Map.of(
+        RT_TEST, Map.of("prop1", "value1"),
+        RT_TEST_2, Map.of("prop1", "value2", "child1", Map.of("prop2", "value3"))));
+    assertEquals(2, mappings.size());
+    assertEquals("value1", mappings.get(RT_TEST).getPolicy().getProperties().get("prop1", String.class));
+
+    assertEquals("value1", underTest.getPolicy(resource1).getProperties().get("prop1", String.class));
+    ContentPolicy policy2 = underTest.getPolicy(resource2);
+    assertEquals("value2", policy2.getProperties().get("prop1", String.class));
+    assertEquals("value3", policy2.adaptTo(Resource.class).getChild("child1").getValueMap().get("prop2", String.class));
+
+    // overwrite existing policies
+    context.contentPolicyMappings(Map.of(RT_TEST, Map.of("prop1", "value4")));
+    assertEquals("value4", underTest.getPolicy(resource1).getProperties().get("prop1", String.class));
+    assertEquals("value2", underTest.getPolicy(resource2).getProperties().get("prop1", String.class));
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testBulkPoliciesJson() {
+    Resource resource1 = context.create().resource(page, "resource1",
+        PROPERTY_RESOURCE_TYPE, RT_TEST);
+    Resource resource2 = context.create().resource(page, "resource2",
+        PROPERTY_RESOURCE_TYPE, RT_TEST_2);
+
+    Map<String, ContentPolicyMapping> mappings = context.contentPolicyMappings("/json-import-samples/content-policies.json");
+    assertEquals(2, mappings.size());
+
+    ContentPolicy policy1 = underTest.getPolicy(resource1);
+    assertEquals("Test policy", policy1.getTitle());
+    assertEquals((Long)123L, policy1.getProperties().get("prop2", Long.class));
+    assertArrayEquals(new String[] { "v1", "v2" }, policy1.getProperties().get("prop3", String[].class));
+    assertTrue(policy1.adaptTo(Resource.class).getChild("child1").getValueMap().get("prop4", false));
+    assertEquals("value2", underTest.getPolicy(resource2).getProperties().get("prop1", String.class));
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testTemplatePolicies() {
+    Page contentPage = createTemplateWithPolicies();
+
+    Resource container = context.create().resource(contentPage.getPath() + "/jcr:content/root/container",
+        PROPERTY_RESOURCE_TYPE, RT_CONTAINER);
+    Resource text1 = context.create().resource(container, "text1",
+        PROPERTY_RESOURCE_TYPE, RT_TEST);
+    Resource text2 = context.create().resource(container, "text2",
+        PROPERTY_RESOURCE_TYPE, RT_TEST);
+    Resource other = context.create().resource(container, "other",
+        PROPERTY_RESOURCE_TYPE, RT_TEST_2);
+
+    // mapping by resource path
+    assertEquals("container", underTest.getPolicy(container).getProperties().get("prop1", String.class));
+    assertEquals("text-special", underTest.getPolicy(text2).getProperties().get("prop1", String.class));
+    // mapping by resource type in parent container
+    assertEquals("text", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+    assertNull(underTest.getPolicy(other));
+
+    // global mock policy is used as fallback
+    context.contentPolicyMapping(RT_TEST_2, "prop1", "global");
+    assertEquals("global", underTest.getPolicy(other).getProperties().get("prop1", String.class));
+    assertEquals("text", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+
+    assertEquals(TEMPLATE_PATH, underTest.getPolicyMapping(text1).getTemplate().getPath());
+    assertEquals(POLICIES_PATH, underTest.getPolicyLocation(text1));
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testTemplatePoliciesCache() throws PersistenceException {
+    Page contentPage = createTemplateWithPolicies();
+    Resource text1 = context.create().resource(contentPage.getPath() + "/jcr:content/root/container/text1",
+        PROPERTY_RESOURCE_TYPE, RT_TEST);
+
+    assertEquals("text", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+    assertEquals("text", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+
+    // add more specific mapping without changing last modified date of the policies - detected by the cache
+    context.create().resource(TEMPLATE_PATH + "/policies/jcr:content/root/container/text1",
+        MockContentPolicyStorage.PN_POLICY, "app1/components/test/policy-special");
+    assertEquals("text-special", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+
+    // remove mapping via resource resolver
+    context.resourceResolver().delete(context.resourceResolver().getResource(TEMPLATE_PATH + "/policies/jcr:content/root/container/text1"));
+    assertEquals("text", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+
+    // change policy reference of a mapping
+    context.resourceResolver().getResource(TEMPLATE_PATH + "/policies/jcr:content/root/container/app1/components/test")
+        .adaptTo(ModifiableValueMap.class)
+        .put(MockContentPolicyStorage.PN_POLICY, "app1/components/test/policy-special");
+    assertEquals("text-special", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+
+    // explicit invalidation
+    MockContentPolicyStorage.invalidateCache(context.resourceResolver());
+    assertEquals("text-special", underTest.getPolicy(text1).getProperties().get("prop1", String.class));
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testTemplatePoliciesCache_MappingAdded() {
+    Page contentPage = createTemplateWithPolicies();
+    Resource other = context.create().resource(contentPage.getPath() + "/jcr:content/root/container/other",
+        PROPERTY_RESOURCE_TYPE, RT_TEST_2);
+    assertNull(underTest.getPolicy(other));
+
+    // mapping added later for a resource without mapping before
+    context.create().resource(TEMPLATE_PATH + "/policies/jcr:content/root/container/other",
+        MockContentPolicyStorage.PN_POLICY, "app1/components/test/policy-special");
+    assertEquals("text-special", underTest.getPolicy(other).getProperties().get("prop1", String.class));
+  }
+
+  @Test
+  @SuppressWarnings("null")
+  public void testPolicyLookup() {
+    createTemplateWithPolicies();
+
+    List<ContentPolicy> policies = underTest.getPolicies(POLICIES_PATH, RT_TEST);
+    assertEquals(2, policies.size());
+
+    ContentPolicy policy = context.resourceResolver().getResource(POLICIES_PATH + "/app1/components/test/policy")
+        .adaptTo(ContentPolicy.class);
+    List<ContentPolicyMapping> mappings = underTest.getPolicyMappings(policy);
+    assertEquals(1, mappings.size());
+    assertEquals(TEMPLATE_PATH + "/policies/jcr:content/root/container/app1/components/test", mappings.get(0).getPath());
+
+    List<Template> templates = underTest.getTemplates(policy.getPath());
+    assertEquals(1, templates.size());
+    assertEquals(TEMPLATE_PATH, templates.get(0).getPath());
+  }
+
+  private Page createTemplateWithPolicies() {
+    context.create().resource(TEMPLATE_PATH,
+        JcrConstants.JCR_PRIMARYTYPE, NameConstants.NT_TEMPLATE);
+    context.create().resource(TEMPLATE_PATH + "/policies/jcr:content/root/container",
+        MockContentPolicyStorage.PN_POLICY, "app1/components/container/policy");
+    context.create().resource(TEMPLATE_PATH + "/policies/jcr:content/root/container/app1/components/test",
+        MockContentPolicyStorage.PN_POLICY, "app1/components/test/policy");
+    context.create().resource(TEMPLATE_PATH + "/policies/jcr:content/root/container/text2",
+        MockContentPolicyStorage.PN_POLICY, "app1/components/test/policy-special");
+
+    context.create().resource(POLICIES_PATH + "/app1/components/container/policy",
+        PROPERTY_RESOURCE_TYPE, MockContentPolicyStorage.RT_CONTENTPOLICY, "prop1", "container");
+    context.create().resource(POLICIES_PATH + "/app1/components/test/policy",
+        PROPERTY_RESOURCE_TYPE, MockContentPolicyStorage.RT_CONTENTPOLICY, "prop1", "text");
+    context.create().resource(POLICIES_PATH + "/app1/components/test/policy-special",
+        PROPERTY_RESOURCE_TYPE, MockContentPolicyStorage.RT_CONTENTPOLICY, "prop1", "text-special");
+
+    return context.create().page("/content/test-template", TEMPLATE_PATH);
+  }
+
   @SuppressWarnings("deprecation")
   private Style getStyle() {
     SlingBindings bindings = (SlingBindings)context.request().getAttribute(SlingBindings.class.getName());
@@ -19,16 +19,24 @@
  */
 package io.wcm.testing.mock.aem;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Calendar;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.designer.Design;
 import com.day.cq.wcm.api.designer.Designer;
+import com.day.cq.wcm.api.designer.Style;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
 import io.wcm.testing.mock.aem.junit.AemContext;
@@ -77,4 +85,92 @@ public class MockDesignerTest {
     assertNotNull(underTest.getStyle(page.getContentResource(), "anyCell"));
   }
 
+  @Test
+  public void testDesignPath() {
+    Page designPage = createDesignPage();
+    Page subPage = context.create().page(designPage, "sub");
+    assertEquals("/etc/designs/test", underTest.getDesignPath(designPage));
+    assertEquals("/etc/designs/test", underTest.getDesignPath(subPage));
+
+    Design design = underTest.getDesign(subPage);
+    assertEquals("/etc/designs/test", design.getPath());
+    assertTrue(design.hasContent());
+    assertEquals("/etc/designs/test/jcr:content", design.getContentResource().getPath());
+  }
+
+  @Test
+  public void testStyleInheritance() {
+    createDesignPage();
+    Resource text = context.create().resource("/content/design/jcr:content/par/text1",
+        "sling:resourceType", "app/components/text");
+
+    Style style = underTest.getStyle(text);
+    assertEquals("homepage/par/text", style.getCell().getPath());
+    assertEquals("/etc/designs/test/jcr:content/homepage/par/text", style.getPath());
+
+    // most specific cell wins, properties of parent cells are not inherited
+    assertEquals("pageText", style.get("prop1", String.class));
+    assertEquals("text", style.get("prop2", String.class));
+    assertEquals("text", style.get("prop3", String.class));
+
+    assertEquals("/etc/designs/test/jcr:content/homepage/par/text", style.getDefiningPath("prop1"));
+    assertEquals("/etc/designs/test/jcr:content/text", style.getDefiningPath("prop2"));
+    assertEquals("/etc/designs/test/jcr:content/text", style.getDefiningResource("prop3").getPath());
+    assertNull(style.getDefiningPath("prop4"));
+  }
+
+  @Test
+  public void testCellPathAndSubStyle() {
+    Page designPage = createDesignPage();
+
+    Style pageStyle = underTest.getStyle(designPage.getContentResource());
+    assertEquals("homepage", pageStyle.getCell().getPath());
+    assertEquals("page", pageStyle.get("prop1", String.class));
+
+    Style subStyle = pageStyle.getSubStyle("par/text");
+    assertEquals("pageText", subStyle.get("prop1", String.class));
+
+    Style cellStyle = underTest.getStyle(designPage.getContentResource(), "text");
+    assertEquals("text", cellStyle.get("prop2", String.class));
+    assertNull(cellStyle.get("prop1", String.class));
+  }
+
+  @Test
+  public void testStyleCacheInvalidation() {
+    Page designPage = createDesignPage();
+    assertEquals("page", underTest.getStyle(designPage.getContentResource()).get("prop1", String.class));
+
+    // changes of style nodes are detected without updating the design content last modified date
+    context.resourceResolver().getResource("/etc/designs/test/jcr:content/homepage")
+        .adaptTo(ModifiableValueMap.class).put("prop1", "changed");
+    assertEquals("changed", underTest.getStyle(designPage.getContentResource()).get("prop1", String.class));
+
+    // removed properties of more specific cells are detected as well
+    Resource text = context.create().resource("/content/design/jcr:content/par/text2",
+        "sling:resourceType", "app/components/text");
+    assertEquals("pageText", underTest.getStyle(text).get("prop1", String.class));
+    context.resourceResolver().getResource("/etc/designs/test/jcr:content/homepage/par/text")
+        .adaptTo(ModifiableValueMap.class).remove("prop1");
+    assertEquals("text", underTest.getStyle(text).get("prop2", String.class));
+    assertNull(underTest.getStyle(text).get("prop1", String.class));
+
+    MockCaches.invalidateDesignStyles(context.resourceResolver());
+    assertEquals("changed", underTest.getStyle(designPage.getContentResource()).get("prop1", String.class));
+  }
+
+  private Page createDesignPage() {
+    Calendar lastModified = Calendar.getInstance();
+    context.create().resource("/etc/designs/test/jcr:content",
+        NameConstants.PN_PAGE_LAST_MOD, lastModified);
+    context.create().resource("/etc/designs/test/jcr:content/homepage",
+        "prop1", "page", "prop2", "page");
+    context.create().resource("/etc/designs/test/jcr:content/homepage/par/text",
+        "prop1", "pageText");
+    context.create().resource("/etc/designs/test/jcr:content/text",
+        "prop2", "text", "prop3", "text");
+    return context.create().page("/content/design", null,
+        "sling:resourceType", "app/components/homepage",
+        NameConstants.PN_DESIGN_PATH, "/etc/designs/test");
+  }
+
 }
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.day.image.Layer;
+
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+@SuppressWarnings("null")
+public class MockImageDecoderTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+
+  private MockImageDecoder underTest;
+  private Asset asset;
+
+  @Before
+  public void setUp() {
+    underTest = context.getService(MockImageDecoder.class);
+    asset = context.create().asset("/content/dam/sample.jpg", 1000, 500, "image/jpeg");
+  }
+
+  @Test
+  public void testGetImage() {
+    Rendition original = asset.getOriginal();
+
+    BufferedImage image = underTest.getImage(original, null);
+    assertNotNull(image);
+    assertEquals(1000, image.getWidth());
+    assertEquals(500, image.getHeight());
+
+    BufferedImage constrained = underTest.getImage(original, new Dimension(100, 100));
+    assertNotNull(constrained);
+    assertEquals(100, constrained.getWidth());
+    assertEquals(50, constrained.getHeight());
+  }
+
+  @Test
+  public void testGetImage_Cached() {
+    Rendition original = asset.getOriginal();
+
+    BufferedImage image1 = underTest.getImage(original, new Dimension(100, 100));
+    BufferedImage image2 = underTest.getImage(original, new Dimension(100, 100));
+    assertEquals(1, underTest.getCacheSize());
+    // each caller gets its own copy
+    assertNotSame(image1, image2);
+
+    underTest.getImage(original, null);
+    assertEquals(2, underTest.getCacheSize());
+  }
+
+  @Test
+  public void testGetImage_CopyOnWrite() {
+    Rendition original = asset.getOriginal();
+
+    BufferedImage image1 = underTest.getImage(original, new Dimension(100, 100));
+    int rgb = image1.getRGB(0, 0);
+    image1.setRGB(0, 0, rgb ^ 0x00ffffff);
+    assertEquals(rgb ^ 0x00ffffff, image1.getRGB(0, 0));
+
+    // modifications of a caller are not visible in the cached image
+    BufferedImage image2 = underTest.getImage(original, new Dimension(100, 100));
+    assertEquals(rgb, image2.getRGB(0, 0));
+  }
+
+  @Test
+  public void testGetImage_RenditionReplaced() {
+    context.create().assetRendition(asset, "test.jpg", 100, 100, "image/jpeg");
+    assertEquals(100, underTest.getImage(asset.getRendition("test.jpg"), null).getWidth());
+
+    context.create().assetRendition(asset, "test.jpg", 200, 100, "image/jpeg");
+    assertEquals(200, underTest.getImage(asset.getRendition("test.jpg"), null).getWidth());
+  }
+
+  @Test
+  public void testGetImage_BinaryReplacedWithSameLastModified() throws PersistenceException {
+    Rendition rendition = context.create().assetRendition(asset, "test.jpg", 100, 100, "image/jpeg");
+    Calendar lastModified = rendition.getProperties().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    assertEquals(100, underTest.getImage(asset.getRendition("test.jpg"), null).getWidth());
+
+    context.create().assetRendition(asset, "test.jpg", 200, 100, "image/jpeg");
+    context.resourceResolver().getResource(asset.getRendition("test.jpg").getPath() + "/" + JcrConstants.JCR_CONTENT)
+        .adaptTo(ModifiableValueMap.class)
+        .put(JcrConstants.JCR_LASTMODIFIED, lastModified);
+    context.resourceResolver().commit();
+    assertEquals(200, underTest.getImage(asset.getRendition("test.jpg"), null).getWidth());
+  }
+
+  @Test
+  public void testGetImage_Layer() {
+    Layer layer = asset.getOriginal().adaptTo(Layer.class);
+    assertNotNull(layer);
+    assertEquals(1000, layer.getWidth());
+    assertEquals(1, underTest.getCacheSize());
+  }
+
+  @Test
+  public void testGetImage_Invalid() {
+    Rendition rendition = asset.addRendition("invalid.jpg", new ByteArrayInputStream(new byte[] { 0x01, 0x02 }), "image/jpeg");
+    assertNull(underTest.getImage(rendition, null));
+  }
+
+  @Test
+  public void testDecodeSubsampled() throws IOException {
+    try (InputStream is = asset.getOriginal().getStream()) {
+      BufferedImage image = MockImageDecoder.decodeSubsampled(is, 100, 100);
+      // subsampled by factor 5, never smaller than requested size
+      assertEquals(200, image.getWidth());
+      assertEquals(100, image.getHeight());
+    }
+  }
+
+}
@@ -33,13 +33,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
 
 import javax.jcr.Node;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
@@ -53,6 +62,7 @@ import org.junit.Test;
 
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.PageManager;
+import com.day.cq.wcm.api.Revision;
 import com.day.cq.wcm.api.WCMException;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -310,4 +320,159 @@ public class MockPageManagerTest {
     assertNull(props.get(PN_PAGE_LAST_REPLICATION_ACTION));
   }
 
+  @Test
+  public void testCreateRevisionAndRestore() throws Exception {
+    Page page = pageManager.getPage("/content/sample/en");
+    Revision revision = pageManager.createRevision(page, "v1", "comment1");
+    assertEquals("v1", revision.getLabel());
+    assertEquals("comment1", revision.getComment());
+    assertEquals("English", revision.getTitle());
+    assertEquals("/content/sample", revision.getParentPath());
+    assertFalse(revision.isDeleted());
+
+    setTitle("/content/sample/en", "English changed");
+    assertEquals("English changed", pageManager.getPage("/content/sample/en").getTitle());
+
+    Page restoredPage = pageManager.restore("/content/sample/en", revision.getId());
+    assertEquals("English", restoredPage.getTitle());
+    // child pages are not affected by restoring a revision
+    assertNotNull(pageManager.getPage("/content/sample/en/toolbar"));
+  }
+
+  @Test
+  public void testGetRevisions() throws Exception {
+    Page page = pageManager.getPage("/content/sample/en");
+    pageManager.createRevision(page, "v1", null);
+    setTitle("/content/sample/en", "English changed");
+    pageManager.createRevision(page, "v2", null);
+
+    List<Revision> revisions = new ArrayList<>(pageManager.getRevisions("/content/sample/en", null));
+    assertEquals(2, revisions.size());
+    assertEquals("English", revisions.get(0).getTitle());
+    assertEquals("English changed", revisions.get(1).getTitle());
+
+    assertTrue(pageManager.getRevisions("/content/sample/en/toolbar", null).isEmpty());
+  }
+
+  @Test
+  public void testRevisionsShareUnchangedContent() throws Exception {
+    Page page = pageManager.getPage("/content/sample/en");
+    MockRevision revision1 = (MockRevision)pageManager.createRevision(page);
+    MockRevision revision2 = (MockRevision)pageManager.createRevision(page);
+    assertSame(revision1.getEntry().getSnapshot(), revision2.getEntry().getSnapshot());
+
+    setTitle("/content/sample/en", "English changed");
+    MockRevision revision3 = (MockRevision)pageManager.createRevision(page);
+    assertNotSame(revision2.getEntry().getSnapshot(), revision3.getEntry().getSnapshot());
+  }
+
+  @Test
+  public void testRestoreDeletedPage() throws Exception {
+    Page page = pageManager.getPage("/content/sample/en/toolbar/profiles");
+    Revision revision = pageManager.createRevision(page);
+    pageManager.delete(page, false, true);
+
+    Collection<Revision> childRevisions = pageManager.getChildRevisions("/content/sample/en/toolbar", null);
+    assertEquals(1, childRevisions.size());
+    assertTrue(childRevisions.iterator().next().isDeleted());
+    assertTrue(pageManager.getChildRevisions("/content/sample/en/toolbar", null, false).isEmpty());
+
+    Page restoredPage = pageManager.restore("/content/sample/en/toolbar", revision.getId());
+    assertEquals("/content/sample/en/toolbar/profiles", restoredPage.getPath());
+    assertNotNull(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+  }
+
+  @Test
+  public void testRestoreDeletedPage_ChildPages() throws Exception {
+    Revision revision = pageManager.createRevision(pageManager.getPage("/content/sample/en/toolbar"));
+    pageManager.createRevision(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+    pageManager.delete(pageManager.getPage("/content/sample/en/toolbar"), false, true);
+    assertNull(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+
+    pageManager.restore("/content/sample/en", revision.getId());
+    assertNotNull(pageManager.getPage("/content/sample/en/toolbar"));
+    assertNotNull(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+  }
+
+  @Test
+  public void testRevisionsCreatedDateIncreasing() throws Exception {
+    Page page = pageManager.getPage("/content/sample/en");
+    Revision revision1 = pageManager.createRevision(page);
+    Revision revision2 = pageManager.createRevision(page);
+    assertTrue(revision2.getCreated().after(revision1.getCreated()));
+
+    assertEquals(1, pageManager.getRevisions("/content/sample/en", revision1.getCreated()).size());
+  }
+
+  @Test
+  public void testGetChildRevisions_TreeRoot() throws Exception {
+    pageManager.createRevision(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+
+    assertEquals(1, pageManager.getChildRevisions("/content/sample/en/toolbar", "/content/sample", null).size());
+    assertEquals(1, pageManager.getChildRevisions("/content/sample/en/toolbar", "/content/sample/en/toolbar/profiles", null).size());
+    assertTrue(pageManager.getChildRevisions("/content/sample/en/toolbar", "/content/sample/en/toolbar/other", null).isEmpty());
+  }
+
+  @Test
+  public void testCreateRevisionAndRestore_Binary() throws Exception {
+    String filePath = "/content/sample/en/jcr:content/file.txt";
+    context.load().binaryFile(new ByteArrayInputStream("data1".getBytes(StandardCharsets.UTF_8)), filePath, "text/plain");
+    Revision revision = pageManager.createRevision(pageManager.getPage("/content/sample/en"));
+
+    context.resourceResolver().delete(context.resourceResolver().getResource(filePath));
+    context.load().binaryFile(new ByteArrayInputStream("data2".getBytes(StandardCharsets.UTF_8)), filePath, "text/plain");
+
+    pageManager.restore("/content/sample/en", revision.getId());
+    try (InputStream is = context.resourceResolver().getResource(filePath).adaptTo(InputStream.class)) {
+      assertEquals("data1", IOUtils.toString(is, StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test(expected = WCMException.class)
+  public void testRestoreInvalidRevision() throws Exception {
+    pageManager.restore("/content/sample/en", "invalid");
+  }
+
+  @Test
+  public void testRestoreTree() throws Exception {
+    pageManager.createRevision(pageManager.getPage("/content/sample/en"));
+    pageManager.createRevision(pageManager.getPage("/content/sample/en/toolbar"));
+    Thread.sleep(5);
+    Calendar date = Calendar.getInstance();
+    Thread.sleep(5);
+
+    setTitle("/content/sample/en", "English changed");
+    setTitle("/content/sample/en/toolbar", "Toolbar changed");
+    pageManager.createRevision(pageManager.getPage("/content/sample/en/toolbar"));
+    context.create().page("/content/sample/en/newpage");
+
+    Page restoredPage = pageManager.restoreTree("/content/sample/en", date);
+    assertEquals("English", restoredPage.getTitle());
+    assertNotEquals("Toolbar changed", pageManager.getPage("/content/sample/en/toolbar").getTitle());
+    assertNull(pageManager.getPage("/content/sample/en/newpage"));
+    // non-versioned pages are removed unless preserved
+    assertNull(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+  }
+
+  @Test
+  public void testRestoreTree_PreserveNonVersioned() throws Exception {
+    pageManager.createRevision(pageManager.getPage("/content/sample/en"));
+    Thread.sleep(5);
+    Calendar date = Calendar.getInstance();
+    Thread.sleep(5);
+
+    setTitle("/content/sample/en", "English changed");
+
+    Page restoredPage = pageManager.restoreTree("/content/sample/en", date, true);
+    assertEquals("English", restoredPage.getTitle());
+    assertNotNull(pageManager.getPage("/content/sample/en/toolbar"));
+    assertNotNull(pageManager.getPage("/content/sample/en/toolbar/profiles"));
+  }
+
+  private void setTitle(String pagePath, String title) throws PersistenceException {
+    ModifiableValueMap props = resourceResolver.getResource(pagePath + "/" + JCR_CONTENT).adaptTo(ModifiableValueMap.class);
+    props.put(JCR_TITLE, title);
+    resourceResolver.commit();
+  }
+
 }
@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.day.cq.wcm.api.Page;
+
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+@SuppressWarnings("null")
+public class PageTreeWalkerTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+
+  private Page root;
+
+  @Before
+  public void setUp() {
+    root = context.create().page("/content/site");
+    context.create().page("/content/site/en");
+    context.create().page("/content/site/en/products");
+    context.create().page("/content/site/en/products/product1");
+    context.create().page("/content/site/en/about");
+    context.create().page("/content/site/de");
+    context.create().resource("/content/site/folder");
+    context.create().page("/content/site/folder/page1");
+  }
+
+  @Test
+  public void testIterate() {
+    List<String> paths = toPaths(PageTreeWalker.iterate(root, null, PageTreeWalker.UNLIMITED_DEPTH));
+    assertEquals(List.of(
+        "/content/site/en",
+        "/content/site/en/products",
+        "/content/site/en/products/product1",
+        "/content/site/en/about",
+        "/content/site/de",
+        "/content/site/folder/page1"), paths);
+  }
+
+  @Test
+  public void testIterate_MaxDepth() {
+    assertEquals(List.of("/content/site/en", "/content/site/de"),
+        toPaths(PageTreeWalker.iterate(root, null, 1)));
+    assertEquals(List.of(
+        "/content/site/en",
+        "/content/site/en/products",
+        "/content/site/en/about",
+        "/content/site/de",
+        "/content/site/folder/page1"),
+        toPaths(PageTreeWalker.iterate(root, null, 2)));
+    assertFalse(PageTreeWalker.iterate(root, null, 0).hasNext());
+  }
+
+  @Test
+  public void testIterate_Filter() {
+    List<String> paths = toPaths(PageTreeWalker.iterate(root,
+        page -> !page.getName().equals("products"), PageTreeWalker.UNLIMITED_DEPTH));
+    assertEquals(List.of(
+        "/content/site/en",
+        "/content/site/en/products/product1",
+        "/content/site/en/about",
+        "/content/site/de",
+        "/content/site/folder/page1"), paths);
+  }
+
+  @Test
+  public void testStream() {
+    assertEquals(6, PageTreeWalker.stream(root, null, PageTreeWalker.UNLIMITED_DEPTH).count());
+    assertEquals(List.of("en", "de"), PageTreeWalker.stream(root, null, 1)
+        .map(Page::getName)
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testWalkParallel() {
+    Set<String> paths = ConcurrentHashMap.newKeySet();
+    PageTreeWalker.walkParallel(root, page -> !page.getName().equals("de"), PageTreeWalker.UNLIMITED_DEPTH, 4,
+        page -> paths.add(page.getPath()));
+    assertEquals(Set.of(
+        "/content/site/en",
+        "/content/site/en/products",
+        "/content/site/en/products/product1",
+        "/content/site/en/about",
+        "/content/site/folder/page1"), paths);
+  }
+
+  @Test
+  public void testWalkParallel_MaxDepth() {
+    Set<String> paths = ConcurrentHashMap.newKeySet();
+    PageTreeWalker.walkParallel(root, null, 1, 2, page -> paths.add(page.getPath()));
+    assertEquals(Set.of("/content/site/en", "/content/site/de"), paths);
+  }
+
+  private static List<String> toPaths(Iterator<Page> pages) {
+    return IteratorUtils.toList(pages).stream()
+        .map(Page::getPath)
+        .collect(Collectors.toList());
+  }
+
+}
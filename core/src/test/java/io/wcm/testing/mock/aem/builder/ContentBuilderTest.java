@@ -19,29 +19,47 @@
  */
 package io.wcm.testing.mock.aem.builder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 
+import com.adobe.cq.dam.cfm.ContentFragment;
 import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.Asset;
 import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.DamEvent;
 import com.day.cq.dam.api.Rendition;
 import com.day.cq.tagging.Tag;
+import com.day.cq.tagging.TagManager;
 import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 import com.day.image.Layer;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.dam.MockDamEventDispatcher;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 public class ContentBuilderTest {
@@ -53,6 +71,8 @@ public class ContentBuilderTest {
 
   @Rule
   public AemContext context = TestAemContext.newAemContext();
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
 
   @Before
   public void setUp() {
@@ -369,4 +389,179 @@ public class ContentBuilderTest {
         actualLayer.getWidth() / actualLayer.getHeight(), 0.0001d);
   }
 
+  @Test
+  public void testBatch() {
+    try (ContentBuilder.Batch batch = context.create().batch()) {
+      Page page1 = context.create().page(contentRoot + "/test1/page1");
+      context.create().page(page1, "page11");
+      context.create().page(contentRoot + "/test1/page2", TEMPLATE, "prop1", "value1");
+      context.create().asset(damRoot + "/folder1/sample1.gif", 10, 10, "image/gif");
+      context.create().tag("test:batch/tag1");
+      assertTrue(context.resourceResolver().hasChanges());
+    }
+    assertFalse(context.resourceResolver().hasChanges());
+
+    assertNotNull(context.pageManager().getPage(contentRoot + "/test1/page1/page11"));
+    assertEquals("value1", context.pageManager().getPage(contentRoot + "/test1/page2").getProperties().get("prop1", String.class));
+    assertNotNull(context.resourceResolver().getResource(damRoot + "/folder1/sample1.gif").adaptTo(Asset.class));
+    assertNotNull(context.resourceResolver().adaptTo(TagManager.class).resolve("test:batch/tag1"));
+  }
+
+  @Test
+  public void testBatchCommitInterval() {
+    try (ContentBuilder.Batch batch = context.batch(2)) {
+      context.create().page(contentRoot + "/test1/page1");
+      assertTrue(context.resourceResolver().hasChanges());
+      context.create().page(contentRoot + "/test1/page2");
+      assertFalse(context.resourceResolver().hasChanges());
+      context.create().page(contentRoot + "/test1/page3");
+      assertTrue(context.resourceResolver().hasChanges());
+    }
+    assertFalse(context.resourceResolver().hasChanges());
+  }
+
+  @Test
+  public void testBatchFailedOperation() {
+    try (ContentBuilder.Batch batch = context.create().batch()) {
+      context.create().page(contentRoot + "/test1/page1");
+      // invalid tag ID with multiple namespaces
+      context.create().tag("test:batch:tag1");
+      fail("Exception expected");
+    }
+    catch (RuntimeException ex) {
+      // expected
+    }
+    assertFalse(context.resourceResolver().hasChanges());
+    assertNull(context.pageManager().getPage(contentRoot + "/test1/page1"));
+
+    // content builder can be used again afterwards
+    assertNotNull(context.create().page(contentRoot + "/test1/page2"));
+  }
+
+  @Test
+  public void testBatchAbort() {
+    try (ContentBuilder.Batch batch = context.create().batch()) {
+      context.create().page(contentRoot + "/test1/page1");
+      batch.abort();
+    }
+    assertFalse(context.resourceResolver().hasChanges());
+    assertNull(context.pageManager().getPage(contentRoot + "/test1/page1"));
+  }
+
+  @Test
+  public void testBatchDelete() {
+    try (ContentBuilder.Batch batch = context.create().batch()) {
+      context.create().page(contentRoot + "/test1/page1");
+      context.create().asset(damRoot + "/folder1/sample1.gif", 10, 10, "image/gif");
+      batch.delete(contentRoot + "/test1");
+      batch.delete(damRoot + "/folder1");
+      context.create().page(contentRoot + "/test1/page2");
+      context.create().asset(damRoot + "/folder1/sample2.gif", 10, 10, "image/gif");
+    }
+    assertFalse(context.resourceResolver().hasChanges());
+
+    assertNull(context.pageManager().getPage(contentRoot + "/test1/page1"));
+    assertNotNull(context.pageManager().getPage(contentRoot + "/test1/page2"));
+    assertNull(context.resourceResolver().getResource(damRoot + "/folder1/sample1.gif"));
+    assertNotNull(context.resourceResolver().getResource(damRoot + "/folder1/sample2.gif").adaptTo(Asset.class));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testBatchNested() {
+    try (ContentBuilder.Batch batch1 = context.create().batch();
+        ContentBuilder.Batch batch2 = context.create().batch()) {
+      // not allowed
+    }
+  }
+
+  @Test
+  public void testAssetFolder() throws Exception {
+    Path directory = tempFolder.newFolder("import").toPath();
+    Files.createDirectories(directory.resolve("sub1/sub11"));
+    try (InputStream is = ContentBuilderTest.class.getResourceAsStream("/sample-image.gif")) {
+      Files.copy(is, directory.resolve("image1.gif"));
+    }
+    Files.copy(directory.resolve("image1.gif"), directory.resolve("sub1/sub11/image2.gif"));
+
+    assertEquals(2, context.create().assetFolder(damRoot + "/import", directory));
+    assertFalse(context.resourceResolver().hasChanges());
+
+    Asset asset1 = context.resourceResolver().getResource(damRoot + "/import/image1.gif").adaptTo(Asset.class);
+    assertEquals("image/gif", asset1.getMimeType());
+    assertNotNull(asset1.getOriginal());
+    assertNotNull(asset1.getMetadataValue(DamConstants.TIFF_IMAGEWIDTH));
+    assertEquals("sling:Folder", context.resourceResolver().getResource(damRoot + "/import/sub1/sub11")
+        .getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class));
+    assertNotNull(context.resourceResolver().getResource(damRoot + "/import/sub1/sub11/image2.gif").adaptTo(Asset.class));
+  }
+
+  @Test
+  public void testContentFragments_Ndjson() {
+    String json = "{\"name\":\"cf1\",\"title\":\"CF 1\",\"model\":\"/conf/app/settings/dam/cfm/models/article\","
+        + "\"data\":{\"param1\":\"value1\",\"param2\":[1,2],\"param3\":5,\"param4\":1.5},\"tags\":[\"ns:tag1\"],"
+        + "\"variations\":{\"v1\":{\"title\":\"V1\",\"data\":{\"param1\":\"var1\"}}}}\n"
+        + "\n"
+        + "{\"path\":\"" + damRoot + "/other/cf2\",\"text\":\"<p>Text</p>\",\"mimeType\":\"text/html\"}\n";
+
+    assertEquals(2, context.create().contentFragments(damRoot + "/cf", new StringReader(json), 1));
+    assertFalse(context.resourceResolver().hasChanges());
+
+    ContentFragment cf1 = context.resourceResolver().getResource(damRoot + "/cf/cf1").adaptTo(ContentFragment.class);
+    assertEquals("CF 1", cf1.getTitle());
+    assertEquals("value1", cf1.getElement("param1").getContent());
+    assertEquals("1\n2", cf1.getElement("param2").getContent());
+    assertEquals("var1", cf1.getElement("param1").getVariation("v1").getContent());
+    assertEquals("V1", cf1.getElement("param1").getVariation("v1").getTitle());
+    assertArrayEquals(new String[] { "ns:tag1" }, (String[])cf1.getMetaData().get("cq:tags"));
+    assertEquals("/conf/app/settings/dam/cfm/models/article", context.resourceResolver()
+        .getResource(damRoot + "/cf/cf1/jcr:content/data").getValueMap().get("cq:model", String.class));
+    ValueMap master = context.resourceResolver().getResource(damRoot + "/cf/cf1/jcr:content/data/master").getValueMap();
+    assertEquals(5L, master.get("param3"));
+    assertEquals(1.5d, master.get("param4"));
+    assertArrayEquals(new Long[] { 1L, 2L }, (Long[])master.get("param2"));
+
+    ContentFragment cf2 = context.resourceResolver().getResource(damRoot + "/other/cf2").adaptTo(ContentFragment.class);
+    assertEquals("<p>Text</p>", cf2.getElement("main").getContent());
+    assertEquals("text/html", cf2.getElement("main").getContentType());
+  }
+
+  @Test
+  public void testContentFragments_JsonArray() {
+    List<String> createdAssets = new ArrayList<>();
+    context.registerService(EventHandler.class, (Event event) -> {
+      if (StringUtils.equals(event.getTopic(), DamEvent.EVENT_TOPIC)) {
+        createdAssets.add(DamEvent.fromEvent(event).getAssetPath());
+      }
+    });
+
+    StringBuilder json = new StringBuilder("[\n");
+    for (int i = 1; i <= 20; i++) {
+      if (i > 1) {
+        json.append(",\n");
+      }
+      json.append("{\"name\":\"cf").append(i).append("\",\"data\":{\"text\":\"{quoted} \\\"value\\\" ").append(i).append("\"}}");
+    }
+    json.append("\n]");
+
+    assertEquals(20, context.create().contentFragments(damRoot + "/cf", new StringReader(json.toString())));
+    assertEquals(20, createdAssets.size());
+    ContentFragment cf = context.resourceResolver().getResource(damRoot + "/cf/cf20").adaptTo(ContentFragment.class);
+    assertEquals("{quoted} \"value\" 20", cf.getElement("text").getContent());
+  }
+
+  @Test
+  public void testContentFragments_BatchedDelivery() {
+    context.getService(MockDamEventDispatcher.class).setDeliveryMode(MockDamEventDispatcher.DeliveryMode.BATCHED);
+    List<String> createdAssets = new ArrayList<>();
+    context.registerService(EventHandler.class, (Event event) -> {
+      if (StringUtils.equals(event.getTopic(), DamEvent.EVENT_TOPIC)) {
+        createdAssets.add(DamEvent.fromEvent(event).getAssetPath());
+      }
+    });
+
+    assertEquals(2, context.create().contentFragments(damRoot + "/cf",
+        new StringReader("{\"name\":\"cf1\"}\n{\"name\":\"cf2\"}\n")));
+    assertEquals(List.of(damRoot + "/cf/cf1", damRoot + "/cf/cf2"), createdAssets);
+  }
+
 }
@@ -22,9 +22,12 @@ package io.wcm.testing.mock.aem.context;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.adapter.AdapterManager;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.models.factory.ModelFactory;
 import org.apache.sling.scripting.api.BindingsValuesProvidersByContext;
@@ -37,7 +40,10 @@ import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.WCMMode;
+import com.day.cq.wcm.api.components.Component;
+import com.day.cq.wcm.api.policies.ContentPolicy;
 
+import io.wcm.testing.mock.aem.context.MockAemSlingBindings.SlingBindingsProperty;
 import io.wcm.testing.mock.aem.junit.AemContext;
 import io.wcm.testing.mock.aem.models.SlingBindingsModel;
 
@@ -269,4 +275,79 @@ public class MockAemSlingBindingsTest {
     assertEquals("value1", model.getCurrentStyle().get("policyProp1", String.class));
   }
 
+  @Test
+  public void testUnknownProperty() {
+    context.currentResource(currentResource);
+    assertNull(MockAemSlingBindings.resolveSlingBindingProperty(context, "unknownProperty", null));
+    assertSame(SlingBindingsProperty.CURRENT_PAGE, SlingBindingsProperty.forKey("currentPage"));
+    assertNull(SlingBindingsProperty.forKey("unknownProperty"));
+  }
+
+  @Test
+  public void testMemoizedValues() {
+    context.currentResource(currentResource);
+
+    Object pageProperties = MockAemSlingBindings.resolveSlingBindingProperty(context, "pageProperties", null);
+    assertNotNull(pageProperties);
+    assertSame(pageProperties, MockAemSlingBindings.resolveSlingBindingProperty(context, "pageProperties", null));
+    assertSame(MockAemSlingBindings.resolveSlingBindingProperty(context, "resourcePage", null),
+        MockAemSlingBindings.resolveSlingBindingProperty(context, "resourcePage", null));
+
+    // unrelated content changes keep the memoized values
+    Object resourcePage = MockAemSlingBindings.resolveSlingBindingProperty(context, "resourcePage", null);
+    context.create().resource("/content/otherContent");
+    assertSame(pageProperties, MockAemSlingBindings.resolveSlingBindingProperty(context, "pageProperties", null));
+    assertSame(resourcePage, MockAemSlingBindings.resolveSlingBindingProperty(context, "resourcePage", null));
+
+    // resolved again after current page changed
+    Page page2 = context.create().page("/content/testPage2");
+    context.currentPage(page2);
+    assertEquals(page2.getPath(),
+        ((Page)MockAemSlingBindings.resolveSlingBindingProperty(context, "currentPage", null)).getPath());
+  }
+
+  @Test
+  public void testMemoizedValues_ResourcePageAdded() throws PersistenceException {
+    Resource resource = context.create().resource("/content/folder/resource1");
+    context.currentResource(resource);
+    assertNull(MockAemSlingBindings.resolveSlingBindingProperty(context, "resourcePage", null));
+
+    // replace the folder by a page directly via the resource resolver
+    context.resourceResolver().delete(context.resourceResolver().getResource("/content/folder"));
+    context.resourceResolver().commit();
+    Page page = context.create().page("/content/folder");
+    context.create().resource("/content/folder/resource1");
+    assertEquals(page.getPath(),
+        ((Page)MockAemSlingBindings.resolveSlingBindingProperty(context, "resourcePage", null)).getPath());
+  }
+
+  @Test
+  public void testContentDependentValuesNotMemoized() throws PersistenceException {
+    context.currentResource(currentResource);
+    Component component = (Component)MockAemSlingBindings.resolveSlingBindingProperty(context, "component", null);
+    assertNotNull(component);
+    assertNull(component.getTitle());
+
+    // change component definition directly via the resource resolver
+    context.resourceResolver().getResource("/apps/" + COMPONENT_RESOURCE_TYPE).adaptTo(ModifiableValueMap.class)
+        .put(JcrConstants.JCR_TITLE, "Component 1");
+    context.resourceResolver().commit();
+
+    component = (Component)MockAemSlingBindings.resolveSlingBindingProperty(context, "component", null);
+    assertEquals("Component 1", component.getTitle());
+  }
+
+  @Test
+  public void testMemoizedValues_ContentPolicyChanged() {
+    context.currentResource(currentResource);
+    assertNull(MockAemSlingBindings.resolveSlingBindingProperty(context, "currentContentPolicy", null));
+
+    context.contentPolicyMapping(COMPONENT_RESOURCE_TYPE,
+        "policyProp1", "value1");
+
+    ContentPolicy policy = (ContentPolicy)MockAemSlingBindings.resolveSlingBindingProperty(context, "currentContentPolicy", null);
+    assertNotNull(policy);
+    assertEquals("value1", policy.getProperties().get("policyProp1", String.class));
+  }
+
 }
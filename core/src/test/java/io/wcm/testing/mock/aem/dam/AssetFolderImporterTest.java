@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamEvent;
+
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+@SuppressWarnings("null")
+public class AssetFolderImporterTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ResourceResolver resourceResolver;
+  private Path directory;
+  private String damPath;
+
+  @Before
+  public void setUp() throws Exception {
+    resourceResolver = context.resourceResolver();
+    directory = tempFolder.newFolder("import").toPath();
+    damPath = context.uniqueRoot().dam() + "/import";
+  }
+
+  @Test
+  public void testImportFolder() throws Exception {
+    for (int i = 1; i <= 25; i++) {
+      writeFile("folder" + (i % 3) + "/file" + i + ".txt", "content" + i);
+    }
+    writeFile(".hidden/file.txt", "hidden");
+    writeFile(".DS_Store", "hidden");
+
+    List<String> createdAssets = new ArrayList<>();
+    context.registerService(EventHandler.class, (Event event) -> {
+      if (StringUtils.equals(event.getTopic(), DamEvent.EVENT_TOPIC)) {
+        DamEvent damEvent = DamEvent.fromEvent(event);
+        if (damEvent.getType() == DamEvent.Type.ASSET_CREATED) {
+          createdAssets.add(damEvent.getAssetPath());
+        }
+      }
+    });
+
+    int count = new AssetFolderImporter(resourceResolver, null)
+        .threads(4)
+        .commitInterval(10)
+        .importFolder(directory, damPath);
+
+    assertEquals(25, count);
+    assertFalse(resourceResolver.hasChanges());
+    assertEquals(25, createdAssets.size());
+    for (int i = 1; i <= 25; i++) {
+      Asset asset = resourceResolver.getResource(damPath + "/folder" + (i % 3) + "/file" + i + ".txt").adaptTo(Asset.class);
+      assertEquals("content" + i, new String(asset.getOriginal().getStream().readAllBytes(), StandardCharsets.UTF_8));
+      assertEquals("text/plain", asset.getMimeType());
+    }
+    assertNull(resourceResolver.getResource(damPath + "/.hidden"));
+    assertNull(resourceResolver.getResource(damPath + "/.DS_Store"));
+  }
+
+  @Test
+  public void testImportFolder_IllegalNames() throws Exception {
+    writeFile("my[1].txt", "content");
+
+    assertEquals(1, new AssetFolderImporter(resourceResolver, null).importFolder(directory, damPath));
+    assertNotNull(resourceResolver.getResource(damPath + "/my%5B1%5D.txt").adaptTo(Asset.class));
+  }
+
+  @Test
+  public void testImportFolder_BlobStore() throws Exception {
+    MockBlobStore blobStore = context.registerInjectActivateService(new MockBlobStore());
+    writeFile("file1.txt", "same content");
+    writeFile("file2.txt", "same content");
+
+    assertEquals(2, new AssetFolderImporter(resourceResolver, null).importFolder(directory, damPath));
+    assertEquals(1, blobStore.getBlobCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testImportFolder_NoDirectory() throws Exception {
+    new AssetFolderImporter(resourceResolver, null).importFolder(directory.resolve("invalid"), damPath);
+  }
+
+  private void writeFile(String relativePath, String content) throws Exception {
+    Path file = directory.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
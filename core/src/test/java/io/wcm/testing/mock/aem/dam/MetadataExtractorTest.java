@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static com.day.cq.dam.api.DamConstants.TIFF_IMAGELENGTH;
+import static com.day.cq.dam.api.DamConstants.TIFF_IMAGEWIDTH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MetadataExtractorTest {
+
+  @Test
+  public void testJpeg() throws IOException {
+    Map<String, Object> metadata = extract("/dam/filetype/sample.jpg");
+    assertEquals(100, metadata.get(TIFF_IMAGEWIDTH));
+    assertEquals(50, metadata.get(TIFF_IMAGELENGTH));
+    assertEquals(1, metadata.get("tiff:Orientation"));
+    assertEquals("Adobe Photoshop CC 2019 (Windows)", metadata.get("tiff:Software"));
+    assertEquals(100, metadata.get("exif:PixelXDimension"));
+    assertEquals("Adobe Photoshop CC 2019 (Windows)", metadata.get("xmp:CreatorTool"));
+    assertEquals("image/jpeg", metadata.get("dc:format"));
+  }
+
+  @Test
+  public void testPng() throws IOException {
+    Map<String, Object> metadata = extract("/dam/filetype/sample.png");
+    assertEquals(100, metadata.get(TIFF_IMAGEWIDTH));
+    assertEquals(50, metadata.get(TIFF_IMAGELENGTH));
+    assertEquals("image/png", metadata.get("dc:format"));
+  }
+
+  @Test
+  public void testGif() throws IOException {
+    Map<String, Object> metadata = extract("/dam/filetype/sample.gif");
+    assertEquals(Map.of(TIFF_IMAGEWIDTH, 100, TIFF_IMAGELENGTH, 50), metadata);
+  }
+
+  @Test
+  public void testTiff() throws IOException {
+    Map<String, Object> metadata = extract("/dam/filetype/sample.tif");
+    assertEquals(100, metadata.get(TIFF_IMAGEWIDTH));
+    assertEquals(50, metadata.get(TIFF_IMAGELENGTH));
+    assertEquals("2019:08:05 15:00:49", metadata.get("tiff:DateTime"));
+    assertEquals("image/tiff", metadata.get("dc:format"));
+  }
+
+  @Test
+  public void testUnsupported() throws IOException {
+    assertTrue(extract("/dam/filetype/sample.svg").isEmpty());
+    assertTrue(MetadataExtractor.extract(new ByteArrayInputStream(new byte[] { 0x01, 0x02 })).isEmpty());
+  }
+
+  @Test
+  public void testJpeg_IptcAndXmp() throws IOException {
+    ByteArrayOutputStream iptc = new ByteArrayOutputStream();
+    // coded character set UTF-8
+    iptc.write(new byte[] { 0x1c, 0x01, 90, 0x00, 0x03, 0x1b, '%', 'G' });
+    writeIptcDataset(iptc, 120, "Caption äöü");
+    writeIptcDataset(iptc, 116, "IPTC Rights");
+    writeIptcDataset(iptc, 25, "keyword1");
+    writeIptcDataset(iptc, 25, "keyword2");
+
+    ByteArrayOutputStream photoshop = new ByteArrayOutputStream();
+    photoshop.write("Photoshop 3.0\08BIM".getBytes(StandardCharsets.ISO_8859_1));
+    photoshop.write(new byte[] { 0x04, 0x04, 0x00, 0x00 });
+    writeInt(photoshop, iptc.size());
+    photoshop.write(iptc.toByteArray());
+    if (iptc.size() % 2 != 0) {
+      photoshop.write(0);
+    }
+
+    String xmp = "http://ns.adobe.com/xap/1.0/\0"
+        + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"><rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+        + "<rdf:Description rdf:about=\"\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+        + "<dc:title><rdf:Alt><rdf:li xml:lang=\"de\">Titel</rdf:li><rdf:li xml:lang=\"x-default\">Title</rdf:li></rdf:Alt></dc:title>"
+        + "<dc:rights><rdf:Alt><rdf:li xml:lang=\"x-default\">XMP Rights</rdf:li></rdf:Alt></dc:rights>"
+        + "</rdf:Description></rdf:RDF></x:xmpmeta>";
+
+    ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    jpeg.write(new byte[] { (byte)0xff, (byte)0xd8 });
+    writeJpegSegment(jpeg, 0xe1, xmp.getBytes(StandardCharsets.UTF_8));
+    writeJpegSegment(jpeg, 0xed, photoshop.toByteArray());
+    writeJpegSegment(jpeg, 0xc0, new byte[] { 8, 0x02, 0x58, 0x03, 0x20, 1, 1, 0x11, 0 });
+    // start of scan - image data is not read
+    jpeg.write(new byte[] { (byte)0xff, (byte)0xda, 0x01, 0x02, 0x03 });
+
+    Map<String, Object> metadata = MetadataExtractor.extract(new ByteArrayInputStream(jpeg.toByteArray()));
+    assertEquals(800, metadata.get(TIFF_IMAGEWIDTH));
+    assertEquals(600, metadata.get(TIFF_IMAGELENGTH));
+    assertEquals("Title", metadata.get("dc:title"));
+    assertEquals("Caption äöü", metadata.get("dc:description"));
+    // XMP takes precedence over IPTC
+    assertEquals("XMP Rights", metadata.get("dc:rights"));
+    assertArrayEquals(new String[] { "keyword1", "keyword2" }, (String[])metadata.get("dc:subject"));
+  }
+
+  @Test
+  public void testJpeg_XmpNamespacePrefixes() throws IOException {
+    String xmp = "http://ns.adobe.com/xap/1.0/\0"
+        + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"><rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+        + "<rdf:Description rdf:about=\"\" xmlns:d=\"http://purl.org/dc/elements/1.1/\" xmlns:custom=\"http://example.com/ns/\""
+        + " custom:attr=\"value1\">"
+        + "<d:title><rdf:Alt><rdf:li xml:lang=\"x-default\">Title</rdf:li></rdf:Alt></d:title>"
+        + "<custom:prop>value2</custom:prop>"
+        + "</rdf:Description></rdf:RDF></x:xmpmeta>";
+
+    ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    jpeg.write(new byte[] { (byte)0xff, (byte)0xd8 });
+    writeJpegSegment(jpeg, 0xe1, xmp.getBytes(StandardCharsets.UTF_8));
+    jpeg.write(new byte[] { (byte)0xff, (byte)0xda, 0x01, 0x02, 0x03 });
+
+    Map<String, Object> metadata = MetadataExtractor.extract(new ByteArrayInputStream(jpeg.toByteArray()));
+    assertEquals("Title", metadata.get("dc:title"));
+    assertFalse(metadata.containsKey("d:title"));
+    assertFalse(metadata.containsKey("custom:attr"));
+    assertFalse(metadata.containsKey("custom:prop"));
+  }
+
+  @Test
+  public void testJpeg_InvalidSegmentLength() throws IOException {
+    byte[] jpeg = new byte[] { (byte)0xff, (byte)0xd8, (byte)0xff, (byte)0xe1, 0x00, 0x01, 0x01, 0x02 };
+    assertTrue(MetadataExtractor.extract(new ByteArrayInputStream(jpeg)).isEmpty());
+  }
+
+  @Test
+  public void testJpeg_Truncated() {
+    byte[] jpeg = new byte[] { (byte)0xff, (byte)0xd8, (byte)0xff, (byte)0xc0, 0x00, 0x11, 0x08 };
+    assertThrows(IOException.class, () -> MetadataExtractor.extract(new ByteArrayInputStream(jpeg)));
+  }
+
+  @Test
+  public void testPng_InvalidChunkLength() throws IOException {
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    png.write(new byte[] { (byte)0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a });
+    writeInt(png, -1);
+    png.write("IHDR".getBytes(StandardCharsets.ISO_8859_1));
+    assertTrue(MetadataExtractor.extract(new ByteArrayInputStream(png.toByteArray())).isEmpty());
+  }
+
+  private Map<String, Object> extract(String classpathResource) throws IOException {
+    try (InputStream is = getClass().getResourceAsStream(classpathResource)) {
+      return MetadataExtractor.extract(is);
+    }
+  }
+
+  private static void writeIptcDataset(ByteArrayOutputStream os, int dataset, String value) throws IOException {
+    byte[] data = value.getBytes(StandardCharsets.UTF_8);
+    os.write(new byte[] { 0x1c, 0x02, (byte)dataset, (byte)(data.length >> 8), (byte)data.length });
+    os.write(data);
+  }
+
+  private static void writeJpegSegment(ByteArrayOutputStream os, int marker, byte[] data) throws IOException {
+    int length = data.length + 2;
+    os.write(new byte[] { (byte)0xff, (byte)marker, (byte)(length >> 8), (byte)length });
+    os.write(data);
+  }
+
+  private static void writeInt(ByteArrayOutputStream os, int value) {
+    os.write(value >> 24);
+    os.write(value >> 16);
+    os.write(value >> 8);
+    os.write(value);
+  }
+
+}
@@ -26,9 +26,15 @@ import static io.wcm.testing.mock.aem.dam.MockAssetHandler.SVG_MIME_TYPE;
 import static io.wcm.testing.mock.aem.dam.MockAssetHandler.TIFF_MIME_TYPE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
 
 import org.apache.commons.io.FilenameUtils;
 import org.junit.Before;
@@ -36,8 +42,11 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Rendition;
 import com.day.cq.dam.api.handler.AssetHandler;
 import com.day.cq.dam.api.handler.store.AssetStore;
+import com.day.cq.dam.api.metadata.ExtractedMetadata;
 import com.day.image.Layer;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -81,6 +90,78 @@ public class MockAssetHandlerTest {
     assertAssertHandlerImage("/dam/filetype/sample.svg", SVG_MIME_TYPE, 100, 50);
   }
 
+  @Test
+  public void testGetImage_WithoutImageDecoderService() throws Exception {
+    Asset asset = context.create().asset("/content/dam/sample.jpg", 100, 50, JPEG_MIME_TYPE);
+    BufferedImage image = new MockAssetHandler().getImage(asset.getOriginal());
+    assertEquals(100, image.getWidth());
+    assertEquals(50, image.getHeight());
+  }
+
+  @Test
+  public void testCreateThumbnails_Default() throws Exception {
+    Asset asset = context.create().asset("/content/dam/sample.jpg", 1000, 500, JPEG_MIME_TYPE);
+    AssetHandler assetHandler = assetStore.getAssetHandler(JPEG_MIME_TYPE);
+
+    assetHandler.createThumbnails(asset);
+
+    assertThumbnail(asset, "cq5dam.thumbnail.48.48.png", 48, 24);
+    assertThumbnail(asset, "cq5dam.thumbnail.140.100.png", 140, 70);
+    assertThumbnail(asset, "cq5dam.thumbnail.319.319.png", 319, 160);
+  }
+
+  @Test
+  public void testCreateThumbnails_Configs() throws Exception {
+    Asset asset = context.create().asset("/content/dam/sample.png", "/dam/filetype/sample.png", PNG_MIME_TYPE);
+    AssetHandler assetHandler = assetStore.getAssetHandler(PNG_MIME_TYPE);
+
+    assetHandler.createThumbnails(asset, List.of(
+        new MockThumbnailConfig(50, 50),
+        new MockThumbnailConfig(80, 80, true),
+        new MockThumbnailConfig(500, 500)));
+
+    assertThumbnail(asset, "cq5dam.thumbnail.50.50.png", 50, 25);
+    assertThumbnail(asset, "cq5dam.thumbnail.80.80.png", 80, 80);
+    // never upscaled
+    assertThumbnail(asset, "cq5dam.thumbnail.500.500.png", 100, 50);
+  }
+
+  @Test
+  public void testCreateThumbnails_Rendition() throws Exception {
+    Asset asset = context.create().asset("/content/dam/sample.jpg", 1000, 500, JPEG_MIME_TYPE);
+    Rendition rendition = context.create().assetRendition(asset, "small.jpg", 200, 200, JPEG_MIME_TYPE);
+    AssetHandler assetHandler = assetStore.getAssetHandler(JPEG_MIME_TYPE);
+
+    assetHandler.createThumbnails(asset, rendition, List.of(new MockThumbnailConfig(100, 50)));
+
+    assertThumbnail(asset, "cq5dam.thumbnail.100.50.png", 50, 50);
+  }
+
+  @Test
+  public void testExtractMetadata() {
+    Asset asset = context.create().asset("/content/dam/sample.jpg", "/dam/filetype/sample.jpg", JPEG_MIME_TYPE);
+    AssetHandler assetHandler = assetStore.getAssetHandler(JPEG_MIME_TYPE);
+
+    ExtractedMetadata metadata = assetHandler.extractMetadata(asset);
+    assertEquals(100, metadata.getMetaDataProperty(DamConstants.TIFF_IMAGEWIDTH));
+    assertEquals("Adobe Photoshop CC 2019 (Windows)", metadata.getMetaDataProperty("xmp:CreatorTool"));
+
+    // metadata is also stored on asset creation
+    assertEquals("Adobe Photoshop CC 2019 (Windows)", asset.getMetadataValue("xmp:CreatorTool"));
+    assertEquals("100", asset.getMetadataValue(DamConstants.TIFF_IMAGEWIDTH));
+  }
+
+  private void assertThumbnail(Asset asset, String renditionName, int width, int height) throws IOException {
+    Rendition rendition = asset.getRendition(renditionName);
+    assertNotNull(renditionName, rendition);
+    assertEquals(PNG_MIME_TYPE, rendition.getMimeType());
+    try (InputStream is = rendition.getStream()) {
+      BufferedImage image = ImageIO.read(is);
+      assertEquals(width, image.getWidth());
+      assertEquals(height, image.getHeight());
+    }
+  }
+
   private void assertAssertHandlerImage(String classpathResource, String contentType, int width, int height)
       throws IOException {
     String filename = FilenameUtils.getName(classpathResource);
@@ -95,4 +176,19 @@ public class MockAssetHandlerTest {
     assertEquals(height, layer.getHeight());
   }
 
+  @Test
+  public void testProcessSubAssets() throws IOException {
+    Asset asset = context.create().asset("/content/dam/multipage.tif",
+        new ByteArrayInputStream(MockAssetTest.createMultiPageTiff(2)), TIFF_MIME_TYPE);
+    AssetHandler assetHandler = assetStore.getAssetHandler(TIFF_MIME_TYPE);
+    assertTrue(assetHandler.canHandleSubAssets());
+
+    assertEquals(List.of("/content/dam/multipage.tif/subassets/page1.png", "/content/dam/multipage.tif/subassets/page2.png"),
+        assetHandler.processSubAssets(asset));
+    assertEquals(2, asset.getSubAssets().size());
+
+    Asset singlePageAsset = context.create().asset("/content/dam/sample.jpg", 10, 10, JPEG_MIME_TYPE);
+    assertTrue(assetHandler.processSubAssets(singlePageAsset).isEmpty());
+  }
+
 }
@@ -20,18 +20,24 @@
 package io.wcm.testing.mock.aem.dam;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import javax.jcr.Binary;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -39,6 +45,7 @@ import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
 
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
 import com.day.cq.dam.api.DamEvent;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -109,6 +116,123 @@ public class MockAssetManagerTest {
     assertEquals(asset.getMimeType(), mimeType);
   }
 
+  @Test
+  public void testCreateAssetWithMalformedBinary() {
+    // truncated JPEG start of frame segment
+    byte[] data = new byte[] { (byte)0xff, (byte)0xd8, (byte)0xff, (byte)0xc0, 0x00, 0x11, 0x08 };
+
+    Asset asset = context.assetManager().createAsset(context.uniqueRoot().dam() + "/malformed.jpg",
+        new ByteArrayInputStream(data), "image/jpeg", true);
+
+    assertNotNull(asset);
+    assertNotNull(asset.getOriginal());
+    assertEquals("image/jpeg", asset.getMimeType());
+  }
+
+  @Test
+  public void testAssetForBinary() throws IOException {
+    context.load().binaryFile("/sample-image.gif", "/var/dam/sample/image.gif", "image/gif");
+
+    assertNull(context.assetManager().getAssetForBinary("/var/dam/sample/image.gif"));
+
+    Asset asset = context.assetManager().createAssetForBinary("/var/dam/sample/image.gif", true);
+    assertNotNull(asset);
+    assertEquals("/content/dam/sample/image.gif", asset.getPath());
+    assertEquals("image/gif", asset.getMimeType());
+    assertTrue(IOUtils.contentEquals(openTestAsset(), asset.getOriginal().getStream()));
+
+    assertEquals(asset, context.assetManager().getAssetForBinary("/var/dam/sample/image.gif"));
+    assertEquals(asset, context.assetManager().createAssetForBinary("/var/dam/sample/image.gif", true));
+
+    assertTrue(context.assetManager().removeAssetForBinary("/var/dam/sample/image.gif"));
+    assertNull(context.resourceResolver().getResource("/content/dam/sample/image.gif"));
+    assertFalse(context.assetManager().removeAssetForBinary("/var/dam/sample/image.gif"));
+  }
+
+  @Test
+  public void testCreateOrUpdateAsset() throws Exception {
+    MockAssetManager assetManager = (MockAssetManager)context.assetManager();
+    String assetPath = context.uniqueRoot().dam() + "/binary.gif";
+
+    Asset asset = assetManager.createOrUpdateAsset(assetPath, toBinary(IOUtils.toByteArray(openTestAsset())), "image/gif", true);
+    assertTrue(IOUtils.contentEquals(openTestAsset(), asset.getOriginal().getStream()));
+    assertNotNull(asset.getMetadata(DamConstants.TIFF_IMAGEWIDTH));
+    context.resourceResolver().getResource(assetPath + "/jcr:content/metadata")
+        .adaptTo(ModifiableValueMap.class).put(DamConstants.DC_TITLE, "Title 1");
+
+    byte[] updated = "updated".getBytes(StandardCharsets.UTF_8);
+    asset = assetManager.createOrUpdateAsset(assetPath, toBinary(updated), "text/plain", true, true, "v1", "Before update");
+    assertTrue(IOUtils.contentEquals(new ByteArrayInputStream(updated), asset.getOriginal().getStream()));
+    // metadata is kept, format is updated
+    assertEquals("Title 1", asset.getMetadataValue(DamConstants.DC_TITLE));
+    assertEquals("text/plain", asset.getMetadataValue(DamConstants.DC_FORMAT));
+    assertEquals("text/plain", asset.getMimeType());
+    // image dimensions of the previous binary are removed
+    assertNull(asset.getMetadata(DamConstants.TIFF_IMAGEWIDTH));
+    assertNull(asset.getMetadata(DamConstants.TIFF_IMAGELENGTH));
+    assertEquals(1, assetManager.getRevisions(assetPath, null).size());
+
+    List<DamEvent> damEvents = damEventHandler.getLastEvents(2);
+    assertEquals(DamEvent.Type.RENDITION_UPDATED, damEvents.get(0).getType());
+    assertEquals(DamEvent.Type.METADATA_UPDATED, damEvents.get(1).getType());
+    assertEquals(assetPath, damEvents.get(1).getAssetPath());
+  }
+
+  @Test
+  public void testCreateOrReplaceAsset() throws Exception {
+    MockAssetManager assetManager = (MockAssetManager)context.assetManager();
+    String assetPath = context.uniqueRoot().dam() + "/binary.gif";
+
+    Asset asset = assetManager.createOrReplaceAsset(assetPath, toBinary(IOUtils.toByteArray(openTestAsset())), "image/gif", true);
+    asset.addRendition("custom", new ByteArrayInputStream(new byte[] { 0x01 }), "application/octet-stream");
+
+    byte[] replaced = "replaced".getBytes(StandardCharsets.UTF_8);
+    asset = assetManager.createOrReplaceAsset(assetPath, toBinary(replaced), "text/plain", true);
+    assertTrue(IOUtils.contentEquals(new ByteArrayInputStream(replaced), asset.getOriginal().getStream()));
+    assertNull(asset.getRendition("custom"));
+
+    List<DamEvent> damEvents = damEventHandler.getLastEvents(3);
+    assertEquals(DamEvent.Type.ASSET_REMOVED, damEvents.get(0).getType());
+    assertEquals(DamEvent.Type.RENDITION_UPDATED, damEvents.get(1).getType());
+    assertEquals(DamEvent.Type.ASSET_CREATED, damEvents.get(2).getType());
+  }
+
+  @Test
+  public void testRenditionBinary() throws Exception {
+    Asset asset = context.assetManager().createAsset(context.uniqueRoot().dam() + "/binary.gif", openTestAsset(), "image/gif", true);
+    byte[] data = IOUtils.toByteArray(openTestAsset());
+
+    Binary binary = ((MockRendition)asset.getOriginal()).getBinary();
+    assertEquals(data.length, binary.getSize());
+    assertTrue(IOUtils.contentEquals(new ByteArrayInputStream(data), binary.getStream()));
+    byte[] buffer = new byte[4];
+    assertEquals(4, binary.read(buffer, 2));
+    assertEquals(data[2], buffer[0]);
+    assertEquals(data[5], buffer[3]);
+    assertEquals(-1, binary.read(buffer, data.length));
+
+    ((MockAsset)asset).setRendition("copy", binary, "image/gif");
+    assertTrue(IOUtils.contentEquals(new ByteArrayInputStream(data), asset.getRendition("copy").getStream()));
+  }
+
+  @Test
+  public void testRenditionBinary_BlobStore() throws Exception {
+    context.registerInjectActivateService(new MockBlobStore());
+    Asset asset = context.assetManager().createAsset(context.uniqueRoot().dam() + "/binary.gif", openTestAsset(), "image/gif", true);
+    byte[] data = IOUtils.toByteArray(openTestAsset());
+
+    Binary binary = ((MockRendition)asset.getOriginal()).getBinary();
+    assertEquals(data.length, binary.getSize());
+    byte[] buffer = new byte[data.length];
+    assertEquals(data.length - 10, binary.read(buffer, 10));
+    assertEquals(data[10], buffer[0]);
+    assertEquals(data[data.length - 1], buffer[data.length - 11]);
+  }
+
+  private static Binary toBinary(byte[] data) {
+    return MockBinary.forStream(() -> new ByteArrayInputStream(data), data.length);
+  }
+
   private InputStream openTestAsset() {
     return getClass().getClassLoader().getResourceAsStream("sample-image.gif");
   }
@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.day.cq.dam.api.Asset;
+
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+@SuppressWarnings("null")
+public class MockAssetMetadataIndexTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+
+  private MockAssetMetadataIndex underTest;
+
+  @Before
+  public void setUp() {
+    underTest = context.registerInjectActivateService(MockAssetMetadataIndex.class);
+    context.create().asset("/content/dam/folder1/image1.png", 10, 10, "image/png",
+        "dc:format", "image/png", "width", 1600, "keywords", new String[] { "a", "b" });
+    context.create().asset("/content/dam/folder1/image2.png", 10, 10, "image/png",
+        "dc:format", "image/png", "width", 800, "keywords", new String[] { "b" });
+    context.create().asset("/content/dam/folder1/image3.jpg", 10, 10, "image/jpeg",
+        "dc:format", "image/jpeg", "width", 2000);
+    context.create().asset("/content/dam/folder2/image4.png", 10, 10, "image/png",
+        "dc:format", "image/png", "width", 1200);
+  }
+
+  @Test
+  public void testEqualityAndRange() {
+    assertEquals(List.of("/content/dam/folder1/image1.png", "/content/dam/folder2/image4.png"),
+        underTest.query()
+            .equalTo("dc:format", "image/png")
+            .greaterThanOrEqualTo("width", 1200)
+            .getPaths());
+    assertEquals(List.of("/content/dam/folder1/image1.png"),
+        underTest.query()
+            .path("/content/dam/folder1")
+            .equalTo("dc:format", "image/png")
+            .greaterThan("width", 1200)
+            .getPaths());
+    assertEquals(List.of("/content/dam/folder1/image2.png", "/content/dam/folder2/image4.png"),
+        underTest.query()
+            .range("width", 800, true, 1600, false)
+            .getPaths());
+    assertEquals(List.of("/content/dam/folder1/image2.png"),
+        underTest.query()
+            .lessThan("width", 1000L)
+            .getPaths());
+  }
+
+  @Test
+  public void testMultiValue() {
+    assertEquals(List.of("/content/dam/folder1/image1.png", "/content/dam/folder1/image2.png"),
+        underTest.query().equalTo("keywords", "b").getPaths());
+    assertEquals(List.of("/content/dam/folder1/image1.png"),
+        underTest.query().equalTo("keywords", "a").getPaths());
+  }
+
+  @Test
+  public void testPathOnly() {
+    assertEquals(List.of("/content/dam/folder2/image4.png"),
+        underTest.query().path("/content/dam/folder2").getPaths());
+    assertEquals(4, underTest.getAssetCount());
+  }
+
+  @Test
+  public void testUnknownProperty() {
+    assertTrue(underTest.query().equalTo("unknown", "value").getPaths().isEmpty());
+  }
+
+  @Test
+  public void testGetAssets() {
+    List<Asset> assets = underTest.query().equalTo("dc:format", "image/jpeg").getAssets(context.resourceResolver());
+    assertEquals(1, assets.size());
+    assertEquals("image3.jpg", assets.get(0).getName());
+  }
+
+  @Test
+  public void testUpdate() {
+    Resource metadata = context.resourceResolver().getResource("/content/dam/folder1/image2.png/jcr:content/metadata");
+    metadata.adaptTo(ModifiableValueMap.class).put("width", 3000);
+    underTest.update(metadata.getParent().getParent());
+
+    assertEquals(List.of("/content/dam/folder1/image2.png"),
+        underTest.query().greaterThan("width", 2000).getPaths());
+    assertTrue(underTest.query().equalTo("width", 800).getPaths().isEmpty());
+  }
+
+  @Test
+  public void testDateRange() {
+    Calendar date = Calendar.getInstance();
+    date.setTimeInMillis(1000000L);
+    context.create().asset("/content/dam/folder3/image5.png", 10, 10, "image/png",
+        "created", date);
+    Calendar before = Calendar.getInstance();
+    before.setTimeInMillis(999999L);
+    assertEquals(List.of("/content/dam/folder3/image5.png"),
+        underTest.query().greaterThan("created", before).getPaths());
+  }
+
+  @Test
+  public void testRemove() {
+    context.load().binaryFile("/sample-image.gif", "/var/dam/sample/image.gif", "image/gif");
+    context.assetManager().createAssetForBinary("/var/dam/sample/image.gif", true);
+    assertEquals(5, underTest.getAssetCount());
+    assertEquals(List.of("/content/dam/sample/image.gif"),
+        underTest.query().path("/content/dam/sample").getPaths());
+
+    context.assetManager().removeAssetForBinary("/var/dam/sample/image.gif");
+    assertEquals(4, underTest.getAssetCount());
+  }
+
+  @Test
+  public void testRebuild() {
+    context.load().json("/json-import-samples/dam.json", "/content/dam/sample");
+    assertEquals(4, underTest.getAssetCount());
+
+    underTest.rebuild(context.resourceResolver(), "/content/dam");
+    assertTrue(underTest.getAssetCount() > 4);
+    assertEquals(List.of("/content/dam/folder2/image4.png"),
+        underTest.query().path("/content/dam/folder2").getPaths());
+
+    underTest.rebuild(context.resourceResolver(), "/content/dam/folder1");
+    assertEquals(3, underTest.query().path("/content/dam/folder1").getPaths().size());
+  }
+
+}
@@ -24,14 +24,26 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
 import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.testing.mock.sling.ResourceResolverType;
 import org.junit.Before;
@@ -43,11 +55,15 @@ import com.day.cq.dam.api.Asset;
 import com.day.cq.dam.api.DamConstants;
 import com.day.cq.dam.api.DamEvent;
 import com.day.cq.dam.api.Rendition;
+import com.day.cq.dam.api.Revision;
+import com.day.cq.dam.api.handler.AssetHandler;
+import com.day.cq.dam.api.handler.store.AssetStore;
 import com.day.cq.dam.commons.util.UIHelper;
 import com.day.cq.wcm.foundation.WCMRenditionPicker;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
 import io.wcm.testing.mock.aem.dam.MockAssetManagerTest.DamEventHandler;
+import io.wcm.testing.mock.aem.impl.ResourceSnapshot;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 @SuppressWarnings("null")
@@ -193,4 +209,123 @@ public class MockAssetTest {
     asset.removeRendition("non-existing");
   }
 
+  @Test
+  public void testAddSubAsset() {
+    Asset subAsset = asset.addSubAsset("sub1.jpg", "image/jpeg", new ByteArrayInputStream(BINARY_DATA));
+    assertEquals(asset.getPath() + "/subassets/sub1.jpg", subAsset.getPath());
+    assertTrue(subAsset.isSubAsset());
+    assertFalse(asset.isSubAsset());
+    assertNotNull(subAsset.getOriginal());
+
+    Collection<Asset> subAssets = asset.getSubAssets();
+    assertEquals(1, subAssets.size());
+    assertEquals(subAsset, subAssets.iterator().next());
+    assertTrue(subAsset.getSubAssets().isEmpty());
+  }
+
+  @Test
+  public void testGetSubAssets_SinglePage() {
+    assertTrue(asset.getSubAssets().isEmpty());
+    assertNull(context.resourceResolver().getResource(asset.getPath() + "/subassets"));
+  }
+
+  @Test
+  public void testGetSubAssets_MultiPage() throws IOException {
+    Asset multiPageAsset = context.create().asset("/content/dam/multipage.tif",
+        new ByteArrayInputStream(createMultiPageTiff(3)), "image/tiff");
+    // sub-assets are not created together with the asset
+    assertNull(context.resourceResolver().getResource("/content/dam/multipage.tif/subassets"));
+
+    // sub-asset nodes are created and committed on first access
+    Collection<Asset> subAssets = multiPageAsset.getSubAssets();
+    assertFalse(context.resourceResolver().hasChanges());
+    assertEquals(3, subAssets.size());
+    Iterator<Asset> subAssetIterator = subAssets.iterator();
+    subAssetIterator.next();
+    Asset page2 = subAssetIterator.next();
+    assertEquals("page2.png", page2.getName());
+    assertTrue(page2.isSubAsset());
+    assertEquals("image/png", page2.getMimeType());
+
+    // page binary is extracted on first access to the renditions
+    assertNull(context.resourceResolver().getResource(page2.getPath() + "/jcr:content/renditions/original"));
+    Rendition original = page2.getOriginal();
+    assertNotNull(original);
+    try (InputStream is = original.getStream()) {
+      BufferedImage image = ImageIO.read(is);
+      assertEquals(20, image.getWidth());
+    }
+    assertNull(context.resourceResolver().getResource("/content/dam/multipage.tif/subassets/page3.png/jcr:content/renditions/original"));
+
+    // processSubAssets re-creates the sub-asset nodes
+    AssetHandler assetHandler = context.getService(AssetStore.class).getAssetHandler("image/tiff");
+    assertEquals(3, assetHandler.processSubAssets(multiPageAsset).size());
+    assertNull(context.resourceResolver().getResource(page2.getPath() + "/jcr:content/renditions/original"));
+  }
+
+  @Test
+  public void testRevisions() throws Exception {
+    Asset revAsset = context.create().asset("/content/dam/revisions.jpg", 10, 10, "image/jpeg",
+        DamConstants.DC_TITLE, "Title 1");
+    Revision revision1 = revAsset.createRevision("v1", "First");
+
+    context.resourceResolver().getResource(revAsset.getPath() + "/jcr:content/metadata")
+        .adaptTo(ModifiableValueMap.class).put(DamConstants.DC_TITLE, "Title 2");
+    revAsset.addRendition("custom", new ByteArrayInputStream(BINARY_DATA), "application/octet-stream");
+    Revision revision2 = revAsset.createRevision("v2", "Second");
+
+    assertEquals("v1", revision1.getLabel());
+    assertEquals("First", revision1.getComment());
+    assertEquals("Title 1", ((MockAssetRevision)revision1).getMetadataProperties().get(DamConstants.DC_TITLE));
+    assertEquals("Title 2", ((MockAssetRevision)revision2).getMetadataProperties().get(DamConstants.DC_TITLE));
+
+    // unchanged original rendition including its binary is shared between revisions
+    assertSame(getOriginalSnapshot(revision1), getOriginalSnapshot(revision2));
+
+    List<Revision> revisions = List.copyOf(revAsset.getRevisions(null));
+    assertEquals(2, revisions.size());
+    assertEquals(revision1.getId(), revisions.get(0).getId());
+    assertEquals(revision2.getId(), revisions.get(1).getId());
+
+    Asset restored = revAsset.restore(revision1.getId());
+    assertEquals("Title 1", restored.getMetadataValue(DamConstants.DC_TITLE));
+    assertNull(restored.getRendition("custom"));
+    assertNotNull(restored.getOriginal());
+
+    context.resourceResolver().delete(context.resourceResolver().getResource(revAsset.getPath()));
+    assertTrue(((MockAssetRevision)revision2).isDeleted());
+    restored = context.assetManager().restore(revision2.getId());
+    assertEquals("Title 2", restored.getMetadataValue(DamConstants.DC_TITLE));
+    assertNotNull(restored.getRendition("custom"));
+  }
+
+  private static ResourceSnapshot getOriginalSnapshot(Revision revision) {
+    return ((MockAssetRevision)revision).getEntry().getSnapshot()
+        .getChild("jcr:content").getChild("renditions").getChild("original");
+  }
+
+  /**
+   * Creates a TIFF image with the given number of pages. Page n (starting with 1) has a width of n * 10 pixels.
+   * @param pages Number of pages
+   * @return TIFF binary
+   * @throws IOException I/O exception
+   */
+  static byte[] createMultiPageTiff(int pages) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+      writer.setOutput(ios);
+      writer.prepareWriteSequence(null);
+      for (int i = 1; i <= pages; i++) {
+        writer.writeToSequence(new IIOImage(new BufferedImage(i * 10, 10, BufferedImage.TYPE_INT_RGB), null, null), null);
+      }
+      writer.endWriteSequence();
+      ios.flush();
+      return bos.toByteArray();
+    }
+    finally {
+      writer.dispose();
+    }
+  }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Rendition;
+
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+@SuppressWarnings("null")
+public class MockBlobStoreTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+
+  private MockBlobStore underTest;
+
+  @Before
+  public void setUp() {
+    underTest = context.registerInjectActivateService(new MockBlobStore());
+  }
+
+  @Test
+  public void testPut() throws IOException {
+    byte[] data = "test data".getBytes(StandardCharsets.UTF_8);
+    String blobId = underTest.put(new ByteArrayInputStream(data));
+
+    assertTrue(underTest.contains(blobId));
+    assertEquals(data.length, underTest.getSize(blobId));
+    try (InputStream is = underTest.getStream(blobId)) {
+      assertArrayEquals(data, IOUtils.toByteArray(is));
+    }
+
+    ByteBuffer buffer = underTest.getBuffer(blobId);
+    assertEquals(data.length, buffer.remaining());
+    assertEquals('d', buffer.get(5));
+  }
+
+  @Test
+  public void testPut_Deduplication() {
+    String blobId1 = underTest.put(new ByteArrayInputStream("data1".getBytes(StandardCharsets.UTF_8)));
+    String blobId2 = underTest.put(new ByteArrayInputStream("data2".getBytes(StandardCharsets.UTF_8)));
+    String blobId3 = underTest.put(new ByteArrayInputStream("data1".getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(blobId1, blobId3);
+    assertFalse(blobId1.equals(blobId2));
+    assertEquals(2, underTest.getBlobCount());
+    assertEquals(10, underTest.getTotalSize());
+  }
+
+  @Test
+  public void testPut_Concurrent() throws Exception {
+    byte[] data = "concurrent data".getBytes(StandardCharsets.UTF_8);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        results.add(executor.submit(() -> underTest.put(new ByteArrayInputStream(data))));
+      }
+      for (Future<String> result : results) {
+        assertArrayEquals(data, IOUtils.toByteArray(underTest.getStream(result.get())));
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertEquals(1, underTest.getBlobCount());
+  }
+
+  @Test
+  public void testPut_ReadFailure() {
+    InputStream failingStream = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("read failed");
+      }
+    };
+    assertThrows(UncheckedIOException.class, () -> underTest.put(failingStream));
+    assertEquals(0, underTest.getBlobCount());
+
+    // store is still usable afterwards
+    String blobId = underTest.put(new ByteArrayInputStream("data1".getBytes(StandardCharsets.UTF_8)));
+    assertTrue(underTest.contains(blobId));
+  }
+
+  @Test
+  public void testDeactivate() {
+    String blobId = underTest.put(new ByteArrayInputStream("data1".getBytes(StandardCharsets.UTF_8)));
+    MockOsgi.deactivate(underTest, context.bundleContext());
+
+    assertFalse(underTest.contains(blobId));
+    assertEquals(0, underTest.getBlobCount());
+  }
+
+  @Test
+  public void testClose() {
+    MockBlobStore blobStore = new MockBlobStore();
+    String blobId = blobStore.put(new ByteArrayInputStream("data1".getBytes(StandardCharsets.UTF_8)));
+    assertTrue(blobStore.contains(blobId));
+
+    blobStore.close();
+    assertFalse(blobStore.contains(blobId));
+    assertThrows(UncheckedIOException.class,
+        () -> blobStore.put(new ByteArrayInputStream("data2".getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  public void testNonExisting() {
+    assertFalse(underTest.contains("unknown"));
+    assertNull(underTest.getBuffer("unknown"));
+    assertNull(underTest.getStream("unknown"));
+    assertEquals(-1L, underTest.getSize("unknown"));
+  }
+
+  @Test
+  public void testAssetRenditions() throws IOException {
+    Asset asset1 = context.create().asset("/content/dam/sample1.gif", "/sample-image.gif", "image/gif");
+    Asset asset2 = context.create().asset("/content/dam/sample2.gif", "/sample-image.gif", "image/gif");
+    Rendition rendition = context.create().assetRendition(asset1, "copy.gif", "/sample-image.gif", "image/gif");
+
+    // identical binary is stored only once
+    assertEquals(1, underTest.getBlobCount());
+
+    Resource contentResource = rendition.getChild("jcr:content");
+    assertTrue(contentResource.getValueMap().containsKey(MockBlobStore.PN_BLOB_ID));
+    assertNull(contentResource.getChild("jcr:data"));
+
+    try (InputStream expected = getClass().getResourceAsStream("/sample-image.gif")) {
+      byte[] data = IOUtils.toByteArray(expected);
+      assertArrayEquals(data, IOUtils.toByteArray(asset2.getOriginal().getStream()));
+      assertArrayEquals(data, IOUtils.toByteArray(rendition.adaptTo(InputStream.class)));
+      assertEquals(data.length, asset1.getOriginal().getSize());
+    }
+
+    // image dimensions are detected from blob
+    assertEquals("2", asset1.getMetadataValue(DamConstants.TIFF_IMAGEWIDTH));
+    assertEquals("2", asset1.getMetadataValue(DamConstants.TIFF_IMAGELENGTH));
+  }
+
+}
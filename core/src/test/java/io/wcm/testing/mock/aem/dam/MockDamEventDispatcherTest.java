@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamEvent;
+
+import io.wcm.testing.mock.aem.builder.ContentBuilder;
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.dam.MockDamEventDispatcher.DeliveryMode;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+@SuppressWarnings("null")
+public class MockDamEventDispatcherTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+
+  private MockDamEventDispatcher underTest;
+  private MockDamEventRecorder recorder;
+
+  @Before
+  public void setUp() {
+    underTest = context.getService(MockDamEventDispatcher.class);
+    recorder = context.registerInjectActivateService(new MockDamEventRecorder());
+  }
+
+  @Test
+  public void testSynchronous() {
+    assertEquals(DeliveryMode.SYNCHRONOUS, underTest.getDeliveryMode());
+
+    Asset asset = context.create().asset("/content/dam/sample.jpg", 10, 10, "image/jpeg");
+
+    List<DamEvent> events = recorder.getEvents();
+    assertEquals(2, events.size());
+    assertEquals(DamEvent.Type.RENDITION_UPDATED, events.get(0).getType());
+    assertEquals(DamEvent.Type.ASSET_CREATED, events.get(1).getType());
+    assertEquals(asset.getPath(), events.get(1).getAssetPath());
+  }
+
+  @Test
+  public void testAsynchronous() throws InterruptedException {
+    underTest.setDeliveryMode(DeliveryMode.ASYNCHRONOUS);
+
+    for (int i = 0; i < 20; i++) {
+      Asset asset = context.create().asset("/content/dam/sample" + i + ".jpg", 10, 10, "image/jpeg");
+      asset.removeRendition("original");
+    }
+    underTest.flush();
+
+    assertTrue(recorder.awaitEvents(60, 1, TimeUnit.SECONDS));
+    assertEquals(20, recorder.getEvents(DamEvent.Type.ASSET_CREATED).size());
+    assertEquals(20, recorder.getEvents(DamEvent.Type.RENDITION_REMOVED).size());
+
+    // events of the same asset are delivered in order
+    List<DamEvent.Type> types = recorder.getEvents().stream()
+        .filter(event -> event.getAssetPath().equals("/content/dam/sample5.jpg"))
+        .map(DamEvent::getType)
+        .collect(Collectors.toList());
+    assertEquals(List.of(DamEvent.Type.RENDITION_UPDATED, DamEvent.Type.ASSET_CREATED, DamEvent.Type.RENDITION_REMOVED), types);
+  }
+
+  @Test
+  public void testBatched() {
+    underTest.setDeliveryMode(DeliveryMode.BATCHED);
+
+    Asset asset = context.create().asset("/content/dam/sample.jpg", 10, 10, "image/jpeg");
+    assertEquals(2, recorder.getEventCount());
+
+    asset.setBatchMode(true);
+    asset.removeRendition("original");
+    context.create().assetRendition(asset, "rendition1.jpg", 5, 5, "image/jpeg");
+    assertEquals(2, recorder.getEventCount());
+
+    underTest.commit();
+    assertEquals(4, recorder.getEventCount());
+    assertEquals(DamEvent.Type.RENDITION_REMOVED, recorder.getEvents().get(2).getType());
+    assertEquals(DamEvent.Type.RENDITION_UPDATED, recorder.getEvents().get(3).getType());
+  }
+
+  @Test
+  public void testBatched_ContentBuilderBatch() {
+    underTest.setDeliveryMode(DeliveryMode.BATCHED);
+
+    try (ContentBuilder.Batch batch = context.create().batch()) {
+      context.create().asset("/content/dam/sample1.jpg", 10, 10, "image/jpeg");
+      context.create().asset("/content/dam/sample2.jpg", 10, 10, "image/jpeg");
+      assertEquals(0, recorder.getEventCount());
+    }
+    assertEquals(4, recorder.getEventCount());
+  }
+
+  @Test
+  public void testRecorderClear() {
+    context.create().asset("/content/dam/sample.jpg", 10, 10, "image/jpeg");
+    assertEquals(2, recorder.getEventCount());
+    assertTrue(recorder.getThroughput() >= 0);
+
+    recorder.clear();
+    assertEquals(0, recorder.getEventCount());
+    assertEquals(0d, recorder.getThroughput(), 0d);
+  }
+
+}
@@ -23,12 +23,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.InputStream;
+
+import javax.jcr.Binary;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.Resource;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
 import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.Asset;
 import com.day.cq.dam.api.Rendition;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -75,6 +81,23 @@ public class MockRenditionTest {
     assertEquals(0L, rendition.getSize());
   }
 
+  @Test
+  public void testSizeAndBinary() throws Exception {
+    Asset asset = context.create().asset("/content/dam/sample.gif", "/sample-image.gif", "image/gif");
+    Rendition original = asset.getOriginal();
+    long expectedSize;
+    try (InputStream is = getClass().getResourceAsStream("/sample-image.gif")) {
+      expectedSize = IOUtils.toByteArray(is).length;
+    }
+    assertEquals(expectedSize, original.getSize());
+
+    Binary binary = ((MockRendition)original).getBinary();
+    assertEquals(expectedSize, binary.getSize());
+    try (InputStream is = binary.getStream()) {
+      assertEquals(expectedSize, IOUtils.consume(is));
+    }
+  }
+
   @Test
   public void testEquals() throws Exception {
     Rendition rendition1 = this.context.resourceResolver()
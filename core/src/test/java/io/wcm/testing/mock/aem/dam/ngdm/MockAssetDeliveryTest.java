@@ -23,17 +23,23 @@ import static io.wcm.testing.mock.aem.dam.ngdm.MockAssetDelivery.PARAM_FORMAT;
 import static io.wcm.testing.mock.aem.dam.ngdm.MockAssetDelivery.PARAM_PATH;
 import static io.wcm.testing.mock.aem.dam.ngdm.MockAssetDelivery.PARAM_SEO_NAME;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
 import com.adobe.cq.wcm.spi.AssetDelivery;
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.dam.api.Asset;
 
 import io.wcm.testing.mock.aem.context.TestAemContext;
@@ -65,6 +71,71 @@ public class MockAssetDeliveryTest {
             "preferwebp", true));
   }
 
+  @Test
+  public void testGetDeliveryURL_Encoding() {
+    String assetId = MockAssetDelivery.getAssetId(asset);
+    assertWithParams("/adobe/dynamicmedia/deliver/" + assetId + "/test.jpg?a+b=%C3%A4%26%3D&crop=0%2C0%2C50%2C50",
+        Map.of("crop", "0,0,50,50",
+            "a b", "\u00e4&="));
+  }
+
+  @Test
+  public void testGetDeliveryURLs() {
+    Asset asset2 = context.create().asset("/content/dam/test2.jpg", 10, 10, "image/jpeg");
+    MockAssetDelivery mockAssetDelivery = (MockAssetDelivery)underTest;
+
+    List<String> urls = mockAssetDelivery.getDeliveryURLs(assetResource, List.of(
+        params(asset, Map.of("width", 100)),
+        params(asset, Map.of("width", 200)),
+        params(asset2, Map.of("width", 100, "quality", 80))));
+
+    assertEquals(List.of(
+        "/adobe/dynamicmedia/deliver/" + MockAssetDelivery.getAssetId(asset) + "/test.jpg?width=100",
+        "/adobe/dynamicmedia/deliver/" + MockAssetDelivery.getAssetId(asset) + "/test.jpg?width=200",
+        "/adobe/dynamicmedia/deliver/" + MockAssetDelivery.getAssetId(asset2) + "/test2.jpg?quality=80&width=100"),
+        urls);
+  }
+
+  @Test
+  public void testGetAssetPath() {
+    MockAssetDelivery mockAssetDelivery = (MockAssetDelivery)underTest;
+    String assetId = mockAssetDelivery.getCachedAssetId(asset);
+    assertEquals(MockAssetDelivery.getAssetId(asset), assetId);
+    assertEquals(asset.getPath(), mockAssetDelivery.getAssetPath(assetId));
+    assertNull(mockAssetDelivery.getAssetPath("unknown"));
+  }
+
+  @Test
+  public void testGetAssetPath_AssetRemoved() {
+    MockAssetDelivery mockAssetDelivery = (MockAssetDelivery)underTest;
+    String assetId = mockAssetDelivery.getCachedAssetId(asset);
+    assertEquals(asset.getPath(), mockAssetDelivery.getAssetPath(assetId));
+
+    context.assetManager().removeAssetForBinary("/var/dam/test.jpg");
+    assertNull(mockAssetDelivery.getAssetPath(assetId));
+  }
+
+  @Test
+  public void testPersistAssetId() {
+    MockAssetDelivery mockAssetDelivery = context.registerInjectActivateService(MockAssetDelivery.class,
+        MockAssetDelivery.PROPERTY_PERSIST_ASSET_ID, true);
+    Asset asset2 = context.create().asset("/content/dam/test2.jpg", 10, 10, "image/jpeg");
+    context.resourceResolver().getResource(asset2.getPath() + "/" + JcrConstants.JCR_CONTENT)
+        .adaptTo(ModifiableValueMap.class)
+        .put(MockAssetDelivery.PN_ASSET_ID, "urn:aaid:aem:custom");
+
+    String url = mockAssetDelivery.getDeliveryURL(assetResource, params(asset, Map.of()));
+    assertEquals("/adobe/dynamicmedia/deliver/" + MockAssetDelivery.getAssetId(asset) + "/test.jpg", url);
+    ValueMap props = context.resourceResolver().getResource(asset.getPath() + "/" + JcrConstants.JCR_CONTENT).getValueMap();
+    assertEquals(MockAssetDelivery.getAssetId(asset), props.get(MockAssetDelivery.PN_ASSET_ID, String.class));
+    // the asset ID is not committed by the service
+    assertTrue(context.resourceResolver().hasChanges());
+
+    String url2 = mockAssetDelivery.getDeliveryURL(assetResource, params(asset2, Map.of()));
+    assertEquals("/adobe/dynamicmedia/deliver/urn:aaid:aem:custom/test2.jpg", url2);
+    assertEquals(asset2.getPath(), mockAssetDelivery.getAssetPath("urn:aaid:aem:custom"));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testGetDeliveryURL_MissingMandatoryParam() {
     underTest.getDeliveryURL(assetResource, Map.of());
@@ -76,12 +147,16 @@ public class MockAssetDeliveryTest {
   }
 
   private void assertWithParams(String expectedUrl, Map<String, Object> parameterMap) {
+    String url = underTest.getDeliveryURL(assetResource, params(asset, parameterMap));
+    assertEquals(expectedUrl, url);
+  }
+
+  private static Map<String, Object> params(Asset targetAsset, Map<String, Object> parameterMap) {
     Map<String, Object> allParams = new HashMap<>(parameterMap);
-    allParams.put(PARAM_PATH, asset.getPath());
-    allParams.put(PARAM_SEO_NAME, FilenameUtils.getBaseName(asset.getName()));
+    allParams.put(PARAM_PATH, targetAsset.getPath());
+    allParams.put(PARAM_SEO_NAME, FilenameUtils.getBaseName(targetAsset.getName()));
     allParams.put(PARAM_FORMAT, "jpg");
-    String url = underTest.getDeliveryURL(assetResource, allParams);
-    assertEquals(expectedUrl, url);
+    return allParams;
   }
 
 }
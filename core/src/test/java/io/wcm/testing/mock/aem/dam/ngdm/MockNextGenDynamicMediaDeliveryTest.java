@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2024 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.testing.mock.aem.dam.ngdm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.Resource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.day.cq.dam.api.Asset;
+
+import io.wcm.testing.mock.aem.context.TestAemContext;
+import io.wcm.testing.mock.aem.dam.ngdm.MockNextGenDynamicMediaDelivery.Response;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+public class MockNextGenDynamicMediaDeliveryTest {
+
+  @Rule
+  public AemContext context = TestAemContext.newAemContext();
+
+  private MockAssetDelivery assetDelivery;
+  private MockNextGenDynamicMediaDelivery underTest;
+  private Asset asset;
+  private Resource assetResource;
+
+  @Before
+  public void setUp() {
+    assetDelivery = context.registerInjectActivateService(MockAssetDelivery.class);
+    underTest = context.registerInjectActivateService(MockNextGenDynamicMediaDelivery.class);
+    asset = context.create().asset("/content/dam/test.jpg", 100, 50, "image/jpeg");
+    assetResource = asset.adaptTo(Resource.class);
+  }
+
+  @Test
+  public void testDeliverScaled() throws IOException {
+    String url = assetDelivery.getDeliveryURL(assetResource, params("jpg", Map.of("width", 40, "quality", 80)));
+
+    Response response = underTest.deliver(context.resourceResolver(), url);
+    assertEquals(200, response.getStatus());
+    assertEquals("image/jpeg", response.getContentType());
+    assertImageSize(response, 40, 20);
+    assertEquals(0, underTest.getCacheHits());
+    assertEquals(1, underTest.getCacheMisses());
+
+    Response cachedResponse = underTest.deliver(context.resourceResolver(), "https://delivery.example.com" + url);
+    assertArrayEquals(response.getData(), cachedResponse.getData());
+    assertEquals(1, underTest.getCacheHits());
+    assertEquals(0.5d, underTest.getCacheHitRate(), 0.0001d);
+    assertEquals(1, underTest.getCacheSize());
+
+    underTest.clearCache();
+    assertEquals(0, underTest.getCacheSize());
+    assertEquals(0, underTest.getCacheHits());
+  }
+
+  @Test
+  public void testDeliverCroppedAndConverted() throws IOException {
+    String url = assetDelivery.getDeliveryURL(assetResource, params("png", Map.of("crop", "10,0,50,50", "height", 25)));
+
+    Response response = underTest.deliver(context.resourceResolver(), url);
+    assertEquals(200, response.getStatus());
+    assertEquals("image/png", response.getContentType());
+    assertImageSize(response, 25, 25);
+  }
+
+  @Test
+  public void testDeliverUnsupportedFormat() throws IOException {
+    String url = assetDelivery.getDeliveryURL(assetResource, params("avif", Map.of("width", 10)));
+
+    Response response = underTest.deliver(context.resourceResolver(), url);
+    assertEquals(200, response.getStatus());
+    assertEquals("image/png", response.getContentType());
+    assertImageSize(response, 10, 5);
+  }
+
+  @Test
+  public void testDeliverOriginal() throws IOException {
+    Response response = underTest.deliver(context.resourceResolver(),
+        "/adobe/assets/deliver/" + MockAssetDelivery.getAssetId(asset) + "/test.jpg");
+    assertEquals(200, response.getStatus());
+    assertEquals("image/jpeg", response.getContentType());
+    try (InputStream is = asset.getOriginal().getStream()) {
+      assertArrayEquals(IOUtils.toByteArray(is), response.getData());
+    }
+  }
+
+  @Test
+  public void testDeliverWithoutAssetDeliveryService() throws IOException {
+    MockNextGenDynamicMediaDelivery delivery = new MockNextGenDynamicMediaDelivery();
+    Response response = delivery.deliver(context.resourceResolver(),
+        "/adobe/dynamicmedia/deliver/" + MockAssetDelivery.getAssetId(asset) + "/test.png?width=20");
+    assertEquals(200, response.getStatus());
+    assertImageSize(response, 20, 10);
+  }
+
+  @Test
+  public void testLruEviction() {
+    MockNextGenDynamicMediaDelivery delivery = context.registerInjectActivateService(MockNextGenDynamicMediaDelivery.class,
+        MockNextGenDynamicMediaDelivery.PROPERTY_CACHE_SIZE, 1);
+    String url1 = assetDelivery.getDeliveryURL(assetResource, params("png", Map.of("width", 10)));
+    String url2 = assetDelivery.getDeliveryURL(assetResource, params("png", Map.of("width", 20)));
+
+    delivery.deliver(context.resourceResolver(), url1);
+    delivery.deliver(context.resourceResolver(), url2);
+    delivery.deliver(context.resourceResolver(), url1);
+    assertEquals(0, delivery.getCacheHits());
+    assertEquals(3, delivery.getCacheMisses());
+    assertEquals(1, delivery.getCacheSize());
+  }
+
+  @Test
+  public void testErrors() {
+    assertEquals(404, underTest.deliver(context.resourceResolver(), "/adobe/dynamicmedia/deliver/unknown/test.jpg").getStatus());
+    assertEquals(404, underTest.deliver(context.resourceResolver(), "/content/dam/test.jpg").getStatus());
+    String url = assetDelivery.getDeliveryURL(assetResource, params("jpg", Map.of("width", "abc")));
+    assertEquals(400, underTest.deliver(context.resourceResolver(), url).getStatus());
+    url = assetDelivery.getDeliveryURL(assetResource, params("jpg", Map.of("crop", "0,0,10")));
+    assertEquals(400, underTest.deliver(context.resourceResolver(), url).getStatus());
+  }
+
+  @Test
+  public void testUnknownAssetIdResolvedAfterAssetCreated() {
+    String url = "/adobe/dynamicmedia/deliver/" + MockAssetDelivery.getAssetId("/content/dam/test2.jpg") + "/test2.png";
+    assertEquals(404, underTest.deliver(context.resourceResolver(), url).getStatus());
+    assertEquals(404, underTest.deliver(context.resourceResolver(), url).getStatus());
+
+    context.create().asset("/content/dam/test2.jpg", 10, 10, "image/jpeg");
+    assertEquals(200, underTest.deliver(context.resourceResolver(), url).getStatus());
+  }
+
+  private Map<String, Object> params(String format, Map<String, Object> parameterMap) {
+    Map<String, Object> allParams = new HashMap<>(parameterMap);
+    allParams.put(MockAssetDelivery.PARAM_PATH, asset.getPath());
+    allParams.put(MockAssetDelivery.PARAM_SEO_NAME, "test");
+    allParams.put(MockAssetDelivery.PARAM_FORMAT, format);
+    return allParams;
+  }
+
+  private static void assertImageSize(Response response, int width, int height) throws IOException {
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getData()));
+    assertNotNull(image);
+    assertEquals(width, image.getWidth());
+    assertEquals(height, image.getHeight());
+  }
+
+}